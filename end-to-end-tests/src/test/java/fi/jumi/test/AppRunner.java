@@ -21,6 +21,7 @@ import java.io.*;
 import java.nio.charset.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static fi.jumi.core.util.StringMatchers.containsSubStrings;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -249,13 +250,10 @@ public class AppRunner implements TestRule {
                 e.printStackTrace();
             }
         }
-        if (processStarter.lastProcess.isDone()) {
-            try {
-                Process process = processStarter.lastProcess.get();
-                kill(process);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        // also the daemons which the launcher did not start for this suite, such as standby daemons,
+        // would otherwise wait for reuse until their idle timeout
+        for (Process process : processStarter.processes) {
+            kill(process);
         }
         try {
             FileUtils.forceDelete(sandboxDir.toFile());
@@ -281,6 +279,7 @@ public class AppRunner implements TestRule {
 
         private final ProcessStarter processStarter;
         public final FutureValue<Process> lastProcess = new FutureValue<>();
+        public final List<Process> processes = new CopyOnWriteArrayList<>();
 
         public SpyProcessStarter(ProcessStarter processStarter) {
             this.processStarter = processStarter;
@@ -290,6 +289,7 @@ public class AppRunner implements TestRule {
         public Process startJavaProcess(JvmArgs jvmArgs) throws IOException {
             Process process = processStarter.startJavaProcess(jvmArgs);
             lastProcess.set(process);
+            processes.add(process);
             return process;
         }
     }
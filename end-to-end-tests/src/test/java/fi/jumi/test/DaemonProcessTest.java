@@ -88,6 +88,7 @@ public class DaemonProcessTest {
                 "fi.jumi.core.events.suiteListener.SuiteListenerToEvent"
         );
         app.daemon.setLogActorMessages(true);
+        app.daemon.setIdleTimeout(0); // the daemon output is finished when the daemon exits
 
         // sample test classes to produce all possible events
         startDaemonProcess(
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -31,7 +31,7 @@ public class JumiBootstrapTest {
 
     @Test
     public void runs_tests_with_current_classpath() throws Exception {
-        JumiBootstrap bootstrap = new JumiBootstrap().setTextUiOutput(out);
+        JumiBootstrap bootstrap = newBootstrap();
         bootstrap.suite.setTestClasses(OnePassingTest.class);
 
         bootstrap.runSuite();
@@ -43,7 +43,7 @@ public class JumiBootstrapTest {
 
     @Test
     public void reports_failures_by_throwing_AssertionError() throws Exception {
-        JumiBootstrap bootstrap = new JumiBootstrap().setTextUiOutput(out);
+        JumiBootstrap bootstrap = newBootstrap();
         bootstrap.suite.setTestClasses(OneFailingTest.class);
 
         thrown.expect(AssertionError.class);
@@ -51,10 +51,22 @@ public class JumiBootstrapTest {
         bootstrap.runSuite();
     }
 
+    @Test
+    public void can_show_the_startup_timeline() throws Exception {
+        JumiBootstrap bootstrap = newBootstrap().setStartupTimelineVisible(true);
+        bootstrap.suite.setTestClasses(OnePassingTest.class);
+
+        bootstrap.runSuite();
+
+        String out = this.out.toString();
+        assertThat(out, containsString("Startup: launcher build +0 ms"));
+        assertThat(out, containsString("first test started +"));
+    }
+
     @Test
     public void can_debug_the_daemons_actor_messages() throws Exception {
         ByteArrayOutputStream daemonOutput = new ByteArrayOutputStream();
-        JumiBootstrap bootstrap = new JumiBootstrap().setTextUiOutput(out).enableDebugMode(daemonOutput);
+        JumiBootstrap bootstrap = newBootstrap().enableDebugMode(daemonOutput);
         bootstrap.suite.setTestClasses(OnePassingTest.class);
 
         bootstrap.runSuite();
@@ -126,6 +138,12 @@ public class JumiBootstrapTest {
         assertThat(bootstrap.daemon.getLogActorMessages(), is(true));
     }
 
+    private JumiBootstrap newBootstrap() {
+        JumiBootstrap bootstrap = new JumiBootstrap().setTextUiOutput(out);
+        bootstrap.daemon.setIdleTimeout(0); // we don't want to leave daemon processes waiting for reuse after the tests
+        return bootstrap;
+    }
+
     private static Object getDaemonOutput(JumiBootstrap bootstrap) throws Exception {
         Object out = getFieldValue(bootstrap, "daemonOutput");
 
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -60,6 +60,17 @@ public class RunningTestsTest {
         app.checkContainsRun("OneFailingTest", "testFailing", "/", "/");
     }
 
+    @Test
+    public void forked_suite_runs_each_test_class_in_one_of_the_worker_daemons() throws Exception {
+        app.suite.setForkCount(2);
+        app.runTests(OnePassingTest.class, OneFailingTest.class);
+
+        app.checkPassingAndFailingTests(3, 1);
+        app.checkTotalTestRuns(2);
+        app.checkContainsRun("OnePassingTest", "testPassing", "/", "/");
+        app.checkContainsRun("OneFailingTest", "testFailing", "/", "/");
+    }
+
     @Test
     public void test_classes_can_be_found_using_file_name_patterns() throws Exception {
         app.runTestsMatching("glob:sample/One{Passing,Failing}Test.class");
@@ -0,0 +1,102 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.test;
+
+import fi.jumi.launcher.JumiBootstrap;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import sample.OnePassingTest;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Measures how long it takes for {@link JumiBootstrap} to run a one-test suite when a new daemon
+ * process must be started (cold) and when an idle daemon is reused (warm). The name doesn't end
+ * with "Test", so it's not run with the other end-to-end tests. Run it with:
+ * <pre>
+ * mvn verify -pl end-to-end-tests -Dit.test=StartupLatencyBenchmark
+ * </pre>
+ * The results are in target/failsafe-reports/fi.jumi.test.StartupLatencyBenchmark-output.txt
+ */
+public class StartupLatencyBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder(TestEnvironment.getSandboxDir().toFile());
+
+    @Test
+    public void cold_start_with_1_thread() throws Exception {
+        benchmark("cold start, 1 thread", 1, false);
+    }
+
+    @Test
+    public void cold_start_with_4_threads() throws Exception {
+        benchmark("cold start, 4 threads", 4, false);
+    }
+
+    @Test
+    public void warm_start_with_1_thread() throws Exception {
+        benchmark("warm start, 1 thread", 1, true);
+    }
+
+    @Test
+    public void warm_start_with_4_threads() throws Exception {
+        benchmark("warm start, 4 threads", 4, true);
+    }
+
+    private void benchmark(String name, int testThreads, boolean reuseDaemon) throws Exception {
+        Path jumiHome = tempDir.newFolder().toPath();
+        if (reuseDaemon) {
+            runSuite(jumiHome, testThreads, true); // warm up a daemon for the measured runs
+        }
+
+        long[] durations = new long[ITERATIONS];
+        String timeline = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (!reuseDaemon) {
+                jumiHome = tempDir.newFolder().toPath();
+            }
+            long start = System.nanoTime();
+            String output = runSuite(jumiHome, testThreads, reuseDaemon);
+            durations[i] = (System.nanoTime() - start) / 1000000;
+            timeline = startupTimeline(output);
+        }
+
+        assertThat("started a new daemon", timeline, reuseDaemon
+                ? not(containsString("process spawn"))
+                : containsString("process spawn"));
+        Arrays.sort(durations);
+        System.out.println(name + ": min " + durations[0] + " ms, median " + durations[ITERATIONS / 2] + " ms, max " + durations[ITERATIONS - 1] + " ms");
+        System.out.println("    last " + timeline);
+    }
+
+    private static String runSuite(Path jumiHome, int testThreads, boolean reuseDaemon) throws Exception {
+        StringBuilder out = new StringBuilder();
+        JumiBootstrap bootstrap = new JumiBootstrap()
+                .setTextUiOutput(out)
+                .setStartupTimelineVisible(true);
+        bootstrap.suite.setTestClasses(OnePassingTest.class);
+        bootstrap.daemon
+                .setJumiHome(jumiHome)
+                .setTestThreadsCount(testThreads)
+                .setIdleTimeout(reuseDaemon ? 60000 : 0);
+        bootstrap.runSuite();
+        return out.toString();
+    }
+
+    private static String startupTimeline(String output) {
+        for (String line : output.split("\\r?\\n")) {
+            if (line.startsWith("Startup: ")) {
+                return line;
+            }
+        }
+        throw new AssertionError("no startup timeline in the output:\n" + output);
+    }
+}
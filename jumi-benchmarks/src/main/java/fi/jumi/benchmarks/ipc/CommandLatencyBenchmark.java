@@ -0,0 +1,95 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.actors.*;
+import fi.jumi.actors.eventizers.dynamic.DynamicEventizerProvider;
+import fi.jumi.actors.listeners.*;
+import fi.jumi.core.api.SuiteListener;
+import fi.jumi.core.config.SuiteConfiguration;
+import fi.jumi.core.ipc.*;
+import fi.jumi.core.ipc.api.CommandListener;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.dirs.*;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.concurrent.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the round trip of a command from {@link IpcCommandSender} to {@link IpcCommandReceiver}
+ * and back, using the same wait strategy on both sides. The idle time between commands lets the
+ * readers back off, which is where the strategies differ the most. The idle time is included
+ * in the results, so subtract it when comparing.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@NotThreadSafe
+public class CommandLatencyBenchmark {
+
+    @Param({"PROGRESSIVE_SLEEP", "BUSY_SPIN", "PARK", "ADAPTIVE", "WATCH_SERVICE"})
+    public WaitStrategies waitStrategy;
+
+    @Param({"0", "20"})
+    public int idleMillis;
+
+    private Path tempDir;
+    private ExecutorService executor;
+    private IpcCommandSender sender;
+    private final SuiteConfiguration suiteConfiguration = SuiteConfiguration.DEFAULTS;
+
+    @Setup
+    public void setup() throws Exception {
+        tempDir = Files.createTempDirectory("jumi-benchmarks");
+        executor = Executors.newCachedThreadPool();
+        ActorThread actorThread = new MultiThreadedActors(
+                executor,
+                new DynamicEventizerProvider(),
+                new CrashEarlyFailureHandler(),
+                new NullMessageListener()
+        ).startActorThread();
+
+        WaitSettings waitSettings = new WaitSettings(waitStrategy, IpcReaders.DEFAULT_WRITER_TIMEOUT_MILLIS);
+        DaemonDir daemonDir = new DaemonDir(tempDir);
+        CommandDir commandDir = daemonDir.createCommandDir();
+        executor.execute(new IpcCommandReceiver(daemonDir, commandDir, new NullCommandListener(), actorThread, waitSettings, false));
+        sender = new IpcCommandSender(commandDir, executor, waitSettings);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sender.close();
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        CrossProcessBenchmark.deleteRecursively(tempDir);
+    }
+
+    @Benchmark
+    public Path runTestsCommand() throws Exception {
+        if (idleMillis > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(idleMillis));
+        }
+        return sender.runTests(suiteConfiguration).get();
+    }
+
+
+    @ThreadSafe
+    private static class NullCommandListener implements CommandListener {
+
+        @Override
+        public void runTests(SuiteConfiguration suiteConfiguration, ActorRef<SuiteListener> suiteListener) {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,132 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the IPC channels with the writer and reader in separate JVMs, like between
+ * the launcher and the daemon. The channels grow for the whole duration of a trial,
+ * so a long run will need some hundreds of megabytes of temporary disk space.
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@NotThreadSafe
+public class CrossProcessBenchmark {
+
+    private static final int BATCH = 1000;
+    private static final long STARTUP_TIMEOUT_MILLIS = 30 * 1000;
+
+    private Path tempDir;
+    private Process echoProcess;
+    private IpcWriter<SuiteListener> requests;
+    private SuiteListener requestSender;
+    private IpcReader<SuiteListener> replies;
+    private final SuiteListener target = new NullSuiteListener();
+
+    private final RunId runId = new RunId(RunId.FIRST_ID);
+
+    @Setup
+    public void setup() throws Exception {
+        tempDir = Files.createTempDirectory("jumi-benchmarks");
+        Path requestsPath = tempDir.resolve("requests");
+        Path repliesPath = tempDir.resolve("replies");
+
+        requests = IpcChannel.writer(requestsPath, SuiteListenerEncoding::new);
+        requestSender = new SuiteListenerEventizer().newFrontend(requests);
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        echoProcess = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                EchoProcess.class.getName(),
+                requestsPath.toString(),
+                repliesPath.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        // The reader must not create the file, or else it would decide the size of the first segment
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (!Files.exists(repliesPath)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("echo process did not start in " + STARTUP_TIMEOUT_MILLIS + " ms");
+            }
+            Thread.sleep(1);
+        }
+        replies = IpcChannel.reader(repliesPath, SuiteListenerEncoding::new);
+        awaitReply(); // header
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        requests.close();
+        echoProcess.waitFor();
+        deleteRecursively(tempDir);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void roundTrip() {
+        requestSender.onRunFinished(runId);
+        awaitReply();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void oneWayBatch() {
+        for (int i = 1; i < BATCH; i++) {
+            requestSender.onTestFinished(runId);
+        }
+        requestSender.onRunFinished(runId);
+        awaitReply();
+    }
+
+    private void awaitReply() {
+        PollResult result;
+        while ((result = replies.poll(target)) != PollResult.HAD_SOME_MESSAGES) {
+            if (result == PollResult.END_OF_STREAM) {
+                throw new IllegalStateException("echo process closed the channel");
+            }
+            busyWait();
+        }
+    }
+
+    static void busyWait() {
+        // Costs only tens of nanoseconds (see MmfIpcSpike), but unlike a pure
+        // busy loop it keeps the benchmark usable on machines with few cores
+        Thread.yield();
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
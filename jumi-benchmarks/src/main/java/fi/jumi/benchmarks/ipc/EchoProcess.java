@@ -0,0 +1,41 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.file.Paths;
+
+/**
+ * The other end of {@link CrossProcessBenchmark}. Replies to every {@code onRunFinished}
+ * event and ignores all other events. Exits when the request channel is closed.
+ */
+@NotThreadSafe
+public class EchoProcess {
+
+    public static void main(String[] args) {
+        IpcReader<SuiteListener> requests = IpcChannel.consumingReader(Paths.get(args[0]), SuiteListenerEncoding::new);
+        IpcWriter<SuiteListener> replies = IpcChannel.writer(Paths.get(args[1]), SuiteListenerEncoding::new);
+        SuiteListener replySender = new SuiteListenerEventizer().newFrontend(replies);
+
+        SuiteListener echo = new NullSuiteListener() {
+            @Override
+            public void onRunFinished(RunId runId) {
+                replySender.onRunFinished(runId);
+            }
+        };
+        PollResult result;
+        while ((result = requests.poll(echo)) != PollResult.END_OF_STREAM) {
+            if (result == PollResult.NO_NEW_MESSAGES) {
+                CrossProcessBenchmark.busyWait();
+            }
+        }
+        replies.close();
+    }
+}
@@ -0,0 +1,120 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.core.ipc.buffer.*;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@NotThreadSafe
+public class IpcBufferBenchmark {
+
+    private static final int TOTAL_SIZE = 1024 * 1024;
+    private static final int LONGS = TOTAL_SIZE / 8;
+    private static final int RANDOM_INDICES = 1024;
+
+    /**
+     * Small segments exercise the segment boundary handling, large segments the fast path.
+     */
+    @Param({"100", "4096", "524288"})
+    public int segmentSize;
+
+    private IpcBuffer buffer;
+    private int[] randomIndices;
+    private int straddlingIndex;
+
+    @Setup
+    public void setup() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(segmentSize, TOTAL_SIZE + segmentSize));
+        for (int i = 0; i < LONGS; i++) {
+            buffer.writeLong(i);
+        }
+
+        Random random = new Random(123);
+        randomIndices = new int[RANDOM_INDICES];
+        for (int i = 0; i < randomIndices.length; i++) {
+            randomIndices[i] = random.nextInt(TOTAL_SIZE - 8);
+        }
+
+        // the last segment boundary within the data, so that reads are split between two segments
+        straddlingIndex = (TOTAL_SIZE / segmentSize - 1) * segmentSize - 3;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LONGS)
+    public IpcBuffer relativeWriteLong() {
+        buffer.position(0);
+        for (int i = 0; i < LONGS; i++) {
+            buffer.writeLong(i);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LONGS)
+    public long relativeReadLong() {
+        buffer.position(0);
+        long sum = 0;
+        for (int i = 0; i < LONGS; i++) {
+            sum += buffer.readLong();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOTAL_SIZE)
+    public long relativeReadByte() {
+        buffer.position(0);
+        long sum = 0;
+        for (int i = 0; i < TOTAL_SIZE; i++) {
+            sum += buffer.readByte();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RANDOM_INDICES)
+    public long absoluteRandomGetInt() {
+        long sum = 0;
+        for (int index : randomIndices) {
+            sum += buffer.getInt(index);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RANDOM_INDICES)
+    public IpcBuffer absoluteRandomSetInt() {
+        for (int index : randomIndices) {
+            buffer.setInt(index, index);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public long absoluteGetLongAcrossSegmentBoundary() {
+        return buffer.getLong(straddlingIndex);
+    }
+
+    @Benchmark
+    public IpcBuffer absoluteSetLongAcrossSegmentBoundary() {
+        return buffer.setLong(straddlingIndex, straddlingIndex);
+    }
+
+    @Benchmark
+    public long absoluteGetLongFromFirstAndLastSegment() {
+        // worst case for walking the segments one by one
+        return buffer.getLong(0) + buffer.getLong(TOTAL_SIZE - 8);
+    }
+}
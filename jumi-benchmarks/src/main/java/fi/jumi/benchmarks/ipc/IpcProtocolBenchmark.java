@@ -0,0 +1,93 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.OnRunFinishedEvent;
+import fi.jumi.core.ipc.buffer.*;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@NotThreadSafe
+public class IpcProtocolBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    private IpcBuffer writeBuffer;
+    private IpcProtocol<SuiteListener> writer;
+    private SuiteListener writerFrontend;
+    private long firstMessage;
+    private final List<Event<SuiteListener>> batch = new ArrayList<>();
+
+    private IpcBuffer readBuffer;
+    private IpcProtocol<SuiteListener> reader;
+    private final SuiteListener target = new NullSuiteListener();
+
+    private final RunId runId = new RunId(RunId.FIRST_ID);
+
+    @Setup
+    public void setup() {
+        writeBuffer = new IpcBuffer(new AllocatedByteBufferSequence(64 * 1024));
+        writer = new IpcProtocol<>(writeBuffer, SuiteListenerEncoding::new);
+        writer.start();
+        writerFrontend = new SuiteListenerEventizer().newFrontend(writer);
+        firstMessage = writeBuffer.position();
+        for (int i = 0; i < MESSAGES; i++) {
+            batch.add(new OnRunFinishedEvent(runId));
+        }
+
+        readBuffer = new IpcBuffer(new AllocatedByteBufferSequence(64 * 1024));
+        IpcProtocol<SuiteListener> protocol = new IpcProtocol<>(readBuffer, SuiteListenerEncoding::new);
+        protocol.start();
+        SuiteListener frontend = new SuiteListenerEventizer().newFrontend(protocol);
+        for (int i = 0; i < MESSAGES; i++) {
+            frontend.onRunFinished(runId);
+        }
+        protocol.close();
+        reader = new IpcProtocol<>(readBuffer, SuiteListenerEncoding::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public IpcBuffer send() {
+        writeBuffer.position(firstMessage);
+        for (int i = 0; i < MESSAGES; i++) {
+            writerFrontend.onRunFinished(runId);
+        }
+        return writeBuffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public IpcBuffer sendBatch() {
+        writeBuffer.position(firstMessage);
+        writer.sendBatch(batch);
+        return writeBuffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int poll() {
+        readBuffer.position(0);
+        int polls = 0;
+        while (reader.poll(target) != PollResult.END_OF_STREAM) {
+            polls++;
+        }
+        return polls;
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Produces the events of a suite which resembles a typical unit test suite:
+ * a few test classes with a handful of tests each, some printing to stdout
+ * and an occasional failure with a deep stack trace.
+ */
+@Immutable
+public class RealisticSuite {
+
+    private static final int TEST_CLASSES = 10;
+    private static final int TESTS_PER_CLASS = 10;
+
+    private static final StackTrace FAILURE = StackTrace.from(deepException(30));
+
+    public static int fireEvents(SuiteListener listener) {
+        int events = 0;
+        int runIds = RunId.FIRST_ID;
+
+        listener.onSuiteStarted();
+        events++;
+        for (int c = 0; c < TEST_CLASSES; c++) {
+            listener.onTestFileFound(testFile(c));
+            events++;
+        }
+        listener.onAllTestFilesFound();
+        events++;
+
+        for (int c = 0; c < TEST_CLASSES; c++) {
+            TestFile testFile = testFile(c);
+            listener.onTestFound(testFile, TestId.ROOT, "com.example.SomethingTest" + c);
+            events++;
+
+            for (int t = 0; t < TESTS_PER_CLASS; t++) {
+                TestId testId = TestId.of(t);
+                RunId runId = new RunId(runIds++);
+
+                listener.onTestFound(testFile, testId, "does_something_interesting_" + t);
+                listener.onRunStarted(runId, testFile);
+                listener.onTestStarted(runId, TestId.ROOT);
+                listener.onTestStarted(runId, testId);
+                events += 4;
+                if (t % 3 == 0) {
+                    listener.onPrintedOut(runId, "some output from test " + t + "\n");
+                    events++;
+                }
+                if (t % 7 == 6) {
+                    listener.onFailure(runId, FAILURE);
+                    events++;
+                }
+                listener.onTestFinished(runId);
+                listener.onTestFinished(runId);
+                listener.onRunFinished(runId);
+                events += 3;
+            }
+            listener.onTestFileFinished(testFile);
+            events++;
+        }
+        listener.onSuiteFinished();
+        events++;
+        return events;
+    }
+
+    private static TestFile testFile(int index) {
+        return TestFile.fromClassName("com.example.SomethingTest" + index);
+    }
+
+    private static Throwable deepException(int depth) {
+        if (depth == 0) {
+            return new AssertionError("expected:<1> but was:<2>");
+        }
+        return deepException(depth - 1);
+    }
+}
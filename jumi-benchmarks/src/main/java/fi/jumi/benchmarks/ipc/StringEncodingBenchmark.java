@@ -0,0 +1,55 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.core.ipc.buffer.*;
+import fi.jumi.core.ipc.encoding.StringEncoding;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@NotThreadSafe
+public class StringEncodingBenchmark {
+
+    /**
+     * Class names are typically tens of characters, printed output from hundreds to thousands.
+     */
+    @Param({"10", "100", "1000", "10000"})
+    public int length;
+
+    private IpcBuffer buffer;
+    private String string;
+
+    @Setup
+    public void setup() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(4096));
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        string = sb.toString();
+        StringEncoding.writeString(buffer, string);
+    }
+
+    @Benchmark
+    public IpcBuffer writeString() {
+        buffer.position(0);
+        StringEncoding.writeString(buffer, string);
+        return buffer;
+    }
+
+    @Benchmark
+    public String readString() {
+        buffer.position(0);
+        return StringEncoding.readString(buffer);
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.benchmarks.ipc;
+
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.ipc.buffer.*;
+import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@NotThreadSafe
+public class SuiteListenerEncodingBenchmark {
+
+    private IpcBuffer buffer;
+    private SuiteListenerEncoding encoding;
+    private SuiteListener encoder;
+    private int events;
+    private final SuiteListener target = new NullSuiteListener();
+
+    @Setup
+    public void setup() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(64 * 1024));
+        encoding = new SuiteListenerEncoding(buffer);
+        encoder = new SuiteListenerEventizer().newFrontend(encoding::encode);
+        events = RealisticSuite.fireEvents(encoder);
+    }
+
+    // one operation is a whole suite of roughly 800 events
+
+    @Benchmark
+    public IpcBuffer encodeSuite() {
+        buffer.position(0);
+        RealisticSuite.fireEvents(encoder);
+        return buffer;
+    }
+
+    @Benchmark
+    public IpcBuffer decodeSuite() {
+        buffer.position(0);
+        for (int i = 0; i < events; i++) {
+            encoding.decode(target);
+        }
+        return buffer;
+    }
+}
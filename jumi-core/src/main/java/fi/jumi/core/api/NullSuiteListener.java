@@ -1,4 +1,4 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -66,4 +66,8 @@ public class NullSuiteListener implements SuiteListener {
     @Override
     public void onSuiteFinished() {
     }
+
+    @Override
+    public void onStartupTimeline(StartupTimeline timeline) {
+    }
 }
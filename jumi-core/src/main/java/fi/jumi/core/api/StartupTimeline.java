@@ -0,0 +1,116 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.api;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * When each phase of starting a suite began, as wall-clock time in milliseconds, so that the
+ * phases of the launcher and the daemon process can be put on the same timeline. Phases which
+ * didn't happen for a suite, such as starting the daemon process when an idle daemon was reused,
+ * are left out.
+ */
+@Immutable
+public class StartupTimeline implements Serializable {
+
+    // launcher
+    public static final String LAUNCHER_BUILD = "launcher build";
+    public static final String STEWARD_JAR_CHECK = "steward jar check";
+    public static final String PROCESS_SPAWN = "process spawn";
+
+    // daemon
+    public static final String DAEMON_MAIN_ENTRY = "daemon main entry";
+    public static final String NETTY_CONNECT = "netty connect";
+    public static final String COMMAND_DIR_OBSERVATION = "command dir observation";
+    public static final String SUITE_CONFIGURE = "suite configure";
+    public static final String FIRST_TEST_FILE_FOUND = "first test file found";
+    public static final String FIRST_TEST_STARTED = "first test started";
+
+    public static final StartupTimeline EMPTY = new StartupTimeline(new String[0], new long[0]);
+
+    private final String[] phases;
+    private final long[] timestamps;
+
+    private StartupTimeline(String[] phases, long[] timestamps) {
+        this.phases = phases;
+        this.timestamps = timestamps;
+    }
+
+    public StartupTimeline with(String phase, long timestamp) {
+        String[] phases = Arrays.copyOf(this.phases, this.phases.length + 1);
+        long[] timestamps = Arrays.copyOf(this.timestamps, this.timestamps.length + 1);
+        phases[phases.length - 1] = phase;
+        timestamps[timestamps.length - 1] = timestamp;
+        return new StartupTimeline(phases, timestamps);
+    }
+
+    /**
+     * Returns the phases of this timeline followed by the phases of the later timeline.
+     */
+    public StartupTimeline plus(StartupTimeline later) {
+        StartupTimeline result = this;
+        for (int i = 0; i < later.phases.length; i++) {
+            result = result.with(later.phases[i], later.timestamps[i]);
+        }
+        return result;
+    }
+
+    public List<String> getPhases() {
+        return Collections.unmodifiableList(Arrays.asList(phases));
+    }
+
+    public boolean hasPhase(String phase) {
+        return indexOf(phase) >= 0;
+    }
+
+    public long getTimestamp(String phase) {
+        int index = indexOf(phase);
+        if (index < 0) {
+            throw new IllegalArgumentException("no such phase: " + phase);
+        }
+        return timestamps[index];
+    }
+
+    private int indexOf(String phase) {
+        for (int i = 0; i < phases.length; i++) {
+            if (phases[i].equals(phase)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof StartupTimeline)) {
+            return false;
+        }
+        StartupTimeline that = (StartupTimeline) obj;
+        return Arrays.equals(this.phases, that.phases)
+                && Arrays.equals(this.timestamps, that.timestamps);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(phases) * 31 + Arrays.hashCode(timestamps);
+    }
+
+    /**
+     * Shows each phase with its offset from the first phase, e.g. "launcher build +0 ms, process spawn +35 ms"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < phases.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(phases[i]).append(" +").append(timestamps[i] - timestamps[0]).append(" ms");
+        }
+        return sb.toString();
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -6,8 +6,10 @@ package fi.jumi.core.api;
 
 import fi.jumi.actors.generator.GenerateEventizer;
 import fi.jumi.api.drivers.TestId;
+import fi.jumi.ipc.generator.GenerateIpcEncoding;
 
 @GenerateEventizer(targetPackage = "fi.jumi.core.events")
+@GenerateIpcEncoding(targetPackage = "fi.jumi.core.ipc.encoding")
 public interface SuiteListener {
 
     void onSuiteStarted();
@@ -37,4 +39,10 @@ public interface SuiteListener {
     void onTestFileFinished(TestFile testFile);
 
     void onSuiteFinished();
+
+    /**
+     * Sent once per suite, after the first test has started, or before the suite finishes if no tests were run.
+     * Added after the other events, so that their event types in the results stream stay the same.
+     */
+    void onStartupTimeline(StartupTimeline timeline);
 }
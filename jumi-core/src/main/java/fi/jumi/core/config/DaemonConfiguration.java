@@ -1,9 +1,11 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.config;
 
+import fi.jumi.core.ipc.channel.*;
+
 import javax.annotation.concurrent.Immutable;
 import java.nio.file.*;
 import java.util.*;
@@ -18,43 +20,71 @@ public class DaemonConfiguration {
     public static final String JUMI_HOME = "--jumi-home";
     public static final String DAEMON_DIR = "--daemon-dir";
     public static final String LAUNCHER_PORT = "--launcher-port";
+    public static final String STANDBY = "--standby";
 
     // system properties
     public static final SystemProperty TEST_THREADS_COUNT = new SystemProperty("testThreadsCount", "jumi.daemon.testThreadsCount", DEFAULTS);
     public static final SystemProperty IDLE_TIMEOUT = new SystemProperty("idleTimeout", "jumi.daemon.idleTimeout", DEFAULTS);
     public static final SystemProperty STARTUP_TIMEOUT = new SystemProperty("startupTimeout", "jumi.daemon.startupTimeout", DEFAULTS);
     public static final SystemProperty LOG_ACTOR_MESSAGES = new SystemProperty("logActorMessages", "jumi.daemon.logActorMessages", DEFAULTS);
-    public static final List<SystemProperty> PROPERTIES = Arrays.asList(TEST_THREADS_COUNT, LOG_ACTOR_MESSAGES, STARTUP_TIMEOUT, IDLE_TIMEOUT);
+    public static final SystemProperty IPC_COMMANDS_WAIT_STRATEGY = new SystemProperty("ipcCommandsWaitStrategy", "jumi.daemon.ipcWaitStrategy.commands", DEFAULTS);
+    public static final SystemProperty IPC_RESULTS_WAIT_STRATEGY = new SystemProperty("ipcResultsWaitStrategy", "jumi.daemon.ipcWaitStrategy.results", DEFAULTS);
+    public static final SystemProperty WRITER_TIMEOUT = new SystemProperty("writerTimeout", "jumi.daemon.writerTimeout", DEFAULTS);
+    public static final SystemProperty MULTI_PRODUCER_RESULTS = new SystemProperty("multiProducerResults", "jumi.daemon.multiProducerResults", DEFAULTS);
+    public static final SystemProperty CLASS_LOADER_LEAK_LIMIT = new SystemProperty("classLoaderLeakLimit", "jumi.daemon.classLoaderLeakLimit", DEFAULTS);
+    public static final SystemProperty CONCURRENT_SUITES = new SystemProperty("concurrentSuites", "jumi.daemon.concurrentSuites", DEFAULTS);
+    public static final List<SystemProperty> PROPERTIES = Arrays.asList(TEST_THREADS_COUNT, LOG_ACTOR_MESSAGES, STARTUP_TIMEOUT, IDLE_TIMEOUT, IPC_COMMANDS_WAIT_STRATEGY, IPC_RESULTS_WAIT_STRATEGY, WRITER_TIMEOUT, MULTI_PRODUCER_RESULTS, CLASS_LOADER_LEAK_LIMIT, CONCURRENT_SUITES);
 
     // command line arguments
     private final Path jumiHome;
     private final Path daemonDir;
     private final int launcherPort;
+    private final boolean standby;
 
     // system properties
     private final int testThreadsCount;
     private final boolean logActorMessages;
     private final long startupTimeout;
     private final long idleTimeout;
+    private final WaitStrategies ipcCommandsWaitStrategy;
+    private final WaitStrategies ipcResultsWaitStrategy;
+    private final long writerTimeout;
+    private final boolean multiProducerResults;
+    private final int classLoaderLeakLimit;
+    private final int concurrentSuites;
 
     public DaemonConfiguration() {
         jumiHome = Paths.get(System.getProperty("user.home"), ".jumi");
         daemonDir = Paths.get("");
         launcherPort = 0;
+        standby = false;
         testThreadsCount = 0;
         logActorMessages = false;
         startupTimeout = TimeUnit.SECONDS.toMillis(30);
-        idleTimeout = TimeUnit.SECONDS.toMillis(1);  // TODO: increase to 15 min, after implementing persistent daemons
+        idleTimeout = TimeUnit.MINUTES.toMillis(15); // daemons which leak class loaders retire themselves
+        ipcCommandsWaitStrategy = WaitStrategies.PROGRESSIVE_SLEEP;
+        ipcResultsWaitStrategy = WaitStrategies.PROGRESSIVE_SLEEP;
+        writerTimeout = IpcReaders.DEFAULT_WRITER_TIMEOUT_MILLIS;
+        multiProducerResults = false;
+        classLoaderLeakLimit = 3;
+        concurrentSuites = 1;
     }
 
     DaemonConfiguration(DaemonConfigurationBuilder src) {
         jumiHome = src.getJumiHome();
         daemonDir = src.getDaemonDir();
         launcherPort = src.getLauncherPort();
+        standby = src.isStandby();
         testThreadsCount = src.getTestThreadsCount();
         logActorMessages = src.getLogActorMessages();
         startupTimeout = src.getStartupTimeout();
         idleTimeout = src.getIdleTimeout();
+        ipcCommandsWaitStrategy = src.getIpcCommandsWaitStrategy();
+        ipcResultsWaitStrategy = src.getIpcResultsWaitStrategy();
+        writerTimeout = src.getWriterTimeout();
+        multiProducerResults = src.getMultiProducerResults();
+        classLoaderLeakLimit = src.getClassLoaderLeakLimit();
+        concurrentSuites = src.getConcurrentSuites();
     }
 
     public DaemonConfigurationBuilder melt() {
@@ -65,6 +95,13 @@ public class DaemonConfiguration {
     // conversions
 
     public String[] toProgramArgs() {
+        if (isStandby()) {
+            return new String[]{
+                    JUMI_HOME, getJumiHome().toString(),
+                    DAEMON_DIR, getDaemonDir().toString(),
+                    STANDBY
+            };
+        }
         return new String[]{
                 JUMI_HOME, getJumiHome().toString(),
                 DAEMON_DIR, getDaemonDir().toString(),
@@ -95,6 +132,14 @@ public class DaemonConfiguration {
         return launcherPort;
     }
 
+    /**
+     * A standby daemon is started in advance, without a launcher to connect to. It warms itself up
+     * and waits for a launcher to claim it through the registry of daemons.
+     */
+    public boolean isStandby() {
+        return standby;
+    }
+
     public int getTestThreadsCountCalculated() {
         int threads = getTestThreadsCount();
         if (threads < 1) {
@@ -116,7 +161,57 @@ public class DaemonConfiguration {
         return startupTimeout;
     }
 
+    /**
+     * How long the daemon waits for launchers to reuse it after its last suite, before it exits.
+     */
     public long getIdleTimeout() {
         return idleTimeout;
     }
+
+    /**
+     * How the readers of the command and response channels wait for new messages.
+     */
+    public WaitStrategies getIpcCommandsWaitStrategy() {
+        return ipcCommandsWaitStrategy;
+    }
+
+    /**
+     * How the readers of the suite results channels wait for new messages.
+     */
+    public WaitStrategies getIpcResultsWaitStrategy() {
+        return ipcResultsWaitStrategy;
+    }
+
+    /**
+     * How long the readers of IPC channels wait for the writer's next heartbeat, before deciding that
+     * the writer has died. Raise it when pausing the other process in a debugger.
+     */
+    public long getWriterTimeout() {
+        return writerTimeout;
+    }
+
+    public WaitSettings getWaitSettings() {
+        return new WaitSettings(getIpcCommandsWaitStrategy(), getIpcResultsWaitStrategy(), getWriterTimeout());
+    }
+
+    public boolean getMultiProducerResults() {
+        return multiProducerResults;
+    }
+
+    /**
+     * How many suites later the class loader of a suite must have been garbage collected,
+     * before the daemon considers it leaked and stops taking new suites.
+     */
+    public int getClassLoaderLeakLimit() {
+        return classLoaderLeakLimit;
+    }
+
+    /**
+     * How many suites the daemon may run at the same time. The suites are isolated from each other,
+     * but they share the daemon's test threads. Only suites with the same working directory and JVM
+     * options can share a daemon.
+     */
+    public int getConcurrentSuites() {
+        return concurrentSuites;
+    }
 }
@@ -1,9 +1,11 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.config;
 
+import fi.jumi.core.ipc.channel.WaitStrategies;
+
 import javax.annotation.concurrent.NotThreadSafe;
 import java.nio.file.*;
 import java.util.*;
@@ -15,12 +17,19 @@ public class DaemonConfigurationBuilder {
     private Path jumiHome;
     private Path daemonDir;
     private int launcherPort;
+    private boolean standby;
 
     // system properties
     private int testThreadsCount;
     private boolean logActorMessages;
     private long startupTimeout;
     private long idleTimeout;
+    private WaitStrategies ipcCommandsWaitStrategy;
+    private WaitStrategies ipcResultsWaitStrategy;
+    private long writerTimeout;
+    private boolean multiProducerResults;
+    private int classLoaderLeakLimit;
+    private int concurrentSuites;
 
     public DaemonConfigurationBuilder() {
         this(DaemonConfiguration.DEFAULTS);
@@ -30,10 +39,17 @@ public class DaemonConfigurationBuilder {
         jumiHome = src.getJumiHome();
         daemonDir = src.getDaemonDir();
         launcherPort = src.getLauncherPort();
+        standby = src.isStandby();
         testThreadsCount = src.getTestThreadsCount();
         logActorMessages = src.getLogActorMessages();
         startupTimeout = src.getStartupTimeout();
         idleTimeout = src.getIdleTimeout();
+        ipcCommandsWaitStrategy = src.getIpcCommandsWaitStrategy();
+        ipcResultsWaitStrategy = src.getIpcResultsWaitStrategy();
+        writerTimeout = src.getWriterTimeout();
+        multiProducerResults = src.getMultiProducerResults();
+        classLoaderLeakLimit = src.getClassLoaderLeakLimit();
+        concurrentSuites = src.getConcurrentSuites();
     }
 
     public DaemonConfiguration freeze() {
@@ -57,6 +73,9 @@ public class DaemonConfigurationBuilder {
                 case DaemonConfiguration.LAUNCHER_PORT:
                     setLauncherPort(Integer.parseInt(it.next()));
                     break;
+                case DaemonConfiguration.STANDBY:
+                    setStandby(true);
+                    break;
                 default:
                     throw new IllegalArgumentException("unsupported parameter: " + parameter);
             }
@@ -69,7 +88,7 @@ public class DaemonConfigurationBuilder {
         if (getDaemonDir().toString().isEmpty()) {
             throw new IllegalArgumentException("missing required parameter: " + DaemonConfiguration.DAEMON_DIR);
         }
-        if (getLauncherPort() <= 0) {
+        if (getLauncherPort() <= 0 && !isStandby()) {
             throw new IllegalArgumentException("missing required parameter: " + DaemonConfiguration.LAUNCHER_PORT);
         }
     }
@@ -111,6 +130,15 @@ public class DaemonConfigurationBuilder {
         return this;
     }
 
+    public boolean isStandby() {
+        return standby;
+    }
+
+    public DaemonConfigurationBuilder setStandby(boolean standby) {
+        this.standby = standby;
+        return this;
+    }
+
     public int getTestThreadsCount() {
         return testThreadsCount;
     }
@@ -146,4 +174,61 @@ public class DaemonConfigurationBuilder {
         this.idleTimeout = idleTimeout;
         return this;
     }
+
+    public WaitStrategies getIpcCommandsWaitStrategy() {
+        return ipcCommandsWaitStrategy;
+    }
+
+    public DaemonConfigurationBuilder setIpcCommandsWaitStrategy(WaitStrategies ipcCommandsWaitStrategy) {
+        this.ipcCommandsWaitStrategy = ipcCommandsWaitStrategy;
+        return this;
+    }
+
+    public WaitStrategies getIpcResultsWaitStrategy() {
+        return ipcResultsWaitStrategy;
+    }
+
+    public DaemonConfigurationBuilder setIpcResultsWaitStrategy(WaitStrategies ipcResultsWaitStrategy) {
+        this.ipcResultsWaitStrategy = ipcResultsWaitStrategy;
+        return this;
+    }
+
+    public long getWriterTimeout() {
+        return writerTimeout;
+    }
+
+    public DaemonConfigurationBuilder setWriterTimeout(long writerTimeout) {
+        this.writerTimeout = writerTimeout;
+        return this;
+    }
+
+    public boolean getMultiProducerResults() {
+        return multiProducerResults;
+    }
+
+    public DaemonConfigurationBuilder setMultiProducerResults(boolean multiProducerResults) {
+        this.multiProducerResults = multiProducerResults;
+        return this;
+    }
+
+    public int getClassLoaderLeakLimit() {
+        return classLoaderLeakLimit;
+    }
+
+    public DaemonConfigurationBuilder setClassLoaderLeakLimit(int classLoaderLeakLimit) {
+        this.classLoaderLeakLimit = classLoaderLeakLimit;
+        return this;
+    }
+
+    public int getConcurrentSuites() {
+        return concurrentSuites;
+    }
+
+    public DaemonConfigurationBuilder setConcurrentSuites(int concurrentSuites) {
+        if (concurrentSuites < 1) {
+            throw new IllegalArgumentException("concurrent suites must be at least 1, but was " + concurrentSuites);
+        }
+        this.concurrentSuites = concurrentSuites;
+        return this;
+    }
 }
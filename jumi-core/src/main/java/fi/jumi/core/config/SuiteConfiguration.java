@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -24,6 +24,9 @@ public class SuiteConfiguration implements Serializable {
     private final URI workingDirectory;
     private final String includedTestsPattern;
     private final String excludedTestsPattern;
+    private final List<String> isolatedLibraries;
+    private final int forkCount;
+    private final URI testFileClaimsDir;
 
     public SuiteConfiguration() {
         classpath = Collections.emptyList();
@@ -31,6 +34,11 @@ public class SuiteConfiguration implements Serializable {
         workingDirectory = Paths.get(".").normalize().toUri();
         includedTestsPattern = "glob:**Test.class";
         excludedTestsPattern = "glob:**$*.class";
+        // these replace classes with their own class loaders or bytecode instrumentation,
+        // which doesn't work on classes that were loaded before the suite started
+        isolatedLibraries = Immutables.list(Arrays.asList("glob:powermock-*.jar", "glob:jmockit-*.jar"));
+        forkCount = 1;
+        testFileClaimsDir = null;
     }
 
     SuiteConfiguration(SuiteConfigurationBuilder src) {
@@ -39,6 +47,9 @@ public class SuiteConfiguration implements Serializable {
         workingDirectory = src.getWorkingDirectory();
         includedTestsPattern = src.getIncludedTestsPattern();
         excludedTestsPattern = src.getExcludedTestsPattern();
+        isolatedLibraries = Immutables.list(src.getIsolatedLibraries());
+        forkCount = src.getForkCount();
+        testFileClaimsDir = src.getTestFileClaimsDir();
     }
 
     public SuiteConfigurationBuilder melt() {
@@ -61,6 +72,22 @@ public class SuiteConfiguration implements Serializable {
         return new IncludeExcludePathMatcher(fileSystem, getIncludedTestsPattern(), getExcludedTestsPattern());
     }
 
+    public PathMatcher createIsolatedLibrariesMatcher(FileSystem fileSystem) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String syntaxAndPattern : getIsolatedLibraries()) {
+            matchers.add(fileSystem.getPathMatcher(syntaxAndPattern));
+        }
+        return path -> {
+            Path fileName = path.getFileName();
+            for (PathMatcher matcher : matchers) {
+                if (fileName != null && matcher.matches(fileName)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
 
     // getters
 
@@ -83,4 +110,20 @@ public class SuiteConfiguration implements Serializable {
     public String getExcludedTestsPattern() {
         return excludedTestsPattern;
     }
+
+    public List<String> getIsolatedLibraries() {
+        return isolatedLibraries;
+    }
+
+    public int getForkCount() {
+        return forkCount;
+    }
+
+    /**
+     * Where the worker daemons of a forked suite claim the test files which they run,
+     * or null if the suite is not forked.
+     */
+    public URI getTestFileClaimsDir() {
+        return testFileClaimsDir;
+    }
 }
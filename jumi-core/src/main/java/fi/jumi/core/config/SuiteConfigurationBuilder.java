@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -19,6 +19,9 @@ public class SuiteConfigurationBuilder {
     private URI workingDirectory;
     private String includedTestsPattern;
     private String excludedTestsPattern;
+    private final List<String> isolatedLibraries;
+    private int forkCount;
+    private URI testFileClaimsDir;
 
     public SuiteConfigurationBuilder() {
         this(SuiteConfiguration.DEFAULTS);
@@ -30,6 +33,9 @@ public class SuiteConfigurationBuilder {
         workingDirectory = src.getWorkingDirectory();
         includedTestsPattern = src.getIncludedTestsPattern();
         excludedTestsPattern = src.getExcludedTestsPattern();
+        isolatedLibraries = new ArrayList<>(src.getIsolatedLibraries());
+        forkCount = src.getForkCount();
+        testFileClaimsDir = src.getTestFileClaimsDir();
     }
 
     public SuiteConfiguration freeze() {
@@ -153,6 +159,55 @@ public class SuiteConfigurationBuilder {
         return this;
     }
 
+    public List<String> getIsolatedLibraries() {
+        return isolatedLibraries;
+    }
+
+    /**
+     * Library JARs are normally loaded once and shared by all the suites which a daemon runs.
+     * The JARs whose file name matches one of these patterns are loaded again for every suite,
+     * like the class directories. The format is the same in {@link java.nio.file.FileSystem#getPathMatcher(String)}
+     */
+    public SuiteConfigurationBuilder setIsolatedLibraries(String... syntaxAndPatterns) {
+        this.isolatedLibraries.clear();
+        this.addIsolatedLibraries(syntaxAndPatterns);
+        return this;
+    }
+
+    public SuiteConfigurationBuilder addIsolatedLibraries(String... syntaxAndPatterns) {
+        for (String syntaxAndPattern : syntaxAndPatterns) {
+            checkPathMatcherSyntaxAndPattern(syntaxAndPattern);
+        }
+        this.isolatedLibraries.addAll(Arrays.asList(syntaxAndPatterns));
+        return this;
+    }
+
+    public int getForkCount() {
+        return forkCount;
+    }
+
+    /**
+     * Runs the suite in this many daemon processes at the same time, so that tests which change
+     * static state won't see each other's changes. The test files are given to the daemons one
+     * at a time as they have free test threads. Defaults to one daemon.
+     */
+    public SuiteConfigurationBuilder setForkCount(int forkCount) {
+        if (forkCount < 1) {
+            throw new IllegalArgumentException("fork count must be at least 1, but was " + forkCount);
+        }
+        this.forkCount = forkCount;
+        return this;
+    }
+
+    public URI getTestFileClaimsDir() {
+        return testFileClaimsDir;
+    }
+
+    public SuiteConfigurationBuilder setTestFileClaimsDir(URI testFileClaimsDir) {
+        this.testFileClaimsDir = testFileClaimsDir;
+        return this;
+    }
+
     private static void checkPathMatcherSyntaxAndPattern(String syntaxAndPattern) {
         FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
     }
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -65,6 +65,7 @@ class SystemProperty {
         }
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
     private static Object parse(Class<?> type, String value) {
         if (type == int.class) {
             return Integer.parseInt(value);
@@ -75,6 +76,9 @@ class SystemProperty {
         if (type == boolean.class) {
             return Boolean.parseBoolean(value);
         }
+        if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, value);
+        }
         throw new IllegalArgumentException("unsupported type: " + type);
     }
 
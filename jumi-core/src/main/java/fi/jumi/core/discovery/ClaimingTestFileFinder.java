@@ -0,0 +1,95 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.discovery;
+
+import fi.jumi.actors.ActorRef;
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.actors.queue.MessageSender;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.OnTestFileFinishedEvent;
+import fi.jumi.core.ipc.dirs.TestFileClaims;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.*;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Finds the test files of a worker daemon in a forked suite. All workers find the same test files,
+ * but each test file is run only by the worker which claims it first. A worker claims its next test
+ * file only after it has a free test thread, so that the faster workers run more of the test files.
+ */
+@ThreadSafe
+public class ClaimingTestFileFinder implements TestFileFinder {
+
+    private final TestFileFinder finder;
+    private final TestFileClaims claims;
+    private final Semaphore freeThreads;
+
+    public ClaimingTestFileFinder(TestFileFinder finder, TestFileClaims claims, int testThreads) {
+        this.finder = finder;
+        this.claims = claims;
+        this.freeThreads = new Semaphore(testThreads);
+    }
+
+    @Override
+    public void findTestFiles(ActorRef<TestFileFinderListener> listener) {
+        try {
+            TestFileCollector found = new TestFileCollector();
+            finder.findTestFiles(ActorRef.<TestFileFinderListener>wrap(found));
+            for (TestFile testFile : found.testFiles) {
+                freeThreads.acquire();
+                if (claims.tryClaim(testFile)) {
+                    listener.tell().onTestFileFound(testFile);
+                } else {
+                    freeThreads.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to claim test files from " + claims.getDir(), e);
+        } finally {
+            listener.tell().onAllTestFilesFound();
+        }
+    }
+
+    /**
+     * Frees a test thread for claiming the next test file whenever a test file finishes.
+     */
+    public SuiteListener freeThreadsOnTestFileFinished(SuiteListener target) {
+        SuiteListenerEventizer eventizer = new SuiteListenerEventizer();
+        MessageSender<Event<SuiteListener>> backend = eventizer.newBackend(target);
+        return eventizer.newFrontend(message -> {
+            backend.send(message);
+            if (message instanceof OnTestFileFinishedEvent) {
+                freeThreads.release();
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), finder, claims.getDir());
+    }
+
+
+    @NotThreadSafe
+    private static class TestFileCollector implements TestFileFinderListener {
+
+        public final List<TestFile> testFiles = new ArrayList<>();
+
+        @Override
+        public void onTestFileFound(TestFile testFile) {
+            testFiles.add(testFile);
+        }
+
+        @Override
+        public void onAllTestFilesFound() {
+        }
+    }
+}
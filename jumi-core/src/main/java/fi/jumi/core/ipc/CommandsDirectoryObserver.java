@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -6,6 +6,7 @@ package fi.jumi.core.ipc;
 
 import fi.jumi.actors.ActorThread;
 import fi.jumi.core.ipc.api.CommandListener;
+import fi.jumi.core.ipc.channel.WaitSettings;
 import fi.jumi.core.ipc.dirs.*;
 
 import javax.annotation.concurrent.NotThreadSafe;
@@ -18,14 +19,16 @@ public class CommandsDirectoryObserver implements Runnable {
 
     private final DirectoryObserver directoryObserver;
 
-    public CommandsDirectoryObserver(DaemonDir daemonDir, Executor executor, ActorThread actorThread, CommandListener commandListener) throws IOException {
+    public CommandsDirectoryObserver(DaemonDir daemonDir, Executor executor, ActorThread actorThread, CommandListener commandListener,
+                                     WaitSettings waitSettings, boolean multiProducerResults) throws IOException {
         Path commandsDir = daemonDir.getCommandsDir();
         Files.createDirectories(commandsDir);
         directoryObserver = new DirectoryObserver(commandsDir, new DirectoryObserver.Listener() {
             @Override
             public void onFileNoticed(Path path) {
                 // TODO: check that the path is really a directory?
-                executor.execute(new IpcCommandReceiver(daemonDir, new CommandDir(path), commandListener, actorThread));
+                executor.execute(new IpcCommandReceiver(daemonDir, new CommandDir(path), commandListener, actorThread, waitSettings,
+                        multiProducerResults));
             }
         });
     }
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -13,6 +13,7 @@ import fi.jumi.core.ipc.api.*;
 import fi.jumi.core.ipc.channel.*;
 import fi.jumi.core.ipc.dirs.*;
 import fi.jumi.core.ipc.encoding.*;
+import fi.jumi.core.ipc.index.SuiteResults;
 import fi.jumi.core.util.Boilerplate;
 
 import javax.annotation.concurrent.NotThreadSafe;
@@ -26,22 +27,28 @@ public class IpcCommandReceiver implements Runnable {
     private final CommandDir commandDir;
     private final CommandListener commandListener;
     private final ActorThread actorThread;
+    private final WaitSettings waitSettings;
+    private final boolean multiProducerResults;
 
-    public IpcCommandReceiver(DaemonDir daemonDir, CommandDir commandDir, CommandListener commandListener, ActorThread actorThread) {
+    public IpcCommandReceiver(DaemonDir daemonDir, CommandDir commandDir, CommandListener commandListener, ActorThread actorThread,
+                              WaitSettings waitSettings, boolean multiProducerResults) {
         this.daemonDir = daemonDir;
         this.commandDir = commandDir;
         this.commandListener = commandListener;
         this.actorThread = actorThread;
+        this.waitSettings = waitSettings;
+        this.multiProducerResults = multiProducerResults;
     }
 
     @Override
     public void run() {
-        IpcReader<RequestListener> requestReader = IpcChannel.reader(commandDir.getRequestPath(), RequestListenerEncoding::new);
+        Path requestPath = commandDir.getRequestPath();
+        IpcReader<RequestListener> requestReader = IpcChannel.reader(requestPath, RequestListenerEncoding::new);
         ActorRef<RequestHandler> requestHandler = actorThread.bindActor(RequestHandler.class,
-                new RequestHandlerImpl(daemonDir, commandDir, commandListener, actorThread));
+                new RequestHandlerImpl(daemonDir, commandDir, commandListener, actorThread, multiProducerResults));
         requestHandler.tell().start();
         try {
-            IpcReaders.decodeAll(requestReader, requestHandler.tell());
+            waitSettings.decodeCommandChannel(requestReader, requestHandler.tell(), requestPath);
         } catch (InterruptedException e) {
             System.err.println(this + " interrupted");
             Thread.currentThread().interrupt();
@@ -57,15 +64,18 @@ public class IpcCommandReceiver implements Runnable {
         private final CommandDir commandDir;
         private final CommandListener commandListener;
         private final ActorThread actorThread;
+        private final boolean multiProducerResults;
 
         private IpcWriter<ResponseListener> responseWriter;
         private ResponseListener response;
 
-        public RequestHandlerImpl(DaemonDir daemonDir, CommandDir commandDir, CommandListener commandListener, ActorThread actorThread) {
+        public RequestHandlerImpl(DaemonDir daemonDir, CommandDir commandDir, CommandListener commandListener, ActorThread actorThread,
+                                  boolean multiProducerResults) {
             this.daemonDir = daemonDir;
             this.commandDir = commandDir;
             this.commandListener = commandListener;
             this.actorThread = actorThread;
+            this.multiProducerResults = multiProducerResults;
         }
 
         @Override
@@ -81,30 +91,41 @@ public class IpcCommandReceiver implements Runnable {
 
         @Override
         public void runTests(SuiteConfiguration suiteConfiguration) {
-            Path suiteResults = newSuiteResultsFile();
-            ActorRef<SuiteListener> suiteWriter = startSuiteWriter(suiteResults);
-            response.onSuiteStarted(suiteResults);
+            SuiteDir suiteDir = newSuiteDir();
+            ActorRef<SuiteListener> suiteWriter = startSuiteWriter(suiteDir);
+            response.onSuiteStarted(suiteDir.getSuiteResultsPath());
             commandListener.runTests(suiteConfiguration, suiteWriter);
         }
 
-        private Path newSuiteResultsFile() {
+        private SuiteDir newSuiteDir() {
             try {
-                return daemonDir.createSuiteDir().getSuiteResultsPath();
+                return daemonDir.createSuiteDir();
             } catch (IOException e) {
                 // TODO: write a failure to results file?
                 throw Boilerplate.rethrow(e);
             }
         }
 
-        private ActorRef<SuiteListener> startSuiteWriter(Path suiteResults) {
-            IpcWriter<SuiteListener> suiteWriter = IpcChannel.writer(suiteResults, SuiteListenerEncoding::new);
+        private ActorRef<SuiteListener> startSuiteWriter(SuiteDir suiteDir) {
+            IpcWriter<SuiteListener> suiteWriter = multiProducerResults
+                    ? SuiteResults.multiProducerWriter(suiteDir)
+                    : batchingWriter(suiteDir);
             SuiteListener frontend = new SuiteListenerEventizer().newFrontend(message -> {
                 suiteWriter.send(message);
                 if (message instanceof OnSuiteFinishedEvent) { // XXX
                     suiteWriter.close();
                 }
             });
-            return actorThread.bindActor(SuiteListener.class, frontend);
+            // both writers are thread-safe; the batching writer does its writing on the actor thread
+            return ActorRef.wrap(frontend);
+        }
+
+        private IpcWriter<SuiteListener> batchingWriter(SuiteDir suiteDir) {
+            try {
+                return new BatchingIpcWriter<>(SuiteResults.indexedWriter(suiteDir), actorThread);
+            } catch (IOException e) {
+                throw Boilerplate.rethrow(e);
+            }
         }
 
         @Override
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -24,10 +24,10 @@ public class IpcCommandSender implements Closeable {
     private final RequestListener requestSender;
     private final BlockingQueue<ResponseListener> handlersForExpectedResponses = new LinkedBlockingQueue<>();
 
-    public IpcCommandSender(CommandDir commandDir, Executor workerThreads) {
+    public IpcCommandSender(CommandDir commandDir, Executor workerThreads, WaitSettings waitSettings) {
         this.requestWriter = IpcChannel.writer(commandDir.getRequestPath(), RequestListenerEncoding::new);
         this.requestSender = new RequestListenerEventizer().newFrontend(requestWriter);
-        workerThreads.execute(new ResponseReader(commandDir, handlersForExpectedResponses));
+        workerThreads.execute(new ResponseReader(commandDir, handlersForExpectedResponses, waitSettings));
     }
 
     @Override
@@ -56,15 +56,18 @@ public class IpcCommandSender implements Closeable {
     private static class ResponseReader implements Runnable {
         private final CommandDir commandDir;
         private final BlockingQueue<ResponseListener> handlersForExpectedResponses;
+        private final WaitSettings waitSettings;
 
-        public ResponseReader(CommandDir commandDir, BlockingQueue<ResponseListener> handlersForExpectedResponses) {
+        public ResponseReader(CommandDir commandDir, BlockingQueue<ResponseListener> handlersForExpectedResponses, WaitSettings waitSettings) {
             this.commandDir = commandDir;
             this.handlersForExpectedResponses = handlersForExpectedResponses;
+            this.waitSettings = waitSettings;
         }
 
         @Override
         public void run() {
-            IpcReader<ResponseListener> responseReader = IpcChannel.reader(commandDir.getResponsePath(), ResponseListenerEncoding::new);
+            Path responsePath = commandDir.getResponsePath();
+            IpcReader<ResponseListener> responseReader = IpcChannel.reader(responsePath, ResponseListenerEncoding::new);
             ResponseListener responseHandler = new ResponseListener() {
                 @Override
                 public void onSuiteStarted(Path suiteResults) {
@@ -76,7 +79,7 @@ public class IpcCommandSender implements Closeable {
                 }
             };
             try {
-                IpcReaders.decodeAll(responseReader, responseHandler);
+                waitSettings.decodeCommandChannel(responseReader, responseHandler, responsePath);
             } catch (InterruptedException e) {
                 System.err.println(this + " interrupted");
                 Thread.currentThread().interrupt();
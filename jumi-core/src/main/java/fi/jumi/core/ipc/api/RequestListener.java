@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -6,8 +6,10 @@ package fi.jumi.core.ipc.api;
 
 import fi.jumi.actors.generator.GenerateEventizer;
 import fi.jumi.core.config.SuiteConfiguration;
+import fi.jumi.ipc.generator.GenerateIpcEncoding;
 
 @GenerateEventizer(targetPackage = "fi.jumi.core.events")
+@GenerateIpcEncoding(targetPackage = "fi.jumi.core.ipc.encoding")
 public interface RequestListener {
 
     void runTests(SuiteConfiguration suiteConfiguration);
@@ -1,14 +1,16 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.ipc.api;
 
 import fi.jumi.actors.generator.GenerateEventizer;
+import fi.jumi.ipc.generator.GenerateIpcEncoding;
 
 import java.nio.file.Path;
 
 @GenerateEventizer(targetPackage = "fi.jumi.core.events")
+@GenerateIpcEncoding(targetPackage = "fi.jumi.core.ipc.encoding")
 public interface ResponseListener {
 
     void onSuiteStarted(Path suiteResults);
@@ -0,0 +1,118 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.buffer;
+
+import fi.jumi.core.util.*;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Keeps the whole channel in one file, which grows one region at a time. Whenever
+ * a region is taken into use, the next region is mapped in the background, so that
+ * crossing a region boundary will not need to wait for the file to be extended and mapped.
+ * <p>
+ * Only the writer may extend the file. The reader maps only regions which the writer
+ * has already mapped, so it's opened read-only and will wait for the file to exist.
+ */
+@ThreadSafe
+public class GrowingFileByteBufferSequence implements ByteBufferSequence {
+
+    private static final Executor DEFAULT_PREMAPPER = Executors.newCachedThreadPool(new DaemonThreadFactory("jumi-ipc-premapper-"));
+
+    private final Path path;
+    private final int regionSize;
+    private final boolean readOnly;
+    private final Executor premapper;
+    private final ConcurrentMap<Integer, FutureTask<MappedByteBuffer>> premapped = new ConcurrentHashMap<>();
+
+    public static GrowingFileByteBufferSequence readWrite(Path path, int regionSize) {
+        return new GrowingFileByteBufferSequence(path, regionSize, false, DEFAULT_PREMAPPER);
+    }
+
+    public static GrowingFileByteBufferSequence readOnly(Path path, int regionSize) {
+        return new GrowingFileByteBufferSequence(path, regionSize, true, DEFAULT_PREMAPPER);
+    }
+
+    GrowingFileByteBufferSequence(Path path, int regionSize, boolean readOnly, Executor premapper) {
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("region size must be positive, but was " + regionSize);
+        }
+        this.path = path;
+        this.regionSize = regionSize;
+        this.readOnly = readOnly;
+        this.premapper = premapper;
+    }
+
+    @Override
+    public ByteBuffer get(int index) {
+        ByteBuffer region = takePremapped(index);
+        if (region == null) {
+            region = mapRegionRepeatedly(index);
+        }
+        premapInBackground(index + 1);
+        return region.duplicate();
+    }
+
+    private ByteBuffer takePremapped(int index) {
+        FutureTask<MappedByteBuffer> task = premapped.remove(index);
+        if (task == null) {
+            return null;
+        }
+        // if the background thread has not yet started it, we'd rather do it ourselves than wait
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            // e.g. the reader was faster than the writer; will retry synchronously
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void premapInBackground(int index) {
+        FutureTask<MappedByteBuffer> task = new FutureTask<>(() -> mapRegion(index));
+        if (premapped.putIfAbsent(index, task) == null) {
+            premapper.execute(task);
+        }
+    }
+
+    private ByteBuffer mapRegionRepeatedly(int index) {
+        try {
+            return Resilient.tryRepeatedly(() -> mapRegion(index));
+        } catch (IOException e) {
+            throw new RuntimeException("failed to map region " + index + " of " + path, e);
+        }
+    }
+
+    private MappedByteBuffer mapRegion(int index) throws IOException {
+        long start = (long) index * regionSize;
+        long end = start + regionSize;
+        OpenOption[] options = readOnly
+                ? new OpenOption[]{READ}
+                : new OpenOption[]{READ, WRITE, CREATE};
+        try (FileChannel fc = FileChannel.open(path, options)) {
+            if (readOnly && fc.size() < end) {
+                throw new IOException("region " + index + " does not yet exist; file size was " + fc.size() + " bytes");
+            }
+            // in read-write mode, extends the file if necessary
+            MappedByteBuffer region = fc.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, start, regionSize);
+            if (!readOnly) {
+                // The writer will touch every page, so it's faster to fault them in already here.
+                // The reader may be seeking past most of the regions, so it would only lose time.
+                region.load();
+            }
+            return region;
+        }
+    }
+}
@@ -1,29 +1,63 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.ipc.buffer;
 
+import fi.jumi.core.util.MemoryBarrier;
+
 import javax.annotation.concurrent.NotThreadSafe;
-import java.nio.*;
+import java.nio.ByteBuffer;
+import java.util.*;
 
 @NotThreadSafe
 public class IpcBuffer {
 
     private final ByteBufferSequence buffers;
-    private int position = 0;
+    private final boolean forwardOnly;
+    private final MemoryBarrier memoryBarrier = new MemoryBarrier();
+    private long position = 0;
     private Segment current;
 
+    /**
+     * All segments up to the highest one accessed so far, so that any index can be
+     * mapped to its segment without walking through the segments one at a time.
+     * In forward-only mode the segments before {@link #firstSegment} have been released.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private int firstSegment = 0;
+
+    /**
+     * The segments starting from here have all the same capacity, so finding
+     * one of them is a matter of division. Only the segments before this
+     * (e.g. the growing segments created by {@link FileSegmenter}) need searching.
+     */
+    private int uniformSegmentsFrom = 0;
+
     public IpcBuffer(ByteBufferSequence buffers) {
+        this(buffers, false);
+    }
+
+    /**
+     * For readers and writers which never go back to what they have already passed.
+     * The segments before the index given to {@link #releaseBefore} are released,
+     * so that the memory used stays the same however long the stream grows.
+     */
+    public static IpcBuffer forwardOnly(ByteBufferSequence buffers) {
+        return new IpcBuffer(buffers, true);
+    }
+
+    private IpcBuffer(ByteBufferSequence buffers, boolean forwardOnly) {
         this.buffers = buffers;
-        current = new Segment();
+        this.forwardOnly = forwardOnly;
+        current = addSegment();
     }
 
-    public int position() {
+    public long position() {
         return position;
     }
 
-    public IpcBuffer position(int newPosition) {
+    public IpcBuffer position(long newPosition) {
         if (newPosition < 0) {
             throw new IllegalArgumentException();
         }
@@ -31,27 +65,111 @@ public class IpcBuffer {
         return this;
     }
 
-    private Segment segmentContaining(int index) {
+    private Segment segmentContaining(long index) {
         if (index < 0) {
             throw new IndexOutOfBoundsException();
         }
-        while (index < current.startInclusive) {
-            current = current.prev();
-        }
-        while (index >= current.endExclusive) {
-            current = current.next();
+        if (index < current.startInclusive || index >= current.endExclusive) {
+            current = findSegment(index);
         }
         return current;
     }
 
+    private Segment findSegment(long index) {
+        Segment last = segments.get(segments.size() - 1);
+        while (index >= last.endExclusive) {
+            last = addSegment();
+        }
+        if (index < segments.get(0).startInclusive) {
+            throw new IllegalStateException("index " + index + " is in a segment which has already been released");
+        }
+
+        int uniformFrom = Math.max(uniformSegmentsFrom - firstSegment, 0);
+        Segment uniform = segments.get(uniformFrom);
+        if (index >= uniform.startInclusive) {
+            return segments.get(uniformFrom + (int) ((index - uniform.startInclusive) / uniform.capacity()));
+        }
+        return binarySearch(index, 0, uniformFrom - 1);
+    }
+
+    private Segment binarySearch(long index, int low, int high) {
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Segment segment = segments.get(mid);
+            if (index < segment.startInclusive) {
+                high = mid - 1;
+            } else if (index >= segment.endExclusive) {
+                low = mid + 1;
+            } else {
+                return segment;
+            }
+        }
+        throw new AssertionError("segment not found for index " + index);
+    }
+
+    private Segment addSegment() {
+        int segmentIndex = firstSegment + segments.size();
+        Segment previous = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        long startInclusive = previous == null ? 0 : previous.endExclusive;
+        Segment segment = new Segment(buffers.get(segmentIndex), startInclusive);
+        if (previous != null && segment.capacity() != previous.capacity()) {
+            uniformSegmentsFrom = segmentIndex;
+        }
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Tells that the bytes before {@code index} will not be accessed anymore. In forward-only
+     * mode, releases the segments which end before it (except the last segment, which
+     * is needed for finding the next ones), otherwise does nothing.
+     */
+    public void releaseBefore(long index) {
+        if (!forwardOnly) {
+            return;
+        }
+        int released = 0;
+        while (released < segments.size() - 1 && segments.get(released).endExclusive <= index) {
+            released++;
+        }
+        if (released == 0) {
+            return;
+        }
+        segments.subList(0, released).clear();
+        for (int i = 0; i < released; i++) {
+            if (buffers instanceof ReleasableByteBufferSequence) {
+                ((ReleasableByteBufferSequence) buffers).release(firstSegment);
+            }
+            firstSegment++;
+        }
+        if (current.endExclusive <= index) {
+            current = segments.get(0);
+        }
+    }
+
+    /**
+     * Returns a view to the given bytes, which can be used from another thread and after
+     * the segment has been released. Its first byte is at index 0. Returns {@code null}
+     * if the bytes are not all in the same segment.
+     */
+    public ByteBuffer viewOf(long index, int length) {
+        Segment segment = segmentContaining(index);
+        if (index + length > segment.endExclusive) {
+            return null;
+        }
+        ByteBuffer view = segment.view(index);
+        view.limit(view.position() + length);
+        return view.slice().order(segment.buffer.order());
+    }
+
     // absolute get
 
-    public byte getByte(int index) {
+    public byte getByte(long index) {
         Segment segment = segmentContaining(index);
         return segment.buffer.get(segment.relativize(index));
     }
 
-    public short getShort(int index) {
+    public short getShort(long index) {
         Segment segment = segmentContaining(index);
         if (index + 2 <= segment.endExclusive) {
             return segment.buffer.getShort(segment.relativize(index));
@@ -60,11 +178,11 @@ public class IpcBuffer {
         }
     }
 
-    public char getChar(int index) {
+    public char getChar(long index) {
         return (char) getShort(index);
     }
 
-    public int getInt(int index) {
+    public int getInt(long index) {
         Segment segment = segmentContaining(index);
         if (index + 4 <= segment.endExclusive) {
             return segment.buffer.getInt(segment.relativize(index));
@@ -73,7 +191,7 @@ public class IpcBuffer {
         }
     }
 
-    public long getLong(int index) {
+    public long getLong(long index) {
         Segment segment = segmentContaining(index);
         if (index + 8 <= segment.endExclusive) {
             return segment.buffer.getLong(segment.relativize(index));
@@ -84,13 +202,13 @@ public class IpcBuffer {
 
     // absolute set
 
-    public IpcBuffer setByte(int index, byte value) {
+    public IpcBuffer setByte(long index, byte value) {
         Segment segment = segmentContaining(index);
         segment.buffer.put(segment.relativize(index), value);
         return this;
     }
 
-    public IpcBuffer setShort(int index, short value) {
+    public IpcBuffer setShort(long index, short value) {
         Segment segment = segmentContaining(index);
         if (index + 2 <= segment.endExclusive) {
             segment.buffer.putShort(segment.relativize(index), value);
@@ -101,11 +219,11 @@ public class IpcBuffer {
         return this;
     }
 
-    public IpcBuffer setChar(int index, char value) {
+    public IpcBuffer setChar(long index, char value) {
         return setShort(index, (short) value);
     }
 
-    public IpcBuffer setInt(int index, int value) {
+    public IpcBuffer setInt(long index, int value) {
         Segment segment = segmentContaining(index);
         if (index + 4 <= segment.endExclusive) {
             segment.buffer.putInt(segment.relativize(index), value);
@@ -116,7 +234,7 @@ public class IpcBuffer {
         return this;
     }
 
-    public IpcBuffer setLong(int index, long value) {
+    public IpcBuffer setLong(long index, long value) {
         Segment segment = segmentContaining(index);
         if (index + 8 <= segment.endExclusive) {
             segment.buffer.putLong(segment.relativize(index), value);
@@ -127,6 +245,171 @@ public class IpcBuffer {
         return this;
     }
 
+    // absolute ordered get/set
+
+    /**
+     * Reads a byte which was written by {@link #setByteRelease}. All reads after this
+     * will see the writes which the other side did before releasing this byte.
+     * <p>
+     * This is the acquire side of publishing data through the buffer, for example
+     * another process writing a message and then setting its status byte.
+     */
+    public byte getByteAcquire(long index) {
+        byte value = getByte(index);
+        memoryBarrier.loadLoad();
+        return value;
+    }
+
+    /**
+     * Writes a byte after all the writes before this. A reader which sees the byte
+     * using {@link #getByteAcquire} will also see those earlier writes.
+     */
+    public IpcBuffer setByteRelease(long index, byte value) {
+        memoryBarrier.storeStore();
+        return setByte(index, value);
+    }
+
+    // absolute bulk get/set
+
+    public IpcBuffer getBytes(long index, byte[] dst, int offset, int length) {
+        checkBounds(offset, length, dst.length);
+        while (length > 0) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(length, segment.remaining(index));
+            segment.view(index).get(dst, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    public IpcBuffer setBytes(long index, byte[] src, int offset, int length) {
+        checkBounds(offset, length, src.length);
+        while (length > 0) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(length, segment.remaining(index));
+            segment.view(index).put(src, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    /**
+     * Fills the remaining bytes of {@code dst}, advancing its position.
+     */
+    public IpcBuffer getBytes(long index, ByteBuffer dst) {
+        while (dst.hasRemaining()) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(dst.remaining(), segment.remaining(index));
+            ByteBuffer view = segment.view(index);
+            view.limit(view.position() + n);
+            dst.put(view);
+            index += n;
+        }
+        return this;
+    }
+
+    /**
+     * Copies the remaining bytes of {@code src}, advancing its position.
+     */
+    public IpcBuffer setBytes(long index, ByteBuffer src) {
+        while (src.hasRemaining()) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(src.remaining(), segment.remaining(index));
+            ByteBuffer chunk = src.duplicate();
+            chunk.limit(chunk.position() + n);
+            segment.view(index).put(chunk);
+            src.position(src.position() + n);
+            index += n;
+        }
+        return this;
+    }
+
+    public IpcBuffer getChars(long index, char[] dst, int offset, int length) {
+        checkBounds(offset, length, dst.length);
+        while (length > 0) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(length, segment.remaining(index) / 2);
+            if (n == 0) {
+                // the value is split between two segments
+                dst[offset] = getChar(index);
+                n = 1;
+            } else {
+                segment.view(index).asCharBuffer().get(dst, offset, n);
+            }
+            index += n * 2;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    public IpcBuffer setChars(long index, char[] src, int offset, int length) {
+        checkBounds(offset, length, src.length);
+        while (length > 0) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(length, segment.remaining(index) / 2);
+            if (n == 0) {
+                // the value is split between two segments
+                setChar(index, src[offset]);
+                n = 1;
+            } else {
+                segment.view(index).asCharBuffer().put(src, offset, n);
+            }
+            index += n * 2;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    public IpcBuffer getInts(long index, int[] dst, int offset, int length) {
+        checkBounds(offset, length, dst.length);
+        while (length > 0) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(length, segment.remaining(index) / 4);
+            if (n == 0) {
+                // the value is split between two segments
+                dst[offset] = getInt(index);
+                n = 1;
+            } else {
+                segment.view(index).asIntBuffer().get(dst, offset, n);
+            }
+            index += n * 4;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    public IpcBuffer setInts(long index, int[] src, int offset, int length) {
+        checkBounds(offset, length, src.length);
+        while (length > 0) {
+            Segment segment = segmentContaining(index);
+            int n = Math.min(length, segment.remaining(index) / 4);
+            if (n == 0) {
+                // the value is split between two segments
+                setInt(index, src[offset]);
+                n = 1;
+            } else {
+                segment.view(index).asIntBuffer().put(src, offset, n);
+            }
+            index += n * 4;
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    private static void checkBounds(int offset, int length, int arrayLength) {
+        if ((offset | length | (offset + length) | (arrayLength - (offset + length))) < 0) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + arrayLength);
+        }
+    }
+
     // relative read
 
     public byte readByte() {
@@ -187,49 +470,87 @@ public class IpcBuffer {
         return this;
     }
 
+    // relative bulk read/write
 
-    @NotThreadSafe
-    private class Segment {
-        public final Segment prev;
-        public Segment next;
+    public IpcBuffer readBytes(byte[] dst, int offset, int length) {
+        getBytes(position, dst, offset, length);
+        position += length;
+        return this;
+    }
+
+    public IpcBuffer writeBytes(byte[] src, int offset, int length) {
+        setBytes(position, src, offset, length);
+        position += length;
+        return this;
+    }
+
+    public IpcBuffer readBytes(ByteBuffer dst) {
+        int length = dst.remaining();
+        getBytes(position, dst);
+        position += length;
+        return this;
+    }
+
+    public IpcBuffer writeBytes(ByteBuffer src) {
+        int length = src.remaining();
+        setBytes(position, src);
+        position += length;
+        return this;
+    }
+
+    public IpcBuffer readChars(char[] dst, int offset, int length) {
+        getChars(position, dst, offset, length);
+        position += length * 2;
+        return this;
+    }
 
-        private final int segmentIndex;
+    public IpcBuffer writeChars(char[] src, int offset, int length) {
+        setChars(position, src, offset, length);
+        position += length * 2;
+        return this;
+    }
+
+    public IpcBuffer readInts(int[] dst, int offset, int length) {
+        getInts(position, dst, offset, length);
+        position += length * 4;
+        return this;
+    }
+
+    public IpcBuffer writeInts(int[] src, int offset, int length) {
+        setInts(position, src, offset, length);
+        position += length * 4;
+        return this;
+    }
+
+
+    @NotThreadSafe
+    private static class Segment {
         public final ByteBuffer buffer;
-        public final int startInclusive;
-        public final int endExclusive;
+        public final long startInclusive;
+        public final long endExclusive;
 
-        public Segment() {
-            prev = null;
-            segmentIndex = 0;
-            buffer = buffers.get(segmentIndex);
-            startInclusive = 0;
-            endExclusive = buffer.capacity();
+        public Segment(ByteBuffer buffer, long startInclusive) {
+            this.buffer = buffer;
+            this.startInclusive = startInclusive;
+            this.endExclusive = startInclusive + buffer.capacity();
         }
 
-        public Segment(Segment prev) {
-            this.prev = prev;
-            segmentIndex = prev.segmentIndex + 1;
-            buffer = buffers.get(segmentIndex);
-            startInclusive = prev.endExclusive;
-            endExclusive = startInclusive + buffer.capacity();
+        public int capacity() {
+            return buffer.capacity();
         }
 
-        private int relativize(int index) {
-            return index - startInclusive;
+        private int relativize(long index) {
+            return (int) (index - startInclusive);
         }
 
-        public Segment prev() {
-            if (prev == null) {
-                throw new BufferUnderflowException();
-            }
-            return prev;
+        public int remaining(long index) {
+            return (int) (endExclusive - index);
         }
 
-        public Segment next() {
-            if (next == null) {
-                next = new Segment(this);
-            }
-            return next;
+        public ByteBuffer view(long index) {
+            ByteBuffer view = buffer.duplicate().order(buffer.order());
+            view.position(relativize(index));
+            return view;
         }
     }
 }
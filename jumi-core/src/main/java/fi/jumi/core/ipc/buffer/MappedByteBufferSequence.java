@@ -1,4 +1,4 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -15,22 +15,32 @@ import java.nio.file.*;
 import static java.nio.file.StandardOpenOption.*;
 
 @NotThreadSafe
-public class MappedByteBufferSequence implements ByteBufferSequence {
+public class MappedByteBufferSequence implements ReleasableByteBufferSequence {
 
     private final FileSegmenter segmenter;
     private final boolean readOnly;
+    private final boolean deleteReleased;
 
     public static MappedByteBufferSequence readWrite(FileSegmenter segmenter) {
-        return new MappedByteBufferSequence(segmenter, false);
+        return new MappedByteBufferSequence(segmenter, false, false);
     }
 
     public static MappedByteBufferSequence readOnly(FileSegmenter segmenter) {
-        return new MappedByteBufferSequence(segmenter, true);
+        return new MappedByteBufferSequence(segmenter, true, false);
     }
 
-    private MappedByteBufferSequence(FileSegmenter segmenter, boolean readOnly) {
+    /**
+     * For the consumer of a stream: the segment files are deleted when they are released,
+     * so that a long stream doesn't fill the disk. The producer must not need them anymore.
+     */
+    public static MappedByteBufferSequence readWriteDeletingReleased(FileSegmenter segmenter) {
+        return new MappedByteBufferSequence(segmenter, false, true);
+    }
+
+    private MappedByteBufferSequence(FileSegmenter segmenter, boolean readOnly, boolean deleteReleased) {
         this.segmenter = segmenter;
         this.readOnly = readOnly;
+        this.deleteReleased = deleteReleased;
     }
 
     @Override
@@ -62,6 +72,19 @@ public class MappedByteBufferSequence implements ByteBufferSequence {
         }
     }
 
+    @Override
+    public void release(int index) {
+        if (!deleteReleased) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(segmenter.pathOf(index));
+        } catch (IOException e) {
+            // Some platforms don't allow deleting a file which is still mapped. Since this is only
+            // about saving disk space, the file may as well be removed together with the rest of the directory.
+        }
+    }
+
     private FileChannel.MapMode mapMode() {
         return readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
     }
@@ -0,0 +1,14 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.buffer;
+
+public interface ReleasableByteBufferSequence extends ByteBufferSequence {
+
+    /**
+     * Called by a forward-only {@link IpcBuffer} when it will not anymore access the segment,
+     * which was earlier returned by {@link #get}.
+     */
+    void release(int index);
+}
@@ -0,0 +1,51 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spins while the writer is active, i.e. for a while after the latest message,
+ * and falls back to another strategy when the writer has been idle for longer.
+ */
+@NotThreadSafe
+public class AdaptiveWaitStrategy implements WaitStrategy {
+
+    private final long activeNanos;
+    private final WaitStrategy idleStrategy;
+
+    private long lastActivity;
+
+    public AdaptiveWaitStrategy() {
+        this(TimeUnit.MILLISECONDS.toNanos(1), new ParkingWaitStrategy(TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    public AdaptiveWaitStrategy(long activeNanos, WaitStrategy idleStrategy) {
+        this.activeNanos = activeNanos;
+        this.idleStrategy = idleStrategy;
+        this.lastActivity = nanoTime();
+    }
+
+    @Override
+    public void reset() {
+        lastActivity = nanoTime();
+        idleStrategy.reset();
+    }
+
+    @Override
+    public void snooze() {
+        if (nanoTime() - lastActivity >= activeNanos) {
+            idleStrategy.snooze();
+        }
+    }
+
+
+    // package-private for testing
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.actors.*;
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.actors.queue.MessageQueue;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Can be written to from any thread. The messages are written to the target
+ * on an actor thread, and all the messages which have queued up since the
+ * previous write are published as one batch. Only one flush is requested from
+ * the actor thread at a time, however many messages are sent.
+ * <p>
+ * If writing a batch fails, the batch is dropped and the exception is left
+ * to the actor thread's failure handler. The later messages are still written.
+ */
+@ThreadSafe
+public class BatchingIpcWriter<T> implements IpcWriter<T> {
+
+    private final MessageQueue<Event<T>> mailbox = new MessageQueue<>();
+    private volatile boolean closeRequested = false;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final IpcWriter<T> target;
+    private final ActorRef<Runnable> flusher;
+
+    // confined to the actor thread
+    private final List<Event<T>> batch = new ArrayList<>();
+    private boolean closed = false;
+
+    public BatchingIpcWriter(IpcWriter<T> target, ActorThread actorThread) {
+        this.target = target;
+        this.flusher = actorThread.bindActor(Runnable.class, new Flusher());
+    }
+
+    @Override
+    public void send(Event<T> message) {
+        mailbox.send(message);
+        scheduleFlush();
+    }
+
+    @Override
+    public void sendBatch(Iterable<Event<T>> messages) {
+        for (Event<T> message : messages) {
+            mailbox.send(message);
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void close() {
+        closeRequested = true;
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            flusher.tell().run();
+        }
+    }
+
+    private void flush() {
+        // must be cleared before draining the mailbox, so that messages sent during the drain will schedule another flush
+        flushScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        // must be read before draining the mailbox, so that we won't miss messages sent before close()
+        boolean closing = closeRequested;
+
+        for (Event<T> message = mailbox.poll(); message != null; message = mailbox.poll()) {
+            batch.add(message);
+        }
+        try {
+            if (!batch.isEmpty()) {
+                target.sendBatch(batch);
+            }
+        } finally {
+            // A failed batch is not retried, because it would fail again and hold back all the later
+            // messages. The failure is reported by the failure handler of the actor thread.
+            batch.clear();
+            if (closing) {
+                closed = true;
+                target.close();
+            }
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), target);
+    }
+
+
+    @NotThreadSafe
+    private class Flusher implements Runnable {
+        @Override
+        public void run() {
+            flush();
+        }
+
+        @Override
+        public String toString() {
+            return Boilerplate.toString(getClass(), BatchingIpcWriter.this);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Never gives up the CPU. Has the lowest latency, but keeps one core busy for as long as the reader is running.
+ */
+@ThreadSafe
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public void snooze() {
+        // Thread.onSpinWait() would be the place for a spin loop hint, but it requires Java 9
+    }
+}
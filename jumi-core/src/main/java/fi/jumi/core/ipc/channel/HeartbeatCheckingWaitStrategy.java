@@ -0,0 +1,62 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops waiting for a stream whose writer's heartbeat has not changed for the given time,
+ * by throwing {@link TruncatedStreamException}. Checking starts only after the first heartbeat
+ * has been seen, so a writer which has not yet written its header is waited for indefinitely.
+ */
+@NotThreadSafe
+public class HeartbeatCheckingWaitStrategy implements WaitStrategy, Closeable {
+
+    private final WaitStrategy target;
+    private final IpcReader<?> reader;
+    private final long timeoutNanos;
+
+    private long lastHeartbeat = -1;
+    private long lastSignOfLife;
+
+    public HeartbeatCheckingWaitStrategy(WaitStrategy target, IpcReader<?> reader, long timeoutMillis) {
+        if (timeoutMillis <= HeartbeatTicker.TICK_INTERVAL_MILLIS) {
+            throw new IllegalArgumentException("timeout must be longer than the heartbeat interval, but was " + timeoutMillis);
+        }
+        this.target = target;
+        this.reader = reader;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.lastSignOfLife = System.nanoTime();
+    }
+
+    @Override
+    public void reset() {
+        lastSignOfLife = System.nanoTime();
+        target.reset();
+    }
+
+    @Override
+    public void snooze() {
+        long now = System.nanoTime();
+        long heartbeat = reader.getWriterHeartbeat();
+        if (heartbeat != lastHeartbeat) {
+            lastHeartbeat = heartbeat;
+            lastSignOfLife = now;
+        } else if (heartbeat >= 0 && now - lastSignOfLife > timeoutNanos) {
+            throw new TruncatedStreamException("the writer of " + reader + " has had no heartbeat for "
+                    + TimeUnit.NANOSECONDS.toMillis(now - lastSignOfLife) + " ms");
+        }
+        target.snooze();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (target instanceof Closeable) {
+            ((Closeable) target).close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.core.util.DaemonThreadFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Increments the heartbeat of every channel which this process is writing, so that
+ * the readers can tell whether the writer is still alive. The heartbeat is an int
+ * which only the ticker thread writes to.
+ * <p>
+ * The ticker holds the heartbeats weakly, so that a writer which was abandoned without
+ * closing it stops ticking once it has been garbage collected, and its readers will then
+ * notice that it has died.
+ */
+@ThreadSafe
+public class HeartbeatTicker implements Runnable {
+
+    public static final long TICK_INTERVAL_MILLIS = 100;
+
+    static final HeartbeatTicker DEFAULT = new HeartbeatTicker();
+
+    static {
+        Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jumi-heartbeat-"))
+                .scheduleAtFixedRate(DEFAULT, TICK_INTERVAL_MILLIS, TICK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private final Set<WeakReference<Heartbeat>> heartbeats = Collections.newSetFromMap(new ConcurrentHashMap<WeakReference<Heartbeat>, Boolean>());
+
+    /**
+     * @param view the heartbeat's bytes, as the only bytes of this view
+     * @return the heartbeat, which keeps ticking only as long as it's strongly reachable
+     */
+    public Heartbeat start(ByteBuffer view) {
+        Heartbeat heartbeat = new Heartbeat(view);
+        heartbeats.add(heartbeat.ref);
+        return heartbeat;
+    }
+
+    @Override
+    public void run() {
+        for (Iterator<WeakReference<Heartbeat>> it = heartbeats.iterator(); it.hasNext(); ) {
+            Heartbeat heartbeat = it.next().get();
+            if (heartbeat == null) {
+                it.remove();
+            } else {
+                heartbeat.tick();
+            }
+        }
+    }
+
+
+    @ThreadSafe
+    public class Heartbeat {
+        private final ByteBuffer view;
+        private final WeakReference<Heartbeat> ref = new WeakReference<>(this);
+
+        private Heartbeat(ByteBuffer view) {
+            this.view = view;
+        }
+
+        private void tick() {
+            view.putInt(0, view.getInt(0) + 1);
+        }
+
+        public void stop() {
+            heartbeats.remove(ref);
+        }
+    }
+}
@@ -1,9 +1,10 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.ipc.channel;
 
+import fi.jumi.actors.eventizers.Eventizer;
 import fi.jumi.core.ipc.buffer.*;
 
 import javax.annotation.concurrent.ThreadSafe;
@@ -15,14 +16,26 @@ public class IpcChannel {
     private static final int KB = 1024;
     private static final int INITIAL_SEGMENT_SIZE = 4 * KB;
     private static final int MAX_SEGMENT_SIZE = 512 * KB;
+    private static final int GROWING_FILE_REGION_SIZE = 512 * KB;
 
     public static <T> IpcWriter<T> writer(Path basePath, IpcProtocol.EncodingFactory<T> encodingFactory) {
         return writer(defaultFileSegmenter(basePath), encodingFactory);
     }
 
     public static <T> IpcWriter<T> writer(FileSegmenter fileSegmenter, IpcProtocol.EncodingFactory<T> encodingFactory) {
-        IpcBuffer buffer = new IpcBuffer(MappedByteBufferSequence.readWrite(fileSegmenter));
-        IpcProtocol<T> protocol = new IpcProtocol<>(buffer, encodingFactory);
+        return writer(MappedByteBufferSequence.readWrite(fileSegmenter), encodingFactory);
+    }
+
+    /**
+     * Writes the whole channel into one file, instead of one file per segment. Suits long streams
+     * whose reader will be created only after the writer.
+     */
+    public static <T> IpcWriter<T> growingFileWriter(Path path, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        return writer(GrowingFileByteBufferSequence.readWrite(path, GROWING_FILE_REGION_SIZE), encodingFactory);
+    }
+
+    private static <T> IpcWriter<T> writer(ByteBufferSequence sequence, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        IpcProtocol<T> protocol = new IpcProtocol<>(IpcBuffer.forwardOnly(sequence), encodingFactory);
         protocol.start();
         return protocol;
     }
@@ -32,11 +45,46 @@ public class IpcChannel {
     }
 
     public static <T> IpcReader<T> reader(FileSegmenter fileSegmenter, IpcProtocol.EncodingFactory<T> encodingFactory) {
-        IpcBuffer buffer = new IpcBuffer(MappedByteBufferSequence.readWrite(fileSegmenter));
+        return reader(MappedByteBufferSequence.readWrite(fileSegmenter), encodingFactory);
+    }
+
+    /**
+     * Deletes the segment files after reading them. Only one reader may read the channel.
+     */
+    public static <T> IpcReader<T> consumingReader(Path basePath, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        return reader(MappedByteBufferSequence.readWriteDeletingReleased(defaultFileSegmenter(basePath)), encodingFactory);
+    }
+
+    public static <T> IpcReader<T> growingFileReader(Path path, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        return reader(GrowingFileByteBufferSequence.readOnly(path, GROWING_FILE_REGION_SIZE), encodingFactory);
+    }
+
+    /**
+     * For reading chosen messages with {@link IpcProtocol#decodeMessageAt}
+     * after the {@link #growingFileWriter} has finished.
+     */
+    public static <T> IpcProtocol<T> growingFileRandomAccessReader(Path path, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        IpcBuffer buffer = new IpcBuffer(GrowingFileByteBufferSequence.readOnly(path, GROWING_FILE_REGION_SIZE));
         return new IpcProtocol<>(buffer, encodingFactory);
     }
 
-    private static FileSegmenter defaultFileSegmenter(Path basePath) {
+    /**
+     * Lets many threads write to the channel at once, each to its own stream.
+     * Must be read with a {@link #mergingReader}.
+     */
+    public static <T> IpcWriter<T> multiProducerWriter(Path basePath, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        return new MultiProducerIpcWriter<>(basePath, encodingFactory);
+    }
+
+    public static <T> IpcReader<T> mergingReader(Path basePath, IpcProtocol.EncodingFactory<T> encodingFactory, Eventizer<T> eventizer) {
+        return new MergingIpcReader<>(basePath, encodingFactory, eventizer);
+    }
+
+    private static <T> IpcReader<T> reader(ByteBufferSequence sequence, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        return new IpcProtocol<>(IpcBuffer.forwardOnly(sequence), encodingFactory);
+    }
+
+    static FileSegmenter defaultFileSegmenter(Path basePath) {
         return new FileSegmenter(basePath, INITIAL_SEGMENT_SIZE, MAX_SEGMENT_SIZE);
     }
 }
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -6,12 +6,14 @@ package fi.jumi.core.ipc.channel;
 
 import fi.jumi.actors.eventizers.Event;
 import fi.jumi.core.ipc.buffer.IpcBuffer;
-import fi.jumi.core.ipc.encoding.MessageEncoding;
-import fi.jumi.core.util.MemoryBarrier;
+import fi.jumi.core.ipc.encoding.*;
+import fi.jumi.core.util.Boilerplate;
 
 import javax.annotation.concurrent.NotThreadSafe;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.*;
 
 import static fi.jumi.core.ipc.encoding.StringEncoding.*;
 
@@ -19,15 +21,25 @@ import static fi.jumi.core.ipc.encoding.StringEncoding.*;
 public class IpcProtocol<T> implements IpcReader<T>, IpcWriter<T> {
 
     private static final byte[] HEADER_MAGIC_BYTES = "Jumi".getBytes(StandardCharsets.US_ASCII);
-    private static final int PROTOCOL_VERSION = 1;
+    private static final int PROTOCOL_VERSION = 2;
+    private static final int FIRST_PROTOCOL_VERSION_WITH_HEARTBEAT = 2;
+
+    // Since protocol version 2, the header's magic bytes and protocol version are followed by
+    // the writer's process id and heartbeat, before the interface name and interface version.
+    private static final int WRITER_PID_INDEX = 8;
+    private static final int HEARTBEAT_INDEX = 12;
+    private static final long NO_HEARTBEAT = -1;
 
     private static final byte STATUS_EMPTY = 0;
     private static final byte STATUS_EXISTS = 1;
     private static final byte STATUS_END_OF_STREAM = 2;
 
-    private final MemoryBarrier memoryBarrier = new MemoryBarrier();
     private final IpcBuffer buffer;
-    private final MessageEncoding<T> messageEncoding;
+    private MessageEncoding<T> messageEncoding;
+
+    private HeartbeatTicker.Heartbeat heartbeat; // writer side
+    private int writerPid;
+    private ByteBuffer writerHeartbeat; // reader side
 
     public IpcProtocol(IpcBuffer buffer, EncodingFactory<T> encodingFactory) {
         this.buffer = buffer;
@@ -43,50 +55,148 @@ public class IpcProtocol<T> implements IpcReader<T>, IpcWriter<T> {
 
     @Override
     public void send(Event<T> message) {
-        int currentMessage = writeStatusEmpty();
-        messageEncoding.encode(message);
+        long currentMessage = writeStatusEmpty();
+        try {
+            messageEncoding.encode(message);
+        } catch (Throwable t) {
+            abandonMessagesFrom(currentMessage);
+            throw t;
+        }
         initNextMessage();
 
-        memoryBarrier.storeStore();
         setStatusExists(currentMessage);
+        releaseSentMessages();
+        markEncoding();
+    }
+
+    @Override
+    public void sendBatch(Iterable<Event<T>> messages) {
+        Iterator<Event<T>> it = messages.iterator();
+        if (!it.hasNext()) {
+            return;
+        }
+        long firstMessage = writeStatusEmpty();
+        try {
+            messageEncoding.encode(it.next());
+            while (it.hasNext()) {
+                // the reader can't see past the first message, so the rest may be marked existing right away
+                writeStatusExists();
+                messageEncoding.encode(it.next());
+            }
+        } catch (Throwable t) {
+            abandonMessagesFrom(firstMessage);
+            throw t;
+        }
+        initNextMessage();
+
+        setStatusExists(firstMessage);
+        releaseSentMessages();
+        markEncoding();
     }
 
     @Override
     public void close() {
         writeStatusEndOfStream();
+        if (heartbeat != null) {
+            heartbeat.stop();
+        }
     }
 
 
     // read operations
 
+    @Override
+    public long getWriterHeartbeat() {
+        if (writerHeartbeat == null) {
+            return NO_HEARTBEAT;
+        }
+        return writerHeartbeat.getInt(0) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * The process id of the writer, or 0 if not known.
+     */
+    public int getWriterPid() {
+        return writerPid;
+    }
+
+    /**
+     * Decodes all messages which have been published so far. A batch of messages is
+     * always drained in one call, because it is published all at once.
+     */
     @Override
     public PollResult poll(T target) {
-        int index = buffer.position();
+        PollResult result = pollMessage(target);
+        if (result == PollResult.HAD_SOME_MESSAGES) {
+            while (pollMessage(target) == PollResult.HAD_SOME_MESSAGES) {
+            }
+        }
+        return result;
+    }
 
-        byte status = readStatus();
+    private PollResult pollMessage(T target) {
+        long index = buffer.position();
+
+        byte status = buffer.getByteAcquire(index);
         if (status == STATUS_EMPTY) {
-            buffer.position(index);
             return PollResult.NO_NEW_MESSAGES;
         }
         if (status == STATUS_END_OF_STREAM) {
             return PollResult.END_OF_STREAM;
         }
-        memoryBarrier.loadLoad();
 
         if (index == 0) {
             // For the header, the first byte works both as the status (when zero),
             // and part of the magic bytes (when non-zero), so we must not consume the byte before readHeader().
-            buffer.position(index);
             readHeader();
 
         } else {
             assert status == STATUS_EXISTS : "unexpected status: " + status;
+            buffer.position(index + 1);
             messageEncoding.decode(target);
         }
+        buffer.releaseBefore(buffer.position());
         return PollResult.HAD_SOME_MESSAGES;
     }
 
 
+    /**
+     * Decodes the message which starts at the given position, without decoding the messages
+     * before it. The message must already have been published. The positions can be recorded
+     * while writing, as is done for the suite results index.
+     */
+    public void decodeMessageAt(long messageStart, T target) {
+        seekToMessage(messageStart);
+        messageEncoding.decode(target);
+    }
+
+    /**
+     * Like {@link #decodeMessageAt} but reads only the parts of the message which
+     * the later messages depend on. Requires a {@link SkippableEncoding}.
+     */
+    public void skipMessageAt(long messageStart) {
+        seekToMessage(messageStart);
+        if (!(messageEncoding instanceof SkippableEncoding)) {
+            throw new UnsupportedOperationException("cannot skip messages of " + messageEncoding);
+        }
+        ((SkippableEncoding<?>) messageEncoding).skip();
+    }
+
+    private void seekToMessage(long messageStart) {
+        if (buffer.position() == 0) {
+            if (buffer.getByteAcquire(0) == STATUS_EMPTY) {
+                throw new IllegalStateException("the header has not been published");
+            }
+            readHeader();
+        }
+        byte status = buffer.getByteAcquire(messageStart - 1);
+        if (status != STATUS_EXISTS) {
+            throw new IllegalStateException("no published message at " + messageStart + "; status was " + status);
+        }
+        buffer.position(messageStart);
+    }
+
+
     // header
 
     private void writeHeader() {
@@ -97,17 +207,36 @@ public class IpcProtocol<T> implements IpcReader<T>, IpcWriter<T> {
         }
 
         buffer.writeInt(PROTOCOL_VERSION);
+        buffer.writeInt(currentPid());
+        buffer.writeInt(0);
         writeString(buffer, messageEncoding.getInterfaceName());
         buffer.writeInt(messageEncoding.getInterfaceVersion());
 
         // all done
-        memoryBarrier.storeStore();
-        buffer.setByte(0, HEADER_MAGIC_BYTES[0]);
+        buffer.setByteRelease(0, HEADER_MAGIC_BYTES[0]);
+
+        ByteBuffer heartbeatView = buffer.viewOf(HEARTBEAT_INDEX, 4);
+        if (heartbeatView != null) { // null only with unrealistically small segments
+            heartbeat = HeartbeatTicker.DEFAULT.start(heartbeatView);
+        }
+    }
+
+    private static int currentPid() {
+        // the name is "pid@hostname" on all the JVMs we know of
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        try {
+            return Integer.parseInt(name.substring(0, name.indexOf('@')));
+        } catch (RuntimeException e) {
+            return 0;
+        }
     }
 
     private void readHeader() {
         checkMagicBytes();
-        checkProtocolVersion();
+        int protocolVersion = checkProtocolVersion();
+        if (protocolVersion >= FIRST_PROTOCOL_VERSION_WITH_HEARTBEAT) {
+            readWriterHeartbeat();
+        }
         checkInterface();
         checkInterfaceVersion();
     }
@@ -130,11 +259,19 @@ public class IpcProtocol<T> implements IpcReader<T>, IpcWriter<T> {
         return sb.toString().trim();
     }
 
-    private void checkProtocolVersion() {
+    private int checkProtocolVersion() {
         int actual = buffer.readInt();
-        if (actual != PROTOCOL_VERSION) {
+        if (actual < 1 || actual > PROTOCOL_VERSION) {
             throw new IllegalArgumentException("unsupported protocol version: " + actual);
         }
+        return actual;
+    }
+
+    private void readWriterHeartbeat() {
+        writerPid = buffer.getInt(WRITER_PID_INDEX);
+        // the view stays readable after the header's segment has been released
+        writerHeartbeat = buffer.viewOf(HEARTBEAT_INDEX, 4);
+        buffer.position(HEARTBEAT_INDEX + 4);
     }
 
     private void checkInterface() {
@@ -147,37 +284,76 @@ public class IpcProtocol<T> implements IpcReader<T>, IpcWriter<T> {
     private void checkInterfaceVersion() {
         int actual = buffer.readInt();
         if (actual != messageEncoding.getInterfaceVersion()) {
-            throw new IllegalArgumentException("unsupported interface version: " + actual);
+            messageEncoding = olderEncoding(actual);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private MessageEncoding<T> olderEncoding(int interfaceVersion) {
+        MessageEncoding<T> older = null;
+        if (messageEncoding instanceof BackwardCompatibleEncoding) {
+            older = ((BackwardCompatibleEncoding<T>) messageEncoding).forOlderInterfaceVersion(interfaceVersion);
+        }
+        if (older == null) {
+            throw new IllegalArgumentException("unsupported interface version: " + interfaceVersion);
+        }
+        return older;
+    }
 
-    // messages
 
-    private byte readStatus() {
-        return buffer.readByte();
-    }
+    // messages
 
-    private int writeStatusEmpty() {
-        int index = buffer.position();
+    private long writeStatusEmpty() {
+        long index = buffer.position();
         buffer.writeByte(STATUS_EMPTY);
         return index;
     }
 
+    private void writeStatusExists() {
+        buffer.writeByte(STATUS_EXISTS);
+    }
+
     private void initNextMessage() {
         // Write empty status for next message, so that the producer
         // is the first to touch a new segment, thus determining its size.
         buffer.setByte(buffer.position(), STATUS_EMPTY);
     }
 
-    private void setStatusExists(int index) {
-        buffer.setByte(index, STATUS_EXISTS);
+    private void setStatusExists(long index) {
+        buffer.setByteRelease(index, STATUS_EXISTS);
+    }
+
+    private void abandonMessagesFrom(long index) {
+        // The status is still empty, so the readers have not seen the messages
+        // and the next message may be written over them. Also the messages of
+        // the batch which were encoded successfully are abandoned, so the next
+        // message must not refer to their additions to the encoding's tables.
+        buffer.position(index);
+        if (messageEncoding instanceof MarkableEncoding) {
+            ((MarkableEncoding<?>) messageEncoding).resetToMark();
+        }
+    }
+
+    private void markEncoding() {
+        if (messageEncoding instanceof MarkableEncoding) {
+            ((MarkableEncoding<?>) messageEncoding).mark();
+        }
+    }
+
+    private void releaseSentMessages() {
+        // only the status of the next message will be touched anymore
+        buffer.releaseBefore(buffer.position());
     }
 
     private void writeStatusEndOfStream() {
         buffer.writeByte(STATUS_END_OF_STREAM);
     }
 
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), messageEncoding.getInterfaceName(), messageEncoding.getInterfaceVersion());
+    }
+
 
     public interface EncodingFactory<T> {
         MessageEncoding<T> create(IpcBuffer buffer);
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -7,4 +7,11 @@ package fi.jumi.core.ipc.channel;
 public interface IpcReader<T> {
 
     PollResult poll(T target);
+
+    /**
+     * Changes regularly for as long as the writer's process is alive, so that a slow writer
+     * can be told apart from a dead one. Negative if not known, for example before the
+     * header has been read, or if the writer was too old to have a heartbeat.
+     */
+    long getWriterHeartbeat();
 }
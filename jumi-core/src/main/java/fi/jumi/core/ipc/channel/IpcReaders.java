@@ -1,16 +1,44 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.ipc.channel;
 
+import fi.jumi.core.util.Boilerplate;
+
 import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
 
 @NotThreadSafe
 public class IpcReaders {
 
+    public static final long DEFAULT_WRITER_TIMEOUT_MILLIS = 10 * 1000;
+
     public static <T> void decodeAll(IpcReader<T> reader, T target) throws InterruptedException {
-        WaitStrategy waitStrategy = new ProgressiveSleepWaitStrategy();
+        decodeAll(reader, target, new ProgressiveSleepWaitStrategy());
+    }
+
+    /**
+     * Decodes messages until the end of stream. Closes the wait strategy at the end if it's {@link Closeable}.
+     * Throws {@link TruncatedStreamException} if the writer dies before the end of stream.
+     */
+    public static <T> void decodeAll(IpcReader<T> reader, T target, WaitStrategy waitStrategy) throws InterruptedException {
+        decodeAll(reader, target, waitStrategy, DEFAULT_WRITER_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param writerTimeoutMillis how long to wait for the writer's next heartbeat, before deciding that it has died
+     */
+    public static <T> void decodeAll(IpcReader<T> reader, T target, WaitStrategy waitStrategy, long writerTimeoutMillis) throws InterruptedException {
+        // a failure to close is added as suppressed to the decoding's failure, if there was one
+        try (HeartbeatCheckingWaitStrategy heartbeatChecking = new HeartbeatCheckingWaitStrategy(waitStrategy, reader, writerTimeoutMillis)) {
+            pollUntilEndOfStream(reader, target, heartbeatChecking);
+        } catch (IOException e) {
+            throw Boilerplate.rethrow(e);
+        }
+    }
+
+    private static <T> void pollUntilEndOfStream(IpcReader<T> reader, T target, WaitStrategy waitStrategy) throws InterruptedException {
         while (true) {
             PollResult result = reader.poll(target);
             if (result == PollResult.NO_NEW_MESSAGES) {
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -11,6 +11,11 @@ import java.io.Closeable;
 
 public interface IpcWriter<T> extends MessageSender<Event<T>>, Closeable {
 
+    /**
+     * Sends all the messages at once. The reader will see either none or all of them.
+     */
+    void sendBatch(Iterable<Event<T>> messages);
+
     @Override
     void close();
 }
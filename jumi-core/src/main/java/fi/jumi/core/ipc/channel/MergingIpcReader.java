@@ -0,0 +1,165 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.actors.eventizers.*;
+import fi.jumi.core.ipc.buffer.*;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Reads the streams of a {@link MultiProducerIpcWriter} and decodes their messages
+ * in the order of their sequence numbers. A message is held back until all the
+ * messages before it have been decoded, or skipped because they failed to be written.
+ */
+@NotThreadSafe
+public class MergingIpcReader<T> implements IpcReader<T> {
+
+    private final Path basePath;
+    private final IpcProtocol.EncodingFactory<T> encodingFactory;
+    private final Eventizer<T> eventizer;
+
+    private final List<Stream<T>> streams = new ArrayList<>();
+    private long nextSequence = 0;
+
+    public MergingIpcReader(Path basePath, IpcProtocol.EncodingFactory<T> encodingFactory, Eventizer<T> eventizer) {
+        this.basePath = basePath;
+        this.encodingFactory = encodingFactory;
+        this.eventizer = eventizer;
+    }
+
+    public static boolean isMultiProducer(Path basePath) {
+        return Files.exists(MultiProducerIpcWriter.streamPath(basePath, 0));
+    }
+
+    @Override
+    public PollResult poll(T target) {
+        boolean hadSomeMessages = false;
+        while (true) {
+            Stream<T> stream = streamWithNextMessage();
+            if (stream != null) {
+                Sequenced<T> next = stream.pending.remove();
+                if (next.message != null) {
+                    next.message.fireOn(target);
+                    hadSomeMessages = true;
+                }
+                nextSequence++;
+            } else if (!pollStreams() && !openNextStream()) {
+                break;
+            }
+        }
+        if (hadSomeMessages) {
+            return PollResult.HAD_SOME_MESSAGES;
+        }
+        if (isEndOfStream()) {
+            return PollResult.END_OF_STREAM;
+        }
+        return PollResult.NO_NEW_MESSAGES;
+    }
+
+    /**
+     * The streams are written by the same process, so any of them tells whether it's alive.
+     */
+    @Override
+    public long getWriterHeartbeat() {
+        long heartbeat = -1;
+        for (Stream<T> stream : streams) {
+            heartbeat = Math.max(heartbeat, stream.protocol.getWriterHeartbeat());
+        }
+        return heartbeat;
+    }
+
+    private Stream<T> streamWithNextMessage() {
+        for (Stream<T> stream : streams) {
+            Sequenced<T> head = stream.pending.peek();
+            if (head != null && head.sequence == nextSequence) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    private boolean pollStreams() {
+        boolean hadSomeMessages = false;
+        for (Stream<T> stream : streams) {
+            hadSomeMessages |= stream.poll();
+        }
+        return hadSomeMessages;
+    }
+
+    private boolean openNextStream() {
+        Path path = MultiProducerIpcWriter.streamPath(basePath, streams.size());
+        if (!Files.exists(path)) {
+            return false;
+        }
+        streams.add(new Stream<>(IpcChannel.defaultFileSegmenter(path), encodingFactory, eventizer));
+        return true;
+    }
+
+    private boolean isEndOfStream() {
+        if (streams.isEmpty()) {
+            return false;
+        }
+        for (Stream<T> stream : streams) {
+            if (!stream.ended) {
+                return false;
+            }
+        }
+        // the writer has been closed, so all of its streams have been opened and read
+        for (Stream<T> stream : streams) {
+            if (!stream.pending.isEmpty()) {
+                throw new IllegalStateException("message " + nextSequence + " is missing from " + basePath);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), basePath);
+    }
+
+
+    @NotThreadSafe
+    private static class Stream<T> {
+        final Queue<Sequenced<T>> pending = new ArrayDeque<>();
+        final IpcProtocol<T> protocol;
+        final T decodeTarget;
+        boolean ended = false;
+
+        public Stream(FileSegmenter segmenter, IpcProtocol.EncodingFactory<T> encodingFactory, Eventizer<T> eventizer) {
+            IpcBuffer buffer = IpcBuffer.forwardOnly(MappedByteBufferSequence.readWrite(segmenter));
+            SequencedEncoding<T> encoding = new SequencedEncoding<>(buffer, encodingFactory.create(buffer),
+                    skippedSequence -> pending.add(new Sequenced<>(skippedSequence, null)));
+            protocol = new IpcProtocol<>(buffer, b -> encoding);
+            decodeTarget = eventizer.newFrontend(message -> pending.add(new Sequenced<>(encoding.getSequence(), message)));
+        }
+
+        public boolean poll() {
+            if (ended) {
+                return false;
+            }
+            PollResult result = protocol.poll(decodeTarget);
+            if (result == PollResult.END_OF_STREAM) {
+                ended = true;
+            }
+            return result == PollResult.HAD_SOME_MESSAGES;
+        }
+    }
+
+    @Immutable
+    private static class Sequenced<T> {
+        final long sequence;
+        final Event<T> message; // null if the message was skipped
+
+        public Sequenced(long sequence, Event<T> message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+}
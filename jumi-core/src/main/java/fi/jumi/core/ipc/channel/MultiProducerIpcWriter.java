@@ -0,0 +1,159 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.core.ipc.buffer.*;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Can be written to from any thread without locking. Every thread writes to its own stream,
+ * and every message gets a global sequence number, by which {@link MergingIpcReader} puts
+ * the messages back into the order in which they were sent. If a message fails to be
+ * written, a record of its skipped sequence number is written instead, so that the reader
+ * will not wait for it.
+ * <p>
+ * All the threads should have finished sending before this writer is closed. Closing waits
+ * for the messages which are being sent, and the messages sent after it will fail.
+ */
+@ThreadSafe
+public class MultiProducerIpcWriter<T> implements IpcWriter<T> {
+
+    private final Path basePath;
+    private final IpcProtocol.EncodingFactory<T> encodingFactory;
+
+    private final AtomicLong nextSequence = new AtomicLong(0);
+    private final AtomicInteger nextStream = new AtomicInteger(0);
+    private final List<Producer<T>> producers = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Producer<T>> unclaimedProducer = new AtomicReference<>();
+    private final ThreadLocal<Producer<T>> currentProducer = new ThreadLocal<Producer<T>>() {
+        @Override
+        protected Producer<T> initialValue() {
+            Producer<T> producer = unclaimedProducer.getAndSet(null);
+            return producer != null ? producer : newProducer();
+        }
+    };
+
+    public MultiProducerIpcWriter(Path basePath, IpcProtocol.EncodingFactory<T> encodingFactory) {
+        this.basePath = basePath;
+        this.encodingFactory = encodingFactory;
+        // the first stream exists as soon as the writer does, so that readers can recognize the layout
+        unclaimedProducer.set(newProducer());
+    }
+
+    static Path streamPath(Path basePath, int stream) {
+        return basePath.resolveSibling(basePath.getFileName() + ".p" + stream);
+    }
+
+    private Producer<T> newProducer() {
+        Path path = streamPath(basePath, nextStream.getAndIncrement());
+        Producer<T> producer = new Producer<>(IpcChannel.defaultFileSegmenter(path), encodingFactory);
+        producers.add(producer);
+        return producer;
+    }
+
+    @Override
+    public void send(Event<T> message) {
+        Producer<T> producer = currentProducer.get();
+        producer.startSending();
+        long sequence = nextSequence.getAndIncrement();
+        try {
+            producer.encoding.setSequence(sequence);
+            producer.protocol.send(message);
+        } catch (Throwable t) {
+            producer.skip(sequence, 1, t);
+            throw t;
+        } finally {
+            producer.stopSending();
+        }
+    }
+
+    @Override
+    public void sendBatch(Iterable<Event<T>> messages) {
+        int count = 0;
+        for (Event<T> ignored : messages) {
+            count++;
+        }
+        Producer<T> producer = currentProducer.get();
+        producer.startSending();
+        long firstSequence = nextSequence.getAndAdd(count);
+        try {
+            producer.encoding.setSequence(firstSequence);
+            producer.protocol.sendBatch(messages);
+        } catch (Throwable t) {
+            producer.skip(firstSequence, count, t);
+            throw t;
+        } finally {
+            producer.stopSending();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Producer<T> producer : producers) {
+            producer.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), basePath);
+    }
+
+
+    @ThreadSafe
+    private static class Producer<T> {
+        private static final int IDLE = 0;
+        private static final int SENDING = 1;
+        private static final int CLOSED = 2;
+
+        // the stream is written by its own thread, except that the closing thread takes it over when it's idle
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        final SequencedEncoding<T> encoding;
+        final IpcProtocol<T> protocol;
+
+        public Producer(FileSegmenter segmenter, IpcProtocol.EncodingFactory<T> encodingFactory) {
+            IpcBuffer buffer = IpcBuffer.forwardOnly(MappedByteBufferSequence.readWrite(segmenter));
+            encoding = new SequencedEncoding<>(buffer, encodingFactory.create(buffer));
+            protocol = new IpcProtocol<>(buffer, b -> encoding);
+            protocol.start();
+        }
+
+        public void startSending() {
+            if (!state.compareAndSet(IDLE, SENDING)) {
+                throw new IllegalStateException("the writer has been closed");
+            }
+        }
+
+        public void stopSending() {
+            state.set(IDLE);
+        }
+
+        public void skip(long firstSequence, int count, Throwable cause) {
+            try {
+                encoding.setSequence(firstSequence);
+                protocol.sendBatch(Collections.nCopies(count, SequencedEncoding.<T>skipped()));
+            } catch (Throwable t) {
+                cause.addSuppressed(t);
+            }
+        }
+
+        public void close() {
+            while (!state.compareAndSet(IDLE, CLOSED)) {
+                if (state.get() == CLOSED) {
+                    return;
+                }
+                Thread.yield();
+            }
+            protocol.close();
+        }
+    }
+}
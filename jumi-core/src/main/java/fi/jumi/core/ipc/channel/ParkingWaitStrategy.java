@@ -0,0 +1,56 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parks the thread with exponential backoff. Compared to {@link ProgressiveSleepWaitStrategy}
+ * the waits can be much shorter than one millisecond.
+ */
+@NotThreadSafe
+public class ParkingWaitStrategy implements WaitStrategy {
+
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    private long parkNanos;
+
+    public ParkingWaitStrategy() {
+        this(TimeUnit.MICROSECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public ParkingWaitStrategy(long minParkNanos, long maxParkNanos) {
+        if (minParkNanos <= 0) {
+            throw new IllegalArgumentException("min park time must be positive, but was " + minParkNanos);
+        }
+        if (maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("max park time " + maxParkNanos + " was less than min park time " + minParkNanos);
+        }
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        this.parkNanos = minParkNanos;
+    }
+
+    @Override
+    public void reset() {
+        parkNanos = minParkNanos;
+    }
+
+    @Override
+    public void snooze() {
+        park(parkNanos);
+        parkNanos = Math.min(parkNanos * 2, maxParkNanos);
+    }
+
+
+    // package-private for testing
+
+    void park(long nanos) {
+        LockSupport.parkNanos(nanos);
+    }
+}
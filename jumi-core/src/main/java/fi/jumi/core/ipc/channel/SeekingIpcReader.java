@@ -0,0 +1,61 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Reads only the chosen messages of a channel which has already been written.
+ * The messages whose contents the later messages depend on (e.g. the string table
+ * additions of {@link fi.jumi.core.ipc.encoding.SuiteListenerEncoding}) are read
+ * as well, but unless they were chosen, they are skipped after reading the parts
+ * which the later messages depend on.
+ */
+@NotThreadSafe
+public class SeekingIpcReader<T> implements IpcReader<T> {
+
+    private final IpcProtocol<T> protocol;
+    private final long[] dependencies;
+    private final long[] chosen;
+    private boolean done = false;
+
+    /**
+     * @param dependencies positions of the messages which must be decoded before the later messages, in ascending order
+     * @param chosen       positions of the messages to read, in ascending order
+     */
+    public SeekingIpcReader(IpcProtocol<T> protocol, long[] dependencies, long[] chosen) {
+        this.protocol = protocol;
+        this.dependencies = dependencies;
+        this.chosen = chosen;
+    }
+
+    @Override
+    public PollResult poll(T target) {
+        if (done) {
+            return PollResult.END_OF_STREAM;
+        }
+        done = true;
+        int d = 0;
+        int c = 0;
+        while (c < chosen.length) {
+            if (d < dependencies.length && dependencies[d] < chosen[c]) {
+                protocol.skipMessageAt(dependencies[d]);
+                d++;
+            } else {
+                if (d < dependencies.length && dependencies[d] == chosen[c]) {
+                    d++;
+                }
+                protocol.decodeMessageAt(chosen[c], target);
+                c++;
+            }
+        }
+        return chosen.length > 0 ? PollResult.HAD_SOME_MESSAGES : PollResult.END_OF_STREAM;
+    }
+
+    @Override
+    public long getWriterHeartbeat() {
+        return protocol.getWriterHeartbeat();
+    }
+}
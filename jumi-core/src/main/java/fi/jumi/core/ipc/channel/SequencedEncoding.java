@@ -0,0 +1,113 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+import fi.jumi.core.ipc.encoding.*;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Prefixes every message with its sequence number, so that the streams of
+ * a {@link MultiProducerIpcWriter} can be merged back into one order.
+ * The sequence numbers of the messages which failed to be written are
+ * written as skipped, without a message.
+ */
+@NotThreadSafe
+class SequencedEncoding<T> implements MarkableEncoding<T> {
+
+    private static final Event<?> SKIPPED = target -> {
+    };
+
+    private final IpcBuffer buffer;
+    private final MessageEncoding<T> messageEncoding;
+    private final SkipListener skipListener;
+    private long sequence;
+
+    public SequencedEncoding(IpcBuffer buffer, MessageEncoding<T> messageEncoding) {
+        this(buffer, messageEncoding, skippedSequence -> {
+        });
+    }
+
+    public SequencedEncoding(IpcBuffer buffer, MessageEncoding<T> messageEncoding, SkipListener skipListener) {
+        this.buffer = buffer;
+        this.messageEncoding = messageEncoding;
+        this.skipListener = skipListener;
+    }
+
+    /**
+     * Stands for a message which failed to be written. Encoding it skips one sequence number.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Event<T> skipped() {
+        return (Event<T>) SKIPPED;
+    }
+
+    /**
+     * The sequence number of the next encoded message, or of the last decoded message.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    @Override
+    public String getInterfaceName() {
+        return messageEncoding.getInterfaceName();
+    }
+
+    @Override
+    public int getInterfaceVersion() {
+        return messageEncoding.getInterfaceVersion();
+    }
+
+    @Override
+    public void encode(Event<T> message) {
+        if (message == SKIPPED) {
+            // skipped sequence numbers are written as their one's complement, which is negative
+            buffer.writeLong(~sequence);
+            sequence++;
+            return;
+        }
+        buffer.writeLong(sequence);
+        sequence++;
+        messageEncoding.encode(message);
+    }
+
+    @Override
+    public void mark() {
+        if (messageEncoding instanceof MarkableEncoding) {
+            ((MarkableEncoding<?>) messageEncoding).mark();
+        }
+    }
+
+    @Override
+    public void resetToMark() {
+        if (messageEncoding instanceof MarkableEncoding) {
+            ((MarkableEncoding<?>) messageEncoding).resetToMark();
+        }
+    }
+
+    @Override
+    public void decode(T target) {
+        long value = buffer.readLong();
+        if (value < 0) {
+            sequence = ~value;
+            skipListener.onSkipped(sequence);
+            return;
+        }
+        sequence = value;
+        messageEncoding.decode(target);
+    }
+
+
+    interface SkipListener {
+        void onSkipped(long sequence);
+    }
+}
@@ -0,0 +1,18 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The writer stopped without ending the stream, so the rest of the messages will never come.
+ */
+@ThreadSafe
+public class TruncatedStreamException extends RuntimeException {
+
+    public TruncatedStreamException(String message) {
+        super(message);
+    }
+}
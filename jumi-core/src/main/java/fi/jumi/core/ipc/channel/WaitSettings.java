@@ -0,0 +1,56 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.file.Path;
+
+/**
+ * How the readers of a process wait for the writers of their channels, as configured
+ * by the daemon configuration. The command channels and the suite results channels
+ * have their own wait strategies, because a command's latency matters more than
+ * the CPU time spent waiting for it, whereas the suite results may be waited for
+ * throughout a long test run.
+ */
+@Immutable
+public class WaitSettings {
+
+    public static final WaitSettings DEFAULTS = new WaitSettings(WaitStrategies.PROGRESSIVE_SLEEP, IpcReaders.DEFAULT_WRITER_TIMEOUT_MILLIS);
+
+    private final WaitStrategies commandsWaitStrategy;
+    private final WaitStrategies resultsWaitStrategy;
+    private final long writerTimeoutMillis;
+
+    public WaitSettings(WaitStrategies waitStrategy, long writerTimeoutMillis) {
+        this(waitStrategy, waitStrategy, writerTimeoutMillis);
+    }
+
+    public WaitSettings(WaitStrategies commandsWaitStrategy, WaitStrategies resultsWaitStrategy, long writerTimeoutMillis) {
+        this.commandsWaitStrategy = commandsWaitStrategy;
+        this.resultsWaitStrategy = resultsWaitStrategy;
+        this.writerTimeoutMillis = writerTimeoutMillis;
+    }
+
+    /**
+     * For the request and response channels of a command.
+     */
+    public <T> void decodeCommandChannel(IpcReader<T> reader, T target, Path channel) throws InterruptedException {
+        IpcReaders.decodeAll(reader, target, commandsWaitStrategy.forChannel(channel), writerTimeoutMillis);
+    }
+
+    /**
+     * For the suite results channel.
+     */
+    public <T> void decodeResultsChannel(IpcReader<T> reader, T target, Path channel) throws InterruptedException {
+        IpcReaders.decodeAll(reader, target, resultsWaitStrategy.forChannel(channel), writerTimeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), commandsWaitStrategy, resultsWaitStrategy, writerTimeoutMillis);
+    }
+}
@@ -0,0 +1,48 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.file.Path;
+
+/**
+ * The wait strategies which can be selected through configuration.
+ */
+@Immutable
+public enum WaitStrategies {
+
+    PROGRESSIVE_SLEEP {
+        @Override
+        public WaitStrategy forChannel(Path basePath) {
+            return new ProgressiveSleepWaitStrategy();
+        }
+    },
+    BUSY_SPIN {
+        @Override
+        public WaitStrategy forChannel(Path basePath) {
+            return new BusySpinWaitStrategy();
+        }
+    },
+    PARK {
+        @Override
+        public WaitStrategy forChannel(Path basePath) {
+            return new ParkingWaitStrategy();
+        }
+    },
+    ADAPTIVE {
+        @Override
+        public WaitStrategy forChannel(Path basePath) {
+            return new AdaptiveWaitStrategy();
+        }
+    },
+    WATCH_SERVICE {
+        @Override
+        public WaitStrategy forChannel(Path basePath) {
+            return new WatchServiceWaitStrategy(basePath.toAbsolutePath().getParent());
+        }
+    };
+
+    public abstract WaitStrategy forChannel(Path basePath);
+}
@@ -0,0 +1,81 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * After yielding a few times, blocks until the channel's directory changes
+ * instead of sleeping a fixed time.
+ * <p>
+ * Writes through a memory-mapped file don't produce file modification events
+ * on all platforms (e.g. inotify on Linux), so this will wake up immediately
+ * only when the writer creates a new segment file or the operating system
+ * updates the file's modification time. The max wait time bounds the latency
+ * in the other cases.
+ */
+@NotThreadSafe
+public class WatchServiceWaitStrategy implements WaitStrategy, Closeable {
+
+    private final WatchService watchService;
+    private final int yieldCount;
+    private final long maxWaitMillis;
+
+    private int invocations = 0;
+
+    public WatchServiceWaitStrategy(Path directory) {
+        this(directory, 10, 10);
+    }
+
+    public WatchServiceWaitStrategy(Path directory, int yieldCount, long maxWaitMillis) {
+        this.yieldCount = yieldCount;
+        this.maxWaitMillis = maxWaitMillis;
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw Boilerplate.rethrow(e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        invocations = 0;
+    }
+
+    @Override
+    public void snooze() {
+        if (invocations < yieldCount) {
+            Thread.yield();
+            invocations++;
+        } else {
+            awaitChange();
+        }
+    }
+
+    private void awaitChange() {
+        try {
+            WatchKey key = watchService.poll(maxWaitMillis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
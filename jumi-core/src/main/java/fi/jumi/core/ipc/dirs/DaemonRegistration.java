@@ -0,0 +1,260 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.dirs;
+
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The entry of a daemon in the registry of daemons, which is the daemons directory under Jumi home.
+ * <p>
+ * The launcher which starts a daemon advertises in the daemon's directory what kind of daemon it is,
+ * so that later launchers can reuse it for suites which need the same kind of daemon. The daemon holds
+ * a lock for as long as it lives, which tells it apart from the entries of daemons which have crashed.
+ * <p>
+ * A daemon runs as many suites at a time as it has claim slots. Before sending a command to a daemon,
+ * a launcher claims one of its slots, and the daemon releases a claim when the suite has finished.
+ * Also the launcher which starts a daemon claims it for its own suite. A daemon which has been idle
+ * for too long takes all the claims itself before exiting, so that no launcher will send it commands anymore.
+ */
+@NotThreadSafe
+public class DaemonRegistration {
+
+    private static final String ADVERTISEMENT = "daemon.properties";
+    private static final String LOCK = "daemon.lock";
+    private static final String CLAIM = "claimed";
+
+    private final Path daemonDir;
+    private final int claimSlots;
+    private FileChannel lockChannel;
+    private Path ownClaim;
+
+    public DaemonRegistration(Path daemonDir) {
+        this(daemonDir, 1);
+    }
+
+    public DaemonRegistration(Path daemonDir, int claimSlots) {
+        this.daemonDir = daemonDir;
+        this.claimSlots = claimSlots;
+    }
+
+    public Path getDaemonDir() {
+        return daemonDir;
+    }
+
+
+    // launcher side
+
+    public void advertise(Properties advertisement) throws IOException {
+        Path tmp = daemonDir.resolve(ADVERTISEMENT + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            advertisement.store(out, null);
+        }
+        Files.move(tmp, daemonDir.resolve(ADVERTISEMENT), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns null if the daemon has not been advertised, or if it has retired.
+     */
+    public Properties getAdvertisement() throws IOException {
+        Properties advertisement = new Properties();
+        try (InputStream in = Files.newInputStream(daemonDir.resolve(ADVERTISEMENT))) {
+            advertisement.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return advertisement;
+    }
+
+    /**
+     * Claims the first free slot of the daemon.
+     */
+    public boolean tryClaim() throws IOException {
+        for (int slot = 0; slot < claimSlots; slot++) {
+            if (tryClaim(slot)) {
+                ownClaim = claim(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the daemon has room for another suite, without claiming it.
+     */
+    public boolean hasFreeSlot() {
+        for (int slot = 0; slot < claimSlots; slot++) {
+            if (!Files.exists(claim(slot))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives back the slot which was claimed through this instance, for example when the daemon
+     * turned out to be still starting up, so that it will be free for the daemon's own launchers.
+     */
+    public void withdrawClaim() throws IOException {
+        if (ownClaim != null) {
+            Files.deleteIfExists(ownClaim);
+            ownClaim = null;
+        }
+    }
+
+    private boolean tryClaim(int slot) throws IOException {
+        try {
+            Files.createFile(claim(slot));
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether a launcher has claimed the daemon within the timeout. A daemon which is
+     * starting up is not yet {@linkplain #isAlive() alive}, but its launcher has claimed it.
+     */
+    public boolean isRecentlyClaimed(long timeoutMillis) throws IOException {
+        for (Path claim : claims()) {
+            if (isRecent(claim, timeoutMillis)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRecent(Path claim, long timeoutMillis) throws IOException {
+        try {
+            long claimAge = System.currentTimeMillis() - Files.getLastModifiedTime(claim).toMillis();
+            return claimAge < timeoutMillis;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    public boolean isAlive() throws IOException {
+        try (FileChannel channel = FileChannel.open(daemonDir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true; // the daemon is running inside this JVM
+        }
+    }
+
+    /**
+     * Removes the advertisement of a daemon which has died, so that launchers will ignore it.
+     */
+    public void unregister() throws IOException {
+        Files.deleteIfExists(daemonDir.resolve(ADVERTISEMENT));
+    }
+
+
+    // daemon side
+
+    /**
+     * Marks the daemon alive until the JVM exits.
+     */
+    public void lockForLifetime() throws IOException {
+        lockChannel = FileChannel.open(daemonDir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lockChannel.lock();
+    }
+
+    /**
+     * Releases the oldest claim, so that the claims of launchers which never sent their command
+     * will not keep occupying the slots while the daemon runs other suites.
+     */
+    public void releaseClaim() {
+        try {
+            Path oldest = null;
+            long oldestTime = Long.MAX_VALUE;
+            for (Path claim : claims()) {
+                try {
+                    long time = Files.getLastModifiedTime(claim).toMillis();
+                    if (time < oldestTime) {
+                        oldest = claim;
+                        oldestTime = time;
+                    }
+                } catch (NoSuchFileException e) {
+                    // released concurrently
+                }
+            }
+            if (oldest != null) {
+                Files.deleteIfExists(oldest);
+            }
+        } catch (IOException e) {
+            throw Boilerplate.rethrow(e);
+        }
+    }
+
+    /**
+     * Withdraws the daemon from the registry, unless a launcher has claimed it within the timeout.
+     * Claims older than that were left by launchers which never sent their command.
+     */
+    public boolean tryRetire(long claimTimeoutMillis) {
+        List<Path> taken = new ArrayList<>();
+        try {
+            for (int slot = 0; slot < claimSlots; slot++) {
+                if (!tryTakeOver(slot, claimTimeoutMillis, taken)) {
+                    // give back the other slots, so that the daemon can still run suites in them
+                    for (Path claim : taken) {
+                        Files.deleteIfExists(claim);
+                    }
+                    return false;
+                }
+            }
+            unregister();
+            return true;
+        } catch (IOException e) {
+            throw Boilerplate.rethrow(e);
+        }
+    }
+
+    private boolean tryTakeOver(int slot, long claimTimeoutMillis, List<Path> taken) throws IOException {
+        while (true) {
+            if (tryClaim(slot)) {
+                taken.add(claim(slot));
+                return true;
+            }
+            try {
+                long claimAge = System.currentTimeMillis() - Files.getLastModifiedTime(claim(slot)).toMillis();
+                return claimAge >= claimTimeoutMillis;
+            } catch (NoSuchFileException e) {
+                // the claim was just released
+            }
+        }
+    }
+
+    private Path claim(int slot) {
+        return daemonDir.resolve(slot == 0 ? CLAIM : CLAIM + "." + slot);
+    }
+
+    private List<Path> claims() throws IOException {
+        // also the claims of slots beyond our own count, to be independent of the daemon's settings
+        List<Path> claims = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(daemonDir, CLAIM + "*")) {
+            for (Path file : files) {
+                claims.add(file);
+            }
+        } catch (NoSuchFileException e) {
+            // the daemon dir has been removed
+        }
+        return claims;
+    }
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), daemonDir);
+    }
+}
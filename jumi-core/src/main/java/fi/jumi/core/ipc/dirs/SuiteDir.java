@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -23,4 +23,8 @@ public class SuiteDir {
     public Path getSuiteResultsPath() {
         return path.resolve("suite");
     }
+
+    public Path getSuiteResultsIndexPath() {
+        return path.resolve("suite.index");
+    }
 }
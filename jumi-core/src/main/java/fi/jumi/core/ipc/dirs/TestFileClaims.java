@@ -0,0 +1,54 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.dirs;
+
+import fi.jumi.core.api.TestFile;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+ * The directory where the worker daemons of a forked suite claim test files, so that each test
+ * file is run by only one of them. The launcher creates the directory for the suite and deletes
+ * it after the suite has finished.
+ */
+@ThreadSafe
+public class TestFileClaims {
+
+    private static final String CLAIMS_DIR = "test-file-claims";
+
+    private final Path dir;
+
+    public TestFileClaims(Path dir) {
+        this.dir = dir;
+    }
+
+    public static TestFileClaims create(Path jumiHome) throws IOException {
+        return new TestFileClaims(UniqueDirectories.createUniqueDir(jumiHome.resolve(CLAIMS_DIR), System.currentTimeMillis()));
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public boolean tryClaim(TestFile testFile) throws IOException {
+        try {
+            Files.createFile(dir.resolve(testFile.getClassName()));
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    public void delete() throws IOException {
+        try (DirectoryStream<Path> claims = Files.newDirectoryStream(dir)) {
+            for (Path claim : claims) {
+                Files.delete(claim);
+            }
+        }
+        Files.delete(dir);
+    }
+}
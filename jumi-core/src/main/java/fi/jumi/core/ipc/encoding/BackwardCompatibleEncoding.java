@@ -0,0 +1,18 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+/**
+ * An encoding which can also decode streams that were written using an older interface version.
+ * The reader chooses the decoder based on the interface version in the stream's header.
+ */
+public interface BackwardCompatibleEncoding<T> extends MessageEncoding<T> {
+
+    /**
+     * Returns an encoding which uses the same buffer as this one,
+     * or null if the interface version is not supported.
+     */
+    MessageEncoding<T> forOlderInterfaceVersion(int interfaceVersion);
+}
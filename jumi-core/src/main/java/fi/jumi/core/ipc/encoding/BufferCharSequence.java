@@ -0,0 +1,66 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A string which is read from the buffer one char at a time. The chars are
+ * either Latin-1 bytes or UTF-16 code units.
+ */
+@NotThreadSafe
+class BufferCharSequence implements CharSequence {
+
+    private final IpcBuffer buffer;
+    private final long start;
+    private final int length;
+    private final boolean wide;
+
+    BufferCharSequence(IpcBuffer buffer, long start, int length, boolean wide) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = length;
+        this.wide = wide;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        if (wide) {
+            return buffer.getChar(start + 2L * index);
+        }
+        return (char) (buffer.getByte(start + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", length " + length);
+        }
+        return new BufferCharSequence(buffer, start + (wide ? 2L * from : from), to - from, wide);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        if (wide) {
+            buffer.getChars(start, chars, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (buffer.getByte(start + i) & 0xFF);
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -30,6 +30,32 @@ public abstract class EncodingUtil {
         buffer.writeByte(type);
     }
 
+    // primitives
+
+    protected void writeInt(int value) {
+        buffer.writeInt(value);
+    }
+
+    protected int readInt() {
+        return buffer.readInt();
+    }
+
+    protected void writeLong(long value) {
+        buffer.writeLong(value);
+    }
+
+    protected long readLong() {
+        return buffer.readLong();
+    }
+
+    protected void writeLength(int length) {
+        buffer.writeInt(length);
+    }
+
+    protected int readLength() {
+        return buffer.readInt();
+    }
+
     // URI
 
     protected void writeUris(List<URI> uris) {
@@ -85,14 +111,14 @@ public abstract class EncodingUtil {
     }
 
     protected <T> void writeList(List<T> values, WriteOp<T> writer) {
-        buffer.writeInt(values.size());
+        writeLength(values.size());
         for (T value : values) {
             writer.write(value);
         }
     }
 
     protected <T> T[] readArray(ReadOp<T> reader, ArrayFactory<T> arrayFactory) {
-        T[] values = arrayFactory.create(buffer.readInt());
+        T[] values = arrayFactory.create(readLength());
         for (int i = 0; i < values.length; i++) {
             values[i] = reader.read();
         }
@@ -100,17 +126,13 @@ public abstract class EncodingUtil {
     }
 
     protected void writeIntArray(int[] values) {
-        buffer.writeInt(values.length);
-        for (int value : values) {
-            buffer.writeInt(value);
-        }
+        writeLength(values.length);
+        buffer.writeInts(values, 0, values.length);
     }
 
     protected int[] readIntArray() {
-        int[] values = new int[buffer.readInt()];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = buffer.readInt();
-        }
+        int[] values = new int[readLength()];
+        buffer.readInts(values, 0, values.length);
         return values;
     }
 
@@ -0,0 +1,225 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.*;
+
+import static fi.jumi.core.ipc.encoding.VarIntEncoding.*;
+
+/**
+ * One event of the suite results, whose fields are read from the buffer only when asked for.
+ * The same instance is moved from event to event, so it must not be kept after the
+ * {@link EventViewListener} returns. The same goes for the {@code CharSequence}s, which are
+ * views to the buffer; call {@code toString()} on them to keep their contents.
+ * <p>
+ * Asking for a field which the event doesn't have throws an {@link IllegalStateException}.
+ */
+@NotThreadSafe
+public class EventView {
+
+    private final IpcBuffer buffer;
+    private final SuiteListenerEncoding tables;
+
+    private Type type;
+    private long fieldsStart;
+
+    EventView(IpcBuffer buffer, SuiteListenerEncoding tables) {
+        this.buffer = buffer;
+        this.tables = tables;
+    }
+
+    void moveTo(byte type, long fieldsStart) {
+        this.type = Type.of(type);
+        this.fieldsStart = fieldsStart;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * For the events of a run.
+     */
+    public RunId getRunId() {
+        if (!type.isOfRun()) {
+            throw noSuchField("run id");
+        }
+        buffer.position(fieldsStart);
+        return tables.readRunId();
+    }
+
+    /**
+     * For the events of a test file, and for {@link Type#RUN_STARTED}.
+     */
+    public TestFile getTestFile() {
+        buffer.position(fieldsStart);
+        switch (type) {
+            case TEST_FILE_FOUND:
+            case TEST_FOUND:
+            case TEST_FILE_FINISHED:
+                break;
+            case RUN_STARTED:
+                skipRunId();
+                break;
+            default:
+                throw noSuchField("test file");
+        }
+        return tables.readTestFile();
+    }
+
+    /**
+     * For {@link Type#TEST_FOUND} and {@link Type#TEST_STARTED}.
+     */
+    public TestId getTestId() {
+        buffer.position(fieldsStart);
+        switch (type) {
+            case TEST_FOUND:
+                skipTestFile();
+                break;
+            case TEST_STARTED:
+                skipRunId();
+                break;
+            default:
+                throw noSuchField("test id");
+        }
+        return tables.readTestId();
+    }
+
+    /**
+     * The name of the test, for {@link Type#TEST_FOUND}.
+     */
+    public CharSequence getName() {
+        if (type != Type.TEST_FOUND) {
+            throw noSuchField("name");
+        }
+        buffer.position(fieldsStart);
+        skipTestFile();
+        skipTestId();
+        return StringEncoding.readCompactCharSequence(buffer);
+    }
+
+    /**
+     * The printed text, or the message of an internal error.
+     * Compressed output is decompressed, so it's not a view to the buffer.
+     */
+    public CharSequence getText() {
+        buffer.position(fieldsStart);
+        switch (type) {
+            case PRINTED_OUT:
+            case PRINTED_ERR:
+                skipRunId();
+                break;
+            case INTERNAL_ERROR:
+                break;
+            default:
+                throw noSuchField("text");
+        }
+        return StringEncoding.readCompactCharSequence(buffer);
+    }
+
+    /**
+     * For {@link Type#FAILURE} and {@link Type#INTERNAL_ERROR}.
+     * Unlike the other fields, this decodes the whole object graph.
+     */
+    public StackTrace getStackTrace() {
+        buffer.position(fieldsStart);
+        switch (type) {
+            case FAILURE:
+                skipRunId();
+                break;
+            case INTERNAL_ERROR:
+                StringEncoding.skipCompactString(buffer);
+                break;
+            default:
+                throw noSuchField("stack trace");
+        }
+        return tables.readStackTrace();
+    }
+
+    /**
+     * For {@link Type#STARTUP_TIMELINE}.
+     */
+    public StartupTimeline getStartupTimeline() {
+        if (type != Type.STARTUP_TIMELINE) {
+            throw noSuchField("startup timeline");
+        }
+        buffer.position(fieldsStart);
+        return tables.readStartupTimeline();
+    }
+
+    private void skipRunId() {
+        readSignedVarInt(buffer);
+    }
+
+    private void skipTestFile() {
+        readVarInt(buffer);
+    }
+
+    private void skipTestId() {
+        int length = readVarInt(buffer);
+        for (int i = 0; i < length; i++) {
+            readVarInt(buffer);
+        }
+    }
+
+    private IllegalStateException noSuchField(String field) {
+        return new IllegalStateException(type + " event has no " + field);
+    }
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), type);
+    }
+
+
+    @Immutable
+    public enum Type {
+        // in the order of the event type codes, starting from 1 (see SuiteListenerEncodingBase)
+        SUITE_STARTED,
+        INTERNAL_ERROR,
+        TEST_FILE_FOUND,
+        ALL_TEST_FILES_FOUND,
+        TEST_FOUND,
+        RUN_STARTED,
+        TEST_STARTED,
+        PRINTED_OUT,
+        PRINTED_ERR,
+        FAILURE,
+        TEST_FINISHED,
+        RUN_FINISHED,
+        TEST_FILE_FINISHED,
+        SUITE_FINISHED,
+        STARTUP_TIMELINE,
+
+        /**
+         * Written by a newer version. It has no fields which could be read.
+         */
+        UNKNOWN;
+
+        private static final Type[] BY_CODE = values();
+
+        static Type of(byte code) {
+            if (code >= 1 && code < UNKNOWN.ordinal() + 1) {
+                return BY_CODE[code - 1];
+            }
+            return UNKNOWN;
+        }
+
+        public boolean isOfRun() {
+            return this == RUN_STARTED
+                    || this == TEST_STARTED
+                    || this == PRINTED_OUT
+                    || this == PRINTED_ERR
+                    || this == FAILURE
+                    || this == TEST_FINISHED
+                    || this == RUN_FINISHED;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.core.api.SuiteListener;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Reads the suite results which {@link SuiteListenerEncoding} has written, without decoding
+ * the events up front. Each event is shown to the listener as an {@link EventView}, which decodes
+ * only the fields which are asked for. The rest of the event is skipped using its length. Only the
+ * string and stack frame table additions are always read, to keep the tables in sync.
+ * <p>
+ * Does not support version 1, because its events have no length.
+ */
+@NotThreadSafe
+public class EventViewEncoding implements MessageEncoding<EventViewListener>, BackwardCompatibleEncoding<EventViewListener> {
+
+    private final IpcBuffer buffer;
+    private final SuiteListenerEncoding tables;
+    private final EventView view;
+
+    public EventViewEncoding(IpcBuffer buffer) {
+        this.buffer = buffer;
+        this.tables = new SuiteListenerEncoding(buffer);
+        this.view = new EventView(buffer, tables);
+    }
+
+    @Override
+    public String getInterfaceName() {
+        return SuiteListener.class.getName();
+    }
+
+    @Override
+    public int getInterfaceVersion() {
+        return tables.getInterfaceVersion();
+    }
+
+    @Override
+    public MessageEncoding<EventViewListener> forOlderInterfaceVersion(int interfaceVersion) {
+        if (interfaceVersion == 2) {
+            return new EventViewEncoding(buffer);
+        }
+        return null;
+    }
+
+    @Override
+    public void encode(Event<EventViewListener> message) {
+        throw new UnsupportedOperationException("read only; write with " + SuiteListenerEncoding.class.getSimpleName());
+    }
+
+    @Override
+    public void decode(EventViewListener target) {
+        byte type = tables.readEventType();
+        long frameEnd = tables.getFrameEnd();
+        view.moveTo(type, buffer.position());
+        target.onEvent(view);
+        buffer.position(frameEnd);
+    }
+}
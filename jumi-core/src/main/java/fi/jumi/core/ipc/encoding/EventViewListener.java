@@ -0,0 +1,13 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+public interface EventViewListener {
+
+    /**
+     * The event and the values read from it are valid only until this method returns.
+     */
+    void onEvent(EventView event);
+}
@@ -0,0 +1,163 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Compresses bytes into the LZ4 block format: a sequence of literals followed by
+ * a match which copies earlier output. Each sequence begins with a token whose high
+ * nibble is the literal count and low nibble the match length minus 4 (both extended
+ * with 255-valued bytes when 15), followed by the literals and a little-endian 2-byte
+ * offset of the match. The last sequence has only literals.
+ * <p>
+ * Favors speed over ratio: matches are found through a single hash table of recent
+ * positions. Repetitive text, such as log lines, typically shrinks to a fraction.
+ */
+@NotThreadSafe
+public class LzCompressor {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int HASH_BITS = 12;
+    private static final int RUN_MASK = 15;
+
+    // positions + 1, so that zero means empty
+    private final int[] hashTable = new int[1 << HASH_BITS];
+
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    public byte[] compress(byte[] src) {
+        Arrays.fill(hashTable, 0);
+        byte[] dst = new byte[maxCompressedLength(src.length)];
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+        int matchLimit = src.length - LAST_LITERALS;
+        int findLimit = src.length - MATCH_FIND_LIMIT;
+
+        while (ip < findLimit) {
+            int sequence = readInt(src, ip);
+            int h = hash(sequence);
+            int ref = hashTable[h] - 1;
+            hashTable[h] = ip + 1;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                ip++;
+                continue;
+            }
+            while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                ip--;
+                ref--;
+            }
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                matchLength++;
+            }
+            op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, matchLength);
+            ip += matchLength;
+            anchor = ip;
+        }
+        op = writeLastLiterals(dst, op, src, anchor, src.length - anchor);
+        return Arrays.copyOf(dst, op);
+    }
+
+    private static int writeSequence(byte[] dst, int op, byte[] src, int literalsStart, int literalCount, int offset, int matchLength) {
+        int tokenIndex = op++;
+        int extraMatch = matchLength - MIN_MATCH;
+        dst[tokenIndex] = (byte) (Math.min(literalCount, RUN_MASK) << 4 | Math.min(extraMatch, RUN_MASK));
+        op = writeRunLength(dst, op, literalCount);
+        System.arraycopy(src, literalsStart, dst, op, literalCount);
+        op += literalCount;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        return writeRunLength(dst, op, extraMatch);
+    }
+
+    private static int writeLastLiterals(byte[] dst, int op, byte[] src, int literalsStart, int literalCount) {
+        dst[op++] = (byte) (Math.min(literalCount, RUN_MASK) << 4);
+        op = writeRunLength(dst, op, literalCount);
+        System.arraycopy(src, literalsStart, dst, op, literalCount);
+        return op + literalCount;
+    }
+
+    private static int writeRunLength(byte[] dst, int op, int length) {
+        if (length >= RUN_MASK) {
+            int remaining = length - RUN_MASK;
+            while (remaining >= 255) {
+                dst[op++] = (byte) 255;
+                remaining -= 255;
+            }
+            dst[op++] = (byte) remaining;
+        }
+        return op;
+    }
+
+    public static byte[] decompress(byte[] src, int decompressedLength) {
+        byte[] dst = new byte[decompressedLength];
+        int ip = 0;
+        int op = 0;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+
+                int literalCount = token >>> 4;
+                if (literalCount == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalCount += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literalCount);
+                ip += literalCount;
+                op += literalCount;
+                if (ip == src.length) {
+                    break;
+                }
+
+                int offset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0) {
+                    throw new IllegalArgumentException("corrupt compressed data: offset " + offset + " at output index " + op);
+                }
+                // byte by byte, because the match may overlap with what it is copying
+                for (int i = 0; i < matchLength; i++) {
+                    dst[op++] = dst[ref++];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("corrupt compressed data", e);
+        }
+        if (op != decompressedLength) {
+            throw new IllegalArgumentException("corrupt compressed data: expected " + decompressedLength + " bytes but got " + op);
+        }
+        return dst;
+    }
+
+    private static int readInt(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF)
+                | (bytes[index + 1] & 0xFF) << 8
+                | (bytes[index + 2] & 0xFF) << 16
+                | (bytes[index + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
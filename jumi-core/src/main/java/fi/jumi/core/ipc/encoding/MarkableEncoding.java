@@ -0,0 +1,24 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+/**
+ * An encoding whose later messages refer to what its earlier messages added (e.g. a table of shared strings).
+ * The writer marks the encoding whenever it has published the messages, and resets it to the mark when
+ * the messages encoded after the mark will not be published, so that the next messages will not refer
+ * to anything which the readers never see.
+ */
+public interface MarkableEncoding<T> extends MessageEncoding<T> {
+
+    /**
+     * Called after the messages encoded so far have been published.
+     */
+    void mark();
+
+    /**
+     * Forgets what the messages encoded after the {@linkplain #mark() mark} added.
+     */
+    void resetToMark();
+}
@@ -1,22 +1,16 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.ipc.encoding;
 
-
-import fi.jumi.actors.eventizers.Event;
 import fi.jumi.core.config.*;
-import fi.jumi.core.ipc.api.RequestListener;
 import fi.jumi.core.ipc.buffer.IpcBuffer;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
 @NotThreadSafe
-public class RequestListenerEncoding extends EncodingUtil implements RequestListener, MessageEncoding<RequestListener> {
-
-    private static final byte runTests = 1;
-    private static final byte shutdown = 2;
+public class RequestListenerEncoding extends RequestListenerEncodingBase {
 
     // SuiteConfiguration properties
     private static final String classpath = "classpath";
@@ -24,42 +18,19 @@ public class RequestListenerEncoding extends EncodingUtil implements RequestList
     private static final String workingDirectory = "workingDirectory";
     private static final String includedTestsPattern = "includedTestsPattern";
     private static final String excludedTestsPattern = "excludedTestsPattern";
+    private static final String isolatedLibraries = "isolatedLibraries";
+    private static final String forkCount = "forkCount";
+    private static final String testFileClaimsDir = "testFileClaimsDir";
 
     public RequestListenerEncoding(IpcBuffer buffer) {
         super(buffer);
     }
 
-    @Override
-    public String getInterfaceName() {
-        return RequestListener.class.getName();
-    }
 
-    @Override
-    public int getInterfaceVersion() {
-        return 1;
-    }
+    // SuiteConfiguration
 
     @Override
-    public void encode(Event<RequestListener> message) {
-        message.fireOn(this);
-    }
-
-    @Override
-    public void decode(RequestListener target) {
-        byte type = readEventType();
-        switch (type) {
-            case runTests:
-                target.runTests(readSuiteConfiguration());
-                break;
-            case shutdown:
-                target.shutdown();
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown type " + type);
-        }
-    }
-
-    private SuiteConfiguration readSuiteConfiguration() {
+    protected SuiteConfiguration readSuiteConfiguration() {
         SuiteConfigurationBuilder config = new SuiteConfigurationBuilder();
         while (true) {
             String name = readNullableString();
@@ -82,19 +53,23 @@ public class RequestListenerEncoding extends EncodingUtil implements RequestList
                 case excludedTestsPattern:
                     config.setExcludedTestsPattern(readString());
                     break;
+                case isolatedLibraries:
+                    config.setIsolatedLibraries(readStrings());
+                    break;
+                case forkCount:
+                    config.setForkCount(readInt());
+                    break;
+                case testFileClaimsDir:
+                    config.setTestFileClaimsDir(readUri());
+                    break;
                 default:
                     throw new IllegalArgumentException("Unexpected property: " + name);
             }
         }
     }
 
-
-    // encoding events
-
     @Override
-    public void runTests(SuiteConfiguration config) {
-        writeEventType(runTests);
-
+    protected void writeSuiteConfiguration(SuiteConfiguration config) {
         writeString(classpath);
         writeUris(config.getClasspath());
 
@@ -110,11 +85,17 @@ public class RequestListenerEncoding extends EncodingUtil implements RequestList
         writeString(excludedTestsPattern);
         writeString(config.getExcludedTestsPattern());
 
-        writeNullableString(null); // end of this null-terminated list
-    }
+        writeString(isolatedLibraries);
+        writeStrings(config.getIsolatedLibraries());
 
-    @Override
-    public void shutdown() {
-        writeEventType(shutdown);
+        writeString(forkCount);
+        writeInt(config.getForkCount());
+
+        if (config.getTestFileClaimsDir() != null) {
+            writeString(testFileClaimsDir);
+            writeUri(config.getTestFileClaimsDir());
+        }
+
+        writeNullableString(null); // end of this null-terminated list
     }
 }
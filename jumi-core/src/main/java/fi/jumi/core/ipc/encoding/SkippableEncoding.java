@@ -0,0 +1,17 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+/**
+ * An encoding which can skip over a message without decoding all of it.
+ */
+public interface SkippableEncoding<T> extends MessageEncoding<T> {
+
+    /**
+     * Reads only the parts of the message which the later messages depend on (e.g. table additions)
+     * and leaves the buffer's position at the end of the message.
+     */
+    void skip();
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -7,10 +7,28 @@ package fi.jumi.core.ipc.encoding;
 import fi.jumi.core.ipc.buffer.IpcBuffer;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.nio.charset.StandardCharsets;
+
+import static fi.jumi.core.ipc.encoding.VarIntEncoding.*;
 
 @ThreadSafe
 public class StringEncoding {
 
+    // Coders of the compact strings. The header is a varint: 0 for null,
+    // otherwise (length << 2 | coder) + 1 where the length is in bytes or chars
+    // depending on the coder. UTF-16 is needed for strings which contain
+    // unpaired surrogates, because UTF-8 cannot represent them.
+    // LZ is a compressed Latin-1 or UTF-8 string: the length is that of the compressed
+    // bytes, which are preceded by a varint (uncompressed length << 1 | isUtf8).
+    private static final int LATIN1 = 0;
+    private static final int UTF8 = 1;
+    private static final int UTF16 = 2;
+    private static final int LZ = 3;
+    private static final int MIN_COMPRESSIBLE_LENGTH = 128;
+    private static final int CODER_BITS = 2;
+    private static final int CODER_MASK = (1 << CODER_BITS) - 1;
+    private static final int MAX_COMPACT_LENGTH = (1 << (32 - CODER_BITS)) - 2;
+
     public static String readString(IpcBuffer source) {
         String s = readNullableString(source);
         if (s == null) {
@@ -25,9 +43,7 @@ public class StringEncoding {
             return null;
         } else {
             char[] chars = new char[length];
-            for (int i = 0; i < chars.length; i++) {
-                chars[i] = source.readChar();
-            }
+            source.readChars(chars, 0, length);
             return new String(chars);
         }
     }
@@ -43,11 +59,187 @@ public class StringEncoding {
         if (s == null) {
             target.writeInt(-1);
         } else {
-            int length = s.length();
-            target.writeInt(length);
-            for (int i = 0; i < length; i++) {
-                target.writeChar(s.charAt(i));
+            char[] chars = s.toCharArray();
+            target.writeInt(chars.length);
+            target.writeChars(chars, 0, chars.length);
+        }
+    }
+
+    // compact strings
+
+    public static String readCompactString(IpcBuffer source) {
+        String s = readCompactNullableString(source);
+        if (s == null) {
+            throw new NullPointerException();
+        }
+        return s;
+    }
+
+    public static String readCompactNullableString(IpcBuffer source) {
+        int header = readVarInt(source);
+        if (header == 0) {
+            return null;
+        }
+        header -= 1;
+        int coder = header & CODER_MASK;
+        int length = header >>> CODER_BITS;
+        switch (coder) {
+            case LATIN1: {
+                byte[] bytes = new byte[length];
+                source.readBytes(bytes, 0, length);
+                return new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+            case UTF8: {
+                byte[] bytes = new byte[length];
+                source.readBytes(bytes, 0, length);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case UTF16: {
+                char[] chars = new char[length];
+                source.readChars(chars, 0, length);
+                return new String(chars);
+            }
+            case LZ: {
+                int info = readVarInt(source);
+                byte[] compressed = new byte[length];
+                source.readBytes(compressed, 0, length);
+                byte[] bytes = LzCompressor.decompress(compressed, info >>> 1);
+                return new String(bytes, (info & 1) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+            }
+            default:
+                throw new IllegalArgumentException("unknown string coder " + coder);
+        }
+    }
+
+    /**
+     * Like {@link #readCompactString}, but Latin-1 and UTF-16 strings are not copied out of the buffer.
+     * The returned view is valid only as long as the buffer still holds the string.
+     */
+    public static CharSequence readCompactCharSequence(IpcBuffer source) {
+        long start = source.position();
+        int header = readVarInt(source);
+        if (header == 0) {
+            throw new NullPointerException();
+        }
+        header -= 1;
+        int coder = header & CODER_MASK;
+        int length = header >>> CODER_BITS;
+        if (coder == LATIN1) {
+            CharSequence view = new BufferCharSequence(source, source.position(), length, false);
+            source.position(source.position() + length);
+            return view;
+        }
+        if (coder == UTF16) {
+            CharSequence view = new BufferCharSequence(source, source.position(), length, true);
+            source.position(source.position() + 2L * length);
+            return view;
+        }
+        // the other coders don't have a fixed width, so they must be decoded
+        source.position(start);
+        return readCompactString(source);
+    }
+
+    /**
+     * Moves past a string written with any of the compact methods, without decoding it.
+     */
+    public static void skipCompactString(IpcBuffer source) {
+        int header = readVarInt(source);
+        if (header == 0) {
+            return;
+        }
+        header -= 1;
+        int coder = header & CODER_MASK;
+        int length = header >>> CODER_BITS;
+        if (coder == UTF16) {
+            source.position(source.position() + 2L * length);
+        } else {
+            if (coder == LZ) {
+                readVarInt(source);
+            }
+            source.position(source.position() + length);
+        }
+    }
+
+    public static void writeCompactString(IpcBuffer target, String s) {
+        if (s == null) {
+            throw new NullPointerException();
+        }
+        writeCompactNullableString(target, s);
+    }
+
+    public static void writeCompactNullableString(IpcBuffer target, String s) {
+        if (s == null) {
+            writeVarInt(target, 0);
+            return;
+        }
+        int coder = coderOf(s);
+        if (coder == UTF16) {
+            writeCompactChars(target, s);
+        } else {
+            writeCompactBytes(target, encode(s, coder), coder);
+        }
+    }
+
+    /**
+     * Like {@link #writeCompactString}, but long strings are compressed if that makes them smaller.
+     * Meant for bulky text which often repeats itself, such as the output of tests.
+     */
+    public static void writeCompressibleString(IpcBuffer target, String s, LzCompressor compressor) {
+        int coder = coderOf(s);
+        if (coder == UTF16) {
+            writeCompactChars(target, s);
+            return;
+        }
+        byte[] bytes = encode(s, coder);
+        if (bytes.length >= MIN_COMPRESSIBLE_LENGTH && bytes.length <= MAX_COMPACT_LENGTH >>> 1) {
+            byte[] compressed = compressor.compress(bytes);
+            int info = bytes.length << 1 | (coder == UTF8 ? 1 : 0);
+            if (compressed.length + sizeOfVarInt(info) < bytes.length) {
+                writeCompactHeader(target, compressed.length, LZ);
+                writeVarInt(target, info);
+                target.writeBytes(compressed, 0, compressed.length);
+                return;
+            }
+        }
+        writeCompactBytes(target, bytes, coder);
+    }
+
+    private static byte[] encode(String s, int coder) {
+        return s.getBytes(coder == LATIN1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    private static void writeCompactBytes(IpcBuffer target, byte[] bytes, int coder) {
+        writeCompactHeader(target, bytes.length, coder);
+        target.writeBytes(bytes, 0, bytes.length);
+    }
+
+    private static void writeCompactChars(IpcBuffer target, String s) {
+        char[] chars = s.toCharArray();
+        writeCompactHeader(target, chars.length, UTF16);
+        target.writeChars(chars, 0, chars.length);
+    }
+
+    private static void writeCompactHeader(IpcBuffer target, int length, int coder) {
+        if (length > MAX_COMPACT_LENGTH) {
+            throw new IllegalArgumentException("string too long: " + length);
+        }
+        writeVarInt(target, (length << CODER_BITS | coder) + 1);
+    }
+
+    private static int coderOf(String s) {
+        int coder = LATIN1;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c <= 0xFF) {
+                continue;
+            }
+            coder = UTF8;
+            if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                return UTF16;
             }
         }
+        return coder;
     }
 }
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -8,289 +8,568 @@ import fi.jumi.actors.eventizers.Event;
 import fi.jumi.api.drivers.TestId;
 import fi.jumi.core.api.*;
 import fi.jumi.core.ipc.buffer.IpcBuffer;
+import fi.jumi.core.ipc.index.SuiteResultsIndexer;
 
 import javax.annotation.concurrent.NotThreadSafe;
 import java.nio.file.Paths;
-
+import java.util.*;
+
+import static fi.jumi.core.ipc.encoding.VarIntEncoding.*;
+
+/**
+ * Has the same events and fields as {@link SuiteListenerEncodingV1}, but the integers
+ * are varints and the strings are compact (usually Latin-1). Each message is framed as
+ * the event type, followed by the length of the rest of the message, so that readers
+ * can skip events and trailing fields which they don't know. The length takes one byte,
+ * or for messages which may be longer, it's padded to the maximum size of a varint.
+ * <p>
+ * Strings which repeat a lot (test file paths and the names in stack trace elements)
+ * are referred to by their id in a string table. Each message begins with the strings
+ * which it adds to the table, so that the table stays in sync also when the reader skips
+ * some events. The writer collects the additions before it writes the message. The reader shares the {@code String} and {@code TestFile} instances of
+ * repeated values.
+ * <p>
+ * Stack trace elements are likewise kept in a table, where each frame refers to its
+ * calling frame. A stack trace is then just the id of its innermost frame. Causes and
+ * suppressed exceptions share the frames which they have in common with their enclosing
+ * trace, and repeated failures share all of their frames.
+ * <p>
+ * Since version 3, long printed output may be compressed (see {@link StringEncoding#writeCompressibleString}).
+ * Otherwise the format is the same as in version 2, so this class reads both.
+ * <p>
+ * The startup timeline event was added without changing the version, because the readers
+ * of older versions skip it like any other event which they don't know.
+ */
 @NotThreadSafe
-public class SuiteListenerEncoding extends EncodingUtil implements SuiteListener, MessageEncoding<SuiteListener> {
-
-    private static final byte onSuiteStarted = 1;
-    private static final byte onInternalError = 2;
-    private static final byte onTestFileFound = 3;
-    private static final byte onAllTestFilesFound = 4;
-    private static final byte onTestFound = 5;
-    private static final byte onRunStarted = 6;
-    private static final byte onTestStarted = 7;
-    private static final byte onPrintedOut = 8;
-    private static final byte onPrintedErr = 9;
-    private static final byte onFailure = 10;
-    private static final byte onTestFinished = 11;
-    private static final byte onRunFinished = 12;
-    private static final byte onTestFileFinished = 13;
-    private static final byte onSuiteFinished = 14;
+public class SuiteListenerEncoding extends SuiteListenerEncodingV1 implements BackwardCompatibleEncoding<SuiteListener>, SkippableEncoding<SuiteListener>, MarkableEncoding<SuiteListener> {
+
+    // shared strings are written as 0 for null, otherwise 1 + id
+    private static final int SHARED_NULL = 0;
+    private static final int SHARED_ID_OFFSET = 1;
+
+    // stack frames are written as 0 for an empty stack, otherwise 1 + id
+    private static final int NO_FRAME = 0;
+    private static final int FRAME_ID_OFFSET = 1;
+
+    private static final int MAX_ONE_BYTE_LENGTH = 0x7F;
+
+    private final SuiteResultsIndexer indexer;
+    private final LzCompressor compressor = new LzCompressor();
+    private final MessagePreview preview = new MessagePreview();
+
+    private long frameLengthIndex;
+    private int frameLengthSize;
+    private long frameEnd;
+
+    // for the indexer
+    private RunId messageRunId;
+    private TestFile messageTestFile;
+
+    private final Map<String, Integer> sentStringIds = new HashMap<>();
+    private final List<String> newStrings = new ArrayList<>();
+    private final List<String> receivedStrings = new ArrayList<>();
+    private final Map<String, TestFile> receivedTestFiles = new HashMap<>();
+
+    private final Map<Frame, Integer> sentFrameIds = new HashMap<>();
+    private final List<Frame> newFrames = new ArrayList<>();
+    private final List<Frame> receivedFrames = new ArrayList<>();
+
+    // the table additions of the messages which have been encoded but not yet published
+    private final List<String> unpublishedStrings = new ArrayList<>();
+    private final List<Frame> unpublishedFrames = new ArrayList<>();
 
     public SuiteListenerEncoding(IpcBuffer buffer) {
+        this(buffer, null);
+    }
+
+    public SuiteListenerEncoding(IpcBuffer buffer, SuiteResultsIndexer indexer) {
         super(buffer);
+        this.indexer = indexer;
     }
 
     @Override
-    public String getInterfaceName() {
-        return SuiteListener.class.getName();
+    public int getInterfaceVersion() {
+        return 3;
     }
 
     @Override
-    public int getInterfaceVersion() {
-        return 1;
+    public MessageEncoding<SuiteListener> forOlderInterfaceVersion(int interfaceVersion) {
+        if (interfaceVersion == 1) {
+            return new SuiteListenerEncodingV1(buffer);
+        }
+        if (interfaceVersion == 2) {
+            return new SuiteListenerEncoding(buffer);
+        }
+        return null;
     }
 
+    // framing
+
     @Override
     public void encode(Event<SuiteListener> message) {
-        message.fireOn(this);
+        long messageStart = buffer.position();
+        messageRunId = null;
+        messageTestFile = null;
+        try {
+            frameLengthSize = preview.of(message) <= MAX_ONE_BYTE_LENGTH ? 1 : MAX_BYTES;
+            int previewedStrings = newStrings.size();
+            int previewedFrames = newFrames.size();
+            super.encode(message);
+            if (newStrings.size() != previewedStrings || newFrames.size() != previewedFrames) {
+                throw new IllegalStateException("the preview missed some table additions of " + message);
+            }
+            finishFrame();
+        } catch (Throwable t) {
+            // the message will not be published, so the next messages must not refer to its additions
+            forgetTableAdditions(newStrings, newFrames);
+            throw t;
+        }
+        boolean hasTableAdditions = !newStrings.isEmpty() || !newFrames.isEmpty();
+        unpublishedStrings.addAll(newStrings);
+        unpublishedFrames.addAll(newFrames);
+        newStrings.clear();
+        newFrames.clear();
+        if (indexer != null) {
+            indexer.onMessage(messageStart, hasTableAdditions, messageRunId, messageTestFile);
+        }
     }
 
     @Override
-    public void decode(SuiteListener target) {
-        byte type = readEventType();
-        switch (type) {
-            case onSuiteStarted:
-                target.onSuiteStarted();
-                break;
-            case onInternalError:
-                target.onInternalError(readString(), readStackTrace());
-                break;
-            case onTestFileFound:
-                target.onTestFileFound(readTestFile());
-                break;
-            case onAllTestFilesFound:
-                target.onAllTestFilesFound();
-                break;
-            case onTestFound:
-                target.onTestFound(readTestFile(), readTestId(), readString());
-                break;
-            case onRunStarted:
-                target.onRunStarted(readRunId(), readTestFile());
-                break;
-            case onTestStarted:
-                target.onTestStarted(readRunId(), readTestId());
-                break;
-            case onPrintedOut:
-                target.onPrintedOut(readRunId(), readString());
-                break;
-            case onPrintedErr:
-                target.onPrintedErr(readRunId(), readString());
-                break;
-            case onFailure:
-                target.onFailure(readRunId(), readStackTrace());
-                break;
-            case onTestFinished:
-                target.onTestFinished(readRunId());
-                break;
-            case onRunFinished:
-                target.onRunFinished(readRunId());
-                break;
-            case onTestFileFinished:
-                target.onTestFileFinished(readTestFile());
-                break;
-            case onSuiteFinished:
-                target.onSuiteFinished();
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown type " + type);
-        }
-    }
-
-    // encoding events
+    public void mark() {
+        unpublishedStrings.clear();
+        unpublishedFrames.clear();
+    }
 
     @Override
-    public void onSuiteStarted() {
-        writeEventType(onSuiteStarted);
+    public void resetToMark() {
+        forgetTableAdditions(unpublishedStrings, unpublishedFrames);
     }
 
     @Override
-    public void onInternalError(String message, StackTrace cause) {
-        writeEventType(onInternalError);
-        writeString(message);
-        writeStackTrace(cause);
+    public void decode(SuiteListener target) {
+        super.decode(target);
+        buffer.position(frameEnd);
     }
 
     @Override
-    public void onTestFileFound(TestFile testFile) {
-        writeEventType(onTestFileFound);
-        writeTestFile(testFile);
+    public void skip() {
+        readEventType();
+        buffer.position(frameEnd);
     }
 
     @Override
-    public void onAllTestFilesFound() {
-        writeEventType(onAllTestFilesFound);
+    protected void writeEventType(byte type) {
+        super.writeEventType(type);
+        frameLengthIndex = buffer.position();
+        for (int i = 0; i < frameLengthSize; i++) {
+            buffer.writeByte((byte) 0);
+        }
+        writeTableAdditions();
     }
 
-    @Override
-    public void onTestFound(TestFile testFile, TestId testId, String name) {
-        writeEventType(onTestFound);
-        writeTestFile(testFile);
-        writeTestId(testId);
-        writeString(name);
+    private void finishFrame() {
+        long payloadStart = frameLengthIndex + frameLengthSize;
+        int payloadLength = (int) (buffer.position() - payloadStart);
+        int lengthSize = Math.max(frameLengthSize, sizeOfVarInt(payloadLength));
+        if (lengthSize > frameLengthSize) {
+            // rare; the message was longer than estimated
+            moveBytes(payloadStart, payloadLength, frameLengthIndex + lengthSize);
+        }
+        buffer.position(frameLengthIndex);
+        writePaddedVarInt(buffer, payloadLength, lengthSize);
+        buffer.position(frameLengthIndex + lengthSize + payloadLength);
     }
 
-    @Override
-    public void onRunStarted(RunId runId, TestFile testFile) {
-        writeEventType(onRunStarted);
-        writeRunId(runId);
-        writeTestFile(testFile);
+    private void writeTableAdditions() {
+        writeVarInt(buffer, newStrings.size() << 1 | (newFrames.isEmpty() ? 0 : 1));
+        for (String s : newStrings) {
+            StringEncoding.writeCompactString(buffer, s);
+        }
+        if (!newFrames.isEmpty()) {
+            writeVarInt(buffer, newFrames.size());
+            for (Frame frame : newFrames) {
+                writeVarInt(buffer, frame.callerId);
+                writeVarInt(buffer, frame.classNameId);
+                writeVarInt(buffer, frame.methodNameId);
+                writeVarInt(buffer, frame.fileNameId);
+                writeSignedVarInt(buffer, frame.element.getLineNumber());
+            }
+        }
+    }
+
+    private void forgetTableAdditions(List<String> strings, List<Frame> frames) {
+        for (String s : strings) {
+            sentStringIds.remove(s);
+        }
+        for (Frame frame : frames) {
+            sentFrameIds.remove(frame);
+        }
+        strings.clear();
+        frames.clear();
+    }
+
+    private void moveBytes(long from, int length, long to) {
+        byte[] bytes = new byte[length];
+        buffer.getBytes(from, bytes, 0, length);
+        buffer.setBytes(to, bytes, 0, length);
     }
 
     @Override
-    public void onTestStarted(RunId runId, TestId testId) {
-        writeEventType(onTestStarted);
-        writeRunId(runId);
-        writeTestId(testId);
+    protected byte readEventType() {
+        byte type = super.readEventType();
+        int payloadLength = readVarInt(buffer);
+        frameEnd = buffer.position() + payloadLength;
+        int additions = readVarInt(buffer);
+        int newStringCount = additions >>> 1;
+        for (int i = 0; i < newStringCount; i++) {
+            receivedStrings.add(StringEncoding.readCompactString(buffer));
+        }
+        if ((additions & 1) != 0) {
+            int newFrameCount = readVarInt(buffer);
+            for (int i = 0; i < newFrameCount; i++) {
+                receivedFrames.add(readFrameDefinition());
+            }
+        }
+        return type;
+    }
+
+    long getFrameEnd() {
+        return frameEnd;
     }
 
     @Override
-    public void onPrintedOut(RunId runId, String text) {
-        writeEventType(onPrintedOut);
-        writeRunId(runId);
-        writeString(text);
+    protected void decodeUnknownEventType(byte type) {
+        // skipped; written by a newer version
     }
 
+    // shared values
+
     @Override
-    public void onPrintedErr(RunId runId, String text) {
-        writeEventType(onPrintedErr);
-        writeRunId(runId);
-        writeString(text);
+    protected void writeOutput(String text) {
+        StringEncoding.writeCompressibleString(buffer, text, compressor);
     }
 
     @Override
-    public void onFailure(RunId runId, StackTrace cause) {
-        writeEventType(onFailure);
-        writeRunId(runId);
-        writeStackTrace(cause);
+    protected void writeTestFile(TestFile testFile) {
+        messageTestFile = testFile;
+        writeSharedString(testFile.getPath());
     }
 
     @Override
-    public void onTestFinished(RunId runId) {
-        writeEventType(onTestFinished);
-        writeRunId(runId);
+    protected TestFile readTestFile() {
+        String path = readSharedString();
+        TestFile testFile = receivedTestFiles.get(path);
+        if (testFile == null) {
+            testFile = TestFile.fromPath(Paths.get(path));
+            receivedTestFiles.put(path, testFile);
+        }
+        return testFile;
     }
 
     @Override
-    public void onRunFinished(RunId runId) {
-        writeEventType(onRunFinished);
-        writeRunId(runId);
+    protected void writeRunId(RunId runId) {
+        messageRunId = runId;
+        super.writeRunId(runId);
     }
 
     @Override
-    public void onTestFileFinished(TestFile testFile) {
-        writeEventType(onTestFileFinished);
-        writeTestFile(testFile);
+    protected void writeStackTrace(StackTrace stackTrace) {
+        writeSharedString(stackTrace.getExceptionClass());
+        writeString(stackTrace.toString());
+        writeNullableString(stackTrace.getMessage());
+        writeVarInt(buffer, innermostFrameId(stackTrace.getStackTrace()));
+        Throwable cause = stackTrace.getCause();
+        writeLength(cause == null ? 0 : 1);
+        if (cause != null) {
+            writeStackTrace((StackTrace) cause);
+        }
+        Throwable[] suppressed = stackTrace.getSuppressed();
+        writeLength(suppressed.length);
+        for (Throwable t : suppressed) {
+            writeStackTrace((StackTrace) t);
+        }
     }
 
     @Override
-    public void onSuiteFinished() {
-        writeEventType(onSuiteFinished);
+    protected StackTrace readStackTrace() {
+        StackTrace.Builder builder = new StackTrace.Builder()
+                .setExceptionClass(readSharedString())
+                .setToString(readString())
+                .setMessage(readNullableString())
+                .setStackTrace(stackTraceOf(readVarInt(buffer)));
+        if (readLength() == 1) {
+            builder.setCause(readStackTrace());
+        }
+        Throwable[] suppressed = new Throwable[readLength()];
+        for (int i = 0; i < suppressed.length; i++) {
+            suppressed[i] = readStackTrace();
+        }
+        return builder.setSuppressed(suppressed).build();
+    }
+
+    private int innermostFrameId(StackTraceElement[] elements) {
+        int frameId = NO_FRAME;
+        for (int i = elements.length - 1; i >= 0; i--) {
+            Frame frame = new Frame(frameId, elements[i]);
+            Integer id = sentFrameIds.get(frame);
+            if (id == null) {
+                id = FRAME_ID_OFFSET + sentFrameIds.size();
+                sentFrameIds.put(frame, id);
+                frame.classNameId = sharedStringId(frame.element.getClassName());
+                frame.methodNameId = sharedStringId(frame.element.getMethodName());
+                frame.fileNameId = sharedStringId(frame.element.getFileName());
+                newFrames.add(frame);
+            }
+            frameId = id;
+        }
+        return frameId;
     }
 
+    private Frame readFrameDefinition() {
+        int callerId = readVarInt(buffer);
+        String className = sharedString(readVarInt(buffer));
+        String methodName = sharedString(readVarInt(buffer));
+        String fileName = sharedString(readVarInt(buffer));
+        int lineNumber = readSignedVarInt(buffer);
+        Frame frame = new Frame(callerId, new StackTraceElement(className, methodName, fileName, lineNumber));
+        frame.depth = callerId == NO_FRAME ? 1 : receivedFrame(callerId).depth + 1;
+        return frame;
+    }
 
-    // TestFile
+    private StackTraceElement[] stackTraceOf(int frameId) {
+        if (frameId == NO_FRAME) {
+            return new StackTraceElement[0];
+        }
+        Frame frame = receivedFrame(frameId);
+        StackTraceElement[] elements = new StackTraceElement[frame.depth];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = frame.element;
+            if (frame.callerId != NO_FRAME) {
+                frame = receivedFrame(frame.callerId);
+            }
+        }
+        return elements;
+    }
 
-    private void writeTestFile(TestFile testFile) {
-        writeString(testFile.getPath());
+    private Frame receivedFrame(int frameId) {
+        return receivedFrames.get(frameId - FRAME_ID_OFFSET);
     }
 
-    private TestFile readTestFile() {
-        return TestFile.fromPath(Paths.get(readString()));
+    protected void writeSharedString(String s) {
+        writeVarInt(buffer, sharedStringId(s));
     }
 
-    // TestId
+    protected String readSharedString() {
+        return sharedString(readVarInt(buffer));
+    }
 
-    private void writeTestId(TestId testId) {
-        writeIntArray(testId.getPath());
+    private int sharedStringId(String s) {
+        if (s == null) {
+            return SHARED_NULL;
+        }
+        Integer id = sentStringIds.get(s);
+        if (id == null) {
+            id = SHARED_ID_OFFSET + sentStringIds.size();
+            sentStringIds.put(s, id);
+            newStrings.add(s);
+        }
+        return id;
     }
 
-    private TestId readTestId() {
-        return TestId.of(readIntArray());
+    private String sharedString(int id) {
+        if (id == SHARED_NULL) {
+            return null;
+        }
+        return receivedStrings.get(id - SHARED_ID_OFFSET);
     }
 
-    // RunId
+    // primitives
 
-    private void writeRunId(RunId runId) {
-        buffer.writeInt(runId.toInt());
+    @Override
+    protected void writeInt(int value) {
+        writeSignedVarInt(buffer, value);
     }
 
-    private RunId readRunId() {
-        return new RunId(buffer.readInt());
+    @Override
+    protected int readInt() {
+        return readSignedVarInt(buffer);
     }
 
-    // StackTrace
+    @Override
+    protected void writeLength(int length) {
+        writeVarInt(buffer, length);
+    }
 
-    void writeStackTrace(StackTrace stackTrace) {
-        writeString(stackTrace.getExceptionClass());
-        writeString(stackTrace.toString());
-        writeNullableString(stackTrace.getMessage());
-        writeStackTraceElements(stackTrace.getStackTrace());
-        writeOptionalException(stackTrace.getCause());
-        writeExceptions(stackTrace.getSuppressed());
+    @Override
+    protected int readLength() {
+        return readVarInt(buffer);
     }
 
-    StackTrace readStackTrace() {
-        return new StackTrace.Builder()
-                .setExceptionClass(readString())
-                .setToString(readString())
-                .setMessage(readNullableString())
-                .setStackTrace(readStackTraceElements())
-                .setCause(readOptionalException())
-                .setSuppressed(readExceptions())
-                .build();
+    @Override
+    protected void writeIntArray(int[] values) {
+        writeLength(values.length);
+        for (int value : values) {
+            writeVarInt(buffer, value);
+        }
     }
 
-    private void writeStackTraceElements(StackTraceElement[] elements) {
-        writeArray(elements, this::writeStackTraceElement);
+    @Override
+    protected int[] readIntArray() {
+        int[] values = new int[readLength()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readVarInt(buffer);
+        }
+        return values;
     }
 
-    private StackTraceElement[] readStackTraceElements() {
-        return readArray(this::readStackTraceElement, StackTraceElement[]::new);
+    @Override
+    protected String readString() {
+        return StringEncoding.readCompactString(buffer);
     }
 
-    private void writeStackTraceElement(StackTraceElement element) {
-        writeString(element.getClassName());
-        writeString(element.getMethodName());
-        writeNullableString(element.getFileName());
-        buffer.writeInt(element.getLineNumber());
+    @Override
+    protected void writeString(String s) {
+        StringEncoding.writeCompactString(buffer, s);
     }
 
-    private StackTraceElement readStackTraceElement() {
-        String className = readString();
-        String methodName = readString();
-        String fileName = readNullableString();
-        int lineNumber = buffer.readInt();
-        return new StackTraceElement(className, methodName, fileName, lineNumber);
+    @Override
+    protected String readNullableString() {
+        return StringEncoding.readCompactNullableString(buffer);
     }
 
-    // Throwable (assumed to be StackTrace at runtime)
+    @Override
+    protected void writeNullableString(String s) {
+        StringEncoding.writeCompactNullableString(buffer, s);
+    }
+
+
+    /**
+     * Goes through a message before it's written, to add its shared values to the tables
+     * and to estimate its length. Errs on the long side, because a too long estimate costs
+     * only a few bytes of padding in the frame's length, but a too short one costs moving
+     * the whole message.
+     */
+    @NotThreadSafe
+    private class MessagePreview extends NullSuiteListener {
+        private int length;
+
+        public int of(Event<SuiteListener> message) {
+            length = 2 * MAX_BYTES; // the table additions header and a run id
+            message.fireOn(this);
+            for (String s : newStrings) {
+                add(s);
+            }
+            length += newFrames.size() * 5 * MAX_BYTES;
+            return length;
+        }
 
-    private void writeOptionalException(Throwable exception) {
-        writeExceptions(exception == null ? new Throwable[0] : new Throwable[]{exception});
-    }
+        private void add(String s) {
+            // one byte per char is usual, because the strings are compact
+            length += MAX_BYTES + (s == null ? 0 : s.length());
+        }
 
-    private Throwable readOptionalException() {
-        Throwable[] exceptions = readExceptions();
-        return exceptions.length == 0 ? null : exceptions[0];
-    }
+        private void add(TestFile testFile) {
+            sharedStringId(testFile.getPath());
+            length += MAX_BYTES;
+        }
 
-    private void writeExceptions(Throwable[] exceptions) {
-        writeArray(exceptions, this::writeException);
-    }
+        private void add(StackTrace stackTrace) {
+            sharedStringId(stackTrace.getExceptionClass());
+            add(stackTrace.toString());
+            add(stackTrace.getMessage());
+            innermostFrameId(stackTrace.getStackTrace());
+            length += 4 * MAX_BYTES;
+            Throwable cause = stackTrace.getCause();
+            if (cause != null) {
+                add((StackTrace) cause);
+            }
+            for (Throwable t : stackTrace.getSuppressed()) {
+                add((StackTrace) t);
+            }
+        }
 
-    private Throwable[] readExceptions() {
-        return readArray(this::readException, Throwable[]::new);
-    }
+        @Override
+        public void onInternalError(String message, StackTrace cause) {
+            add(message);
+            add(cause);
+        }
+
+        @Override
+        public void onTestFileFound(TestFile testFile) {
+            add(testFile);
+        }
+
+        @Override
+        public void onTestFound(TestFile testFile, TestId testId, String name) {
+            add(testFile);
+            length += MAX_BYTES * (1 + testId.getPath().length);
+            add(name);
+        }
+
+        @Override
+        public void onRunStarted(RunId runId, TestFile testFile) {
+            add(testFile);
+        }
+
+        @Override
+        public void onPrintedOut(RunId runId, String text) {
+            add(text);
+        }
+
+        @Override
+        public void onPrintedErr(RunId runId, String text) {
+            add(text);
+        }
 
-    private void writeException(Throwable exception) {
-        writeStackTrace((StackTrace) exception);
+        @Override
+        public void onFailure(RunId runId, StackTrace cause) {
+            add(cause);
+        }
+
+        @Override
+        public void onTestFileFinished(TestFile testFile) {
+            add(testFile);
+        }
+
+        @Override
+        public void onStartupTimeline(StartupTimeline timeline) {
+            for (String phase : timeline.getPhases()) {
+                add(phase);
+                length += 8;
+            }
+        }
     }
 
-    private Throwable readException() {
-        return readStackTrace();
+    @NotThreadSafe
+    private static class Frame {
+        final int callerId;
+        final StackTraceElement element;
+
+        // writer side
+        int classNameId;
+        int methodNameId;
+        int fileNameId;
+
+        // reader side
+        int depth;
+
+        Frame(int callerId, StackTraceElement element) {
+            this.callerId = callerId;
+            this.element = element;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Frame)) {
+                return false;
+            }
+            Frame that = (Frame) obj;
+            return this.callerId == that.callerId && this.element.equals(that.element);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * callerId + element.hashCode();
+        }
     }
 }
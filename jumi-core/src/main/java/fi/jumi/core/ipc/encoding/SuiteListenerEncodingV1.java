@@ -0,0 +1,185 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * The original encoding, which has fixed-size integers and UTF-16 strings.
+ * Still needed for reading the results of older daemons. The events are encoded by the
+ * generated {@link SuiteListenerEncodingBase}, except that printed output is a hook for
+ * the newer versions.
+ *
+ * @see SuiteListenerEncoding
+ */
+@NotThreadSafe
+public class SuiteListenerEncodingV1 extends SuiteListenerEncodingBase {
+
+    public SuiteListenerEncodingV1(IpcBuffer buffer) {
+        super(buffer);
+    }
+
+
+    // encoding events
+
+    @Override
+    public void onPrintedOut(RunId runId, String text) {
+        writeEventType(onPrintedOut);
+        writeRunId(runId);
+        writeOutput(text);
+    }
+
+    @Override
+    public void onPrintedErr(RunId runId, String text) {
+        writeEventType(onPrintedErr);
+        writeRunId(runId);
+        writeOutput(text);
+    }
+
+
+    // output
+
+    protected void writeOutput(String text) {
+        writeString(text);
+    }
+
+    // TestFile
+
+    @Override
+    protected void writeTestFile(TestFile testFile) {
+        writeString(testFile.getPath());
+    }
+
+    @Override
+    protected TestFile readTestFile() {
+        return TestFile.fromPath(Paths.get(readString()));
+    }
+
+    // TestId
+
+    @Override
+    protected void writeTestId(TestId testId) {
+        writeIntArray(testId.getPath());
+    }
+
+    @Override
+    protected TestId readTestId() {
+        return TestId.of(readIntArray());
+    }
+
+    // RunId
+
+    @Override
+    protected void writeRunId(RunId runId) {
+        writeInt(runId.toInt());
+    }
+
+    @Override
+    protected RunId readRunId() {
+        return new RunId(readInt());
+    }
+
+    // StartupTimeline
+
+    @Override
+    protected void writeStartupTimeline(StartupTimeline timeline) {
+        List<String> phases = timeline.getPhases();
+        writeLength(phases.size());
+        for (String phase : phases) {
+            writeString(phase);
+            writeLong(timeline.getTimestamp(phase));
+        }
+    }
+
+    @Override
+    protected StartupTimeline readStartupTimeline() {
+        StartupTimeline timeline = StartupTimeline.EMPTY;
+        int length = readLength();
+        for (int i = 0; i < length; i++) {
+            timeline = timeline.with(readString(), readLong());
+        }
+        return timeline;
+    }
+
+    // StackTrace
+
+    @Override
+    protected void writeStackTrace(StackTrace stackTrace) {
+        writeString(stackTrace.getExceptionClass());
+        writeString(stackTrace.toString());
+        writeNullableString(stackTrace.getMessage());
+        writeStackTraceElements(stackTrace.getStackTrace());
+        writeOptionalException(stackTrace.getCause());
+        writeExceptions(stackTrace.getSuppressed());
+    }
+
+    @Override
+    protected StackTrace readStackTrace() {
+        return new StackTrace.Builder()
+                .setExceptionClass(readString())
+                .setToString(readString())
+                .setMessage(readNullableString())
+                .setStackTrace(readStackTraceElements())
+                .setCause(readOptionalException())
+                .setSuppressed(readExceptions())
+                .build();
+    }
+
+    private void writeStackTraceElements(StackTraceElement[] elements) {
+        writeArray(elements, this::writeStackTraceElement);
+    }
+
+    private StackTraceElement[] readStackTraceElements() {
+        return readArray(this::readStackTraceElement, StackTraceElement[]::new);
+    }
+
+    private void writeStackTraceElement(StackTraceElement element) {
+        writeString(element.getClassName());
+        writeString(element.getMethodName());
+        writeNullableString(element.getFileName());
+        writeInt(element.getLineNumber());
+    }
+
+    private StackTraceElement readStackTraceElement() {
+        String className = readString();
+        String methodName = readString();
+        String fileName = readNullableString();
+        int lineNumber = readInt();
+        return new StackTraceElement(className, methodName, fileName, lineNumber);
+    }
+
+    // Throwable (assumed to be StackTrace at runtime)
+
+    private void writeOptionalException(Throwable exception) {
+        writeExceptions(exception == null ? new Throwable[0] : new Throwable[]{exception});
+    }
+
+    private Throwable readOptionalException() {
+        Throwable[] exceptions = readExceptions();
+        return exceptions.length == 0 ? null : exceptions[0];
+    }
+
+    private void writeExceptions(Throwable[] exceptions) {
+        writeArray(exceptions, this::writeException);
+    }
+
+    private Throwable[] readExceptions() {
+        return readArray(this::readException, Throwable[]::new);
+    }
+
+    private void writeException(Throwable exception) {
+        writeStackTrace((StackTrace) exception);
+    }
+
+    private Throwable readException() {
+        return readStackTrace();
+    }
+}
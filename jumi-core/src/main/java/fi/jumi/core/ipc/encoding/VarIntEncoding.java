@@ -0,0 +1,78 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Variable-length integers: 7 bits per byte, least significant group first,
+ * and the high bit set on all but the last byte. Values under 128 take one byte.
+ */
+@ThreadSafe
+public class VarIntEncoding {
+
+    public static final int MAX_BYTES = 5;
+
+    /**
+     * Treats the value as unsigned, so negative values take the maximum 5 bytes.
+     */
+    public static void writeVarInt(IpcBuffer target, int value) {
+        while ((value & ~0x7F) != 0) {
+            target.writeByte((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        target.writeByte((byte) value);
+    }
+
+    /**
+     * Writes the value in exactly {@code size} bytes, by padding it with high bits, so that
+     * a length can be reserved before the value is known. Readers read it as any other varint.
+     */
+    public static void writePaddedVarInt(IpcBuffer target, int value, int size) {
+        if (size < sizeOfVarInt(value) || size > MAX_BYTES) {
+            throw new IllegalArgumentException("cannot write " + value + " in " + size + " bytes");
+        }
+        for (int i = 1; i < size; i++) {
+            target.writeByte((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        target.writeByte((byte) value);
+    }
+
+    public static int readVarInt(IpcBuffer source) {
+        int value = 0;
+        for (int i = 0; i < MAX_BYTES; i++) {
+            byte b = source.readByte();
+            value |= (b & 0x7F) << (i * 7);
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint at index " + (source.position() - MAX_BYTES));
+    }
+
+    /**
+     * ZigZag encoded, so that small negative values also take only one byte.
+     */
+    public static void writeSignedVarInt(IpcBuffer target, int value) {
+        writeVarInt(target, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readSignedVarInt(IpcBuffer source) {
+        int value = readVarInt(source);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static int sizeOfVarInt(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
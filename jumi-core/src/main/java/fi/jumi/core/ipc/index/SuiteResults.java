@@ -0,0 +1,131 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.index;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.dirs.SuiteDir;
+import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.*;
+import java.io.IOException;
+import java.nio.file.Path;
+
+@ThreadSafe
+public class SuiteResults {
+
+    /**
+     * Writes the suite results together with their {@link SuiteResultsIndex}.
+     */
+    public static IpcWriter<SuiteListener> indexedWriter(SuiteDir suiteDir) throws IOException {
+        SuiteResultsIndexWriter index = new SuiteResultsIndexWriter(suiteDir.getSuiteResultsIndexPath());
+        IpcWriter<SuiteListener> results = IpcChannel.growingFileWriter(suiteDir.getSuiteResultsPath(),
+                buffer -> new SuiteListenerEncoding(buffer, index));
+        return new IndexedWriter(results, index);
+    }
+
+    /**
+     * Lets the test threads write their events without going through a single writer thread.
+     * The results are not indexed.
+     */
+    public static IpcWriter<SuiteListener> multiProducerWriter(SuiteDir suiteDir) {
+        return IpcChannel.multiProducerWriter(suiteDir.getSuiteResultsPath(), SuiteListenerEncoding::new);
+    }
+
+    /**
+     * Reads all the events, whichever of the above writers wrote them.
+     */
+    public static IpcReader<SuiteListener> reader(Path suiteResults) {
+        if (MergingIpcReader.isMultiProducer(suiteResults)) {
+            return IpcChannel.mergingReader(suiteResults, SuiteListenerEncoding::new, new SuiteListenerEventizer());
+        }
+        return IpcChannel.growingFileReader(suiteResults, SuiteListenerEncoding::new);
+    }
+
+    /**
+     * Reads only the events of one run, seeking to them using the index.
+     */
+    public static IpcReader<SuiteListener> runReader(Path suiteResults, RunId runId) throws IOException {
+        SuiteResultsIndex index = readIndexOf(suiteResults);
+        return seekingReader(suiteResults, index, index.messagesOf(runId));
+    }
+
+    /**
+     * Reads only the events about one test file, including the events of its runs.
+     */
+    public static IpcReader<SuiteListener> testFileReader(Path suiteResults, TestFile testFile) throws IOException {
+        SuiteResultsIndex index = readIndexOf(suiteResults);
+        return seekingReader(suiteResults, index, index.messagesOf(testFile));
+    }
+
+    private static SuiteResultsIndex readIndexOf(Path suiteResults) throws IOException {
+        return SuiteResultsIndex.read(new SuiteDir(suiteResults.getParent()).getSuiteResultsIndexPath());
+    }
+
+    private static IpcReader<SuiteListener> seekingReader(Path suiteResults, SuiteResultsIndex index, long[] messages) {
+        IpcProtocol<SuiteListener> protocol = IpcChannel.growingFileRandomAccessReader(suiteResults, SuiteListenerEncoding::new);
+        return new SeekingIpcReader<>(protocol, index.tableAdditions(), messages);
+    }
+
+
+    @NotThreadSafe
+    private static class IndexedWriter implements IpcWriter<SuiteListener> {
+        private final IpcWriter<SuiteListener> results;
+        private final SuiteResultsIndexWriter index;
+
+        public IndexedWriter(IpcWriter<SuiteListener> results, SuiteResultsIndexWriter index) {
+            this.results = results;
+            this.index = index;
+        }
+
+        @Override
+        public void send(Event<SuiteListener> message) {
+            try {
+                results.send(message);
+            } catch (Throwable t) {
+                index.onPublishFailed();
+                throw t;
+            }
+            publishIndex();
+        }
+
+        @Override
+        public void sendBatch(Iterable<Event<SuiteListener>> messages) {
+            try {
+                results.sendBatch(messages);
+            } catch (Throwable t) {
+                index.onPublishFailed();
+                throw t;
+            }
+            publishIndex();
+        }
+
+        private void publishIndex() {
+            try {
+                index.onPublished();
+            } catch (IOException e) {
+                throw Boilerplate.rethrow(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            results.close();
+            try {
+                index.close();
+            } catch (IOException e) {
+                throw Boilerplate.rethrow(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Boilerplate.toString(getClass(), results);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.index;
+
+import fi.jumi.core.api.*;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Where in a suite results file are the messages of each run and test file, so that
+ * they can be read without decoding everything before them. The messages which add
+ * to the string and stack frame tables are listed separately, because they must be
+ * decoded before the messages which refer to those tables.
+ * <p>
+ * The index file is a header followed by records: a test file record defines the path
+ * of the next test file id, and a message record has the position of the message,
+ * whether it has table additions, its run id and its test file id (or zero).
+ * A record which was cut short, e.g. because the daemon died, is ignored.
+ */
+@Immutable
+public class SuiteResultsIndex {
+
+    static final byte[] MAGIC_BYTES = "JumiIndex".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT_VERSION = 1;
+    static final int TEST_FILE_RECORD = 1;
+    static final int MESSAGE_RECORD = 2;
+    static final int NONE = 0;
+
+    private static final long[] NO_MESSAGES = new long[0];
+
+    private final long[] tableAdditions;
+    private final Map<RunId, long[]> messagesOfRuns;
+    private final Map<TestFile, long[]> messagesOfTestFiles;
+
+    private SuiteResultsIndex(long[] tableAdditions, Map<RunId, long[]> messagesOfRuns, Map<TestFile, long[]> messagesOfTestFiles) {
+        this.tableAdditions = tableAdditions;
+        this.messagesOfRuns = messagesOfRuns;
+        this.messagesOfTestFiles = messagesOfTestFiles;
+    }
+
+    public static SuiteResultsIndex read(Path indexPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            checkHeader(in, indexPath);
+
+            List<Long> tableAdditions = new ArrayList<>();
+            Map<RunId, List<Long>> messagesOfRuns = new HashMap<>();
+            Map<TestFile, List<Long>> messagesOfTestFiles = new HashMap<>();
+            List<TestFile> testFiles = new ArrayList<>();
+            try {
+                while (true) {
+                    int recordType = in.readByte();
+                    if (recordType == TEST_FILE_RECORD) {
+                        testFiles.add(TestFile.fromPath(Paths.get(in.readUTF())));
+
+                    } else if (recordType == MESSAGE_RECORD) {
+                        long messageStart = in.readLong();
+                        boolean hasTableAdditions = in.readBoolean();
+                        int runId = in.readInt();
+                        int testFileId = in.readInt();
+                        if (hasTableAdditions) {
+                            tableAdditions.add(messageStart);
+                        }
+                        if (runId != NONE) {
+                            add(messagesOfRuns, new RunId(runId), messageStart);
+                        }
+                        if (testFileId != NONE) {
+                            add(messagesOfTestFiles, testFiles.get(testFileId - 1), messageStart);
+                        }
+
+                    } else {
+                        throw new IOException("unknown record type " + recordType + " in " + indexPath);
+                    }
+                }
+            } catch (EOFException e) {
+                // end of index
+            }
+            return new SuiteResultsIndex(toArray(tableAdditions), toArrays(messagesOfRuns), toArrays(messagesOfTestFiles));
+        }
+    }
+
+    private static void checkHeader(DataInputStream in, Path indexPath) throws IOException {
+        byte[] magic = new byte[MAGIC_BYTES.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC_BYTES)) {
+            throw new IOException("not a suite results index: " + indexPath);
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported index format version " + version + " in " + indexPath);
+        }
+    }
+
+    private static <K> void add(Map<K, List<Long>> map, K key, long messageStart) {
+        List<Long> messages = map.get(key);
+        if (messages == null) {
+            messages = new ArrayList<>();
+            map.put(key, messages);
+        }
+        messages.add(messageStart);
+    }
+
+    private static <K> Map<K, long[]> toArrays(Map<K, List<Long>> map) {
+        Map<K, long[]> result = new HashMap<>();
+        for (Map.Entry<K, List<Long>> entry : map.entrySet()) {
+            result.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static long[] toArray(List<Long> list) {
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Messages which must be decoded, in this order, before any of the later messages.
+     */
+    public long[] tableAdditions() {
+        return tableAdditions.clone();
+    }
+
+    public long[] messagesOf(RunId runId) {
+        return get(messagesOfRuns, runId);
+    }
+
+    /**
+     * Messages which are about the test file, including all messages of its runs.
+     */
+    public long[] messagesOf(TestFile testFile) {
+        return get(messagesOfTestFiles, testFile);
+    }
+
+    private static <K> long[] get(Map<K, long[]> map, K key) {
+        long[] messages = map.get(key);
+        return messages != null ? messages.clone() : NO_MESSAGES;
+    }
+}
@@ -0,0 +1,97 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.index;
+
+import fi.jumi.core.api.*;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static fi.jumi.core.ipc.index.SuiteResultsIndex.*;
+
+/**
+ * Writes the index of a suite results file. The messages of a run are indexed
+ * also under the test file of the run.
+ * <p>
+ * The records of the messages are held back until the messages have been published,
+ * so that the index will not point the readers to a message which they cannot read yet.
+ *
+ * @see SuiteResultsIndex
+ */
+@NotThreadSafe
+public class SuiteResultsIndexWriter implements SuiteResultsIndexer, Closeable {
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream unpublishedBytes = new ByteArrayOutputStream();
+    private final DataOutputStream unpublished = new DataOutputStream(unpublishedBytes);
+    private final Map<TestFile, Integer> testFileIds = new HashMap<>();
+    private final Map<RunId, Integer> testFileIdsOfRuns = new HashMap<>();
+
+    public SuiteResultsIndexWriter(Path indexPath) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath)));
+        out.write(MAGIC_BYTES);
+        out.writeInt(FORMAT_VERSION);
+    }
+
+    @Override
+    public void onMessage(long messageStart, boolean hasTableAdditions, RunId runId, TestFile testFile) {
+        try {
+            int testFileId = testFile != null ? testFileId(testFile) : NONE;
+            if (runId != null && testFile != null) {
+                testFileIdsOfRuns.put(runId, testFileId);
+            }
+            if (runId != null && testFile == null) {
+                Integer runsTestFile = testFileIdsOfRuns.get(runId);
+                testFileId = runsTestFile != null ? runsTestFile : NONE;
+            }
+            if (!hasTableAdditions && runId == null && testFileId == NONE) {
+                return;
+            }
+            unpublished.writeByte(MESSAGE_RECORD);
+            unpublished.writeLong(messageStart);
+            unpublished.writeBoolean(hasTableAdditions);
+            unpublished.writeInt(runId != null ? runId.toInt() : NONE);
+            unpublished.writeInt(testFileId);
+        } catch (IOException e) {
+            throw Boilerplate.rethrow(e);
+        }
+    }
+
+    private int testFileId(TestFile testFile) throws IOException {
+        Integer id = testFileIds.get(testFile);
+        if (id == null) {
+            id = testFileIds.size() + 1;
+            testFileIds.put(testFile, id);
+            out.writeByte(TEST_FILE_RECORD);
+            out.writeUTF(testFile.getPath());
+        }
+        return id;
+    }
+
+    /**
+     * Writes the records of the messages which have been published since the previous call.
+     * Called once per batch, so that the index is flushed only once per batch.
+     */
+    public void onPublished() throws IOException {
+        unpublishedBytes.writeTo(out);
+        unpublishedBytes.reset();
+        out.flush();
+    }
+
+    /**
+     * Forgets the records of the messages which were not published because writing them failed.
+     */
+    public void onPublishFailed() {
+        unpublishedBytes.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,22 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.index;
+
+import fi.jumi.core.api.*;
+
+public interface SuiteResultsIndexer {
+
+    /**
+     * Called for each message after it has been encoded, but before it has been published.
+     * The record of the message must not be visible to the readers until the message is.
+     *
+     * @param messageStart      position of the message in the suite results, as needed by
+     *                          {@link fi.jumi.core.ipc.channel.IpcProtocol#decodeMessageAt}
+     * @param hasTableAdditions whether the message adds to the tables which the later messages refer to
+     * @param runId             the run which the message is about, or {@code null}
+     * @param testFile          the test file which the message is about, or {@code null}
+     */
+    void onMessage(long messageStart, boolean hasTableAdditions, RunId runId, TestFile testFile);
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -104,6 +104,11 @@ public class RunEventDenormalizer implements SuiteListener {
         assertShouldNotBeCalled();
     }
 
+    @Override
+    public final void onStartupTimeline(StartupTimeline timeline) {
+        assertShouldNotBeCalled();
+    }
+
     private static void assertShouldNotBeCalled() {
         throw new AssertionError("should not be called; not a run-specific event");
     }
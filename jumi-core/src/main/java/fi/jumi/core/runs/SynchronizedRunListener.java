@@ -0,0 +1,75 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.runs;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.RunId;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Lets the test threads call a {@link RunListener} directly instead of through an actor.
+ * Unlike with an actor, incorrect notifier API usage fails in the test thread.
+ */
+@ThreadSafe
+public class SynchronizedRunListener implements RunListener {
+
+    private final RunListener listener;
+
+    public SynchronizedRunListener(RunListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized void onInternalError(String message, Throwable cause) {
+        listener.onInternalError(message, cause);
+    }
+
+    @Override
+    public synchronized void onTestFound(TestId testId, String name) {
+        listener.onTestFound(testId, name);
+    }
+
+    @Override
+    public synchronized void onRunStarted(RunId runId) {
+        listener.onRunStarted(runId);
+    }
+
+    @Override
+    public synchronized void onTestStarted(RunId runId, TestId testId) {
+        listener.onTestStarted(runId, testId);
+    }
+
+    @Override
+    public synchronized void onPrintedOut(RunId runId, String text) {
+        listener.onPrintedOut(runId, text);
+    }
+
+    @Override
+    public synchronized void onPrintedErr(RunId runId, String text) {
+        listener.onPrintedErr(runId, text);
+    }
+
+    @Override
+    public synchronized void onFailure(RunId runId, TestId testId, Throwable cause) {
+        listener.onFailure(runId, testId, cause);
+    }
+
+    @Override
+    public synchronized void onTestFinished(RunId runId, TestId testId) {
+        listener.onTestFinished(runId, testId);
+    }
+
+    @Override
+    public synchronized void onRunFinished(RunId runId) {
+        listener.onRunFinished(runId);
+    }
+
+    @Override
+    public String toString() {
+        return Boilerplate.toString(getClass(), listener);
+    }
+}
@@ -0,0 +1,186 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import javax.annotation.concurrent.*;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Notices when the class loader of a finished suite is not garbage collected, which would make
+ * a long-lived daemon eventually run out of metaspace. When a class loader has leaked, the daemon
+ * should be replaced with a new one.
+ * <p>
+ * Finding the exact GC root path would need a heap dump, so this reports only the usual suspects:
+ * threads which use the class loader, their thread locals and shutdown hooks.
+ */
+@ThreadSafe
+public class ClassLoaderLeakDetector {
+
+    private final List<TrackedClassLoader> tracked = new ArrayList<>();
+    private final int limit;
+    private int suiteCount = 0;
+
+    /**
+     * @param limit how many suites later a class loader is expected to have been garbage collected
+     */
+    public ClassLoaderLeakDetector(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Called after a suite has finished, with the class loader which nobody should use anymore.
+     */
+    public synchronized void track(ClassLoader classLoader) {
+        suiteCount++;
+        tracked.add(new TrackedClassLoader(classLoader, suiteCount));
+    }
+
+    /**
+     * Returns a description of each leaked class loader, or an empty list if there are none.
+     */
+    public synchronized List<String> findLeaks() {
+        removeCollected();
+        if (!hasOverdue()) {
+            return Collections.emptyList();
+        }
+        // weak references are cleared only by garbage collection, so without it even a collectable
+        // class loader would seem leaked in a daemon which hasn't allocated much since the suite
+        System.gc();
+        removeCollected();
+
+        List<String> leaks = new ArrayList<>();
+        for (TrackedClassLoader t : tracked) {
+            ClassLoader classLoader = t.get();
+            if (classLoader != null && isOverdue(t)) {
+                leaks.add(describeLeak(classLoader, t.suiteNumber));
+            }
+        }
+        return leaks;
+    }
+
+    private void removeCollected() {
+        for (Iterator<TrackedClassLoader> it = tracked.iterator(); it.hasNext(); ) {
+            if (it.next().get() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean hasOverdue() {
+        for (TrackedClassLoader t : tracked) {
+            if (isOverdue(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOverdue(TrackedClassLoader t) {
+        return suiteCount - t.suiteNumber >= limit;
+    }
+
+    private String describeLeak(ClassLoader classLoader, int suiteNumber) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("The class loader of suite #").append(suiteNumber)
+                .append(" was not garbage collected after ").append(suiteCount - suiteNumber).append(" later suites.");
+        List<String> referrers = findReferrers(classLoader);
+        if (referrers.isEmpty()) {
+            sb.append(" It was not referred to by threads, thread locals or shutdown hooks,"
+                    + " so it's probably in a static field of a library class. Take a heap dump to find it.");
+        } else {
+            sb.append(" It is referred to by:");
+            for (String referrer : referrers) {
+                sb.append("\n  - ").append(referrer);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<String> findReferrers(ClassLoader classLoader) {
+        List<String> referrers = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            findReferrers(classLoader, thread, "thread", referrers);
+            findThreadLocalReferrers(classLoader, thread, "threadLocals", referrers);
+            findThreadLocalReferrers(classLoader, thread, "inheritableThreadLocals", referrers);
+        }
+        for (Thread hook : getShutdownHooks()) {
+            findReferrers(classLoader, hook, "shutdown hook", referrers);
+        }
+        return referrers;
+    }
+
+    private static void findReferrers(ClassLoader classLoader, Thread thread, String kind, List<String> referrers) {
+        if (thread.getContextClassLoader() == classLoader) {
+            referrers.add(kind + " \"" + thread.getName() + "\" as its context class loader");
+        }
+        if (isDefinedBy(thread, classLoader)) {
+            referrers.add(kind + " \"" + thread.getName() + "\" of type " + thread.getClass().getName());
+        }
+    }
+
+    private static void findThreadLocalReferrers(ClassLoader classLoader, Thread thread, String mapField, List<String> referrers) {
+        try {
+            Object map = readField(Thread.class, mapField, thread);
+            if (map == null) {
+                return;
+            }
+            Object[] table = (Object[]) readField(map.getClass(), "table", map);
+            for (Object entry : table) {
+                if (entry == null) {
+                    continue;
+                }
+                Object key = ((WeakReference<?>) entry).get();
+                Object value = readField(entry.getClass(), "value", entry);
+                if (isDefinedBy(key, classLoader) || isDefinedBy(value, classLoader)) {
+                    referrers.add("thread local of thread \"" + thread.getName() + "\" with value of type "
+                            + (value == null ? null : value.getClass().getName()));
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the JVM's internals are not what we expected; settle for the other referrers
+        }
+    }
+
+    private static Collection<Thread> getShutdownHooks() {
+        try {
+            Class<?> hooksClass = Class.forName("java.lang.ApplicationShutdownHooks");
+            synchronized (hooksClass) {
+                Map<?, ?> hooks = (Map<?, ?>) readField(hooksClass, "hooks", null);
+                if (hooks == null) {
+                    return Collections.emptyList(); // the JVM is already shutting down
+                }
+                List<Thread> threads = new ArrayList<>();
+                for (Object hook : hooks.keySet()) {
+                    threads.add((Thread) hook);
+                }
+                return threads;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static Object readField(Class<?> type, String name, Object instance) throws ReflectiveOperationException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(instance);
+    }
+
+    private static boolean isDefinedBy(Object object, ClassLoader classLoader) {
+        return object != null && object.getClass().getClassLoader() == classLoader;
+    }
+
+    @NotThreadSafe
+    private static class TrackedClassLoader extends WeakReference<ClassLoader> {
+        final int suiteNumber;
+
+        TrackedClassLoader(ClassLoader classLoader, int suiteNumber) {
+            super(classLoader);
+            this.suiteNumber = suiteNumber;
+        }
+    }
+}
@@ -1,10 +1,10 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.suite;
 
-import fi.jumi.actors.ActorThread;
+import fi.jumi.actors.*;
 import fi.jumi.api.drivers.*;
 import fi.jumi.core.api.*;
 import fi.jumi.core.drivers.*;
@@ -23,14 +23,17 @@ public class DriverFactory {
     private final DriverFinder driverFinder;
     private final RunIdSequence runIdSequence;
     private final ClassLoader testClassLoader;
+    private final boolean directRunListeners;
 
-    public DriverFactory(SuiteListener suiteListener, ActorThread actorThread, OutputCapturer outputCapturer, DriverFinder driverFinder, RunIdSequence runIdSequence, ClassLoader testClassLoader) {
+    public DriverFactory(SuiteListener suiteListener, ActorThread actorThread, OutputCapturer outputCapturer, DriverFinder driverFinder, RunIdSequence runIdSequence, ClassLoader testClassLoader,
+                         boolean directRunListeners) {
         this.actorThread = actorThread;
         this.outputCapturer = outputCapturer;
         this.driverFinder = driverFinder;
         this.runIdSequence = runIdSequence;
         this.suiteListener = suiteListener;
         this.testClassLoader = testClassLoader;
+        this.directRunListeners = directRunListeners;
     }
 
     public DriverRunner createDriverRunner(TestFile testFile, Executor testExecutor) {
@@ -38,7 +41,7 @@ public class DriverFactory {
         Driver driver = driverFinder.findTestClassDriver(testClass);
 
         SuiteNotifier suiteNotifier = new ThreadBoundSuiteNotifier(
-                actorThread.bindActor(RunListener.class, new RunEventNormalizer(suiteListener, testFile)),
+                runListener(testFile),
                 runIdSequence,
                 outputCapturer
         );
@@ -46,6 +49,15 @@ public class DriverFactory {
         return new DriverRunner(driver, testClass, suiteNotifier, testExecutor);
     }
 
+    private ActorRef<RunListener> runListener(TestFile testFile) {
+        RunEventNormalizer normalizer = new RunEventNormalizer(suiteListener, testFile);
+        if (directRunListeners) {
+            // the suite listener must then be thread-safe
+            return ActorRef.wrap(new SynchronizedRunListener(normalizer));
+        }
+        return actorThread.bindActor(RunListener.class, normalizer);
+    }
+
     private static Class<?> loadTestClass(ClassLoader testClassLoader, TestFile testFile) {
         try {
             return testClassLoader.loadClass(testFile.getClassName());
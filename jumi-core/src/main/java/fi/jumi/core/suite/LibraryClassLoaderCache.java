@@ -0,0 +1,138 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import fi.jumi.core.util.*;
+
+import javax.annotation.concurrent.*;
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+/**
+ * Keeps the classes of library JARs loaded between suites, so that a reused daemon doesn't need to
+ * load, verify and JIT compile them again. The JARs are identified by their content, because build
+ * tools may overwrite a JAR in place.
+ * <p>
+ * Only the class loader of the latest set of libraries is kept, because a daemon is reused only
+ * for suites which were launched the same way, which usually means the same dependencies.
+ * Concurrent suites may still use older class loaders, so those are closed after their last suite
+ * has {@linkplain #release(ClassLoader) released} them.
+ */
+@ThreadSafe
+public class LibraryClassLoaderCache implements AutoCloseable {
+
+    private final Map<Path, JarHash> hashes = new HashMap<>();
+    private final Map<ClassLoader, Integer> users = new IdentityHashMap<>();
+    private final ClassLoader parent;
+
+    private List<String> cachedKey;
+    private URLClassLoader cachedLoader;
+
+    public LibraryClassLoaderCache(ClassLoader parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Returns the class loader of the libraries for a suite, which must release it after the suite has finished.
+     */
+    public synchronized ClassLoader getClassLoader(List<Path> libraries) {
+        List<String> key = new ArrayList<>();
+        for (Path library : libraries) {
+            key.add(contentHash(library));
+        }
+        if (!key.equals(cachedKey)) {
+            URLClassLoader previous = cachedLoader;
+            cachedLoader = new URLClassLoader(asUrls(libraries), parent);
+            cachedKey = key;
+            closeIfUnused(previous);
+        }
+        Integer count = users.get(cachedLoader);
+        users.put(cachedLoader, count == null ? 1 : count + 1);
+        return cachedLoader;
+    }
+
+    public synchronized void release(ClassLoader loader) {
+        Integer count = users.get(loader);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            users.put(loader, count - 1);
+            return;
+        }
+        users.remove(loader);
+        if (loader != cachedLoader) {
+            closeIfUnused((URLClassLoader) loader);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (cachedLoader != null) {
+            URLClassLoader loader = cachedLoader;
+            cachedLoader = null;
+            cachedKey = null;
+            closeIfUnused(loader);
+        }
+    }
+
+    private void closeIfUnused(URLClassLoader loader) {
+        if (loader == null || users.containsKey(loader)) {
+            return;
+        }
+        try {
+            loader.close();
+        } catch (IOException e) {
+            throw Boilerplate.rethrow(e);
+        }
+    }
+
+    private String contentHash(Path library) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(library, BasicFileAttributes.class);
+            JarHash hash = hashes.get(library);
+            if (hash == null || !hash.isUpToDate(attributes)) {
+                // hashing is needed only when the file has changed, to avoid reading the JARs for every suite
+                hash = new JarHash(attributes, Checksums.sha1(library));
+                hashes.put(library, hash);
+            }
+            return hash.sha1;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read the library " + library, e);
+        }
+    }
+
+    private static URL[] asUrls(List<Path> paths) {
+        URL[] urls = new URL[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+            try {
+                urls[i] = paths.get(i).toUri().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid library " + paths.get(i), e);
+            }
+        }
+        return urls;
+    }
+
+    @Immutable
+    private static class JarHash {
+        private final long size;
+        private final FileTime lastModified;
+        private final String sha1;
+
+        JarHash(BasicFileAttributes attributes, String sha1) {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+            this.sha1 = sha1;
+        }
+
+        boolean isUpToDate(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+        }
+    }
+}
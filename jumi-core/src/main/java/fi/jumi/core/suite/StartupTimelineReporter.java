@@ -0,0 +1,71 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.actors.queue.MessageSender;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.*;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static fi.jumi.core.api.StartupTimeline.*;
+
+/**
+ * Marks when the suite finds its first test file and starts its first test, and then adds the
+ * startup timeline to the suite's events. With multi-producer results the events may come from
+ * many test threads at once.
+ */
+@ThreadSafe
+public class StartupTimelineReporter implements MessageSender<Event<SuiteListener>> {
+
+    private final MessageSender<Event<SuiteListener>> target;
+    private final AtomicReference<StartupTimeline> unreported;
+
+    public static SuiteListener wrap(SuiteListener target, StartupTimeline timeline) {
+        SuiteListenerEventizer eventizer = new SuiteListenerEventizer();
+        return eventizer.newFrontend(new StartupTimelineReporter(eventizer.newBackend(target), timeline));
+    }
+
+    public StartupTimelineReporter(MessageSender<Event<SuiteListener>> target, StartupTimeline timeline) {
+        this.target = target;
+        this.unreported = new AtomicReference<>(timeline);
+    }
+
+    @Override
+    public void send(Event<SuiteListener> message) {
+        if (message instanceof OnTestFileFoundEvent) {
+            markFirst(FIRST_TEST_FILE_FOUND);
+        }
+        if (message instanceof OnSuiteFinishedEvent) {
+            report(); // no tests were run
+        }
+        target.send(message);
+        if (message instanceof OnTestStartedEvent) {
+            markFirst(FIRST_TEST_STARTED);
+            report();
+        }
+    }
+
+    private void markFirst(String phase) {
+        long now = System.currentTimeMillis();
+        StartupTimeline prev;
+        do {
+            prev = unreported.get();
+            if (prev == null || prev.hasPhase(phase)) {
+                return;
+            }
+        } while (!unreported.compareAndSet(prev, prev.with(phase, now)));
+    }
+
+    private void report() {
+        StartupTimeline timeline = unreported.getAndSet(null);
+        if (timeline != null) {
+            target.send(new OnStartupTimelineEvent(timeline));
+        }
+    }
+}
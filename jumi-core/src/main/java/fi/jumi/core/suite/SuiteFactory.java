@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -12,20 +12,28 @@ import fi.jumi.core.config.*;
 import fi.jumi.core.discovery.*;
 import fi.jumi.core.drivers.*;
 import fi.jumi.core.events.*;
+import fi.jumi.core.ipc.dirs.TestFileClaims;
 import fi.jumi.core.runs.RunIdSequence;
 import fi.jumi.core.stdout.OutputCapturer;
 import fi.jumi.core.util.*;
 
 import javax.annotation.concurrent.NotThreadSafe;
-import java.io.PrintStream;
+import java.io.*;
 import java.net.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
 
+/**
+ * The context of one suite: its class loader, threads, actors and run IDs. A daemon which runs
+ * multiple suites concurrently has one of these for each suite, all created by the same {@link SuiteHost}.
+ */
 @NotThreadSafe
 public class SuiteFactory implements AutoCloseable {
 
+    private static final long THREAD_POOL_TERMINATION_TIMEOUT = 1000;
+
+    private final SuiteHost host;
     private final DaemonConfiguration config;
     private final OutputCapturer outputCapturer;
     private final PrintStream logOutput;
@@ -36,21 +44,30 @@ public class SuiteFactory implements AutoCloseable {
     private ExecutorService actorThreadPool;
     ExecutorService testThreadPool;
     ClassLoader testClassLoader;
+    private ClassLoader librariesClassLoader;
     private TestFileFinder testFileFinder;
+    private ClaimingTestFileFinder claimingTestFileFinder;
     private CompositeDriverFinder driverFinder;
     private RunIdSequence runIdSequence;
     MultiThreadedActors actors;
 
-    public SuiteFactory(DaemonConfiguration daemonConfiguration, OutputCapturer outputCapturer, PrintStream logOutput, MessageListener messageListener) {
-        this.config = daemonConfiguration;
-        this.outputCapturer = outputCapturer;
-        this.logOutput = logOutput;
-        this.messageListener = messageListener;
+    SuiteFactory(SuiteHost host) {
+        this.host = host;
+        this.config = host.config;
+        this.outputCapturer = host.outputCapturer;
+        this.logOutput = host.logOutput;
+        this.messageListener = host.messageListener;
     }
 
     public void configure(SuiteConfiguration suite) {
-        testClassLoader = createClassLoader(suite.getClasspath());
+        testClassLoader = createClassLoader(suite);
         testFileFinder = createTestFileFinder(suite);
+        if (suite.getTestFileClaimsDir() != null) {
+            // this daemon is one of the workers of a forked suite
+            claimingTestFileFinder = new ClaimingTestFileFinder(testFileFinder,
+                    new TestFileClaims(Paths.get(suite.getTestFileClaimsDir())), config.getTestThreadsCountCalculated());
+            testFileFinder = claimingTestFileFinder;
+        }
         driverFinder = DriverFinderFactory.createDriverFinder(testClassLoader, logOutput);
         runIdSequence = new RunIdSequence();
 
@@ -60,13 +77,17 @@ public class SuiteFactory implements AutoCloseable {
                 new ContextClassLoaderThreadFactory(testClassLoader, new PrefixedThreadFactory("jumi-test-")));
     }
 
-    public void start(final SuiteListener suiteListener) {
+    public void start(SuiteListener suiteListener) {
+        if (claimingTestFileFinder != null) {
+            suiteListener = claimingTestFileFinder.freeThreadsOnTestFileFinished(suiteListener);
+        }
 
         // logging configuration
         FailureHandler failureHandler = new InternalErrorReportingFailureHandler(suiteListener, logOutput);
 
         // actor messages are already logged by the actors container, but the test thread pool must be hooked separately
-        Executor testExecutor = messageListener.getListenedExecutor(testThreadPool);
+        // (the test threads of all suites in this daemon are limited by the same budget)
+        Executor testExecutor = messageListener.getListenedExecutor(host.testThreads.limit(testThreadPool));
 
         // actors configuration
         // TODO: not all of these eventizers might be needed - create a statistics gathering EventizerProvider
@@ -86,10 +107,12 @@ public class SuiteFactory implements AutoCloseable {
         );
 
         // bootstrap the system
+        // (with multi-producer results the test threads write their events themselves, without an actor in between)
         ActorThread actorThread = actors.startActorThread();
         ActorRef<TestFileFinderListener> suiteRunner = actorThread.bindActor(TestFileFinderListener.class,
                 new SuiteRunner(
-                        new DriverFactory(suiteListener, actorThread, outputCapturer, driverFinder, runIdSequence, testClassLoader),
+                        new DriverFactory(suiteListener, actorThread, outputCapturer, driverFinder, runIdSequence, testClassLoader,
+                                config.getMultiProducerResults()),
                         suiteListener,
                         actorThread,
                         testExecutor,
@@ -100,6 +123,10 @@ public class SuiteFactory implements AutoCloseable {
         actorThreadPool.execute(new TestFileFinderRunner(testFileFinder, suiteRunner));
     }
 
+    /**
+     * Stops the threads of the suite and lets go of its classes, so that the suite's class loader
+     * can be garbage collected before running the next suite.
+     */
     @Override
     public void close() {
         if (actorThreadPool != null) {
@@ -108,13 +135,64 @@ public class SuiteFactory implements AutoCloseable {
         if (testThreadPool != null) {
             testThreadPool.shutdownNow();
         }
+        awaitTermination(actorThreadPool);
+        awaitTermination(testThreadPool);
+        if (testClassLoader instanceof URLClassLoader) {
+            try {
+                ((URLClassLoader) testClassLoader).close();
+            } catch (IOException e) {
+                e.printStackTrace(logOutput);
+            }
+        }
+        if (testClassLoader != null) {
+            host.leakDetector.track(testClassLoader);
+        }
+        if (librariesClassLoader != null) {
+            host.libraries.release(librariesClassLoader);
+        }
+        actorThreadPool = null;
+        testThreadPool = null;
+        testClassLoader = null;
+        librariesClassLoader = null;
+        testFileFinder = null;
+        claimingTestFileFinder = null;
+        driverFinder = null;
+        runIdSequence = null;
+        actors = null;
     }
 
-    private static ClassLoader createClassLoader(List<URI> classpath) {
+    private void awaitTermination(ExecutorService threadPool) {
+        if (threadPool == null) {
+            return;
+        }
+        try {
+            if (!threadPool.awaitTermination(THREAD_POOL_TERMINATION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logOutput.println("Some threads of the suite did not stop within " + THREAD_POOL_TERMINATION_TIMEOUT + " ms after being interrupted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ClassLoader createClassLoader(SuiteConfiguration suite) {
+        // library JARs are shared between suites, but the class directories and
+        // the isolated libraries are loaded again for every suite, so that changes to them are seen
+        PathMatcher isolated = suite.createIsolatedLibrariesMatcher(FileSystems.getDefault());
+        List<Path> sharedLibraries = new ArrayList<>();
+        List<URI> perSuite = new ArrayList<>();
+        for (URI uri : suite.getClasspath()) {
+            Path path = Paths.get(uri);
+            if (Files.isRegularFile(path) && !isolated.matches(path)) {
+                sharedLibraries.add(path);
+            } else {
+                perSuite.add(uri);
+            }
+        }
+        librariesClassLoader = host.libraries.getClassLoader(sharedLibraries);
         try {
-            return new URLClassLoader(asUrls(classpath));
+            return new URLClassLoader(asUrls(perSuite), librariesClassLoader);
         } catch (MalformedURLException e) {
-            throw new RuntimeException("Failed to create class loader for classpath " + classpath, e);
+            throw new RuntimeException("Failed to create class loader for classpath " + suite.getClasspath(), e);
         }
     }
 
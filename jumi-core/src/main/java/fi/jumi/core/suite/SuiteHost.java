@@ -0,0 +1,51 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import fi.jumi.actors.listeners.MessageListener;
+import fi.jumi.core.config.DaemonConfiguration;
+import fi.jumi.core.stdout.OutputCapturer;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * The part of the daemon which is shared by all of its suites. Each suite is run in its own
+ * {@link SuiteFactory}, isolated from the other suites, but the suites share the library JARs,
+ * the test threads and the detection of leaked class loaders.
+ */
+@ThreadSafe
+public class SuiteHost {
+
+    final DaemonConfiguration config;
+    final OutputCapturer outputCapturer;
+    final PrintStream logOutput;
+    final MessageListener messageListener;
+    final LibraryClassLoaderCache libraries = new LibraryClassLoaderCache(ClassLoader.getSystemClassLoader());
+    final ClassLoaderLeakDetector leakDetector;
+    final TestThreadBudget testThreads;
+
+    public SuiteHost(DaemonConfiguration daemonConfiguration, OutputCapturer outputCapturer, PrintStream logOutput, MessageListener messageListener) {
+        this.config = daemonConfiguration;
+        this.outputCapturer = outputCapturer;
+        this.logOutput = logOutput;
+        this.messageListener = messageListener;
+        this.leakDetector = new ClassLoaderLeakDetector(daemonConfiguration.getClassLoaderLeakLimit());
+        this.testThreads = new TestThreadBudget(daemonConfiguration.getTestThreadsCountCalculated());
+    }
+
+    public SuiteFactory newSuite() {
+        return new SuiteFactory(this);
+    }
+
+    /**
+     * Returns a description of the class loaders of earlier suites which have not been garbage
+     * collected within the {@link DaemonConfiguration#getClassLoaderLeakLimit() limit}.
+     */
+    public List<String> findLeakedClassLoaders() {
+        return leakDetector.findLeaks();
+    }
+}
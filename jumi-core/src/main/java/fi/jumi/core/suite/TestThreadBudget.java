@@ -0,0 +1,79 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.*;
+import java.util.concurrent.*;
+
+/**
+ * Limits how many tests the concurrent suites of a daemon may run at the same time, so that they
+ * together use only as many threads as one suite would. The suites take turns in the order that
+ * their tests became ready to run, so that a big suite will not starve the smaller ones.
+ */
+@ThreadSafe
+public class TestThreadBudget {
+
+    private final Semaphore threads;
+
+    public TestThreadBudget(int threads) {
+        this.threads = new Semaphore(threads, true);
+    }
+
+    public Executor limit(Executor executor) {
+        return new LimitedExecutor(executor);
+    }
+
+
+    @ThreadSafe
+    private class LimitedExecutor implements Executor {
+        private final Executor executor;
+
+        public LimitedExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(new Limited(command));
+        }
+
+        @Override
+        public String toString() {
+            return Boilerplate.toString(getClass(), executor);
+        }
+    }
+
+    @ThreadSafe
+    private class Limited implements Runnable {
+        private final Runnable command;
+
+        public Limited(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                threads.acquire();
+            } catch (InterruptedException e) {
+                // the suite was stopped before it got its turn
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                command.run();
+            } finally {
+                threads.release();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return command.toString();
+        }
+    }
+}
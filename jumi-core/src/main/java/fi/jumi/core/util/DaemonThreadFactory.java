@@ -0,0 +1,28 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.util;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * For background threads which should not keep the JVM alive.
+ */
+@ThreadSafe
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private final ThreadFactory threadFactory;
+
+    public DaemonThreadFactory(String prefix) {
+        this.threadFactory = new PrefixedThreadFactory(prefix);
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread t = threadFactory.newThread(r);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.util;
+
+import fi.jumi.core.api.StartupTimeline;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collects the phases of starting a suite as they happen, in whichever threads they happen.
+ */
+@ThreadSafe
+public class StartupPhases {
+
+    private final AtomicReference<StartupTimeline> timeline = new AtomicReference<>(StartupTimeline.EMPTY);
+
+    public void mark(String phase) {
+        mark(phase, System.currentTimeMillis());
+    }
+
+    public void mark(String phase, long timestamp) {
+        StartupTimeline prev;
+        do {
+            prev = timeline.get();
+        } while (!timeline.compareAndSet(prev, prev.with(phase, timestamp)));
+    }
+
+    /**
+     * Returns the phases marked so far and starts over, so that the phases of starting
+     * a process are reported only with the first suite which it runs.
+     */
+    public StartupTimeline takeAll() {
+        return timeline.getAndSet(StartupTimeline.EMPTY);
+    }
+}
@@ -0,0 +1,47 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.api;
+
+import org.junit.Test;
+
+import static fi.jumi.core.api.StartupTimeline.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class StartupTimelineTest {
+
+    @Test
+    public void is_a_value_object() {
+        StartupTimeline t1a = EMPTY.with(LAUNCHER_BUILD, 100);
+        StartupTimeline t1b = EMPTY.with(LAUNCHER_BUILD, 100);
+        StartupTimeline t2 = EMPTY.with(LAUNCHER_BUILD, 101);
+
+        assertTrue("equals: same value", t1a.equals(t1b));
+        assertFalse("equals: different value", t1a.equals(t2));
+        assertFalse("equals: null", t1a.equals(null));
+
+        assertTrue("hashCode: same value", t1a.hashCode() == t1b.hashCode());
+    }
+
+    @Test
+    public void keeps_the_phases_in_the_order_they_were_added() {
+        StartupTimeline launcher = EMPTY.with(LAUNCHER_BUILD, 100).with(PROCESS_SPAWN, 120);
+        StartupTimeline daemon = EMPTY.with(DAEMON_MAIN_ENTRY, 300);
+
+        StartupTimeline timeline = launcher.plus(daemon);
+
+        assertThat(timeline.getPhases(), contains(LAUNCHER_BUILD, PROCESS_SPAWN, DAEMON_MAIN_ENTRY));
+        assertThat(timeline.getTimestamp(DAEMON_MAIN_ENTRY), is(300L));
+        assertThat(timeline.hasPhase(NETTY_CONNECT), is(false));
+    }
+
+    @Test
+    public void toString_shows_the_phases_relative_to_the_first_phase() {
+        StartupTimeline timeline = EMPTY.with(LAUNCHER_BUILD, 100).with(PROCESS_SPAWN, 120);
+
+        assertThat(timeline.toString(), is("launcher build +0 ms, process spawn +20 ms"));
+    }
+}
@@ -1,9 +1,10 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.config;
 
+import fi.jumi.core.ipc.channel.WaitStrategies;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
 
@@ -100,6 +101,22 @@ public class DaemonConfigurationTest {
         configuration();
     }
 
+    // standby
+
+    @Test
+    public void standby_daemons_have_no_launcher_port() {
+        builder.setLauncherPort(DaemonConfiguration.DEFAULTS.getLauncherPort())
+                .setStandby(true);
+
+        assertThat(configuration().isStandby(), is(true));
+        assertThat(configuration().getLauncherPort(), is(DaemonConfiguration.DEFAULTS.getLauncherPort()));
+    }
+
+    @Test
+    public void daemons_are_by_default_not_standby() {
+        assertThat(configuration().isStandby(), is(false));
+    }
+
 
     // ## System Properties ##
 
@@ -187,6 +204,86 @@ public class DaemonConfigurationTest {
         assertThat(configuration().getIdleTimeout(), is(greaterThanOrEqualTo(ONE_SECOND)));
     }
 
+    // ipcCommandsWaitStrategy & ipcResultsWaitStrategy
+
+    @Test
+    public void ipc_wait_strategies_can_be_changed_for_each_kind_of_channel() {
+        builder.setIpcCommandsWaitStrategy(WaitStrategies.ADAPTIVE);
+        builder.setIpcResultsWaitStrategy(WaitStrategies.PARK);
+
+        assertThat(configuration().getIpcCommandsWaitStrategy(), is(WaitStrategies.ADAPTIVE));
+        assertThat(configuration().getIpcResultsWaitStrategy(), is(WaitStrategies.PARK));
+    }
+
+    @Test
+    public void ipc_wait_strategies_default_to_progressive_sleep() {
+        assertThat(configuration().getIpcCommandsWaitStrategy(), is(WaitStrategies.PROGRESSIVE_SLEEP));
+        assertThat(configuration().getIpcResultsWaitStrategy(), is(WaitStrategies.PROGRESSIVE_SLEEP));
+    }
+
+    // writerTimeout
+
+    @Test
+    public void writer_timeout_can_be_changed() {
+        builder.setWriterTimeout(42L);
+
+        assertThat(configuration().getWriterTimeout(), is(42L));
+    }
+
+    @Test
+    public void writer_timeout_has_a_default_value() {
+        assertThat(configuration().getWriterTimeout(), is(greaterThanOrEqualTo(ONE_SECOND)));
+    }
+
+    // multiProducerResults
+
+    @Test
+    public void multi_producer_results_can_be_enabled() {
+        builder.setMultiProducerResults(true);
+
+        assertThat(configuration().getMultiProducerResults(), is(true));
+    }
+
+    @Test
+    public void multi_producer_results_defaults_to_disabled() {
+        assertThat(configuration().getMultiProducerResults(), is(false));
+    }
+
+    // classLoaderLeakLimit
+
+    @Test
+    public void class_loader_leak_limit_can_be_changed() {
+        builder.setClassLoaderLeakLimit(42);
+
+        assertThat(configuration().getClassLoaderLeakLimit(), is(42));
+    }
+
+    @Test
+    public void class_loader_leak_limit_has_a_default_value() {
+        assertThat(configuration().getClassLoaderLeakLimit(), is(greaterThanOrEqualTo(1)));
+    }
+
+    // concurrentSuites
+
+    @Test
+    public void concurrent_suites_can_be_changed() {
+        builder.setConcurrentSuites(40);
+
+        assertThat(configuration().getConcurrentSuites(), is(40));
+    }
+
+    @Test
+    public void concurrent_suites_defaults_to_one_suite_at_a_time() {
+        assertThat(configuration().getConcurrentSuites(), is(1));
+    }
+
+    @Test
+    public void concurrent_suites_must_be_at_least_one() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("concurrent suites must be at least 1, but was 0");
+        builder.setConcurrentSuites(0);
+    }
+
 
     // helpers
 
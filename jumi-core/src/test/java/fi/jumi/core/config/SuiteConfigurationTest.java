@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -137,6 +137,48 @@ public class SuiteConfigurationTest {
         assertThat("shouldn't anymore exclude inner classes", matcher, matches(Paths.get("Test$Test.class")));
     }
 
+
+    // isolatedLibraries
+
+    @Test
+    public void isolated_libraries_can_be_changed() {
+        builder.setIsolatedLibraries("glob:old-*.jar")
+                .setIsolatedLibraries("glob:foo-*.jar", "glob:bar-*.jar");
+
+        assertThat(configuration().getIsolatedLibraries(), is(asList("glob:foo-*.jar", "glob:bar-*.jar")));
+    }
+
+    @Test
+    public void isolated_libraries_can_be_added_to() {
+        builder.setIsolatedLibraries("glob:foo-*.jar")
+                .addIsolatedLibraries("glob:bar-*.jar");
+
+        assertThat(configuration().getIsolatedLibraries(), is(asList("glob:foo-*.jar", "glob:bar-*.jar")));
+    }
+
+    @Test
+    public void disallows_invalid_isolated_libraries_patterns() {
+        thrown.expect(IllegalArgumentException.class);
+        builder.addIsolatedLibraries("garbage");
+    }
+
+    @Test
+    public void isolated_libraries_are_matched_by_their_file_name() {
+        builder.setIsolatedLibraries("glob:mocker-*.jar");
+
+        PathMatcher matcher = configuration().createIsolatedLibrariesMatcher(FileSystems.getDefault());
+        assertThat(matcher, matches(Paths.get("lib/mocker-1.0.jar")));
+        assertThat(matcher, not(matches(Paths.get("lib/other-1.0.jar"))));
+    }
+
+    @Test
+    public void by_default_mocking_frameworks_with_their_own_class_loading_are_isolated() {
+        PathMatcher matcher = configuration().createIsolatedLibrariesMatcher(FileSystems.getDefault());
+        assertThat(matcher, matches(Paths.get("lib/powermock-core-1.6.4.jar")));
+        assertThat(matcher, matches(Paths.get("lib/jmockit-1.21.jar")));
+        assertThat(matcher, not(matches(Paths.get("lib/junit-4.12.jar"))));
+    }
+
     @Test
     public void test_file_matcher_by_default_matches_classes_ending_with_Test_in_all_packages() {
         PathMatcher matcher = configuration().createTestFileMatcher(FileSystems.getDefault());
@@ -170,6 +212,40 @@ public class SuiteConfigurationTest {
     }
 
 
+    // forkCount
+
+    @Test
+    public void fork_count_can_be_changed() {
+        builder.setForkCount(3);
+
+        assertThat(configuration().getForkCount(), is(3));
+    }
+
+    @Test
+    public void fork_count_defaults_to_one_daemon() {
+        assertThat(configuration().getForkCount(), is(1));
+    }
+
+    @Test
+    public void disallows_fork_counts_less_than_one() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("fork count must be at least 1, but was 0");
+        builder.setForkCount(0);
+    }
+
+    @Test
+    public void the_test_file_claims_directory_can_be_changed() {
+        builder.setTestFileClaimsDir(Paths.get("claims").toUri());
+
+        assertThat(configuration().getTestFileClaimsDir(), is(Paths.get("claims").toUri()));
+    }
+
+    @Test
+    public void the_test_file_claims_directory_defaults_to_none() {
+        assertThat(configuration().getTestFileClaimsDir(), is(nullValue()));
+    }
+
+
     // helpers
 
     private SuiteConfiguration configuration() {
@@ -0,0 +1,93 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.discovery;
+
+import fi.jumi.actors.ActorRef;
+import fi.jumi.core.api.*;
+import fi.jumi.core.ipc.dirs.TestFileClaims;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ClaimingTestFileFinderTest {
+
+    private static final TestFile TEST_FILE_1 = TestFile.fromClassName("Test1");
+    private static final TestFile TEST_FILE_2 = TestFile.fromClassName("Test2");
+    private static final TestFile TEST_FILE_3 = TestFile.fromClassName("Test3");
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final TestFileFinder finder = listener -> {
+        listener.tell().onTestFileFound(TEST_FILE_1);
+        listener.tell().onTestFileFound(TEST_FILE_2);
+        listener.tell().onTestFileFound(TEST_FILE_3);
+        listener.tell().onAllTestFilesFound();
+    };
+
+    private TestFileClaims claims;
+
+    @Before
+    public void setup() throws Exception {
+        claims = TestFileClaims.create(tempDir.getRoot().toPath());
+    }
+
+    @Test
+    public void finds_only_the_test_files_which_it_claims_first() throws Exception {
+        claims.tryClaim(TEST_FILE_2); // claimed by another worker
+        ClaimingTestFileFinder claimingFinder = new ClaimingTestFileFinder(finder, claims, 3);
+        RecordingListener listener = new RecordingListener();
+
+        claimingFinder.findTestFiles(ActorRef.<TestFileFinderListener>wrap(listener));
+
+        assertThat(listener.found, contains(TEST_FILE_1, TEST_FILE_3));
+        assertThat(listener.allFound.getCount(), is(0L));
+    }
+
+    @Test
+    public void claims_the_next_test_file_only_after_a_test_thread_is_free() throws Exception {
+        ClaimingTestFileFinder claimingFinder = new ClaimingTestFileFinder(finder, claims, 2);
+        RecordingListener listener = new RecordingListener();
+        SuiteListener suiteListener = claimingFinder.freeThreadsOnTestFileFinished(new NullSuiteListener());
+
+        Thread finderThread = new Thread(() -> claimingFinder.findTestFiles(ActorRef.<TestFileFinderListener>wrap(listener)));
+        finderThread.start();
+        try {
+            assertThat("before any test file finished", listener.allFound.await(100, TimeUnit.MILLISECONDS), is(false));
+            assertThat(listener.found, contains(TEST_FILE_1, TEST_FILE_2));
+            assertThat("another worker may still claim it", claims.tryClaim(TEST_FILE_3), is(true));
+
+            suiteListener.onTestFileFinished(TEST_FILE_1);
+
+            assertThat("after a test file finished", listener.allFound.await(1, TimeUnit.SECONDS), is(true));
+            assertThat(listener.found, contains(TEST_FILE_1, TEST_FILE_2));
+        } finally {
+            finderThread.interrupt();
+            finderThread.join();
+        }
+    }
+
+
+    private static class RecordingListener implements TestFileFinderListener {
+
+        public final List<TestFile> found = new CopyOnWriteArrayList<>();
+        public final CountDownLatch allFound = new CountDownLatch(1);
+
+        @Override
+        public void onTestFileFound(TestFile testFile) {
+            found.add(testFile);
+        }
+
+        @Override
+        public void onAllTestFilesFound() {
+            allFound.countDown();
+        }
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -13,7 +13,7 @@ import fi.jumi.core.config.*;
 import fi.jumi.core.ipc.api.CommandListener;
 import fi.jumi.core.ipc.channel.*;
 import fi.jumi.core.ipc.dirs.*;
-import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+import fi.jumi.core.ipc.index.SuiteResults;
 import fi.jumi.core.util.TestingExecutor;
 import org.junit.*;
 import org.junit.rules.*;
@@ -56,6 +56,15 @@ public class IpcCommunicationTest {
 
     @Test
     public void launcher_tells_daemon_to_runTests_and_daemon_replies() throws Exception {
+        launcherRunsTestsOnDaemon(false);
+    }
+
+    @Test
+    public void daemon_replies_also_with_multi_producer_results() throws Exception {
+        launcherRunsTestsOnDaemon(true);
+    }
+
+    private void launcherRunsTestsOnDaemon(boolean multiProducerResults) throws Exception {
         SuiteConfiguration expectedSuiteConfiguration = new SuiteConfigurationBuilder()
                 .addJvmOptions("-some-options")
                 .freeze();
@@ -72,14 +81,14 @@ public class IpcCommunicationTest {
             @Override
             public void shutdown() {
             }
-        }));
+        }, WaitSettings.DEFAULTS, multiProducerResults));
 
-        IpcCommandSender sender = new IpcCommandSender(commandDir, executor);
+        IpcCommandSender sender = new IpcCommandSender(commandDir, executor, WaitSettings.DEFAULTS);
         Future<Path> suiteResults = sender.runTests(expectedSuiteConfiguration);
         sender.close();
 
         SuiteListener suiteListener = mock(SuiteListener.class);
-        IpcReaders.decodeAll(IpcChannel.reader(suiteResults.get(), SuiteListenerEncoding::new), suiteListener);
+        IpcReaders.decodeAll(SuiteResults.reader(suiteResults.get()), suiteListener);
         verify(suiteListener).onSuiteStarted();
         verify(suiteListener).onSuiteFinished();
         verifyNoMoreInteractions(suiteListener);
@@ -0,0 +1,129 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.buffer;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class GrowingFileByteBufferSequenceTest extends ByteBufferSequenceContract {
+
+    private static final int REGION_SIZE = 10;
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final ManualExecutor premapper = new ManualExecutor();
+
+    @Override
+    protected ByteBufferSequence newByteBufferSequence() {
+        return new GrowingFileByteBufferSequence(getPath(), REGION_SIZE, false, premapper);
+    }
+
+    private Path getPath() {
+        return tempDir.getRoot().toPath().resolve("buffer");
+    }
+
+
+    @Test
+    public void all_regions_are_stored_in_the_same_file() throws IOException {
+        ByteBufferSequence sequence = newByteBufferSequence();
+
+        sequence.get(0);
+        sequence.get(1);
+        sequence.get(2);
+
+        assertThat(Files.size(getPath()), is(3L * REGION_SIZE));
+        assertThat(tempDir.getRoot().list(), is(arrayContaining("buffer")));
+    }
+
+    @Test
+    public void maps_the_next_region_in_the_background() throws IOException {
+        ByteBufferSequence sequence = newByteBufferSequence();
+
+        sequence.get(0);
+        assertThat("before background task", Files.size(getPath()), is(1L * REGION_SIZE));
+
+        premapper.runPendingTasks();
+        assertThat("after background task", Files.size(getPath()), is(2L * REGION_SIZE));
+    }
+
+    @Test
+    public void uses_the_premapped_region_when_the_next_region_is_requested() {
+        ByteBufferSequence sequence = newByteBufferSequence();
+        sequence.get(0);
+        premapper.runPendingTasks();
+
+        sequence.get(1).put((byte) 123);
+
+        assertThat(sequence.get(1).get(), is((byte) 123));
+    }
+
+    @Test
+    public void maps_the_next_region_itself_if_the_background_thread_has_not_yet_done_it() throws IOException {
+        ByteBufferSequence sequence = newByteBufferSequence();
+        sequence.get(0);
+
+        sequence.get(1);
+
+        assertThat(Files.size(getPath()), is(2L * REGION_SIZE));
+    }
+
+    @Test
+    public void the_reader_and_writer_using_the_same_path_will_access_the_same_data() {
+        // we test only multiple instances, but the basic idea of memory-mapped files is the same
+        ByteBufferSequence writer = new GrowingFileByteBufferSequence(getPath(), REGION_SIZE, false, premapper);
+        ByteBufferSequence reader = new GrowingFileByteBufferSequence(getPath(), REGION_SIZE, true, premapper);
+
+        writer.get(0).put((byte) 1);
+        writer.get(1).put((byte) 2);
+
+        assertThat(reader.get(0).get(), is((byte) 1));
+        assertThat(reader.get(1).get(), is((byte) 2));
+    }
+
+    @Test
+    public void the_reader_does_not_extend_the_file() throws IOException {
+        ByteBufferSequence writer = new GrowingFileByteBufferSequence(getPath(), REGION_SIZE, false, premapper);
+        ByteBufferSequence reader = new GrowingFileByteBufferSequence(getPath(), REGION_SIZE, true, premapper);
+        writer.get(0);
+        premapper.tasks.clear();
+
+        reader.get(0);
+        premapper.runPendingTasks();
+
+        assertThat(Files.size(getPath()), is(1L * REGION_SIZE));
+        thrown.expect(RuntimeException.class);
+        thrown.expectMessage("failed to map region 1 of " + getPath());
+        reader.get(1);
+    }
+
+
+    private static class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runPendingTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
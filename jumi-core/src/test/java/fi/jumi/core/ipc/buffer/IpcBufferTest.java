@@ -1,4 +1,4 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -8,8 +8,12 @@ import fi.jumi.core.util.TestableRandom;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.*;
 
 public class IpcBufferTest {
@@ -57,13 +61,33 @@ public class IpcBufferTest {
         verify(sequence, times(1)).get(1);
     }
 
+    @Test
+    public void can_jump_directly_to_any_segment_when_segments_have_varying_sizes() {
+        // like FileSegmenter: doubling segment sizes until the max size
+        FixedByteBufferSequence sequence = spy(new FixedByteBufferSequence(1, 2, 4, 8, 8, 8, 8, 8));
+        IpcBuffer buffer = new IpcBuffer(sequence);
+        int end = 1 + 2 + 4 + 8 * 5;
+        for (int i = 0; i < end; i++) {
+            buffer.setByte(i, (byte) i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            int index = random.nextInt(end);
+            assertThat("byte at index " + index, buffer.getByte(index), is((byte) index));
+        }
+
+        for (int segment = 0; segment < 8; segment++) {
+            verify(sequence, times(1)).get(segment);
+        }
+    }
+
     @Test
     public void position_can_be_changed() {
         buffer = new IpcBuffer(new FixedByteBufferSequence(10));
-        assertThat(buffer.position(), is(0));
+        assertThat(buffer.position(), is(0L));
 
         buffer.position(5);
-        assertThat(buffer.position(), is(5));
+        assertThat(buffer.position(), is(5L));
     }
 
     @Test
@@ -90,6 +114,21 @@ public class IpcBufferTest {
         buffer.setByte(-1, (byte) 0);
     }
 
+    @Test
+    public void positions_are_not_limited_to_2_GB() {
+        // all segments share the same memory, so that the test will not need gigabytes of it
+        ByteBuffer sharedMemory = ByteBuffer.allocate(1024 * 1024);
+        buffer = new IpcBuffer(index -> sharedMemory);
+        long position = Integer.MAX_VALUE - 2L;
+
+        buffer.position(position);
+        buffer.writeLong(0x0102030405060708L);
+
+        assertThat(buffer.position(), is(position + 8));
+        assertThat(buffer.getLong(position), is(0x0102030405060708L));
+        assertThat(buffer.getByte(Integer.MAX_VALUE + 1L), is((byte) 0x04));
+    }
+
     @Test
     public void test_traversing_forward_and_backward() {
         final int segmentCapacity = 2;
@@ -107,6 +146,65 @@ public class IpcBufferTest {
         }
     }
 
+    // forward-only
+
+    @Test
+    public void forward_only_buffer_releases_the_segments_before_the_given_index() {
+        buffer = IpcBuffer.forwardOnly(new FixedByteBufferSequence(1, 2, 4, 8, 8, 8));
+        int end = 1 + 2 + 4 + 8 * 3;
+        for (int i = 0; i < end; i++) {
+            buffer.setByte(i, (byte) i);
+        }
+
+        buffer.releaseBefore(1 + 2 + 4 + 1);
+
+        assertThat("first segment after the released ones", buffer.getByte(1 + 2 + 4), is((byte) 7));
+        assertThat("last segment", buffer.getByte(end - 1), is((byte) (end - 1)));
+        thrown.expect(IllegalStateException.class);
+        thrown.expectMessage("released");
+        buffer.getByte(1 + 2 + 4 - 1);
+    }
+
+    @Test
+    public void forward_only_buffer_tells_a_releasable_sequence_which_segments_were_released() {
+        ReleasableByteBufferSequence sequence = mock(ReleasableByteBufferSequence.class);
+        when(sequence.get(anyInt())).thenAnswer(invocation -> ByteBuffer.allocate(10));
+        buffer = IpcBuffer.forwardOnly(sequence);
+        buffer.setByte(35, (byte) 0);
+
+        buffer.releaseBefore(20);
+        buffer.releaseBefore(25);
+
+        verify(sequence).release(0);
+        verify(sequence).release(1);
+        verify(sequence, never()).release(2);
+    }
+
+    @Test
+    public void forward_only_buffer_keeps_the_last_segment_for_finding_the_next_ones() {
+        AllocatedByteBufferSequence sequence = spy(new AllocatedByteBufferSequence(10));
+        buffer = IpcBuffer.forwardOnly(sequence);
+        buffer.setByte(15, (byte) 0);
+
+        buffer.releaseBefore(25);
+        buffer.setByte(25, (byte) 25);
+
+        assertThat(buffer.getByte(25), is((byte) 25));
+        verify(sequence, times(1)).get(1);
+        verify(sequence, times(1)).get(2);
+    }
+
+    @Test
+    public void releasing_does_nothing_unless_in_forward_only_mode() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(10));
+        buffer.setByte(5, (byte) 5);
+        buffer.setByte(15, (byte) 15);
+
+        buffer.releaseBefore(20);
+
+        assertThat(buffer.getByte(5), is((byte) 5));
+    }
+
 
     // absolute get/set
 
@@ -194,6 +292,122 @@ public class IpcBufferTest {
     }
 
 
+    // bulk get/set
+
+    /**
+     * Using an odd segment size and an odd start index, the values will be split at every possible place.
+     */
+    private static final int ODD_SEGMENT_SIZE = 3;
+    private static final int BULK_LENGTH = 20;
+
+    @Test
+    public void bulk_bytes() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(ODD_SEGMENT_SIZE));
+        byte[] original = new byte[BULK_LENGTH];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = random.nextByte();
+        }
+
+        buffer.position(1);
+        assertReturnedItself(buffer.writeBytes(original, 0, original.length));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH));
+
+        buffer.position(1);
+        for (byte expected : original) {
+            assertThat(buffer.readByte(), is(expected));
+        }
+
+        byte[] actual = new byte[BULK_LENGTH + 2];
+        buffer.position(1);
+        assertReturnedItself(buffer.readBytes(actual, 1, BULK_LENGTH));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH));
+        assertThat(Arrays.copyOfRange(actual, 1, 1 + BULK_LENGTH), is(original));
+        assertThat("untouched at start", actual[0], is((byte) 0));
+        assertThat("untouched at end", actual[BULK_LENGTH + 1], is((byte) 0));
+    }
+
+    @Test
+    public void bulk_ByteBuffer() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(ODD_SEGMENT_SIZE));
+        ByteBuffer original = ByteBuffer.allocate(BULK_LENGTH);
+        while (original.hasRemaining()) {
+            original.put(random.nextByte());
+        }
+        original.flip();
+
+        buffer.position(1);
+        assertReturnedItself(buffer.writeBytes(original));
+        assertThat("source position", original.position(), is(BULK_LENGTH));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH));
+
+        ByteBuffer actual = ByteBuffer.allocate(BULK_LENGTH);
+        buffer.position(1);
+        assertReturnedItself(buffer.readBytes(actual));
+        assertThat("destination position", actual.position(), is(BULK_LENGTH));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH));
+
+        original.flip();
+        actual.flip();
+        assertThat(actual, is(original));
+    }
+
+    @Test
+    public void bulk_chars() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(ODD_SEGMENT_SIZE));
+        char[] original = new char[BULK_LENGTH];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = random.nextChar();
+        }
+
+        buffer.position(1);
+        assertReturnedItself(buffer.writeChars(original, 0, original.length));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH * 2));
+
+        buffer.position(1);
+        for (char expected : original) {
+            assertThat(buffer.readChar(), is(expected));
+        }
+
+        char[] actual = new char[BULK_LENGTH];
+        buffer.position(1);
+        assertReturnedItself(buffer.readChars(actual, 0, actual.length));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH * 2));
+        assertThat(actual, is(original));
+    }
+
+    @Test
+    public void bulk_ints() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(ODD_SEGMENT_SIZE));
+        int[] original = new int[BULK_LENGTH];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = random.nextInt();
+        }
+
+        buffer.position(1);
+        assertReturnedItself(buffer.writeInts(original, 0, original.length));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH * 4));
+
+        buffer.position(1);
+        for (int expected : original) {
+            assertThat(buffer.readInt(), is(expected));
+        }
+
+        int[] actual = new int[BULK_LENGTH];
+        buffer.position(1);
+        assertReturnedItself(buffer.readInts(actual, 0, actual.length));
+        assertThat(buffer.position(), is(1L + BULK_LENGTH * 4));
+        assertThat(actual, is(original));
+    }
+
+    @Test
+    public void bulk_operations_check_the_array_bounds() {
+        buffer = new IpcBuffer(new AllocatedByteBufferSequence(ODD_SEGMENT_SIZE));
+
+        thrown.expect(IndexOutOfBoundsException.class);
+        buffer.writeBytes(new byte[10], 5, 6);
+    }
+
+
     // randomized testing
 
     private void testAbsolute(int sizeInBits, AbsoluteWriter writer, AbsoluteReader reader) {
@@ -1,4 +1,4 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -83,4 +83,28 @@ public class MappedByteBufferSequenceTest extends ByteBufferSequenceContract {
         thrown.expect(ReadOnlyBufferException.class);
         buffer.put((byte) 1);
     }
+
+    @Test
+    public void deletes_the_released_segment_files_if_asked_to() {
+        FileSegmenter segmenter = new FileSegmenter(getBasePath(), 10, 10);
+        MappedByteBufferSequence sequence = MappedByteBufferSequence.readWriteDeletingReleased(segmenter);
+        sequence.get(0);
+        sequence.get(1);
+
+        sequence.release(0);
+
+        assertThat("released", Files.exists(segmenter.pathOf(0)), is(false));
+        assertThat("not released", Files.exists(segmenter.pathOf(1)), is(true));
+    }
+
+    @Test
+    public void by_default_keeps_the_released_segment_files() {
+        FileSegmenter segmenter = new FileSegmenter(getBasePath(), 10, 10);
+        MappedByteBufferSequence sequence = MappedByteBufferSequence.readWrite(segmenter);
+        sequence.get(0);
+
+        sequence.release(0);
+
+        assertThat(Files.exists(segmenter.pathOf(0)), is(true));
+    }
 }
@@ -0,0 +1,52 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class AdaptiveWaitStrategyTest {
+
+    private final WaitStrategy idleStrategy = mock(WaitStrategy.class);
+    private long currentTime = 0;
+    private final AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy(100, idleStrategy) {
+        @Override
+        long nanoTime() {
+            return currentTime;
+        }
+    };
+
+    @Test
+    public void spins_while_the_writer_is_active() {
+        currentTime = 99;
+        waitStrategy.snooze();
+
+        verify(idleStrategy, never()).snooze();
+    }
+
+    @Test
+    public void falls_back_to_the_idle_strategy_when_the_writer_has_been_idle_long_enough() {
+        currentTime = 100;
+        waitStrategy.snooze();
+        waitStrategy.snooze();
+
+        verify(idleStrategy, times(2)).snooze();
+    }
+
+    @Test
+    public void new_messages_make_the_writer_active_again() {
+        currentTime = 100;
+        waitStrategy.snooze();
+
+        waitStrategy.reset();
+        waitStrategy.snooze();
+        currentTime = 150;
+        waitStrategy.snooze();
+
+        verify(idleStrategy).reset();
+        verify(idleStrategy, times(1)).snooze();
+    }
+}
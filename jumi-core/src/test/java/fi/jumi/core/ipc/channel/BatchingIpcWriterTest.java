@@ -0,0 +1,140 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.actors.SingleThreadedActors;
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.actors.eventizers.dynamic.DynamicEventizerProvider;
+import fi.jumi.actors.listeners.*;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.suiteListener.*;
+import org.junit.Test;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BatchingIpcWriterTest {
+
+    private int flushesRequested = 0;
+    private final SingleThreadedActors actors = new SingleThreadedActors(new DynamicEventizerProvider(), new CrashEarlyFailureHandler(), new NullMessageListener() {
+        @Override
+        public void onMessageSent(Object message) {
+            flushesRequested++;
+        }
+    });
+    private final SpyIpcWriter target = new SpyIpcWriter();
+    private final BatchingIpcWriter<SuiteListener> writer = new BatchingIpcWriter<>(target, actors.startActorThread());
+
+    private final Event<SuiteListener> event1 = new OnRunStartedEvent(new RunId(1), TestFile.fromClassName("DummyTest"));
+    private final Event<SuiteListener> event2 = new OnRunFinishedEvent(new RunId(1));
+    private final Event<SuiteListener> event3 = new OnSuiteFinishedEvent();
+
+    @Test
+    public void messages_are_written_on_the_actor_thread() {
+        writer.send(event1);
+
+        assertThat(target.batches, is(empty()));
+        actors.processEventsUntilIdle();
+        assertThat(target.batches, contains(Arrays.asList(event1)));
+    }
+
+    @Test
+    public void messages_which_queued_up_since_the_previous_write_are_written_as_one_batch() {
+        writer.send(event1);
+        writer.send(event2);
+        actors.processEventsUntilIdle();
+        writer.send(event3);
+        actors.processEventsUntilIdle();
+
+        assertThat(target.batches, contains(Arrays.asList(event1, event2), Arrays.asList(event3)));
+    }
+
+    @Test
+    public void requests_only_one_flush_at_a_time() {
+        writer.send(event1);
+        writer.send(event2);
+        writer.sendBatch(Collections.singletonList(event3));
+        assertThat("before the flush", flushesRequested, is(1));
+
+        actors.processEventsUntilIdle();
+        writer.send(event1);
+        assertThat("after the flush", flushesRequested, is(2));
+    }
+
+    @Test
+    public void closes_the_target_after_writing_the_messages_sent_before_closing() {
+        writer.send(event1);
+        writer.close();
+        actors.processEventsUntilIdle();
+
+        assertThat(target.batches, contains(Arrays.asList(event1)));
+        assertThat(target.closed, is(1));
+    }
+
+    @Test
+    public void ignores_messages_after_closing() {
+        writer.close();
+        actors.processEventsUntilIdle();
+        writer.send(event1);
+        writer.close();
+        actors.processEventsUntilIdle();
+
+        assertThat(target.batches, is(empty()));
+        assertThat(target.closed, is(1));
+    }
+
+    @Test
+    public void a_batch_which_failed_to_be_written_is_reported_and_the_later_messages_are_still_written() {
+        List<Throwable> failures = new ArrayList<>();
+        SingleThreadedActors actors = new SingleThreadedActors(new DynamicEventizerProvider(),
+                (actor, message, exception) -> failures.add(exception), new NullMessageListener());
+        BatchingIpcWriter<SuiteListener> writer = new BatchingIpcWriter<>(target, actors.startActorThread());
+        target.failOn = event2;
+
+        writer.send(event1);
+        writer.send(event2);
+        actors.processEventsUntilIdle();
+        writer.send(event3);
+        writer.close();
+        actors.processEventsUntilIdle();
+
+        assertThat("failures", failures, hasSize(1));
+        assertThat(target.batches, contains(Arrays.asList(event3)));
+        assertThat(target.closed, is(1));
+    }
+
+
+    @NotThreadSafe
+    private static class SpyIpcWriter implements IpcWriter<SuiteListener> {
+        final List<List<Event<SuiteListener>>> batches = new ArrayList<>();
+        int closed = 0;
+        Event<SuiteListener> failOn;
+
+        @Override
+        public void send(Event<SuiteListener> message) {
+            sendBatch(Collections.singletonList(message));
+        }
+
+        @Override
+        public void sendBatch(Iterable<Event<SuiteListener>> messages) {
+            List<Event<SuiteListener>> batch = new ArrayList<>();
+            for (Event<SuiteListener> message : messages) {
+                if (message == failOn) {
+                    throw new RuntimeException("failed to write " + message);
+                }
+                batch.add(message);
+            }
+            batches.add(batch);
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+}
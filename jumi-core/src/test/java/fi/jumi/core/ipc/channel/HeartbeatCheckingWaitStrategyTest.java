@@ -0,0 +1,96 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+
+public class HeartbeatCheckingWaitStrategyTest {
+
+    private static final long TIMEOUT = HeartbeatTicker.TICK_INTERVAL_MILLIS + 50;
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final WaitStrategy target = mock(WaitStrategy.class);
+    private final IpcReader<?> reader = mock(IpcReader.class);
+    private final HeartbeatCheckingWaitStrategy waitStrategy = new HeartbeatCheckingWaitStrategy(target, reader, TIMEOUT);
+
+    @Test
+    public void gives_up_when_the_heartbeat_has_not_changed_within_the_timeout() throws InterruptedException {
+        when(reader.getWriterHeartbeat()).thenReturn(1L);
+        waitStrategy.snooze();
+        Thread.sleep(TIMEOUT + 50);
+
+        thrown.expect(TruncatedStreamException.class);
+        waitStrategy.snooze();
+    }
+
+    @Test
+    public void keeps_waiting_while_the_heartbeat_changes() throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT * 2;
+        for (long heartbeat = 0; System.currentTimeMillis() < end; heartbeat++) {
+            when(reader.getWriterHeartbeat()).thenReturn(heartbeat);
+            waitStrategy.snooze();
+            Thread.sleep(10);
+        }
+
+        verify(target, atLeastOnce()).snooze();
+    }
+
+    @Test
+    public void new_messages_are_also_a_sign_of_life() throws InterruptedException {
+        when(reader.getWriterHeartbeat()).thenReturn(1L);
+        waitStrategy.snooze();
+        Thread.sleep(TIMEOUT + 50);
+        waitStrategy.reset();
+
+        waitStrategy.snooze();
+
+        verify(target).reset();
+        verify(target, times(2)).snooze();
+    }
+
+    @Test
+    public void waits_indefinitely_before_the_first_heartbeat() throws InterruptedException {
+        when(reader.getWriterHeartbeat()).thenReturn(-1L);
+        waitStrategy.snooze();
+        Thread.sleep(TIMEOUT + 50);
+
+        waitStrategy.snooze();
+
+        verify(target, times(2)).snooze();
+    }
+
+    @Test
+    public void the_timeout_must_be_longer_than_the_heartbeat_interval() {
+        thrown.expect(IllegalArgumentException.class);
+        new HeartbeatCheckingWaitStrategy(target, reader, HeartbeatTicker.TICK_INTERVAL_MILLIS);
+    }
+
+
+    // ticker
+
+    @Test
+    public void the_ticker_increments_the_heartbeats_until_they_are_stopped() {
+        HeartbeatTicker ticker = new HeartbeatTicker();
+        ByteBuffer view = ByteBuffer.allocate(4);
+        HeartbeatTicker.Heartbeat heartbeat = ticker.start(view);
+
+        ticker.run();
+        ticker.run();
+        assertThat(view.getInt(0), is(2));
+
+        heartbeat.stop();
+        ticker.run();
+        assertThat(view.getInt(0), is(2));
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class HeartbeatTickerTest {
+
+    @Rule
+    public final Timeout timeout = new Timeout(5000);
+
+    private final HeartbeatTicker ticker = new HeartbeatTicker();
+    private final ByteBuffer view = ByteBuffer.allocate(4);
+
+    @Test
+    public void increments_the_heartbeat_on_every_tick() {
+        HeartbeatTicker.Heartbeat heartbeat = ticker.start(view);
+
+        ticker.run();
+        ticker.run();
+
+        assertThat(view.getInt(0), is(2));
+        heartbeat.stop();
+    }
+
+    @Test
+    public void stopped_heartbeats_do_not_tick() {
+        HeartbeatTicker.Heartbeat heartbeat = ticker.start(view);
+        heartbeat.stop();
+
+        ticker.run();
+
+        assertThat(view.getInt(0), is(0));
+    }
+
+    @Test
+    public void heartbeats_of_abandoned_writers_stop_ticking_after_they_are_garbage_collected() {
+        ticker.start(view); // not stopped, like a writer which was never closed
+
+        int previous;
+        do {
+            System.gc();
+            previous = view.getInt(0);
+            ticker.run();
+        } while (view.getInt(0) != previous);
+        ticker.run();
+
+        assertThat(view.getInt(0), is(previous));
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -9,21 +9,26 @@ import fi.jumi.actors.queue.MessageSender;
 import fi.jumi.core.Timeouts;
 import fi.jumi.core.api.*;
 import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.*;
 import fi.jumi.core.ipc.TestUtil;
 import fi.jumi.core.ipc.buffer.*;
 import fi.jumi.core.ipc.encoding.*;
 import fi.jumi.core.runs.RunIdSequence;
 import fi.jumi.core.util.SpyListener;
+import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.*;
 import org.junit.rules.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.Arrays;
 import java.util.concurrent.locks.LockSupport;
 
 import static fi.jumi.core.util.ConcurrencyUtil.runConcurrently;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
-import static org.mockito.Mockito.mock;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
 
 public class IpcProtocolTest {
 
@@ -130,6 +135,98 @@ public class IpcProtocolTest {
     }
 
 
+    // forward-only
+
+    @Test
+    public void consuming_reader_deletes_the_segment_files_which_it_has_read() throws Exception {
+        Path mmf = tempDir.getRoot().toPath().resolve("mmf");
+        IpcWriter<SuiteListener> writer = IpcChannel.writer(mmf, SuiteListenerEncoding::new);
+        SuiteListener listener = sendTo(writer);
+        RunId runId = new RunId(1);
+        for (int i = 0; i < 100; i++) {
+            // incompressible, so that it will take many segments
+            listener.onPrintedOut(runId, RandomStringUtils.randomAlphanumeric(1000));
+        }
+        writer.close();
+        assertThat("segments before reading", segmentCount(), is(greaterThan(3)));
+
+        IpcReaders.decodeAll(IpcChannel.consumingReader(mmf, SuiteListenerEncoding::new), mock(SuiteListener.class));
+
+        assertThat("segments after reading", segmentCount(), is(1));
+    }
+
+    private int segmentCount() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(tempDir.getRoot().toPath())) {
+            for (Path ignored : segments) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    // batches
+
+    @Test
+    public void a_batch_of_messages_is_published_with_a_single_status_change() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        IpcProtocol<SuiteListener> writer = newIpcProtocol(buffer);
+        writer.start();
+        long batchStart = buffer.position();
+        writer.sendBatch(Arrays.asList(new OnRunStartedEvent(new RunId(1), TestFile.fromClassName("DummyTest")), new OnRunFinishedEvent(new RunId(1))));
+
+        buffer.setByte(batchStart, (byte) 0); // not yet published
+        buffer.position(0);
+        IpcProtocol<SuiteListener> reader = newIpcProtocol(buffer);
+        SuiteListener target = mock(SuiteListener.class);
+        assertThat("header", reader.poll(target), is(PollResult.HAD_SOME_MESSAGES));
+        assertThat(reader.poll(target), is(PollResult.NO_NEW_MESSAGES));
+        verifyZeroInteractions(target);
+
+        buffer.setByte(batchStart, (byte) 1); // published
+        assertThat(reader.poll(target), is(PollResult.HAD_SOME_MESSAGES));
+        verify(target).onRunStarted(new RunId(1), TestFile.fromClassName("DummyTest"));
+        verify(target).onRunFinished(new RunId(1));
+    }
+
+    @Test
+    public void poll_decodes_all_published_messages_in_one_call() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        IpcProtocol<SuiteListener> writer = newIpcProtocol(buffer);
+        writer.start();
+        sendTo(writer).onRunFinished(new RunId(1));
+        writer.sendBatch(Arrays.asList(new OnRunFinishedEvent(new RunId(2)), new OnRunFinishedEvent(new RunId(3))));
+        sendTo(writer).onRunFinished(new RunId(4));
+
+        buffer.position(0);
+        IpcProtocol<SuiteListener> reader = newIpcProtocol(buffer);
+        SuiteListener target = mock(SuiteListener.class);
+        assertThat(reader.poll(target), is(PollResult.HAD_SOME_MESSAGES));
+        for (int i = 1; i <= 4; i++) {
+            verify(target).onRunFinished(new RunId(i));
+        }
+        assertThat(reader.poll(target), is(PollResult.NO_NEW_MESSAGES));
+    }
+
+    @Test
+    public void end_of_stream_is_reported_also_after_the_last_messages_were_drained() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        IpcProtocol<SuiteListener> writer = newIpcProtocol(buffer);
+        writer.start();
+        sendTo(writer).onSuiteFinished();
+        writer.close();
+
+        buffer.position(0);
+        IpcProtocol<SuiteListener> reader = newIpcProtocol(buffer);
+        SuiteListener target = mock(SuiteListener.class);
+        assertThat(reader.poll(target), is(PollResult.HAD_SOME_MESSAGES));
+        assertThat(reader.poll(target), is(PollResult.END_OF_STREAM));
+        assertThat(reader.poll(target), is(PollResult.END_OF_STREAM));
+        verify(target).onSuiteFinished();
+    }
+
+
     // headers
 
     @Test
@@ -158,7 +255,7 @@ public class IpcProtocolTest {
     public void cannot_decode_if_header_has_wrong_interface() {
         IpcBuffer buffer = encodeSomeEvents();
 
-        buffer.position(8);
+        buffer.position(16);
         StringEncoding.writeString(buffer, "com.example.AnotherInterface");
 
         thrown.expect(IllegalArgumentException.class);
@@ -170,7 +267,7 @@ public class IpcProtocolTest {
     public void cannot_decode_if_header_has_wrong_interface_version() {
         IpcBuffer buffer = encodeSomeEvents();
 
-        buffer.position(8);
+        buffer.position(16);
         StringEncoding.readString(buffer); // go to interface version's position
         buffer.writeInt(9999);
 
@@ -179,6 +276,65 @@ public class IpcProtocolTest {
         tryToDecode(buffer);
     }
 
+    @Test
+    public void can_decode_older_interface_versions_if_the_encoding_is_backward_compatible() throws InterruptedException {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        IpcProtocol<SuiteListener> writer = new IpcProtocol<>(buffer, SuiteListenerEncodingV1::new);
+        writer.start();
+        sendTo(writer).onRunFinished(new RunId(42));
+        writer.close();
+
+        buffer.position(0);
+        IpcProtocol<SuiteListener> reader = new IpcProtocol<>(buffer, SuiteListenerEncoding::new);
+        SuiteListener target = mock(SuiteListener.class);
+        IpcReaders.decodeAll(reader, target);
+
+        verify(target).onRunFinished(new RunId(42));
+    }
+
+    @Test
+    public void can_decode_protocol_version_1_which_has_no_heartbeat() throws InterruptedException {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        buffer.writeBytes("Jumi".getBytes(StandardCharsets.US_ASCII), 0, 4);
+        buffer.writeInt(1);
+        StringEncoding.writeString(buffer, SuiteListener.class.getName());
+        buffer.writeInt(new SuiteListenerEncoding(buffer).getInterfaceVersion());
+        buffer.writeByte((byte) 2); // end of stream
+
+        buffer.position(0);
+        IpcProtocol<SuiteListener> reader = newIpcProtocol(buffer);
+        IpcReaders.decodeAll(reader, mock(SuiteListener.class));
+
+        assertThat(reader.getWriterHeartbeat(), is(-1L));
+        assertThat(reader.getWriterPid(), is(0));
+    }
+
+
+    // heartbeat
+
+    @Test
+    public void the_reader_sees_the_heartbeat_of_the_writer_until_it_is_closed() throws InterruptedException {
+        AllocatedByteBufferSequence sequence = new AllocatedByteBufferSequence(100);
+        IpcProtocol<SuiteListener> writer = newIpcProtocol(new IpcBuffer(sequence));
+        IpcProtocol<SuiteListener> reader = newIpcProtocol(new IpcBuffer(sequence));
+        assertThat("before the header", reader.getWriterHeartbeat(), is(-1L));
+
+        writer.start();
+        reader.poll(mock(SuiteListener.class));
+        long heartbeat1 = reader.getWriterHeartbeat();
+        Thread.sleep(HeartbeatTicker.TICK_INTERVAL_MILLIS * 3);
+        long heartbeat2 = reader.getWriterHeartbeat();
+        writer.close();
+        Thread.sleep(HeartbeatTicker.TICK_INTERVAL_MILLIS * 2);
+        long heartbeat3 = reader.getWriterHeartbeat();
+        Thread.sleep(HeartbeatTicker.TICK_INTERVAL_MILLIS * 2);
+        long heartbeat4 = reader.getWriterHeartbeat();
+
+        assertThat("alive", heartbeat2, is(greaterThan(heartbeat1)));
+        assertThat("closed", heartbeat4, is(heartbeat3));
+        assertThat("pid", reader.getWriterPid(), is(greaterThan(0)));
+    }
+
     private static IpcBuffer encodeSomeEvents() {
         IpcBuffer buffer = TestUtil.newIpcBuffer();
         IpcProtocol<SuiteListener> protocol = newIpcProtocol(buffer);
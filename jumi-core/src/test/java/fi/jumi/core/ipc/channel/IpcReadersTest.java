@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -7,6 +7,12 @@ package fi.jumi.core.ipc.channel;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
 
+import java.io.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
 public class IpcReadersTest {
 
     @Rule
@@ -14,7 +20,7 @@ public class IpcReadersTest {
 
     @Test
     public void on_interrupt_throws_InterruptedException() throws Exception {
-        IpcReader<Consumer<String>> reader = target -> PollResult.NO_NEW_MESSAGES;
+        IpcReader<Consumer<String>> reader = new FakeIpcReader<>(PollResult.NO_NEW_MESSAGES, -1);
         Consumer<String> target = s -> {
         };
 
@@ -24,7 +30,94 @@ public class IpcReadersTest {
         IpcReaders.decodeAll(reader, target);
     }
 
+    @Test
+    public void closes_the_wait_strategy_if_it_is_closeable() throws Exception {
+        IpcReader<Consumer<String>> reader = new FakeIpcReader<>(PollResult.END_OF_STREAM, -1);
+        ClosableWaitStrategy waitStrategy = new ClosableWaitStrategy();
+
+        IpcReaders.decodeAll(reader, s -> {
+        }, waitStrategy);
+
+        assertThat(waitStrategy.closed, is(true));
+    }
+
+    @Test
+    public void failing_to_close_the_wait_strategy_is_reported() throws Exception {
+        IpcReader<Consumer<String>> reader = new FakeIpcReader<>(PollResult.END_OF_STREAM, -1);
+        ClosableWaitStrategy waitStrategy = new ClosableWaitStrategy();
+        waitStrategy.closeFailure = new IOException("failed to close");
+
+        thrown.expectCause(is(waitStrategy.closeFailure));
+        IpcReaders.decodeAll(reader, s -> {
+        }, waitStrategy);
+    }
+
+    @Test
+    public void failing_to_close_the_wait_strategy_does_not_hide_the_decoding_failure() throws Exception {
+        IpcReader<Consumer<String>> reader = new FakeIpcReader<>(PollResult.NO_NEW_MESSAGES, 42);
+        ClosableWaitStrategy waitStrategy = new ClosableWaitStrategy();
+        waitStrategy.closeFailure = new IOException("failed to close");
+
+        try {
+            IpcReaders.decodeAll(reader, s -> {
+            }, waitStrategy, HeartbeatTicker.TICK_INTERVAL_MILLIS * 2);
+            fail("should have thrown an exception");
+        } catch (TruncatedStreamException e) {
+            assertThat(e.getSuppressed(), is(arrayContaining((Throwable) waitStrategy.closeFailure)));
+        }
+    }
+
+    @Test
+    public void gives_up_if_the_writer_dies_before_the_end_of_stream() throws Exception {
+        IpcReader<Consumer<String>> reader = new FakeIpcReader<>(PollResult.NO_NEW_MESSAGES, 42);
+
+        thrown.expect(TruncatedStreamException.class);
+        IpcReaders.decodeAll(reader, s -> {
+        }, new ClosableWaitStrategy(), HeartbeatTicker.TICK_INTERVAL_MILLIS * 2);
+    }
+
     private interface Consumer<T> {
         void accept(T t);
     }
+
+    private static class FakeIpcReader<T> implements IpcReader<T> {
+        private final PollResult result;
+        private final long heartbeat;
+
+        public FakeIpcReader(PollResult result, long heartbeat) {
+            this.result = result;
+            this.heartbeat = heartbeat;
+        }
+
+        @Override
+        public PollResult poll(T target) {
+            return result;
+        }
+
+        @Override
+        public long getWriterHeartbeat() {
+            return heartbeat;
+        }
+    }
+
+    private static class ClosableWaitStrategy implements WaitStrategy, Closeable {
+        boolean closed = false;
+        IOException closeFailure;
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void snooze() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (closeFailure != null) {
+                throw closeFailure;
+            }
+        }
+    }
 }
@@ -0,0 +1,161 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.*;
+import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+import fi.jumi.core.util.SpyListener;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.*;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class MultiProducerIpcWriterTest {
+
+    private static final RunId RUN_1 = new RunId(1);
+    private static final RunId RUN_2 = new RunId(2);
+    private static final TestFile TEST_FILE = TestFile.fromClassName("DummyTest");
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private Path basePath;
+    private IpcWriter<SuiteListener> writer;
+
+    @Before
+    public void setUp() {
+        basePath = tempDir.getRoot().toPath().resolve("channel");
+        writer = IpcChannel.multiProducerWriter(basePath, SuiteListenerEncoding::new);
+    }
+
+    @Test
+    public void the_layout_can_be_recognized_as_soon_as_the_writer_exists() {
+        assertThat(MergingIpcReader.isMultiProducer(basePath), is(true));
+        assertThat(MergingIpcReader.isMultiProducer(basePath.resolveSibling("other")), is(false));
+    }
+
+    @Test
+    public void every_thread_writes_to_its_own_stream() throws Exception {
+        writer.send(new OnRunStartedEvent(RUN_1, TEST_FILE));
+        inAnotherThread(() -> writer.send(new OnRunStartedEvent(RUN_2, TEST_FILE)));
+        writer.send(new OnRunFinishedEvent(RUN_1));
+
+        assertThat(Files.exists(MultiProducerIpcWriter.streamPath(basePath, 0)), is(true));
+        assertThat(Files.exists(MultiProducerIpcWriter.streamPath(basePath, 1)), is(true));
+        assertThat(Files.exists(MultiProducerIpcWriter.streamPath(basePath, 2)), is(false));
+    }
+
+    @Test
+    public void the_reader_merges_the_streams_in_the_order_in_which_the_messages_were_sent() throws Exception {
+        // the first stream has messages from both before and after the second stream's message
+        writer.send(new OnRunStartedEvent(RUN_1, TEST_FILE));
+        inAnotherThread(() -> writer.send(new OnRunStartedEvent(RUN_2, TEST_FILE)));
+        writer.send(new OnRunFinishedEvent(RUN_1));
+        inAnotherThread(() -> writer.sendBatch(Arrays.asList(new OnPrintedOutEvent(RUN_2, "a"), new OnRunFinishedEvent(RUN_2))));
+        writer.send(new OnSuiteFinishedEvent());
+        writer.close();
+
+        SpyListener<SuiteListener> expectations = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = expectations.getListener();
+        expected.onRunStarted(RUN_1, TEST_FILE);
+        expected.onRunStarted(RUN_2, TEST_FILE);
+        expected.onRunFinished(RUN_1);
+        expected.onPrintedOut(RUN_2, "a");
+        expected.onRunFinished(RUN_2);
+        expected.onSuiteFinished();
+        expectations.replay();
+
+        IpcReaders.decodeAll(mergingReader(), expectations.getListener());
+
+        expectations.verify();
+    }
+
+    @Test
+    public void the_stream_does_not_end_until_the_writer_is_closed() throws Exception {
+        IpcReader<SuiteListener> reader = mergingReader();
+        SuiteListener target = mock(SuiteListener.class);
+
+        assertThat(reader.poll(target), is(PollResult.NO_NEW_MESSAGES));
+
+        inAnotherThread(() -> writer.send(new OnSuiteStartedEvent()));
+        assertThat(reader.poll(target), is(PollResult.HAD_SOME_MESSAGES));
+        assertThat(reader.poll(target), is(PollResult.NO_NEW_MESSAGES));
+
+        writer.close();
+        assertThat(reader.poll(target), is(PollResult.END_OF_STREAM));
+        verify(target).onSuiteStarted();
+        verifyNoMoreInteractions(target);
+    }
+
+    @Test
+    public void messages_which_failed_to_be_written_do_not_stop_the_reader() throws Exception {
+        TestFile newTestFile = TestFile.fromClassName("NewTest");
+        writer.send(new OnRunStartedEvent(RUN_1, TEST_FILE));
+        sendFailingMessage(() -> writer.send(new OnTestFoundEvent(TEST_FILE, TestId.ROOT, null)));
+        inAnotherThread(() -> {
+            sendFailingMessage(() -> writer.sendBatch(Arrays.asList(
+                    new OnTestFileFoundEvent(newTestFile), // adds a new string
+                    new OnTestFoundEvent(TEST_FILE, TestId.ROOT, null))));
+            writer.send(new OnTestFileFinishedEvent(newTestFile)); // reuses that string
+        });
+        writer.send(new OnRunFinishedEvent(RUN_1));
+        writer.close();
+
+        SpyListener<SuiteListener> expectations = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = expectations.getListener();
+        expected.onRunStarted(RUN_1, TEST_FILE);
+        expected.onTestFileFinished(newTestFile);
+        expected.onRunFinished(RUN_1);
+        expectations.replay();
+
+        IpcReaders.decodeAll(mergingReader(), expectations.getListener());
+
+        expectations.verify();
+    }
+
+    @Test
+    public void messages_cannot_be_sent_after_the_writer_is_closed() {
+        writer.send(new OnSuiteStartedEvent());
+        writer.close();
+
+        try {
+            writer.send(new OnSuiteFinishedEvent());
+            fail("should have thrown an exception");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("the writer has been closed"));
+        }
+    }
+
+
+    // helpers
+
+    private static void sendFailingMessage(Runnable send) {
+        try {
+            send.run();
+            fail("should have thrown an exception");
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    private IpcReader<SuiteListener> mergingReader() {
+        return IpcChannel.mergingReader(basePath, SuiteListenerEncoding::new, new SuiteListenerEventizer());
+    }
+
+    private static void inAnotherThread(Runnable task) throws InterruptedException {
+        Thread thread = new Thread(task);
+        thread.start();
+        thread.join();
+    }
+}
@@ -0,0 +1,73 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ParkingWaitStrategyTest {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final List<Long> spy = new ArrayList<>();
+
+    @Test
+    public void parks_exponentially_longer_times_up_to_the_maximum() {
+        ParkingWaitStrategy waitStrategy = new SpiedParkingWaitStrategy(10, 50);
+
+        for (int i = 0; i < 5; i++) {
+            waitStrategy.snooze();
+        }
+
+        assertThat(spy, is(asList(10L, 20L, 40L, 50L, 50L)));
+    }
+
+    @Test
+    public void on_reset_goes_back_to_the_minimum() {
+        ParkingWaitStrategy waitStrategy = new SpiedParkingWaitStrategy(10, 50);
+        waitStrategy.snooze();
+        waitStrategy.snooze();
+        spy.clear();
+
+        waitStrategy.reset();
+        waitStrategy.snooze();
+
+        assertThat(spy, is(asList(10L)));
+    }
+
+    @Test
+    public void the_minimum_must_be_positive() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("min park time must be positive, but was 0");
+        new ParkingWaitStrategy(0, 50);
+    }
+
+    @Test
+    public void the_maximum_must_not_be_less_than_the_minimum() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("max park time 5 was less than min park time 10");
+        new ParkingWaitStrategy(10, 5);
+    }
+
+
+    private class SpiedParkingWaitStrategy extends ParkingWaitStrategy {
+
+        public SpiedParkingWaitStrategy(long minParkNanos, long maxParkNanos) {
+            super(minParkNanos, maxParkNanos);
+        }
+
+        @Override
+        void park(long nanos) {
+            spy.add(nanos);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.channel;
+
+import fi.jumi.core.Timeouts;
+import org.junit.*;
+import org.junit.rules.*;
+
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+public class WatchServiceWaitStrategyTest {
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Rule
+    public final Timeout timeout = Timeouts.forUnitTest();
+
+    @Test
+    public void wakes_up_when_a_file_is_created_in_the_directory() throws Exception {
+        Path dir = tempDir.getRoot().toPath();
+        long maxWaitMillis = TimeUnit.SECONDS.toMillis(60);
+        try (WatchServiceWaitStrategy waitStrategy = new WatchServiceWaitStrategy(dir, 0, maxWaitMillis)) {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                executor.execute(() -> {
+                    try {
+                        Thread.sleep(100);
+                        Files.createFile(dir.resolve("new-segment"));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+
+                long start = System.currentTimeMillis();
+                waitStrategy.snooze();
+                long elapsed = System.currentTimeMillis() - start;
+
+                assertThat(elapsed, lessThan(maxWaitMillis));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void does_not_wait_longer_than_the_max_wait_time() throws Exception {
+        try (WatchServiceWaitStrategy waitStrategy = new WatchServiceWaitStrategy(tempDir.getRoot().toPath(), 0, 1)) {
+            waitStrategy.snooze();
+        }
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -42,6 +42,7 @@ public class DaemonDirTest {
 
         assertThat("suite dir", relativeToBaseDir(dir.getPath()), doesMatchRegex("suites/\\d+"));
         assertThat("suite results file", relativeToBaseDir(dir.getSuiteResultsPath()), doesMatchRegex("suites/\\d+/suite"));
+        assertThat("suite results index", relativeToBaseDir(dir.getSuiteResultsIndexPath()), doesMatchRegex("suites/\\d+/suite\\.index"));
     }
 
     private String relativeToBaseDir(Path path) {
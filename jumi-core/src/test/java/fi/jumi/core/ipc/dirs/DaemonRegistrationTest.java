@@ -0,0 +1,171 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.dirs;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DaemonRegistrationTest {
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private Path daemonDir;
+    private DaemonRegistration registration;
+
+    @Before
+    public void setup() {
+        daemonDir = tempDir.getRoot().toPath();
+        registration = new DaemonRegistration(daemonDir);
+    }
+
+    @Test
+    public void the_advertisement_can_be_read_back() throws IOException {
+        Properties advertisement = new Properties();
+        advertisement.setProperty("key", "value");
+
+        registration.advertise(advertisement);
+
+        assertThat(new DaemonRegistration(daemonDir).getAdvertisement(), is(advertisement));
+    }
+
+    @Test
+    public void there_is_no_advertisement_before_advertising_or_after_unregistering() throws IOException {
+        assertThat("before advertising", registration.getAdvertisement(), is(nullValue()));
+
+        registration.advertise(new Properties());
+        registration.unregister();
+
+        assertThat("after unregistering", registration.getAdvertisement(), is(nullValue()));
+    }
+
+    @Test
+    public void only_one_can_claim_the_daemon_until_the_claim_is_released() throws IOException {
+        assertThat("first claim", registration.tryClaim(), is(true));
+        assertThat("second claim", registration.tryClaim(), is(false));
+
+        registration.releaseClaim();
+
+        assertThat("claim after release", registration.tryClaim(), is(true));
+    }
+
+    @Test
+    public void a_daemon_of_concurrent_suites_can_be_claimed_once_for_each_suite() throws IOException {
+        DaemonRegistration registration = new DaemonRegistration(daemonDir, 2);
+
+        assertThat("first claim", registration.tryClaim(), is(true));
+        assertThat("second claim", registration.tryClaim(), is(true));
+        assertThat("third claim", registration.tryClaim(), is(false));
+
+        registration.releaseClaim();
+
+        assertThat("claim after release", registration.tryClaim(), is(true));
+    }
+
+    @Test
+    public void a_launcher_can_withdraw_its_own_claim_without_touching_the_claims_of_others() throws IOException {
+        DaemonRegistration startingLauncher = new DaemonRegistration(daemonDir, 2);
+        DaemonRegistration otherLauncher = new DaemonRegistration(daemonDir, 2);
+        startingLauncher.tryClaim();
+        otherLauncher.tryClaim();
+
+        otherLauncher.withdrawClaim();
+
+        assertThat("claim of the other launcher", Files.exists(daemonDir.resolve("claimed.1")), is(false));
+        assertThat("claim of the starting launcher", Files.exists(daemonDir.resolve("claimed")), is(true));
+    }
+
+    @Test
+    public void releases_the_oldest_claim_first() throws IOException {
+        DaemonRegistration registration = new DaemonRegistration(daemonDir, 2);
+        registration.tryClaim();
+        registration.tryClaim();
+        Files.setLastModifiedTime(daemonDir.resolve("claimed.1"), FileTime.fromMillis(System.currentTimeMillis() - 2000));
+
+        registration.releaseClaim();
+
+        assertThat("recently claimed", registration.isRecentlyClaimed(1000), is(true));
+        assertThat("old claim", Files.exists(daemonDir.resolve("claimed.1")), is(false));
+    }
+
+    @Test
+    public void the_daemon_is_alive_while_it_holds_the_lock() throws IOException {
+        assertThat("before locking", registration.isAlive(), is(false));
+
+        registration.lockForLifetime();
+
+        assertThat("after locking", new DaemonRegistration(daemonDir).isAlive(), is(true));
+    }
+
+    @Test
+    public void an_idle_daemon_retires_by_claiming_itself_and_unregistering() throws IOException {
+        registration.advertise(new Properties());
+
+        assertThat("retired", registration.tryRetire(1000), is(true));
+
+        assertThat("advertisement", registration.getAdvertisement(), is(nullValue()));
+        assertThat("claim", registration.tryClaim(), is(false));
+    }
+
+    @Test
+    public void does_not_retire_while_a_launcher_has_claimed_the_daemon() throws IOException {
+        registration.advertise(new Properties());
+        registration.tryClaim();
+
+        assertThat("retired", registration.tryRetire(1000), is(false));
+
+        assertThat("advertisement", registration.getAdvertisement(), is(notNullValue()));
+    }
+
+    @Test
+    public void a_daemon_of_concurrent_suites_retires_by_claiming_all_of_its_slots() throws IOException {
+        DaemonRegistration registration = new DaemonRegistration(daemonDir, 2);
+        registration.advertise(new Properties());
+
+        assertThat("retired", registration.tryRetire(1000), is(true));
+
+        assertThat("claim", registration.tryClaim(), is(false));
+    }
+
+    @Test
+    public void does_not_retire_while_any_of_the_slots_is_claimed_and_gives_back_the_slots_it_took() throws IOException {
+        DaemonRegistration registration = new DaemonRegistration(daemonDir, 2);
+        registration.advertise(new Properties());
+        Files.createFile(daemonDir.resolve("claimed.1"));
+
+        assertThat("retired", registration.tryRetire(1000), is(false));
+
+        assertThat("advertisement", registration.getAdvertisement(), is(notNullValue()));
+        assertThat("free slot", registration.tryClaim(), is(true));
+    }
+
+    @Test
+    public void retires_despite_claims_which_are_older_than_the_timeout() throws IOException {
+        registration.advertise(new Properties());
+        registration.tryClaim();
+        Files.setLastModifiedTime(daemonDir.resolve("claimed"), FileTime.fromMillis(System.currentTimeMillis() - 2000));
+
+        assertThat("retired", registration.tryRetire(1000), is(true));
+    }
+
+    @Test
+    public void tells_whether_the_daemon_has_been_claimed_recently() throws IOException {
+        assertThat("not claimed", registration.isRecentlyClaimed(1000), is(false));
+
+        registration.tryClaim();
+        assertThat("just claimed", registration.isRecentlyClaimed(1000), is(true));
+
+        Files.setLastModifiedTime(daemonDir.resolve("claimed"), FileTime.fromMillis(System.currentTimeMillis() - 2000));
+        assertThat("claimed long ago", registration.isRecentlyClaimed(1000), is(false));
+    }
+}
@@ -0,0 +1,57 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.dirs;
+
+import fi.jumi.core.api.TestFile;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestFileClaimsTest {
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private Path jumiHome;
+
+    @Before
+    public void setup() {
+        jumiHome = tempDir.getRoot().toPath();
+    }
+
+    @Test
+    public void each_test_file_can_be_claimed_only_once() throws IOException {
+        TestFileClaims claims = TestFileClaims.create(jumiHome);
+
+        assertThat("first claim", claims.tryClaim(TestFile.fromClassName("com.example.FooTest")), is(true));
+        assertThat("second claim", new TestFileClaims(claims.getDir()).tryClaim(TestFile.fromClassName("com.example.FooTest")), is(false));
+        assertThat("another test file", claims.tryClaim(TestFile.fromClassName("com.example.BarTest")), is(true));
+    }
+
+    @Test
+    public void every_suite_has_its_own_claims() throws IOException {
+        TestFileClaims suite1 = TestFileClaims.create(jumiHome);
+        TestFileClaims suite2 = TestFileClaims.create(jumiHome);
+
+        assertThat(suite1.getDir(), is(not(suite2.getDir())));
+        assertThat("suite 1", suite1.tryClaim(TestFile.fromClassName("com.example.FooTest")), is(true));
+        assertThat("suite 2", suite2.tryClaim(TestFile.fromClassName("com.example.FooTest")), is(true));
+    }
+
+    @Test
+    public void the_claims_are_deleted_after_the_suite() throws IOException {
+        TestFileClaims claims = TestFileClaims.create(jumiHome);
+        claims.tryClaim(TestFile.fromClassName("com.example.FooTest"));
+
+        claims.delete();
+
+        assertThat(Files.exists(claims.getDir()), is(false));
+    }
+}
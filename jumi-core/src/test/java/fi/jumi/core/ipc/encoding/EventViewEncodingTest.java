@@ -0,0 +1,227 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.ipc.TestUtil;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.encoding.EventView.Type;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.util.*;
+
+import static fi.jumi.core.util.EqualityMatchers.deepEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class EventViewEncodingTest {
+
+    private static final TestFile TEST_FILE = TestFile.fromClassName("com.example.SampleTest");
+    private static final RunId RUN_ID = new RunId(1);
+
+    private final IpcBuffer buffer = TestUtil.newIpcBuffer();
+
+    @Test
+    public void recognizes_the_types_of_all_events() throws Exception {
+        write(SuiteListenerEncodingTest::exampleSuiteListenerUsage);
+
+        List<Type> types = new ArrayList<>();
+        readAll(event -> types.add(event.getType()));
+
+        assertThat(types, contains(
+                Type.SUITE_STARTED, Type.TEST_FILE_FOUND, Type.ALL_TEST_FILES_FOUND,
+                Type.TEST_FOUND, Type.TEST_FOUND,
+                Type.RUN_STARTED, Type.TEST_STARTED, Type.STARTUP_TIMELINE, Type.TEST_STARTED, Type.PRINTED_OUT, Type.PRINTED_ERR,
+                Type.FAILURE, Type.TEST_FINISHED, Type.TEST_FINISHED, Type.RUN_FINISHED,
+                Type.INTERNAL_ERROR, Type.TEST_FILE_FINISHED, Type.SUITE_FINISHED));
+    }
+
+    @Test
+    public void reads_the_fields_of_the_events() throws Exception {
+        StackTrace failure = StackTrace.from(new AssertionError("assertion message"));
+        StackTrace error = StackTrace.from(new Exception("exception message"));
+        String longOutput = StringUtils.repeat("[INFO] Running com.example.SomethingTest\n", 100);
+        write(listener -> {
+            listener.onTestFileFound(TEST_FILE);
+            listener.onTestFound(TEST_FILE, TestId.of(0), "testName");
+            listener.onRunStarted(RUN_ID, TEST_FILE);
+            listener.onTestStarted(RUN_ID, TestId.of(0));
+            listener.onPrintedOut(RUN_ID, "printed to out");
+            listener.onPrintedErr(RUN_ID, longOutput);
+            listener.onFailure(RUN_ID, failure);
+            listener.onRunFinished(RUN_ID);
+            listener.onInternalError("error message", error);
+            listener.onStartupTimeline(StartupTimeline.EMPTY.with(StartupTimeline.LAUNCHER_BUILD, 1455000000000L));
+        });
+
+        List<EventView> events = new ArrayList<>();
+        List<Object> fields = new ArrayList<>();
+        readAll(event -> {
+            switch (event.getType()) {
+                case TEST_FILE_FOUND:
+                    fields.add(event.getTestFile());
+                    break;
+                case TEST_FOUND:
+                    fields.add(event.getTestFile());
+                    fields.add(event.getTestId());
+                    fields.add(event.getName().toString());
+                    break;
+                case RUN_STARTED:
+                    fields.add(event.getRunId());
+                    fields.add(event.getTestFile());
+                    break;
+                case TEST_STARTED:
+                    fields.add(event.getTestId());
+                    fields.add(event.getRunId());
+                    break;
+                case PRINTED_OUT:
+                case PRINTED_ERR:
+                    fields.add(event.getText().toString());
+                    fields.add(event.getRunId());
+                    break;
+                case FAILURE:
+                    assertThat(event.getStackTrace(), is(deepEqualTo(failure)));
+                    fields.add(event.getRunId());
+                    break;
+                case RUN_FINISHED:
+                    fields.add(event.getRunId());
+                    break;
+                case INTERNAL_ERROR:
+                    assertThat(event.getStackTrace(), is(deepEqualTo(error)));
+                    fields.add(event.getText().toString());
+                    break;
+                case STARTUP_TIMELINE:
+                    fields.add(event.getStartupTimeline());
+                    break;
+            }
+            events.add(event);
+        });
+
+        assertThat(fields, contains(
+                TEST_FILE,
+                TEST_FILE, TestId.of(0), "testName",
+                RUN_ID, TEST_FILE,
+                TestId.of(0), RUN_ID,
+                "printed to out", RUN_ID,
+                longOutput, RUN_ID,
+                RUN_ID,
+                RUN_ID,
+                "error message",
+                StartupTimeline.EMPTY.with(StartupTimeline.LAUNCHER_BUILD, 1455000000000L)));
+        assertThat("the same view is reused", new HashSet<>(events), hasSize(1));
+    }
+
+    @Test
+    public void the_string_and_stack_frame_tables_stay_in_sync_when_events_are_skipped() throws Exception {
+        StackTrace failure = StackTrace.from(new AssertionError("assertion message"));
+        write(listener -> {
+            listener.onTestFileFound(TEST_FILE);
+            listener.onFailure(RUN_ID, failure);
+            listener.onRunStarted(RUN_ID, TEST_FILE);
+            listener.onFailure(RUN_ID, failure);
+        });
+
+        // only the skipped events added the test file and the stack frames to the tables
+        List<Object> fields = new ArrayList<>();
+        readAll(new EventViewListener() {
+            int failureCount = 0;
+
+            @Override
+            public void onEvent(EventView event) {
+                if (event.getType() == Type.RUN_STARTED) {
+                    fields.add(event.getTestFile());
+                }
+                if (event.getType() == Type.FAILURE && ++failureCount == 2) {
+                    fields.add(event.getStackTrace());
+                }
+            }
+        });
+
+        assertThat(fields, hasSize(2));
+        assertThat(fields.get(0), is(TEST_FILE));
+        assertThat((StackTrace) fields.get(1), is(deepEqualTo(failure)));
+    }
+
+    @Test
+    public void asking_for_a_field_which_the_event_does_not_have_is_an_error() throws Exception {
+        write(listener -> listener.onSuiteStarted());
+
+        List<String> errors = new ArrayList<>();
+        readAll(event -> {
+            try {
+                event.getRunId();
+                fail("should have thrown an exception");
+            } catch (IllegalStateException e) {
+                errors.add(e.getMessage());
+            }
+        });
+
+        assertThat(errors, contains("SUITE_STARTED event has no run id"));
+    }
+
+    @Test
+    public void the_event_types_have_the_same_codes_as_in_the_encoding() {
+        assertThat(Type.of(SuiteListenerEncodingBase.onSuiteStarted), is(Type.SUITE_STARTED));
+        assertThat(Type.of(SuiteListenerEncodingBase.onInternalError), is(Type.INTERNAL_ERROR));
+        assertThat(Type.of(SuiteListenerEncodingBase.onTestFileFound), is(Type.TEST_FILE_FOUND));
+        assertThat(Type.of(SuiteListenerEncodingBase.onAllTestFilesFound), is(Type.ALL_TEST_FILES_FOUND));
+        assertThat(Type.of(SuiteListenerEncodingBase.onTestFound), is(Type.TEST_FOUND));
+        assertThat(Type.of(SuiteListenerEncodingBase.onRunStarted), is(Type.RUN_STARTED));
+        assertThat(Type.of(SuiteListenerEncodingBase.onTestStarted), is(Type.TEST_STARTED));
+        assertThat(Type.of(SuiteListenerEncodingBase.onPrintedOut), is(Type.PRINTED_OUT));
+        assertThat(Type.of(SuiteListenerEncodingBase.onPrintedErr), is(Type.PRINTED_ERR));
+        assertThat(Type.of(SuiteListenerEncodingBase.onFailure), is(Type.FAILURE));
+        assertThat(Type.of(SuiteListenerEncodingBase.onTestFinished), is(Type.TEST_FINISHED));
+        assertThat(Type.of(SuiteListenerEncodingBase.onRunFinished), is(Type.RUN_FINISHED));
+        assertThat(Type.of(SuiteListenerEncodingBase.onTestFileFinished), is(Type.TEST_FILE_FINISHED));
+        assertThat(Type.of(SuiteListenerEncodingBase.onSuiteFinished), is(Type.SUITE_FINISHED));
+        assertThat(Type.of(SuiteListenerEncodingBase.onStartupTimeline), is(Type.STARTUP_TIMELINE));
+        assertThat(Type.of((byte) 16), is(Type.UNKNOWN));
+    }
+
+    @Test
+    public void version_1_is_not_supported() {
+        IpcProtocol<SuiteListener> version1 = new IpcProtocol<>(buffer, SuiteListenerEncodingV1::new);
+        version1.start();
+        version1.close();
+
+        buffer.position(0);
+        try {
+            reader().poll(event -> {
+            });
+            fail("should have thrown an exception");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("unsupported interface version: 1"));
+        }
+    }
+
+
+    // helpers
+
+    private void write(Writes writes) {
+        IpcProtocol<SuiteListener> protocol = new IpcProtocol<>(buffer, SuiteListenerEncoding::new);
+        protocol.start();
+        writes.to(new SuiteListenerEventizer().newFrontend(protocol));
+        protocol.close();
+    }
+
+    private void readAll(EventViewListener listener) throws InterruptedException {
+        buffer.position(0);
+        IpcReaders.decodeAll(reader(), listener);
+    }
+
+    private IpcProtocol<EventViewListener> reader() {
+        return new IpcProtocol<>(buffer, EventViewEncoding::new);
+    }
+
+    private interface Writes {
+        void to(SuiteListener listener);
+    }
+}
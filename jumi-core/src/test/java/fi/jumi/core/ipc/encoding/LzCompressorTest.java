@@ -0,0 +1,105 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.core.util.TestableRandom;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class LzCompressorTest {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public final TestableRandom random = new TestableRandom();
+
+    private final LzCompressor compressor = new LzCompressor();
+
+    @Test
+    public void empty_input() {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void input_too_short_for_matches() {
+        assertRoundTrip(bytes("abcabcabcab"));
+    }
+
+    @Test
+    public void repeated_text() {
+        byte[] original = bytes(StringUtils.repeat("[INFO] Running com.example.SomethingTest\n", 1000));
+
+        byte[] compressed = assertRoundTrip(original);
+
+        assertThat(compressed.length, is(lessThan(original.length / 50)));
+    }
+
+    @Test
+    public void matches_which_overlap_with_what_they_copy() {
+        byte[] original = new byte[10000];
+        Arrays.fill(original, (byte) 'x');
+
+        assertRoundTrip(original);
+    }
+
+    @Test
+    public void long_literal_runs() {
+        byte[] original = new byte[10000];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = random.nextByte();
+        }
+
+        byte[] compressed = assertRoundTrip(original);
+
+        assertThat(compressed.length, is(lessThanOrEqualTo(LzCompressor.maxCompressedLength(original.length))));
+    }
+
+    @Test
+    public void random_mix_of_literals_and_matches() {
+        for (int round = 0; round < 100; round++) {
+            byte[] original = new byte[random.nextInt(2000)];
+            for (int i = 0; i < original.length; i++) {
+                // small alphabet, so that there will be matches of various lengths
+                original[i] = (byte) ('a' + random.nextInt(3));
+            }
+            assertRoundTrip(original);
+        }
+    }
+
+    @Test
+    public void the_same_compressor_can_be_reused() {
+        assertRoundTrip(bytes(StringUtils.repeat("first ", 100)));
+        assertRoundTrip(bytes(StringUtils.repeat("second ", 100)));
+    }
+
+    @Test
+    public void rejects_corrupt_data() {
+        byte[] compressed = compressor.compress(bytes(StringUtils.repeat("something ", 100)));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("corrupt compressed data");
+        LzCompressor.decompress(Arrays.copyOf(compressed, compressed.length - 1), 1000);
+    }
+
+
+    private byte[] assertRoundTrip(byte[] original) {
+        byte[] compressed = compressor.compress(original);
+        byte[] decompressed = LzCompressor.decompress(compressed, original.length);
+        assertThat(decompressed, is(original));
+        return compressed;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
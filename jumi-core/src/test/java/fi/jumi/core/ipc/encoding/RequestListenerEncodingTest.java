@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -6,6 +6,7 @@ package fi.jumi.core.ipc.encoding;
 
 import fi.jumi.core.config.*;
 import fi.jumi.core.ipc.api.RequestListener;
+import org.junit.Test;
 
 import java.lang.reflect.*;
 import java.nio.file.Paths;
@@ -27,12 +28,21 @@ public class RequestListenerEncodingTest extends EncodingContract<RequestListene
                 .setWorkingDirectory(Paths.get("workingDir"))
                 .setIncludedTestsPattern("glob:Included.class")
                 .setExcludedTestsPattern("glob:Excluded.class")
+                .setIsolatedLibraries("glob:isolated.jar")
+                .setForkCount(2)
+                .setTestFileClaimsDir(Paths.get("claims").toUri())
                 .freeze();
         assertNoDefaultValues(config);
         listener.runTests(config);
         listener.shutdown();
     }
 
+    @Test
+    public void the_event_type_codes_are_part_of_the_file_format_and_must_not_change() {
+        assertThat(RequestListenerEncodingBase.runTests, is((byte) 1));
+        assertThat(RequestListenerEncodingBase.shutdown, is((byte) 2));
+    }
+
     private static void assertNoDefaultValues(SuiteConfiguration config) throws Exception {
         for (Field field : SuiteConfiguration.class.getDeclaredFields()) {
             if (Modifier.isStatic(field.getModifiers())) {
@@ -1,13 +1,17 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.ipc.encoding;
 
 import fi.jumi.core.ipc.api.ResponseListener;
+import org.junit.Test;
 
 import java.nio.file.Paths;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
 public class ResponseListenerEncodingTest extends EncodingContract<ResponseListener> {
 
     public ResponseListenerEncodingTest() {
@@ -18,4 +22,9 @@ public class ResponseListenerEncodingTest extends EncodingContract<ResponseListe
     protected void exampleUsage(ResponseListener listener) throws Exception {
         listener.onSuiteStarted(Paths.get("foo", "bar"));
     }
+
+    @Test
+    public void the_event_type_codes_are_part_of_the_file_format_and_must_not_change() {
+        assertThat(ResponseListenerEncodingBase.onSuiteStarted, is((byte) 1));
+    }
 }
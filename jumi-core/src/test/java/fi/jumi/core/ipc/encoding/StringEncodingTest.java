@@ -1,15 +1,18 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.core.ipc.encoding;
 
 import fi.jumi.core.ipc.TestUtil;
-import org.apache.commons.lang3.RandomStringUtils;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+import org.apache.commons.lang3.*;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.fail;
 
 public class StringEncodingTest {
@@ -51,6 +54,160 @@ public class StringEncodingTest {
     }
 
 
+    // compact strings
+
+    @Test
+    public void test_serialization_of_compact_String() {
+        assertThat("empty string", roundTripCompactString(""), is(""));
+        assertThat("ASCII", roundTripCompactString("com.example.SomethingTest"), is("com.example.SomethingTest"));
+        assertThat("Latin-1", roundTripCompactString("\u00e4\u00f6\u00ff"), is("\u00e4\u00f6\u00ff"));
+        assertThat("non-Latin-1", roundTripCompactString("\u20ac\u65e5\u672c"), is("\u20ac\u65e5\u672c"));
+        assertThat("surrogate pair", roundTripCompactString("a\ud83d\ude00b"), is("a\ud83d\ude00b"));
+        assertThat("unpaired high surrogate", roundTripCompactString("a\ud83d"), is("a\ud83d"));
+        assertThat("unpaired low surrogate", roundTripCompactString("\ude00b"), is("\ude00b"));
+        assertThat("reversed surrogate pair", roundTripCompactString("\ude00\ud83d"), is("\ude00\ud83d"));
+
+        for (int i = 0; i < 100; i++) {
+            String original = RandomStringUtils.random(10);
+            assertThat("random string", roundTripCompactString(original), is(original));
+        }
+    }
+
+    @Test
+    public void test_serialization_of_null_compact_String() {
+        String nullString = null;
+        assertThat("null string", roundTripCompactNullableString(nullString), is(nullString));
+
+        try {
+            TestUtil.serializeAndDeserialize(nullString, StringEncoding::writeCompactString, StringEncoding::readCompactNullableString);
+            fail("should have thrown NullPointerException on serialization");
+        } catch (NullPointerException e) {
+            // OK
+        }
+
+        try {
+            TestUtil.serializeAndDeserialize(nullString, StringEncoding::writeCompactNullableString, StringEncoding::readCompactString);
+            fail("should have thrown NullPointerException on deserialization");
+        } catch (NullPointerException e) {
+            // OK
+        }
+    }
+
+    @Test
+    public void compact_Latin_1_strings_take_one_byte_per_character() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+
+        StringEncoding.writeCompactString(buffer, "0123456789");
+
+        assertThat(buffer.position(), is(1L + 10));
+    }
+
+    // compressible strings
+
+    @Test
+    public void test_serialization_of_compressible_String() {
+        String logLine = "2016-01-01 12:00:00 INFO  com.example.Something - did something\n";
+        assertThat("short", roundTripCompressibleString("short"), is("short"));
+        assertThat("Latin-1", roundTripCompressibleString(StringUtils.repeat(logLine + "\u00e4", 20)), is(StringUtils.repeat(logLine + "\u00e4", 20)));
+        assertThat("non-Latin-1", roundTripCompressibleString(StringUtils.repeat(logLine + "\u20ac", 20)), is(StringUtils.repeat(logLine + "\u20ac", 20)));
+        assertThat("unpaired surrogate", roundTripCompressibleString(StringUtils.repeat(logLine + "\ud83d", 20)), is(StringUtils.repeat(logLine + "\ud83d", 20)));
+
+        for (int i = 0; i < 100; i++) {
+            String original = RandomStringUtils.random(500);
+            assertThat("random string", roundTripCompressibleString(original), is(original));
+        }
+    }
+
+    @Test
+    public void repetitive_strings_are_compressed() {
+        String original = StringUtils.repeat("2016-01-01 12:00:00 INFO  com.example.Something - did something\n", 100);
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+
+        StringEncoding.writeCompressibleString(buffer, original, new LzCompressor());
+
+        assertThat(buffer.position(), is(lessThan(original.length() / 10L)));
+    }
+
+    @Test
+    public void strings_which_would_not_get_smaller_are_not_compressed() {
+        String original = RandomStringUtils.randomAlphanumeric(1000);
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+
+        StringEncoding.writeCompressibleString(buffer, original, new LzCompressor());
+
+        assertThat(buffer.position(), is(2L + 1000));
+    }
+
+    // char sequence views
+
+    @Test
+    public void Latin_1_and_UTF_16_char_sequences_are_views_to_the_buffer() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        StringEncoding.writeCompactString(buffer, "abc");
+        StringEncoding.writeCompactString(buffer, "x\ud83d");
+
+        buffer.position(0);
+        CharSequence latin1 = StringEncoding.readCompactCharSequence(buffer);
+        CharSequence utf16 = StringEncoding.readCompactCharSequence(buffer);
+        assertThat(latin1.toString(), is("abc"));
+        assertThat(utf16.toString(), is("x\ud83d"));
+        assertThat(buffer.position(), is(1L + 3 + 1 + 2 * 2));
+
+        buffer.setByte(2, (byte) 'B');
+        assertThat(latin1.charAt(1), is('B'));
+        assertThat(latin1.subSequence(1, 3).toString(), is("Bc"));
+        assertThat(utf16.charAt(1), is('\ud83d'));
+        assertThat(utf16.subSequence(1, 2).toString(), is("\ud83d"));
+    }
+
+    @Test
+    public void all_compact_strings_can_be_read_as_char_sequences() {
+        String logLine = "2016-01-01 12:00:00 INFO  com.example.Something - did something\n";
+        for (String original : Arrays.asList("", "abc", "\u20ac\u65e5\u672c", "a\ud83d", StringUtils.repeat(logLine, 20))) {
+            IpcBuffer buffer = TestUtil.newIpcBuffer();
+            StringEncoding.writeCompressibleString(buffer, original, new LzCompressor());
+
+            buffer.position(0);
+            CharSequence result = StringEncoding.readCompactCharSequence(buffer);
+
+            assertThat(result.toString(), is(original));
+        }
+    }
+
+    @Test
+    public void compact_strings_can_be_skipped_without_decoding_them() {
+        String logLine = "2016-01-01 12:00:00 INFO  com.example.Something - did something\n";
+        for (String original : Arrays.asList(null, "", "abc", "\u20ac\u65e5\u672c", "a\ud83d", StringUtils.repeat(logLine, 20))) {
+            IpcBuffer buffer = TestUtil.newIpcBuffer();
+            if (original == null) {
+                StringEncoding.writeCompactNullableString(buffer, null);
+            } else {
+                StringEncoding.writeCompressibleString(buffer, original, new LzCompressor());
+            }
+            long end = buffer.position();
+
+            buffer.position(0);
+            StringEncoding.skipCompactString(buffer);
+
+            assertThat(String.valueOf(original), buffer.position(), is(end));
+        }
+    }
+
+
+    private static String roundTripCompressibleString(String original) {
+        return TestUtil.serializeAndDeserialize(original,
+                (buffer, s) -> StringEncoding.writeCompressibleString(buffer, s, new LzCompressor()),
+                StringEncoding::readCompactString);
+    }
+
+    private static String roundTripCompactString(String original) {
+        return TestUtil.serializeAndDeserialize(original, StringEncoding::writeCompactString, StringEncoding::readCompactString);
+    }
+
+    private static String roundTripCompactNullableString(String original) {
+        return TestUtil.serializeAndDeserialize(original, StringEncoding::writeCompactNullableString, StringEncoding::readCompactNullableString);
+    }
+
     private static String roundTripString(String original) {
         return TestUtil.serializeAndDeserialize(original, StringEncoding::writeString, StringEncoding::readString);
     }
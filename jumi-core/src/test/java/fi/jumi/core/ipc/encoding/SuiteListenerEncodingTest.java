@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -6,14 +6,22 @@ package fi.jumi.core.ipc.encoding;
 
 import fi.jumi.api.drivers.TestId;
 import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.*;
 import fi.jumi.core.ipc.TestUtil;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+import fi.jumi.core.ipc.channel.IpcProtocol;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 
 import static fi.jumi.core.util.EqualityMatchers.deepEqualTo;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
 
 public class SuiteListenerEncodingTest extends EncodingContract<SuiteListener> {
 
@@ -23,6 +31,10 @@ public class SuiteListenerEncodingTest extends EncodingContract<SuiteListener> {
 
     @Override
     protected void exampleUsage(SuiteListener listener) {
+        exampleSuiteListenerUsage(listener);
+    }
+
+    static void exampleSuiteListenerUsage(SuiteListener listener) {
         TestFile testFile = TestFile.fromClassName("com.example.SampleTest");
         RunId runId = new RunId(1);
 
@@ -35,6 +47,9 @@ public class SuiteListenerEncodingTest extends EncodingContract<SuiteListener> {
 
         listener.onRunStarted(runId, testFile);
         listener.onTestStarted(runId, TestId.ROOT);
+        listener.onStartupTimeline(StartupTimeline.EMPTY
+                .with(StartupTimeline.LAUNCHER_BUILD, 1455000000000L)
+                .with(StartupTimeline.FIRST_TEST_STARTED, 1455000001234L));
         listener.onTestStarted(runId, TestId.of(0));
         listener.onPrintedOut(runId, "printed to out");
         listener.onPrintedErr(runId, "printed to err");
@@ -49,6 +64,29 @@ public class SuiteListenerEncodingTest extends EncodingContract<SuiteListener> {
     }
 
 
+    // event types
+
+    @Test
+    public void the_event_type_codes_are_part_of_the_file_format_and_must_not_change() {
+        // the codes are generated from the order of the interface's methods
+        assertThat(SuiteListenerEncodingBase.onSuiteStarted, is((byte) 1));
+        assertThat(SuiteListenerEncodingBase.onInternalError, is((byte) 2));
+        assertThat(SuiteListenerEncodingBase.onTestFileFound, is((byte) 3));
+        assertThat(SuiteListenerEncodingBase.onAllTestFilesFound, is((byte) 4));
+        assertThat(SuiteListenerEncodingBase.onTestFound, is((byte) 5));
+        assertThat(SuiteListenerEncodingBase.onRunStarted, is((byte) 6));
+        assertThat(SuiteListenerEncodingBase.onTestStarted, is((byte) 7));
+        assertThat(SuiteListenerEncodingBase.onPrintedOut, is((byte) 8));
+        assertThat(SuiteListenerEncodingBase.onPrintedErr, is((byte) 9));
+        assertThat(SuiteListenerEncodingBase.onFailure, is((byte) 10));
+        assertThat(SuiteListenerEncodingBase.onTestFinished, is((byte) 11));
+        assertThat(SuiteListenerEncodingBase.onRunFinished, is((byte) 12));
+        assertThat(SuiteListenerEncodingBase.onTestFileFinished, is((byte) 13));
+        assertThat(SuiteListenerEncodingBase.onSuiteFinished, is((byte) 14));
+        assertThat(SuiteListenerEncodingBase.onStartupTimeline, is((byte) 15));
+    }
+
+
     // StackTrace unit tests
 
     @Test
@@ -86,9 +124,16 @@ public class SuiteListenerEncodingTest extends EncodingContract<SuiteListener> {
     }
 
     private static StackTrace roundTripStackTrace(StackTrace original) {
-        return TestUtil.serializeAndDeserialize(original,
-                (buffer, data) -> new SuiteListenerEncoding(buffer).writeStackTrace(data),
-                (buffer) -> new SuiteListenerEncoding(buffer).readStackTrace());
+        // the stack trace elements refer to the message's string table, so a whole message is needed
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        new SuiteListenerEncoding(buffer).encode(new OnFailureEvent(new RunId(1), original));
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        new SuiteListenerEncoding(buffer).decode(target);
+        ArgumentCaptor<StackTrace> deserialized = ArgumentCaptor.forClass(StackTrace.class);
+        verify(target).onFailure(eq(new RunId(1)), deserialized.capture());
+        return deserialized.getValue();
     }
 
     @Test
@@ -114,4 +159,346 @@ public class SuiteListenerEncodingTest extends EncodingContract<SuiteListener> {
         e.setStackTrace(stackTrace);
         return e;
     }
+
+
+    // framing
+
+    @Test
+    public void skips_unknown_event_types() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        buffer.writeByte((byte) 99);
+        VarIntEncoding.writeVarInt(buffer, 3);
+        buffer.writeByte((byte) 0); // no new strings
+        buffer.writeByte((byte) 1).writeByte((byte) 2);
+        new SuiteListenerEncoding(buffer).encode(new OnSuiteFinishedEvent());
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        new SuiteListenerEncoding(buffer).decode(target);
+        verifyZeroInteractions(target);
+        new SuiteListenerEncoding(buffer).decode(target);
+        verify(target).onSuiteFinished();
+    }
+
+    @Test
+    public void skips_unknown_trailing_fields_of_known_event_types() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        buffer.writeByte((byte) 12); // onRunFinished
+        VarIntEncoding.writeVarInt(buffer, 4);
+        buffer.writeByte((byte) 0); // no new strings
+        VarIntEncoding.writeSignedVarInt(buffer, 42);
+        buffer.writeByte((byte) 1).writeByte((byte) 2);
+        new SuiteListenerEncoding(buffer).encode(new OnSuiteFinishedEvent());
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.decode(target);
+        encoding.decode(target);
+        verify(target).onRunFinished(new RunId(42));
+        verify(target).onSuiteFinished();
+    }
+
+    @Test
+    public void the_length_of_long_messages_is_reserved_before_writing_them() {
+        String longName = StringUtils.repeat("x", 1000);
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.encode(new OnTestFoundEvent(TestFile.fromClassName("Foo"), TestId.ROOT, longName));
+        long messageEnd = buffer.position();
+
+        buffer.position(1);
+        int payloadLength = VarIntEncoding.readVarInt(buffer);
+        assertThat("padded length", buffer.position(), is(1L + VarIntEncoding.MAX_BYTES));
+        assertThat("payload length", payloadLength, is((int) (messageEnd - buffer.position())));
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        encoding.decode(target);
+        verify(target).onTestFound(TestFile.fromClassName("Foo"), TestId.ROOT, longName);
+    }
+
+    @Test
+    public void messages_longer_than_estimated_are_moved_to_make_room_for_the_length() {
+        String longText = StringUtils.repeat("\u20ac", 100); // two or three bytes per char
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.encode(new OnPrintedOutEvent(new RunId(1), longText));
+        encoding.encode(new OnSuiteFinishedEvent());
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        encoding.decode(target);
+        encoding.decode(target);
+        verify(target).onPrintedOut(new RunId(1), longText);
+        verify(target).onSuiteFinished();
+    }
+
+    // string table
+
+    @Test
+    public void repeated_strings_are_written_only_once() {
+        TestFile testFile = TestFile.fromClassName("com.example.SomethingTest");
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+
+        encoding.encode(new OnTestFileFoundEvent(testFile));
+        int first = (int) buffer.position();
+        encoding.encode(new OnTestFileFinishedEvent(testFile));
+        int second = (int) buffer.position() - first;
+
+        assertThat("first message", first, is(greaterThan(testFile.getPath().length())));
+        assertThat("second message: type, length, new strings count, string id", second, is(4));
+    }
+
+    @Test
+    public void repeated_values_are_decoded_as_the_same_instances() {
+        TestFile testFile = TestFile.fromClassName("com.example.SomethingTest");
+        StackTrace stackTrace = StackTrace.from(new Exception());
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.encode(new OnTestFileFoundEvent(testFile));
+        encoding.encode(new OnFailureEvent(new RunId(1), stackTrace));
+        encoding.encode(new OnTestFileFinishedEvent(testFile));
+        encoding.encode(new OnFailureEvent(new RunId(2), stackTrace));
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        for (int i = 0; i < 4; i++) {
+            encoding.decode(target);
+        }
+
+        ArgumentCaptor<TestFile> testFiles = ArgumentCaptor.forClass(TestFile.class);
+        verify(target).onTestFileFound(testFiles.capture());
+        verify(target).onTestFileFinished(testFiles.capture());
+        assertThat(testFiles.getAllValues().get(1), is(sameInstance(testFiles.getAllValues().get(0))));
+
+        ArgumentCaptor<StackTrace> stackTraces = ArgumentCaptor.forClass(StackTrace.class);
+        verify(target).onFailure(eq(new RunId(1)), stackTraces.capture());
+        verify(target).onFailure(eq(new RunId(2)), stackTraces.capture());
+        String className1 = stackTraces.getAllValues().get(0).getStackTrace()[0].getClassName();
+        String className2 = stackTraces.getAllValues().get(1).getStackTrace()[0].getClassName();
+        assertThat(className2, is(sameInstance(className1)));
+        StackTraceElement element1 = stackTraces.getAllValues().get(0).getStackTrace()[0];
+        StackTraceElement element2 = stackTraces.getAllValues().get(1).getStackTrace()[0];
+        assertThat(element2, is(sameInstance(element1)));
+    }
+
+    @Test
+    public void the_string_table_is_updated_also_when_skipping_unknown_event_types() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        long start = buffer.position();
+        buffer.writeByte((byte) 99);
+        buffer.writeByte((byte) 0); // length placeholder
+        buffer.writeByte((byte) (1 << 1)); // one new string, no new stack frames
+        StringEncoding.writeCompactString(buffer, "com/example/SomethingTest.class");
+        buffer.setByte(start + 1, (byte) (buffer.position() - start - 2));
+
+        buffer.writeByte((byte) 3); // onTestFileFound
+        buffer.writeByte((byte) 2); // length
+        buffer.writeByte((byte) 0); // no new strings
+        buffer.writeByte((byte) 1); // string id 0
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.decode(target);
+        encoding.decode(target);
+        verify(target).onTestFileFound(TestFile.fromClassName("com.example.SomethingTest"));
+    }
+
+    @Test
+    public void the_table_additions_of_a_message_which_failed_to_encode_are_added_again_by_the_next_message() {
+        TestFile testFile = TestFile.fromClassName("com.example.SomethingTest");
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        try {
+            encoding.encode(new OnTestFoundEvent(testFile, TestId.ROOT, null));
+            fail("should have thrown an exception");
+        } catch (NullPointerException e) {
+            // expected; the message is left unpublished, so the next message will overwrite it
+            buffer.position(0);
+        }
+        encoding.encode(new OnTestFileFoundEvent(testFile));
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        new SuiteListenerEncoding(buffer).decode(target);
+        verify(target).onTestFileFound(testFile);
+    }
+
+    @Test
+    public void the_table_additions_of_messages_which_were_encoded_after_the_mark_are_added_again_after_resetting_to_it() {
+        TestFile published = TestFile.fromClassName("com.example.PublishedTest");
+        TestFile discarded = TestFile.fromClassName("com.example.DiscardedTest");
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.encode(new OnTestFileFoundEvent(published));
+        encoding.mark();
+        long afterMark = buffer.position();
+        encoding.encode(new OnTestFileFoundEvent(discarded));
+        encoding.encode(new OnTestFileFinishedEvent(discarded));
+
+        encoding.resetToMark();
+        buffer.position(afterMark); // the discarded messages will be overwritten
+        encoding.encode(new OnTestFileFinishedEvent(discarded));
+        encoding.encode(new OnTestFileFinishedEvent(published));
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        SuiteListenerEncoding decoding = new SuiteListenerEncoding(buffer);
+        decoding.decode(target);
+        decoding.decode(target);
+        decoding.decode(target);
+        verify(target).onTestFileFound(published);
+        verify(target).onTestFileFinished(discarded);
+        verify(target).onTestFileFinished(published);
+        verifyNoMoreInteractions(target);
+    }
+
+    @Test
+    public void skipped_messages_add_to_the_tables_without_decoding_the_rest() {
+        TestFile testFile = TestFile.fromClassName("com.example.SomethingTest");
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.encode(new OnTestFileFoundEvent(testFile));
+        encoding.encode(new OnTestFileFinishedEvent(testFile));
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        SuiteListenerEncoding decoding = new SuiteListenerEncoding(buffer);
+        decoding.skip();
+        decoding.decode(target);
+        verify(target).onTestFileFinished(testFile);
+        verifyNoMoreInteractions(target);
+    }
+
+    // stack frame table
+
+    @Test
+    public void repeated_stack_traces_are_written_only_once() {
+        StackTrace stackTrace = StackTrace.from(new Exception());
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+
+        encoding.encode(new OnFailureEvent(new RunId(1), stackTrace));
+        int first = (int) buffer.position();
+        encoding.encode(new OnFailureEvent(new RunId(1), stackTrace));
+        int second = (int) buffer.position() - first;
+
+        assertThat("frames", stackTrace.getStackTrace().length, is(greaterThan(10)));
+        assertThat("second message is only the exception's own fields", second,
+                is(lessThan(stackTrace.toString().length() + 16)));
+        assertThat(second * 10, is(lessThan(first)));
+    }
+
+    @Test
+    public void causes_share_the_stack_frames_which_they_have_in_common_with_the_enclosing_trace() {
+        StackTrace withoutCause = StackTrace.from(new Exception("message"));
+        StackTrace withCause = StackTrace.from(new Exception("message", new Exception("cause")));
+
+        int sizeWithoutCause = encodedFailureSize(new SuiteListenerEncoding(TestUtil.newIpcBuffer()), withoutCause);
+        int sizeWithCause = encodedFailureSize(new SuiteListenerEncoding(TestUtil.newIpcBuffer()), withCause);
+
+        // the traces differ only by their innermost frame, because they were created on different lines
+        assertThat(sizeWithCause - sizeWithoutCause, is(lessThan(100)));
+        assertThat(roundTripStackTrace(withCause), is(deepEqualTo(withCause)));
+    }
+
+    private static int encodedFailureSize(SuiteListenerEncoding encoding, StackTrace stackTrace) {
+        encoding.encode(new OnFailureEvent(new RunId(1), stackTrace));
+        return (int) encoding.buffer.position();
+    }
+
+    @Test
+    public void stack_traces_of_different_depths_are_decoded_from_the_shared_frames() {
+        StackTraceElement outer = new StackTraceElement("Outer", "run", "Outer.java", 1);
+        StackTraceElement middle = new StackTraceElement("Middle", "call", "Middle.java", 2);
+        StackTraceElement inner = new StackTraceElement("Inner", "fail", null, -1);
+        StackTrace shallow = StackTrace.from(exceptionWithStackTrace(middle, outer));
+        StackTrace deep = StackTrace.from(exceptionWithStackTrace(inner, middle, outer));
+        StackTrace sameTopDifferentCaller = StackTrace.from(exceptionWithStackTrace(middle, inner));
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        SuiteListenerEncoding encoding = new SuiteListenerEncoding(buffer);
+        encoding.encode(new OnFailureEvent(new RunId(1), shallow));
+        encoding.encode(new OnFailureEvent(new RunId(2), deep));
+        encoding.encode(new OnFailureEvent(new RunId(3), sameTopDifferentCaller));
+
+        buffer.position(0);
+        SuiteListener target = mock(SuiteListener.class);
+        for (int i = 0; i < 3; i++) {
+            encoding.decode(target);
+        }
+
+        ArgumentCaptor<StackTrace> stackTraces = ArgumentCaptor.forClass(StackTrace.class);
+        verify(target).onFailure(eq(new RunId(1)), stackTraces.capture());
+        verify(target).onFailure(eq(new RunId(2)), stackTraces.capture());
+        verify(target).onFailure(eq(new RunId(3)), stackTraces.capture());
+        assertThat(stackTraces.getAllValues().get(0), is(deepEqualTo(shallow)));
+        assertThat(stackTraces.getAllValues().get(1), is(deepEqualTo(deep)));
+        assertThat(stackTraces.getAllValues().get(2), is(deepEqualTo(sameTopDifferentCaller)));
+    }
+
+
+    // compression
+
+    @Test
+    public void repetitive_printed_output_is_compressed() {
+        String output = StringUtils.repeat("[INFO] Running com.example.SomethingTest\n", 100);
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        IpcProtocol<SuiteListener> protocol = new IpcProtocol<>(buffer, SuiteListenerEncoding::new);
+        protocol.start();
+        long headerEnd = buffer.position();
+        SuiteListener writer = new SuiteListenerEventizer().newFrontend(protocol);
+
+        writer.onPrintedOut(new RunId(1), output);
+        writer.onPrintedErr(new RunId(1), output);
+        protocol.close();
+
+        assertThat("encoded size", buffer.position() - headerEnd, is(lessThan(output.length() / 5L)));
+        SuiteListener target = mock(SuiteListener.class);
+        buffer.position(0);
+        new IpcProtocol<>(buffer, SuiteListenerEncoding::new).poll(target);
+        verify(target).onPrintedOut(new RunId(1), output);
+        verify(target).onPrintedErr(new RunId(1), output);
+    }
+
+    @Test
+    public void reads_version_2_which_has_no_compression() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        IpcProtocol<SuiteListener> version2 = new IpcProtocol<>(buffer, b -> new SuiteListenerEncoding(b) {
+            @Override
+            public int getInterfaceVersion() {
+                return 2;
+            }
+        });
+        version2.start();
+        new SuiteListenerEventizer().newFrontend(version2).onPrintedOut(new RunId(1), "output");
+        version2.close();
+
+        SuiteListener target = mock(SuiteListener.class);
+        buffer.position(0);
+        new IpcProtocol<>(buffer, SuiteListenerEncoding::new).poll(target);
+
+        verify(target).onPrintedOut(new RunId(1), "output");
+    }
+
+
+    // size
+
+    @Test
+    public void version_2_is_at_most_half_the_size_of_version_1() {
+        int v1 = encodedSize(SuiteListenerEncodingV1::new);
+        int v2 = encodedSize(SuiteListenerEncoding::new);
+
+        assertThat("v2 size " + v2 + " vs v1 size " + v1, v2 * 2, is(lessThanOrEqualTo(v1)));
+    }
+
+    private static int encodedSize(IpcProtocol.EncodingFactory<SuiteListener> encodingFactory) {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        IpcProtocol<SuiteListener> protocol = new IpcProtocol<>(buffer, encodingFactory);
+        protocol.start();
+        exampleSuiteListenerUsage(new SuiteListenerEventizer().newFrontend(protocol));
+        protocol.close();
+        return (int) buffer.position();
+    }
 }
@@ -0,0 +1,40 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.core.api.*;
+import fi.jumi.core.ipc.TestUtil;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static fi.jumi.core.util.EqualityMatchers.deepEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class SuiteListenerEncodingV1Test extends EncodingContract<SuiteListener> {
+
+    public SuiteListenerEncodingV1Test() {
+        super(SuiteListenerEncodingV1::new);
+    }
+
+    @Override
+    protected void exampleUsage(SuiteListener listener) {
+        SuiteListenerEncodingTest.exampleSuiteListenerUsage(listener);
+    }
+
+    @Test
+    public void test_serialization_of_StackTrace() {
+        IOException e = new IOException("the message", new IllegalArgumentException("cause"));
+        e.addSuppressed(new IllegalStateException("suppressed"));
+        StackTrace original = StackTrace.from(e);
+
+        StackTrace deserialized = TestUtil.serializeAndDeserialize(original,
+                (buffer, data) -> new SuiteListenerEncodingV1(buffer).writeStackTrace(data),
+                (buffer) -> new SuiteListenerEncodingV1(buffer).readStackTrace());
+
+        assertThat(deserialized, is(deepEqualTo(original)));
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.encoding;
+
+import fi.jumi.core.ipc.TestUtil;
+import fi.jumi.core.ipc.buffer.IpcBuffer;
+import fi.jumi.core.util.TestableRandom;
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class VarIntEncodingTest {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public final TestableRandom random = new TestableRandom();
+
+    private static final int[] EDGE_CASES = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Integer.MIN_VALUE, -1, -64, -65};
+
+    @Test
+    public void test_serialization_of_unsigned_varints() {
+        for (int value : EDGE_CASES) {
+            assertThat(roundTripVarInt(value), is(value));
+        }
+        for (int i = 0; i < 100; i++) {
+            int value = random.nextInt();
+            assertThat(roundTripVarInt(value), is(value));
+        }
+    }
+
+    @Test
+    public void test_serialization_of_signed_varints() {
+        for (int value : EDGE_CASES) {
+            assertThat(roundTripSignedVarInt(value), is(value));
+        }
+        for (int i = 0; i < 100; i++) {
+            int value = random.nextInt();
+            assertThat(roundTripSignedVarInt(value), is(value));
+        }
+    }
+
+    @Test
+    public void unsigned_varints_take_one_byte_per_7_bits() {
+        assertThat(encodedSize(0), is(1));
+        assertThat(encodedSize(127), is(1));
+        assertThat(encodedSize(128), is(2));
+        assertThat(encodedSize(16383), is(2));
+        assertThat(encodedSize(16384), is(3));
+        assertThat(encodedSize(Integer.MAX_VALUE), is(5));
+        assertThat("negative", encodedSize(-1), is(5));
+    }
+
+    @Test
+    public void small_signed_varints_take_one_byte() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        VarIntEncoding.writeSignedVarInt(buffer, -1);
+        VarIntEncoding.writeSignedVarInt(buffer, -64);
+        VarIntEncoding.writeSignedVarInt(buffer, 63);
+
+        assertThat(buffer.position(), is(3L));
+    }
+
+    @Test
+    public void padded_varints_take_the_requested_size_and_read_as_normal_varints() {
+        for (int value : new int[]{0, 1, 127, 128, 16383}) {
+            IpcBuffer buffer = TestUtil.newIpcBuffer();
+            VarIntEncoding.writePaddedVarInt(buffer, value, 5);
+            assertThat("size of " + value, buffer.position(), is(5L));
+
+            buffer.position(0);
+            assertThat(VarIntEncoding.readVarInt(buffer), is(value));
+        }
+    }
+
+    @Test
+    public void padded_varints_must_have_room_for_the_value() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("cannot write 128 in 1 bytes");
+        VarIntEncoding.writePaddedVarInt(TestUtil.newIpcBuffer(), 128, 1);
+    }
+
+    @Test
+    public void cannot_read_varints_longer_than_5_bytes() {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        for (int i = 0; i < 6; i++) {
+            buffer.writeByte((byte) 0x80);
+        }
+        buffer.position(0);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("malformed varint at index 0");
+        VarIntEncoding.readVarInt(buffer);
+    }
+
+    private static int encodedSize(int value) {
+        IpcBuffer buffer = TestUtil.newIpcBuffer();
+        VarIntEncoding.writeVarInt(buffer, value);
+        int size = (int) buffer.position();
+        assertThat("sizeOfVarInt(" + value + ")", VarIntEncoding.sizeOfVarInt(value), is(size));
+        return size;
+    }
+
+    private static int roundTripVarInt(int value) {
+        return TestUtil.serializeAndDeserialize(value, VarIntEncoding::writeVarInt, VarIntEncoding::readVarInt);
+    }
+
+    private static int roundTripSignedVarInt(int value) {
+        return TestUtil.serializeAndDeserialize(value, VarIntEncoding::writeSignedVarInt, VarIntEncoding::readSignedVarInt);
+    }
+}
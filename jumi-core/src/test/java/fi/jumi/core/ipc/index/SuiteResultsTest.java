@@ -0,0 +1,241 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.ipc.index;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.*;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.dirs.SuiteDir;
+import fi.jumi.core.util.SpyListener;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class SuiteResultsTest {
+
+    private static final TestFile TEST_FILE_A = TestFile.fromClassName("ATest");
+    private static final TestFile TEST_FILE_B = TestFile.fromClassName("BTest");
+    private static final RunId RUN_1 = new RunId(1);
+    private static final RunId RUN_2 = new RunId(2);
+    private static final RunId RUN_3 = new RunId(3);
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private SuiteDir suiteDir;
+    private IpcWriter<SuiteListener> writer;
+    private SuiteListener suite;
+
+    @Before
+    public void setUp() throws IOException {
+        suiteDir = new SuiteDir(tempDir.getRoot().toPath());
+        writer = SuiteResults.indexedWriter(suiteDir);
+        suite = new SuiteListenerEventizer().newFrontend(writer);
+    }
+
+    @Test
+    public void reads_only_the_events_of_one_run() throws Exception {
+        writeThreeRuns();
+
+        SpyListener<SuiteListener> expectations = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = expectations.getListener();
+        expected.onRunStarted(RUN_2, TEST_FILE_B);
+        expected.onPrintedOut(RUN_2, "two");
+        expected.onRunFinished(RUN_2);
+        expectations.replay();
+
+        IpcReaders.decodeAll(SuiteResults.runReader(suiteDir.getSuiteResultsPath(), RUN_2), expectations.getListener());
+
+        expectations.verify();
+    }
+
+    @Test
+    public void reads_only_the_events_of_one_test_file_including_its_runs() throws Exception {
+        writeThreeRuns();
+
+        SpyListener<SuiteListener> expectations = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = expectations.getListener();
+        expected.onTestFileFound(TEST_FILE_A);
+        expected.onRunStarted(RUN_1, TEST_FILE_A);
+        expected.onPrintedOut(RUN_1, "one");
+        expected.onRunFinished(RUN_1);
+        expected.onRunStarted(RUN_3, TEST_FILE_A);
+        expected.onPrintedOut(RUN_3, "three");
+        expected.onRunFinished(RUN_3);
+        expected.onTestFileFinished(TEST_FILE_A);
+        expectations.replay();
+
+        IpcReaders.decodeAll(SuiteResults.testFileReader(suiteDir.getSuiteResultsPath(), TEST_FILE_A), expectations.getListener());
+
+        expectations.verify();
+    }
+
+    @Test
+    public void an_unknown_run_has_no_events() throws Exception {
+        writeThreeRuns();
+        SuiteListener target = mock(SuiteListener.class);
+
+        IpcReaders.decodeAll(SuiteResults.runReader(suiteDir.getSuiteResultsPath(), new RunId(100)), target);
+
+        verifyZeroInteractions(target);
+    }
+
+    @Test
+    public void decodes_the_shared_strings_and_stack_frames_which_were_added_before_the_run() throws Exception {
+        Throwable exception = new AssertionError("failed");
+        suite.onSuiteStarted();
+        suite.onRunStarted(RUN_1, TEST_FILE_A);
+        suite.onFailure(RUN_1, StackTrace.from(exception));
+        suite.onRunFinished(RUN_1);
+        suite.onRunStarted(RUN_2, TEST_FILE_A);
+        suite.onFailure(RUN_2, StackTrace.from(exception));
+        suite.onRunFinished(RUN_2);
+        suite.onSuiteFinished();
+        writer.close();
+        SuiteListener target = mock(SuiteListener.class);
+
+        IpcReaders.decodeAll(SuiteResults.runReader(suiteDir.getSuiteResultsPath(), RUN_2), target);
+
+        verify(target).onRunStarted(RUN_2, TEST_FILE_A);
+        ArgumentCaptor<StackTrace> failure = ArgumentCaptor.forClass(StackTrace.class);
+        verify(target).onFailure(eq(RUN_2), failure.capture());
+        assertThat(failure.getValue().getExceptionClass(), is(AssertionError.class.getName()));
+        assertThat(failure.getValue().getStackTrace(), is(exception.getStackTrace()));
+    }
+
+    @Test
+    public void tolerates_an_index_which_was_cut_short() throws Exception {
+        writeThreeRuns();
+        Path index = suiteDir.getSuiteResultsIndexPath();
+        try (FileChannel fc = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            fc.truncate(fc.size() - 3);
+        }
+        SpyListener<SuiteListener> expectations = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = expectations.getListener();
+        expected.onRunStarted(RUN_2, TEST_FILE_B);
+        expected.onPrintedOut(RUN_2, "two");
+        expected.onRunFinished(RUN_2);
+        expectations.replay();
+
+        IpcReaders.decodeAll(SuiteResults.runReader(suiteDir.getSuiteResultsPath(), RUN_2), expectations.getListener());
+
+        expectations.verify();
+    }
+
+    @Test
+    public void the_published_messages_can_be_read_before_the_writer_is_closed() throws Exception {
+        suite.onSuiteStarted();
+        suite.onRunStarted(RUN_1, TEST_FILE_A);
+        suite.onPrintedOut(RUN_1, "one");
+        SpyListener<SuiteListener> expectations = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = expectations.getListener();
+        expected.onRunStarted(RUN_1, TEST_FILE_A);
+        expected.onPrintedOut(RUN_1, "one");
+        expectations.replay();
+
+        SuiteResults.runReader(suiteDir.getSuiteResultsPath(), RUN_1).poll(expectations.getListener());
+
+        expectations.verify();
+    }
+
+    @Test
+    public void messages_which_failed_to_be_written_are_not_indexed() throws Exception {
+        suite.onSuiteStarted();
+        try {
+            writer.send(new OnTestFoundEvent(TEST_FILE_A, TestId.ROOT, null));
+            fail("should have thrown");
+        } catch (NullPointerException e) {
+            // expected
+        }
+        suite.onRunStarted(RUN_1, TEST_FILE_A);
+        suite.onRunFinished(RUN_1);
+        writer.close();
+        SpyListener<SuiteListener> expectations = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = expectations.getListener();
+        expected.onRunStarted(RUN_1, TEST_FILE_A);
+        expected.onRunFinished(RUN_1);
+        expectations.replay();
+
+        IpcReaders.decodeAll(SuiteResults.testFileReader(suiteDir.getSuiteResultsPath(), TEST_FILE_A), expectations.getListener());
+
+        expectations.verify();
+    }
+
+    @Test
+    public void messages_sent_after_a_failed_batch_can_be_decoded() throws Exception {
+        suite.onSuiteStarted();
+        try {
+            writer.sendBatch(Arrays.asList(
+                    new OnTestFileFoundEvent(TEST_FILE_A), // adds the test file to the string table
+                    new OnTestFoundEvent(TEST_FILE_A, TestId.ROOT, null)));
+            fail("should have thrown");
+        } catch (NullPointerException e) {
+            // expected
+        }
+        suite.onRunStarted(RUN_1, TEST_FILE_A);
+        suite.onRunFinished(RUN_1);
+        suite.onSuiteFinished();
+        writer.close();
+
+        SpyListener<SuiteListener> allEvents = new SpyListener<>(SuiteListener.class);
+        SuiteListener expected = allEvents.getListener();
+        expected.onSuiteStarted();
+        expected.onRunStarted(RUN_1, TEST_FILE_A);
+        expected.onRunFinished(RUN_1);
+        expected.onSuiteFinished();
+        allEvents.replay();
+        IpcReaders.decodeAll(SuiteResults.reader(suiteDir.getSuiteResultsPath()), allEvents.getListener());
+        allEvents.verify();
+
+        SpyListener<SuiteListener> runEvents = new SpyListener<>(SuiteListener.class);
+        expected = runEvents.getListener();
+        expected.onRunStarted(RUN_1, TEST_FILE_A);
+        expected.onRunFinished(RUN_1);
+        runEvents.replay();
+        IpcReaders.decodeAll(SuiteResults.runReader(suiteDir.getSuiteResultsPath(), RUN_1), runEvents.getListener());
+        runEvents.verify();
+    }
+
+    @Test
+    public void the_index_is_written_next_to_the_suite_results() {
+        writer.close();
+
+        assertThat(Files.exists(suiteDir.getSuiteResultsIndexPath()), is(true));
+        assertThat(suiteDir.getSuiteResultsIndexPath().getParent(), is(suiteDir.getSuiteResultsPath().getParent()));
+    }
+
+
+    private void writeThreeRuns() {
+        suite.onSuiteStarted();
+        suite.onTestFileFound(TEST_FILE_A);
+        suite.onTestFileFound(TEST_FILE_B);
+        suite.onAllTestFilesFound();
+        suite.onRunStarted(RUN_1, TEST_FILE_A);
+        suite.onPrintedOut(RUN_1, "one");
+        suite.onRunFinished(RUN_1);
+        suite.onRunStarted(RUN_2, TEST_FILE_B);
+        suite.onPrintedOut(RUN_2, "two");
+        suite.onRunFinished(RUN_2);
+        suite.onRunStarted(RUN_3, TEST_FILE_A);
+        suite.onPrintedOut(RUN_3, "three");
+        suite.onRunFinished(RUN_3);
+        suite.onTestFileFinished(TEST_FILE_B);
+        suite.onTestFileFinished(TEST_FILE_A);
+        suite.onSuiteFinished();
+        writer.close();
+    }
+}
@@ -0,0 +1,82 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import org.junit.*;
+
+import java.net.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ClassLoaderLeakDetectorTest {
+
+    private final ClassLoaderLeakDetector detector = new ClassLoaderLeakDetector(2);
+    private final CountDownLatch stopThreads = new CountDownLatch(1);
+    private final ClassLoader leaked = newClassLoader(); // a field, so that the JIT won't consider it unreachable
+
+    @After
+    public void tearDown() {
+        stopThreads.countDown();
+    }
+
+    @Test
+    public void class_loaders_which_are_garbage_collected_are_not_leaks() {
+        detector.track(newClassLoader());
+        detector.track(newClassLoader());
+        detector.track(newClassLoader());
+
+        assertThat(detector.findLeaks(), is(empty()));
+    }
+
+    @Test
+    public void class_loaders_are_leaks_if_they_have_not_been_garbage_collected_after_the_limit() {
+        detector.track(leaked);
+        detector.track(newClassLoader());
+        assertThat("before the limit", detector.findLeaks(), is(empty()));
+
+        detector.track(newClassLoader());
+        assertThat("after the limit", detector.findLeaks(), contains(startsWith("The class loader of suite #1 was not garbage collected after 2 later suites.")));
+    }
+
+    @Test
+    public void reports_threads_which_use_the_leaked_class_loader() {
+        Thread thread = new Thread(this::awaitStop, "leaking-thread");
+        thread.setContextClassLoader(leaked);
+        thread.setDaemon(true);
+        thread.start();
+
+        detector.track(leaked);
+        detector.track(newClassLoader());
+        detector.track(newClassLoader());
+
+        assertThat(detector.findLeaks(), contains(containsString("thread \"leaking-thread\" as its context class loader")));
+    }
+
+    @Test
+    public void suggests_a_heap_dump_when_the_referrer_is_unknown() {
+        detector.track(leaked);
+        detector.track(newClassLoader());
+        detector.track(newClassLoader());
+
+        assertThat(detector.findLeaks(), contains(containsString("Take a heap dump")));
+    }
+
+
+    // helpers
+
+    private static ClassLoader newClassLoader() {
+        return new URLClassLoader(new URL[0]);
+    }
+
+    private void awaitStop() {
+        try {
+            stopThreads.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
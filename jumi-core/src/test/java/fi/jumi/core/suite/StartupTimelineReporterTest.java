@@ -0,0 +1,75 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.actors.queue.MessageQueue;
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.*;
+import org.junit.Test;
+
+import java.util.*;
+
+import static fi.jumi.core.api.StartupTimeline.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StartupTimelineReporterTest {
+
+    private final MessageQueue<Event<SuiteListener>> events = new MessageQueue<>();
+    private final SuiteListener listener = StartupTimelineReporter.wrap(
+            new SuiteListenerEventizer().newFrontend(events), EMPTY.with(SUITE_CONFIGURE, 100));
+
+    private final TestFile testFile = TestFile.fromClassName("FooTest");
+    private final RunId runId = new RunId(1);
+
+    @Test
+    public void reports_the_timeline_after_the_first_test_has_started() {
+        listener.onSuiteStarted();
+        listener.onTestFileFound(testFile);
+        listener.onTestFileFound(TestFile.fromClassName("BarTest"));
+        listener.onRunStarted(runId, testFile);
+        listener.onTestStarted(runId, TestId.ROOT);
+        listener.onTestStarted(runId, TestId.of(0));
+        listener.onSuiteFinished();
+
+        List<Event<SuiteListener>> events = drain();
+        assertThat(events.get(5), is(instanceOf(OnStartupTimelineEvent.class)));
+        assertThat(timelines(events), hasSize(1));
+        assertThat(timelines(events).get(0).getPhases(), contains(SUITE_CONFIGURE, FIRST_TEST_FILE_FOUND, FIRST_TEST_STARTED));
+    }
+
+    @Test
+    public void reports_the_timeline_before_the_suite_finishes_if_no_tests_were_run() {
+        listener.onSuiteStarted();
+        listener.onAllTestFilesFound();
+        listener.onSuiteFinished();
+
+        List<Event<SuiteListener>> events = drain();
+        assertThat(events.get(2), is(instanceOf(OnStartupTimelineEvent.class)));
+        assertThat(timelines(events).get(0).getPhases(), contains(SUITE_CONFIGURE));
+    }
+
+    private List<Event<SuiteListener>> drain() {
+        List<Event<SuiteListener>> list = new ArrayList<>();
+        Event<SuiteListener> event;
+        while ((event = events.poll()) != null) {
+            list.add(event);
+        }
+        return list;
+    }
+
+    private static List<StartupTimeline> timelines(List<Event<SuiteListener>> events) {
+        List<StartupTimeline> timelines = new ArrayList<>();
+        for (Event<SuiteListener> event : events) {
+            if (event instanceof OnStartupTimelineEvent) {
+                timelines.add(((OnStartupTimelineEvent) event).getArg0());
+            }
+        }
+        return timelines;
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -11,10 +11,14 @@ import fi.jumi.core.config.*;
 import fi.jumi.core.stdout.OutputCapturer;
 import org.apache.commons.io.output.NullOutputStream;
 import org.junit.*;
-import org.junit.rules.Timeout;
+import org.junit.rules.*;
 
-import java.io.PrintStream;
+import java.io.*;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.concurrent.*;
+import java.util.jar.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -24,12 +28,27 @@ public class SuiteFactoryTest {
     @Rule
     public final Timeout timeout = new Timeout(1000);
 
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
     private DaemonConfigurationBuilder daemon = new DaemonConfigurationBuilder();
+    private SuiteHost host;
     private SuiteFactory factory;
+    private SuiteFactory concurrentFactory;
 
     private void createSuiteFactory() {
-        factory = new SuiteFactory(daemon.freeze(), new OutputCapturer(), new PrintStream(new NullOutputStream()), new NullMessageListener());
-        factory.configure(new SuiteConfiguration());
+        createSuiteFactory(new SuiteConfiguration());
+    }
+
+    private void createSuiteFactory(SuiteConfiguration suite) {
+        host = new SuiteHost(daemon.freeze(), new OutputCapturer(), new PrintStream(new NullOutputStream()), new NullMessageListener());
+        factory = host.newSuite();
+        factory.configure(suite);
+    }
+
+    private void createConcurrentSuiteFactory(SuiteConfiguration suite) {
+        concurrentFactory = host.newSuite();
+        concurrentFactory.configure(suite);
     }
 
     @After
@@ -37,6 +56,9 @@ public class SuiteFactoryTest {
         if (factory != null) {
             factory.close();
         }
+        if (concurrentFactory != null) {
+            concurrentFactory.close();
+        }
     }
 
     @Test
@@ -84,4 +106,116 @@ public class SuiteFactoryTest {
 
         assertThat(testThreadPool.getMaximumPoolSize(), is(3));
     }
+
+    @Test
+    public void closing_stops_the_threads_and_lets_go_of_the_class_loader_of_the_suite() {
+        createSuiteFactory();
+        factory.start(new NullSuiteListener());
+        ExecutorService testThreadPool = factory.testThreadPool;
+
+        factory.close();
+
+        assertThat("test threads terminated", testThreadPool.isTerminated(), is(true));
+        assertThat("test class loader", factory.testClassLoader, is(nullValue()));
+    }
+
+    @Test
+    public void library_JARs_are_loaded_once_for_all_suites_and_class_directories_for_every_suite() throws IOException {
+        Path library = tempDir.newFile("library.jar").toPath();
+        Path classes = tempDir.newFolder("classes").toPath();
+        SuiteConfiguration suite = new SuiteConfigurationBuilder()
+                .setClasspath(library, classes)
+                .freeze();
+
+        createSuiteFactory(suite);
+        ClassLoader loader1 = factory.testClassLoader;
+        factory.close();
+        factory.configure(suite);
+        ClassLoader loader2 = factory.testClassLoader;
+
+        assertThat("class directories", loader2, is(not(loader1)));
+        assertThat("libraries", loader2.getParent(), is(loader1.getParent()));
+        assertThat(((URLClassLoader) loader1).getURLs(), is(arrayContaining(classes.toUri().toURL())));
+        assertThat(((URLClassLoader) loader1.getParent()).getURLs(), is(arrayContaining(library.toUri().toURL())));
+    }
+
+    @Test
+    public void library_JARs_are_loaded_again_if_their_content_changes() throws IOException {
+        Path library = tempDir.newFile("library.jar").toPath();
+        SuiteConfiguration suite = new SuiteConfigurationBuilder()
+                .setClasspath(library)
+                .freeze();
+
+        createSuiteFactory(suite);
+        ClassLoader loader1 = factory.testClassLoader;
+        factory.close();
+        Files.write(library, new byte[]{1, 2, 3});
+        factory.configure(suite);
+        ClassLoader loader2 = factory.testClassLoader;
+
+        assertThat(loader2.getParent(), is(not(loader1.getParent())));
+    }
+
+    @Test
+    public void isolated_libraries_are_loaded_for_every_suite() throws IOException {
+        Path library = tempDir.newFile("library.jar").toPath();
+        Path isolated = tempDir.newFile("isolated.jar").toPath();
+        SuiteConfiguration suite = new SuiteConfigurationBuilder()
+                .setClasspath(library, isolated)
+                .setIsolatedLibraries("glob:isolated.jar")
+                .freeze();
+
+        createSuiteFactory(suite);
+
+        assertThat(((URLClassLoader) factory.testClassLoader).getURLs(), is(arrayContaining(isolated.toUri().toURL())));
+        assertThat(((URLClassLoader) factory.testClassLoader.getParent()).getURLs(), is(arrayContaining(library.toUri().toURL())));
+    }
+
+    @Test
+    public void concurrent_suites_have_their_own_class_loaders_and_threads_but_share_the_library_JARs() throws IOException {
+        Path library = tempDir.newFile("library.jar").toPath();
+        Path classes = tempDir.newFolder("classes").toPath();
+        SuiteConfiguration suite = new SuiteConfigurationBuilder()
+                .setClasspath(library, classes)
+                .freeze();
+
+        createSuiteFactory(suite);
+        createConcurrentSuiteFactory(suite);
+
+        assertThat("class directories", concurrentFactory.testClassLoader, is(not(factory.testClassLoader)));
+        assertThat("libraries", concurrentFactory.testClassLoader.getParent(), is(factory.testClassLoader.getParent()));
+        assertThat("test threads", concurrentFactory.testThreadPool, is(not(factory.testThreadPool)));
+    }
+
+    @Test
+    public void library_JARs_which_changed_during_a_suite_are_not_closed_until_the_suite_has_finished() throws IOException {
+        Path library = tempDir.getRoot().toPath().resolve("library.jar");
+        writeJar(library, "old-resource.txt");
+        SuiteConfiguration suite = new SuiteConfigurationBuilder()
+                .setClasspath(library)
+                .freeze();
+
+        createSuiteFactory(suite);
+        ClassLoader oldLibraries = factory.testClassLoader.getParent();
+        assertThat("library before the change", oldLibraries.getResource("old-resource.txt"), is(notNullValue()));
+        writeJar(library, "changed-library-resource.txt");
+        createConcurrentSuiteFactory(suite);
+
+        assertThat("changed library", concurrentFactory.testClassLoader.getResource("changed-library-resource.txt"), is(notNullValue()));
+        assertThat("library of the running suite", oldLibraries.getResource("old-resource.txt"), is(notNullValue()));
+
+        factory.close();
+
+        assertThat("library after the suite", oldLibraries.getResource("old-resource.txt"), is(nullValue()));
+    }
+
+    private static void writeJar(Path jar, String resource) throws IOException {
+        // replaced atomically, because the class loader of the running suite may have the old JAR open
+        Path tmp = jar.resolveSibling(jar.getFileName() + ".tmp");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(tmp))) {
+            out.putNextEntry(new JarEntry(resource));
+            out.write(resource.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING);
+    }
 }
@@ -0,0 +1,112 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.suite;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestThreadBudgetTest {
+
+    @Rule
+    public final Timeout timeout = new Timeout(1000);
+
+    private final ExecutorService suite1 = Executors.newCachedThreadPool();
+    private final ExecutorService suite2 = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        suite1.shutdownNow();
+        suite2.shutdownNow();
+    }
+
+    @Test
+    public void the_suites_together_run_only_as_many_tests_at_a_time_as_there_are_threads() throws Exception {
+        TestThreadBudget budget = new TestThreadBudget(1);
+        CountDownLatch firstTestStarted = new CountDownLatch(1);
+        CountDownLatch firstTestMayFinish = new CountDownLatch(1);
+        CountDownLatch secondTestStarted = new CountDownLatch(1);
+
+        budget.limit(suite1).execute(() -> {
+            firstTestStarted.countDown();
+            await(firstTestMayFinish);
+        });
+        firstTestStarted.await();
+        budget.limit(suite2).execute(secondTestStarted::countDown);
+
+        assertThat("while the first test runs", secondTestStarted.await(50, TimeUnit.MILLISECONDS), is(false));
+        firstTestMayFinish.countDown();
+        assertThat("after the first test", secondTestStarted.await(500, TimeUnit.MILLISECONDS), is(true));
+    }
+
+    @Test
+    public void the_suites_take_turns_in_the_order_that_their_tests_became_ready() throws Exception {
+        TestThreadBudget budget = new TestThreadBudget(1);
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch blockerMayFinish = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch allFinished = new CountDownLatch(3);
+
+        budget.limit(suite1).execute(() -> {
+            blockerStarted.countDown();
+            await(blockerMayFinish);
+        });
+        blockerStarted.await();
+        executeInOrder(budget.limit(suite1), "suite 1, test 1", order, allFinished);
+        executeInOrder(budget.limit(suite2), "suite 2, test 1", order, allFinished);
+        executeInOrder(budget.limit(suite1), "suite 1, test 2", order, allFinished);
+        blockerMayFinish.countDown();
+        allFinished.await();
+
+        assertThat(order, contains("suite 1, test 1", "suite 2, test 1", "suite 1, test 2"));
+    }
+
+    @Test
+    public void a_test_which_was_stopped_while_waiting_for_its_turn_is_not_run() throws Exception {
+        TestThreadBudget budget = new TestThreadBudget(1);
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch blockerMayFinish = new CountDownLatch(1);
+        CountDownLatch stoppedTestStarted = new CountDownLatch(1);
+        CountDownLatch nextTestStarted = new CountDownLatch(1);
+
+        budget.limit(suite1).execute(() -> {
+            blockerStarted.countDown();
+            await(blockerMayFinish);
+        });
+        blockerStarted.await();
+        budget.limit(suite2).execute(stoppedTestStarted::countDown);
+        Thread.sleep(10); // let it start waiting for its turn
+        suite2.shutdownNow();
+        blockerMayFinish.countDown();
+        budget.limit(suite1).execute(nextTestStarted::countDown);
+
+        nextTestStarted.await();
+        assertThat("stopped test", stoppedTestStarted.getCount(), is(1L));
+    }
+
+
+    // helpers
+
+    private static void executeInOrder(Executor executor, String name, List<String> order, CountDownLatch finished) throws InterruptedException {
+        executor.execute(() -> {
+            order.add(name);
+            finished.countDown();
+        });
+        Thread.sleep(10); // let it start waiting for its turn before the next one
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
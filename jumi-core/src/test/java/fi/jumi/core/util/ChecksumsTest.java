@@ -0,0 +1,37 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.core.util;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ChecksumsTest {
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void calculates_the_SHA1_of_a_file_as_hex() throws IOException {
+        Path file = tempDir.newFile().toPath();
+        Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(Checksums.sha1(file), is("a9993e364706816aba3e25717850c26c9cd0d89d"));
+    }
+
+    @Test
+    public void keeps_the_leading_zeros() throws IOException {
+        Path file = tempDir.newFile().toPath();
+        Files.write(file, "9".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(Checksums.sha1(file), is("0ade7c2cf97f75d009975f4d720d1fa6c19f4897"));
+    }
+}
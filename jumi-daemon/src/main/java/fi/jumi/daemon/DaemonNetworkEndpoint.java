@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -6,16 +6,17 @@ package fi.jumi.daemon;
 
 import fi.jumi.actors.eventizers.Event;
 import fi.jumi.actors.queue.MessageSender;
-import fi.jumi.core.api.SuiteListener;
+import fi.jumi.core.api.*;
 import fi.jumi.core.config.SuiteConfiguration;
 import fi.jumi.core.events.SuiteListenerEventizer;
 import fi.jumi.core.ipc.IpcCommandSender;
 import fi.jumi.core.ipc.api.RequestListener;
 import fi.jumi.core.ipc.channel.*;
 import fi.jumi.core.ipc.dirs.*;
-import fi.jumi.core.ipc.encoding.SuiteListenerEncoding;
+import fi.jumi.core.ipc.index.SuiteResults;
 import fi.jumi.core.network.*;
-import fi.jumi.core.suite.SuiteFactory;
+import fi.jumi.core.suite.SuiteHost;
+import fi.jumi.core.util.StartupPhases;
 import fi.jumi.core.util.timeout.*;
 
 import javax.annotation.concurrent.ThreadSafe;
@@ -28,26 +29,32 @@ public class DaemonNetworkEndpoint implements NetworkEndpoint<Event<RequestListe
 
     // TODO: remove this class
 
-    private final SuiteFactory suiteFactory;
+    private final SuiteHost suiteHost;
     private final Runnable shutdownHook;
     private final Timeout startupTimeout;
     private final DaemonDir daemonDir;
     private final VacancyTimeout connections;
+    private final WaitSettings waitSettings;
+    private final StartupPhases startupPhases;
     private final ExecutorService executor = Executors.newCachedThreadPool();
 
     private MessageSender<Event<SuiteListener>> sender;
 
-    public DaemonNetworkEndpoint(SuiteFactory suiteFactory, Runnable shutdownHook, Timeout startupTimeout, Timeout idleTimeout, DaemonDir daemonDir) {
-        this.suiteFactory = suiteFactory;
+    public DaemonNetworkEndpoint(SuiteHost suiteHost, Runnable shutdownHook, Timeout startupTimeout, VacancyTimeout connections, DaemonDir daemonDir,
+                                 WaitSettings waitSettings, StartupPhases startupPhases) {
+        this.suiteHost = suiteHost;
         this.shutdownHook = shutdownHook;
         this.startupTimeout = startupTimeout;
         this.daemonDir = daemonDir;
-        this.connections = new VacancyTimeout(idleTimeout);
+        this.connections = connections;
+        this.waitSettings = waitSettings;
+        this.startupPhases = startupPhases;
     }
 
     @Override
     public void onConnected(NetworkConnection connection, MessageSender<Event<SuiteListener>> sender) {
         this.sender = sender;
+        startupPhases.mark(StartupTimeline.NETTY_CONNECT);
         startupTimeout.cancel();
         connections.checkIn();
     }
@@ -65,20 +72,22 @@ public class DaemonNetworkEndpoint implements NetworkEndpoint<Event<RequestListe
     @Override
     public void runTests(SuiteConfiguration suite) {
         SuiteListener suiteListener = new SuiteListenerEventizer().newFrontend(sender);
+//        SuiteFactory suiteFactory = suiteHost.newSuite();
 //        suiteFactory.configure(suite);
 //        suiteFactory.start(suiteListener);
 
         // XXX: routing the commands through IPC to make sure that IPC works
         try {
             CommandDir commandDir = daemonDir.createCommandDir();
-            IpcCommandSender sender = new IpcCommandSender(commandDir, executor);
+            IpcCommandSender sender = new IpcCommandSender(commandDir, executor, waitSettings);
             Future<Path> suiteResults = sender.runTests(suite);
             sender.close();
 
             executor.execute(() -> {
                 try {
-                    IpcReader<SuiteListener> suiteReader = IpcChannel.reader(suiteResults.get(), SuiteListenerEncoding::new);
-                    IpcReaders.decodeAll(suiteReader, suiteListener);
+                    Path suiteResultsPath = suiteResults.get();
+                    IpcReader<SuiteListener> suiteReader = SuiteResults.reader(suiteResultsPath);
+                    waitSettings.decodeResultsChannel(suiteReader, suiteListener, suiteResultsPath);
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                     Thread.currentThread().interrupt();
@@ -101,7 +110,7 @@ public class DaemonNetworkEndpoint implements NetworkEndpoint<Event<RequestListe
         // XXX: routing the commands through IPC to make sure that IPC works
         try {
             CommandDir commandDir = daemonDir.createCommandDir();
-            IpcCommandSender sender = new IpcCommandSender(commandDir, executor);
+            IpcCommandSender sender = new IpcCommandSender(commandDir, executor, waitSettings);
             sender.shutdown();
             sender.close();
 
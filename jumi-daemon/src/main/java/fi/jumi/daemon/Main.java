@@ -1,27 +1,31 @@
-// Copyright © 2011-2015, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.daemon;
 
 import fi.jumi.actors.*;
-import fi.jumi.actors.eventizers.ComposedEventizerProvider;
+import fi.jumi.actors.eventizers.*;
 import fi.jumi.actors.listeners.*;
-import fi.jumi.core.api.SuiteListener;
+import fi.jumi.actors.queue.MessageSender;
+import fi.jumi.core.api.*;
 import fi.jumi.core.config.*;
 import fi.jumi.core.events.*;
+import fi.jumi.core.events.suiteListener.OnSuiteFinishedEvent;
 import fi.jumi.core.ipc.CommandsDirectoryObserver;
 import fi.jumi.core.ipc.api.CommandListener;
-import fi.jumi.core.ipc.dirs.DaemonDir;
+import fi.jumi.core.ipc.dirs.*;
 import fi.jumi.core.network.*;
 import fi.jumi.core.stdout.*;
-import fi.jumi.core.suite.SuiteFactory;
-import fi.jumi.core.util.PrefixedThreadFactory;
+import fi.jumi.core.suite.*;
+import fi.jumi.core.util.*;
 import fi.jumi.core.util.timeout.*;
+import fi.jumi.daemon.warmup.WarmUp;
 
 import javax.annotation.concurrent.*;
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.concurrent.*;
 
 @ThreadSafe
@@ -30,12 +34,15 @@ public class Main {
     private static final SystemExit SHUTDOWN_ON_STARTUP_TIMEOUT = new SystemExit("timed out before anybody connected");
     private static final SystemExit SHUTDOWN_ON_IDLE_TIMEOUT = new SystemExit("timed out after everybody disconnected");
     private static final SystemExit SHUTDOWN_ON_USER_COMMAND = new SystemExit("ordered to shut down");
+    private static final SystemExit SHUTDOWN_ON_WARM_UP_FAILURE = new SystemExit("failed to warm up");
 
     // Guaranteed to be the original stdout and stderr instances, even after installing the output capturer
     private static final PrintStream stdout = System.out;
     private static final PrintStream stderr = System.err;
 
     public static void main(String[] args) throws IOException {
+        StartupPhases startupPhases = new StartupPhases();
+        startupPhases.mark(StartupTimeline.DAEMON_MAIN_ENTRY);
         stdout.println("Jumi " + DaemonArtifact.getVersion() + " starting up");
 
         DaemonConfiguration config = new DaemonConfigurationBuilder()
@@ -48,9 +55,14 @@ public class Main {
                 SHUTDOWN_ON_STARTUP_TIMEOUT, config.getStartupTimeout(), TimeUnit.MILLISECONDS
         );
         startupTimeout.start();
+
+        // launchers may reuse this daemon for other suites, as long as it's alive and has room for them
+        DaemonRegistration registration = new DaemonRegistration(config.getDaemonDir(), config.getConcurrentSuites());
+        registration.lockForLifetime();
         Timeout idleTimeout = new CommandExecutingTimeout(
-                SHUTDOWN_ON_IDLE_TIMEOUT, config.getIdleTimeout(), TimeUnit.MILLISECONDS
+                () -> retireAndExit(registration, config.getStartupTimeout()), config.getIdleTimeout(), TimeUnit.MILLISECONDS
         );
+        VacancyTimeout activity = new VacancyTimeout(idleTimeout);
 
         // replacing System.out/err with the output capturer
         OutputCapturer outputCapturer = new OutputCapturer(stdout, stderr, Charset.defaultCharset());
@@ -63,7 +75,7 @@ public class Main {
                 : new NullMessageListener();
 
         // entry point of the application
-        SuiteFactory suiteFactory = new SuiteFactory(config, outputCapturer, logOutput, actorMessageLogger);
+        SuiteHost suiteHost = new SuiteHost(config, outputCapturer, logOutput, actorMessageLogger);
 
         // listen for commands through IPC files
         DaemonDir daemonDir = new DaemonDir(config.getDaemonDir());
@@ -72,32 +84,119 @@ public class Main {
                 executor,
                 new ComposedEventizerProvider(
                         new RequestHandlerEventizer(),
-                        new SuiteListenerEventizer()
+                        new SuiteListenerEventizer(),
+                        new RunnableEventizer()
                 ),
                 new PrintStreamFailureLogger(logOutput),
                 actorMessageLogger
         );
-        executor.execute(new CommandsDirectoryObserver(daemonDir, executor, actors.startActorThread(), new MyCommandListener(suiteFactory)));
+        executor.execute(new CommandsDirectoryObserver(daemonDir, executor, actors.startActorThread(), new MyCommandListener(suiteHost, activity, registration, executor, logOutput, startupPhases),
+                config.getWaitSettings(), config.getMultiProducerResults()));
+
+        if (config.isStandby()) {
+            // nobody will connect to a standby daemon; it will be claimed through the registry after warming up
+            startupTimeout.cancel();
+            executor.execute(() -> warmUp(config, executor, logOutput));
+            return;
+        }
 
         // listen for commands through network sockets
         NetworkClient client = new NettyNetworkClient();
         client.connect("127.0.0.1", config.getLauncherPort(),
-                new DaemonNetworkEndpoint(suiteFactory, SHUTDOWN_ON_USER_COMMAND, startupTimeout, idleTimeout, daemonDir));
+                new DaemonNetworkEndpoint(suiteHost, SHUTDOWN_ON_USER_COMMAND, startupTimeout, activity, daemonDir,
+                        config.getWaitSettings(), startupPhases));
     }
 
-    @NotThreadSafe
-    private static class MyCommandListener implements CommandListener {
-        private final SuiteFactory suiteFactory;
+    private static void warmUp(DaemonConfiguration config, Executor executor, PrintStream logOutput) {
+        try {
+            long start = System.currentTimeMillis();
+            new WarmUp(config.getDaemonDir(), executor, config.getWaitSettings()).run();
+            logOutput.println("Warmed up in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Throwable t) {
+            // the warm-up suite is what releases the launcher's claim, so without it nobody could use this daemon
+            t.printStackTrace(logOutput);
+            SHUTDOWN_ON_WARM_UP_FAILURE.run();
+        }
+    }
 
-        public MyCommandListener(SuiteFactory suiteFactory) {
-            this.suiteFactory = suiteFactory;
+    private static void retireAndExit(DaemonRegistration registration, long claimTimeout) {
+        try {
+            // a launcher may have claimed this daemon just before the timeout; then the timeout
+            // is cancelled when its command arrives, and started again after running the suite
+            while (!registration.tryRetire(claimTimeout)) {
+                Thread.sleep(claimTimeout);
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (RuntimeException e) {
+            // the daemon dir was removed, so no launcher can claim this daemon anymore
+            e.printStackTrace(stdout);
+        }
+        SHUTDOWN_ON_IDLE_TIMEOUT.run();
+    }
+
+    @ThreadSafe
+    private static class MyCommandListener implements CommandListener {
+        private final SuiteHost suiteHost;
+        private final VacancyTimeout activity;
+        private final DaemonRegistration registration;
+        private final Executor executor;
+        private final PrintStream logOutput;
+        private final StartupPhases startupPhases;
+
+        public MyCommandListener(SuiteHost suiteHost, VacancyTimeout activity, DaemonRegistration registration,
+                                 Executor executor, PrintStream logOutput, StartupPhases startupPhases) {
+            this.suiteHost = suiteHost;
+            this.activity = activity;
+            this.registration = registration;
+            this.executor = executor;
+            this.logOutput = logOutput;
+            this.startupPhases = startupPhases;
         }
-        // XXX: this should be used as an actor (it works now just because we only send one message to the daemon)
 
         @Override
         public void runTests(SuiteConfiguration suiteConfiguration, ActorRef<SuiteListener> suiteListener) {
-            suiteFactory.configure(suiteConfiguration);
-            suiteFactory.start(suiteListener.tell());
+            // each command runs in a suite of its own, concurrently with the suites of other commands
+            activity.checkIn();
+            startupPhases.mark(StartupTimeline.COMMAND_DIR_OBSERVATION);
+            startupPhases.mark(StartupTimeline.SUITE_CONFIGURE);
+            SuiteFactory suite = suiteHost.newSuite();
+            suite.configure(suiteConfiguration);
+            // the suite's own threads are stopped when it finishes, so clean up in another thread
+            SuiteListener listener = whenFinished(suiteListener.tell(), () -> executor.execute(() -> afterSuite(suite)));
+            suite.start(StartupTimelineReporter.wrap(listener, startupPhases.takeAll()));
+        }
+
+        private void afterSuite(SuiteFactory suite) {
+            try {
+                suite.close();
+                List<String> leaks = suiteHost.findLeakedClassLoaders();
+                if (leaks.isEmpty()) {
+                    registration.releaseClaim();
+                } else {
+                    for (String leak : leaks) {
+                        logOutput.println(leak);
+                    }
+                    // keep the claim, so that this daemon exits at the idle timeout and launchers start a new one
+                    logOutput.println("Retiring this daemon because of leaked class loaders");
+                    registration.unregister();
+                }
+            } catch (IOException e) {
+                e.printStackTrace(logOutput);
+            } finally {
+                activity.checkOut();
+            }
+        }
+
+        private static SuiteListener whenFinished(SuiteListener target, Runnable callback) {
+            SuiteListenerEventizer eventizer = new SuiteListenerEventizer();
+            MessageSender<Event<SuiteListener>> backend = eventizer.newBackend(target);
+            return eventizer.newFrontend(message -> {
+                backend.send(message);
+                if (message instanceof OnSuiteFinishedEvent) {
+                    callback.run();
+                }
+            });
         }
 
         @Override
@@ -0,0 +1,62 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.daemon.warmup;
+
+import fi.jumi.core.api.NullSuiteListener;
+import fi.jumi.core.config.*;
+import fi.jumi.core.ipc.IpcCommandSender;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.dirs.DaemonDir;
+import fi.jumi.core.ipc.index.SuiteResults;
+import fi.jumi.core.util.ClassFiles;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a synthetic suite through this daemon's own command directory, the same way as a launcher
+ * would, so that the code on the hot paths of running a suite gets JIT compiled before a launcher
+ * claims this daemon.
+ */
+@NotThreadSafe
+public class WarmUp {
+
+    private final Path daemonDir;
+    private final Executor executor;
+    private final WaitSettings waitSettings;
+
+    public WarmUp(Path daemonDir, Executor executor, WaitSettings waitSettings) {
+        this.daemonDir = daemonDir;
+        this.executor = executor;
+        this.waitSettings = waitSettings;
+    }
+
+    public void run() throws IOException, InterruptedException, ExecutionException {
+        SuiteConfiguration suite = new SuiteConfigurationBuilder()
+                .setClasspath(extractTestClass())
+                .setTestClasses(WarmUpTest.class)
+                .freeze();
+
+        IpcCommandSender sender = new IpcCommandSender(new DaemonDir(daemonDir).createCommandDir(), executor, waitSettings);
+        Path suiteResults = sender.runTests(suite).get();
+        sender.close();
+
+        // reading the results warms up also their decoding, which the launcher-side code shares with the daemon
+        waitSettings.decodeResultsChannel(SuiteResults.reader(suiteResults), new NullSuiteListener(), suiteResults);
+    }
+
+    private Path extractTestClass() throws IOException {
+        // tests are looked up from class directories, so the test class cannot be used straight from the daemon JAR
+        Path classesDir = daemonDir.resolve("warm-up");
+        Path classFile = classesDir.resolve(ClassFiles.classNameToPath(WarmUpTest.class.getName()));
+        Files.createDirectories(classFile.getParent());
+        try (InputStream in = WarmUpTest.class.getResourceAsStream(WarmUpTest.class.getSimpleName() + ".class")) {
+            Files.copy(in, classFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return classesDir;
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.daemon.warmup;
+
+import fi.jumi.api.drivers.*;
+
+import javax.annotation.concurrent.*;
+import java.util.concurrent.Executor;
+
+/**
+ * Produces the same kinds of events as real tests: nested tests, printed output and failures.
+ */
+@NotThreadSafe
+public class WarmUpDriver extends Driver {
+
+    static final int TESTS = 500;
+
+    @Override
+    public void findTests(Class<?> testClass, SuiteNotifier notifier, Executor executor) {
+        notifier.fireTestFound(TestId.ROOT, testClass.getSimpleName());
+        TestId testId = TestId.ROOT.getFirstChild();
+        for (int i = 0; i < TESTS; i++) {
+            notifier.fireTestFound(testId, "test" + i);
+            executor.execute(new WarmUpRun(notifier, testId, i));
+            testId = testId.getNextSibling();
+        }
+    }
+
+    @Immutable
+    private static class WarmUpRun implements Runnable {
+        private final SuiteNotifier notifier;
+        private final TestId testId;
+        private final int index;
+
+        public WarmUpRun(SuiteNotifier notifier, TestId testId, int index) {
+            this.notifier = notifier;
+            this.testId = testId;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            TestNotifier root = notifier.fireTestStarted(TestId.ROOT);
+            TestNotifier test = notifier.fireTestStarted(testId);
+            System.out.println("warming up " + index);
+            if (index % 10 == 0) {
+                System.err.println("warming up failures " + index);
+                test.fireFailure(new AssertionError("warm-up failure " + index));
+            }
+            test.fireTestFinished();
+            root.fireTestFinished();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.daemon.warmup;
+
+import fi.jumi.api.RunVia;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The test class of the warm-up suite. Its tests are made up by {@link WarmUpDriver}.
+ */
+@RunVia(WarmUpDriver.class)
+@Immutable
+public class WarmUpTest {
+}
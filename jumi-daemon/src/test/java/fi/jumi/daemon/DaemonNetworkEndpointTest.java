@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -7,8 +7,10 @@ package fi.jumi.daemon;
 import fi.jumi.actors.eventizers.Event;
 import fi.jumi.actors.queue.MessageQueue;
 import fi.jumi.core.api.SuiteListener;
+import fi.jumi.core.ipc.channel.WaitSettings;
 import fi.jumi.core.network.NetworkConnection;
-import fi.jumi.core.util.timeout.SpyTimeout;
+import fi.jumi.core.util.StartupPhases;
+import fi.jumi.core.util.timeout.*;
 import org.junit.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -22,7 +24,7 @@ public class DaemonNetworkEndpointTest {
     private final SpyTimeout startupTimeout = new SpyTimeout();
     private final SpyTimeout idleTimeout = new SpyTimeout();
 
-    private final DaemonNetworkEndpoint endpoint = new DaemonNetworkEndpoint(null, null, startupTimeout, idleTimeout, null);
+    private final DaemonNetworkEndpoint endpoint = new DaemonNetworkEndpoint(null, null, startupTimeout, new VacancyTimeout(idleTimeout), null, WaitSettings.DEFAULTS, new StartupPhases());
 
     @Before
     public void setInitialTimeoutStates() {
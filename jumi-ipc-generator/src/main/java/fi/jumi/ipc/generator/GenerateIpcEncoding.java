@@ -0,0 +1,30 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.ipc.generator;
+
+import java.lang.annotation.*;
+
+/**
+ * Generates an abstract {@code <Interface>EncodingBase} class which encodes the calls of a listener
+ * interface to an {@code IpcBuffer} and decodes them back. The event type of a method is its position
+ * in the interface, so new methods must be added to the end of the interface. The event types are part
+ * of the file format, so the tests of each encoding pin them to their numbers.
+ * <p>
+ * Encoding starts from the {@code Event} objects, because the writers queue the events in them between
+ * threads. The event is dispatched once with {@code fireOn} to the generated method, which writes the
+ * parameters directly.
+ * <p>
+ * The parameters are written and read with {@code writeFoo(Foo)} and {@code readFoo()} methods, where
+ * {@code Foo} is the simple name of the parameter's type (and e.g. {@code IntArray} for {@code int[]}).
+ * Those which {@code EncodingUtil} doesn't have are left abstract for the subclass to implement.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateIpcEncoding {
+
+    String targetPackage();
+
+    int interfaceVersion() default 1;
+}
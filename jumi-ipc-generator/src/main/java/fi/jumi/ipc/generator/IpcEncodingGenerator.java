@@ -0,0 +1,301 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.ipc.generator;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+import javax.tools.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates the classes requested with {@link GenerateIpcEncoding}. The generated code calls the
+ * listener and the read and write methods directly, so that decoding an event doesn't allocate
+ * anything besides the parameter values.
+ */
+@SupportedAnnotationTypes("fi.jumi.ipc.generator.GenerateIpcEncoding")
+@NotThreadSafe
+public class IpcEncodingGenerator extends AbstractProcessor {
+
+    private static final String ENCODING_UTIL = "fi.jumi.core.ipc.encoding.EncodingUtil";
+    private static final String MESSAGE_ENCODING = "fi.jumi.core.ipc.encoding.MessageEncoding";
+    private static final String IPC_BUFFER = "fi.jumi.core.ipc.buffer.IpcBuffer";
+    private static final String EVENT = "fi.jumi.actors.eventizers.Event";
+
+    // event types are written as one byte, and zero is not used
+    private static final int MAX_EVENT_TYPES = Byte.MAX_VALUE;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateIpcEncoding.class)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                error("only interfaces can have an IPC encoding", element);
+                continue;
+            }
+            GenerateIpcEncoding config = element.getAnnotation(GenerateIpcEncoding.class);
+            try {
+                generate((TypeElement) element, config.targetPackage(), config.interfaceVersion());
+            } catch (IOException e) {
+                error("failed to generate the IPC encoding: " + e, element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement listener, String targetPackage, int interfaceVersion) throws IOException {
+        TypeElement base = processingEnv.getElementUtils().getTypeElement(ENCODING_UTIL);
+        if (base == null) {
+            error(ENCODING_UTIL + " is not on the classpath", listener);
+            return;
+        }
+        List<ExecutableElement> events = eventsOf(listener);
+        Map<String, TypeMirror> parameterTypes = parameterTypesOf(events);
+        if (events == null || parameterTypes == null) {
+            return;
+        }
+
+        String listenerName = listener.getQualifiedName().toString();
+        String className = listener.getSimpleName() + "EncodingBase";
+        StringBuilder out = new StringBuilder();
+
+        out.append("// Generated by ").append(IpcEncodingGenerator.class.getName())
+                .append(" from ").append(listenerName).append(". Do not edit.\n");
+        out.append("\n");
+        if (!targetPackage.isEmpty()) {
+            out.append("package ").append(targetPackage).append(";\n");
+            out.append("\n");
+        }
+        out.append("@javax.annotation.Generated(\"").append(IpcEncodingGenerator.class.getName()).append("\")\n");
+        out.append("@javax.annotation.concurrent.NotThreadSafe\n");
+        out.append("public abstract class ").append(className).append(" extends ").append(ENCODING_UTIL).append("\n");
+        out.append("        implements ").append(listenerName).append(", ")
+                .append(MESSAGE_ENCODING).append("<").append(listenerName).append("> {\n");
+        out.append("\n");
+        for (int i = 0; i < events.size(); i++) {
+            out.append("    protected static final byte ").append(events.get(i).getSimpleName())
+                    .append(" = ").append(i + 1).append(";\n");
+        }
+        out.append("\n");
+        out.append("    public ").append(className).append("(").append(IPC_BUFFER).append(" buffer) {\n");
+        out.append("        super(buffer);\n");
+        out.append("    }\n");
+        out.append("\n");
+        out.append("    @Override\n");
+        out.append("    public String getInterfaceName() {\n");
+        out.append("        return ").append(listenerName).append(".class.getName();\n");
+        out.append("    }\n");
+        out.append("\n");
+        out.append("    @Override\n");
+        out.append("    public int getInterfaceVersion() {\n");
+        out.append("        return ").append(interfaceVersion).append(";\n");
+        out.append("    }\n");
+        out.append("\n");
+        out.append("    @Override\n");
+        out.append("    public void encode(").append(EVENT).append("<").append(listenerName).append("> message) {\n");
+        out.append("        message.fireOn(this);\n");
+        out.append("    }\n");
+        out.append("\n");
+        out.append("    @Override\n");
+        out.append("    public void decode(").append(listenerName).append(" target) {\n");
+        out.append("        byte type = readEventType();\n");
+        out.append("        switch (type) {\n");
+        for (ExecutableElement event : events) {
+            out.append("            case ").append(event.getSimpleName()).append(":\n");
+            out.append("                target.").append(event.getSimpleName()).append("(");
+            String separator = "";
+            for (VariableElement parameter : event.getParameters()) {
+                out.append(separator).append("read").append(codecName(parameter.asType())).append("()");
+                separator = ", ";
+            }
+            out.append(");\n");
+            out.append("                break;\n");
+        }
+        out.append("            default:\n");
+        out.append("                decodeUnknownEventType(type);\n");
+        out.append("        }\n");
+        out.append("    }\n");
+        out.append("\n");
+        out.append("    protected void decodeUnknownEventType(byte type) {\n");
+        out.append("        throw new IllegalArgumentException(\"Unknown type \" + type);\n");
+        out.append("    }\n");
+        out.append("\n");
+        out.append("\n");
+        out.append("    // encoding events\n");
+        for (ExecutableElement event : events) {
+            out.append("\n");
+            out.append("    @Override\n");
+            out.append("    public void ").append(event.getSimpleName()).append("(");
+            String separator = "";
+            for (VariableElement parameter : event.getParameters()) {
+                out.append(separator).append(parameter.asType()).append(" ").append(parameter.getSimpleName());
+                separator = ", ";
+            }
+            out.append(") {\n");
+            out.append("        writeEventType(").append(event.getSimpleName()).append(");\n");
+            for (VariableElement parameter : event.getParameters()) {
+                out.append("        write").append(codecName(parameter.asType()))
+                        .append("(").append(parameter.getSimpleName()).append(");\n");
+            }
+            out.append("    }\n");
+        }
+
+        boolean first = true;
+        for (Map.Entry<String, TypeMirror> entry : parameterTypes.entrySet()) {
+            String name = entry.getKey();
+            TypeMirror type = entry.getValue();
+            if (!hasWriter(base, targetPackage, name, type)) {
+                first = appendSectionStart(out, first);
+                out.append("    protected abstract void write").append(name).append("(").append(type).append(" value);\n");
+            }
+            if (!hasReader(base, targetPackage, name, type)) {
+                first = appendSectionStart(out, first);
+                out.append("    protected abstract ").append(type).append(" read").append(name).append("();\n");
+            }
+        }
+        out.append("}\n");
+
+        String qualifiedName = targetPackage.isEmpty() ? className : targetPackage + "." + className;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, listener);
+        try (Writer writer = file.openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    private static boolean appendSectionStart(StringBuilder out, boolean first) {
+        if (first) {
+            out.append("\n");
+            out.append("\n");
+            out.append("    // parameters\n");
+        }
+        out.append("\n");
+        return false;
+    }
+
+    private List<ExecutableElement> eventsOf(TypeElement listener) {
+        boolean valid = true;
+        if (!listener.getTypeParameters().isEmpty()) {
+            error("generic listener interfaces are not supported", listener);
+            valid = false;
+        }
+        List<ExecutableElement> events = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(listener.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            if (method.getReturnType().getKind() != TypeKind.VOID) {
+                error("event methods must return void", method);
+                valid = false;
+            }
+            if (!method.getTypeParameters().isEmpty()) {
+                error("generic event methods are not supported", method);
+                valid = false;
+            }
+            if (!names.add(method.getSimpleName().toString())) {
+                error("overloaded event methods are not supported", method);
+                valid = false;
+            }
+            events.add(method);
+        }
+        if (events.size() > MAX_EVENT_TYPES) {
+            error("at most " + MAX_EVENT_TYPES + " event methods are supported, but there were " + events.size(), listener);
+            valid = false;
+        }
+        return valid ? events : null;
+    }
+
+    private Map<String, TypeMirror> parameterTypesOf(List<ExecutableElement> events) {
+        if (events == null) {
+            return null;
+        }
+        Types types = processingEnv.getTypeUtils();
+        boolean valid = true;
+        Map<String, TypeMirror> parameterTypes = new LinkedHashMap<>();
+        for (ExecutableElement event : events) {
+            for (VariableElement parameter : event.getParameters()) {
+                TypeMirror type = parameter.asType();
+                String name = codecName(type);
+                if (name == null) {
+                    error("unsupported parameter type " + type, parameter);
+                    valid = false;
+                    continue;
+                }
+                TypeMirror previous = parameterTypes.put(name, type);
+                if (previous != null && !types.isSameType(previous, type)) {
+                    error("parameter types " + previous + " and " + type + " have the same simple name", parameter);
+                    valid = false;
+                }
+            }
+        }
+        return valid ? parameterTypes : null;
+    }
+
+    private static String codecName(TypeMirror type) {
+        TypeKind kind = type.getKind();
+        if (kind.isPrimitive()) {
+            String name = kind.name().toLowerCase(Locale.ENGLISH);
+            return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+        if (kind == TypeKind.ARRAY) {
+            String component = codecName(((ArrayType) type).getComponentType());
+            return component == null ? null : component + "Array";
+        }
+        if (kind == TypeKind.DECLARED && ((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return ((DeclaredType) type).asElement().getSimpleName().toString();
+        }
+        return null;
+    }
+
+    private boolean hasWriter(TypeElement base, String targetPackage, String name, TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        for (ExecutableElement method : inheritedMethods(base, targetPackage)) {
+            if (method.getSimpleName().contentEquals("write" + name)
+                    && method.getParameters().size() == 1
+                    && types.isSameType(method.getParameters().get(0).asType(), type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasReader(TypeElement base, String targetPackage, String name, TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        for (ExecutableElement method : inheritedMethods(base, targetPackage)) {
+            if (method.getSimpleName().contentEquals("read" + name)
+                    && method.getParameters().isEmpty()
+                    && types.isSameType(method.getReturnType(), type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ExecutableElement> inheritedMethods(TypeElement base, String targetPackage) {
+        Elements elements = processingEnv.getElementUtils();
+        boolean samePackage = elements.getPackageOf(base).getQualifiedName().contentEquals(targetPackage);
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(base))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.PROTECTED)
+                    || (samePackage && !modifiers.contains(Modifier.PRIVATE))) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.ipc.generator;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IpcEncodingGeneratorTest {
+
+    // the parts of jumi-core and jumi-actors which the generated code refers to
+    private static final String[] STUBS = {
+            "package fi.jumi.actors.eventizers;\n" +
+                    "public interface Event<T> {\n" +
+                    "    void fireOn(T target);\n" +
+                    "}\n",
+            "package fi.jumi.core.ipc.buffer;\n" +
+                    "public class IpcBuffer {\n" +
+                    "}\n",
+            "package fi.jumi.core.ipc.encoding;\n" +
+                    "public interface MessageEncoding<T> {\n" +
+                    "    String getInterfaceName();\n" +
+                    "    int getInterfaceVersion();\n" +
+                    "    void encode(fi.jumi.actors.eventizers.Event<T> message);\n" +
+                    "    void decode(T target);\n" +
+                    "}\n",
+            "package fi.jumi.core.ipc.encoding;\n" +
+                    "public abstract class EncodingUtil {\n" +
+                    "    public EncodingUtil(fi.jumi.core.ipc.buffer.IpcBuffer buffer) {}\n" +
+                    "    protected byte readEventType() { return 0; }\n" +
+                    "    protected void writeEventType(byte type) {}\n" +
+                    "    protected String readString() { return null; }\n" +
+                    "    protected void writeString(String s) {}\n" +
+                    "}\n",
+            "package example;\n" +
+                    "public class Foo {\n" +
+                    "}\n",
+    };
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    @Test
+    public void generates_an_encoding_which_compiles() throws IOException {
+        compile("package example;\n" +
+                "@fi.jumi.ipc.generator.GenerateIpcEncoding(targetPackage = \"fi.jumi.core.ipc.encoding\")\n" +
+                "public interface DummyListener {\n" +
+                "    void onSomething(String s, Foo foo);\n" +
+                "}\n");
+
+        assertThat(errors(), is(empty()));
+        assertThat(generated("fi/jumi/core/ipc/encoding/DummyListenerEncodingBase.java"), allOf(
+                containsString("public abstract class DummyListenerEncodingBase"),
+                containsString("target.onSomething(readString(), readFoo());"),
+                containsString("writeString(s);"),
+                containsString("writeFoo(foo);")));
+    }
+
+    @Test
+    public void leaves_abstract_the_read_and_write_methods_which_EncodingUtil_does_not_have() throws IOException {
+        compile("package example;\n" +
+                "@fi.jumi.ipc.generator.GenerateIpcEncoding(targetPackage = \"fi.jumi.core.ipc.encoding\")\n" +
+                "public interface DummyListener {\n" +
+                "    void onSomething(String s, Foo foo, int[] ints);\n" +
+                "}\n");
+
+        String source = generated("fi/jumi/core/ipc/encoding/DummyListenerEncodingBase.java");
+        assertThat(source, allOf(
+                containsString("protected abstract void writeFoo(example.Foo value);"),
+                containsString("protected abstract example.Foo readFoo();"),
+                containsString("protected abstract void writeIntArray(int[] value);"),
+                containsString("protected abstract int[] readIntArray();")));
+        assertThat(source, not(containsString("readString();\n")));
+    }
+
+    @Test
+    public void event_types_follow_the_order_of_the_methods_and_the_interface_version_is_configurable() throws IOException {
+        compile("package example;\n" +
+                "@fi.jumi.ipc.generator.GenerateIpcEncoding(targetPackage = \"fi.jumi.core.ipc.encoding\", interfaceVersion = 3)\n" +
+                "public interface DummyListener {\n" +
+                "    void onFirst();\n" +
+                "    void onSecond();\n" +
+                "}\n");
+
+        assertThat(errors(), is(empty()));
+        assertThat(generated("fi/jumi/core/ipc/encoding/DummyListenerEncodingBase.java"), allOf(
+                containsString("protected static final byte onFirst = 1;"),
+                containsString("protected static final byte onSecond = 2;"),
+                containsString("return 3;")));
+    }
+
+    @Test
+    public void event_methods_must_return_void() {
+        compile("package example;\n" +
+                "@fi.jumi.ipc.generator.GenerateIpcEncoding(targetPackage = \"fi.jumi.core.ipc.encoding\")\n" +
+                "public interface DummyListener {\n" +
+                "    int onSomething();\n" +
+                "}\n");
+
+        assertThat(errors(), contains("event methods must return void"));
+    }
+
+    @Test
+    public void overloaded_event_methods_are_not_supported() {
+        compile("package example;\n" +
+                "@fi.jumi.ipc.generator.GenerateIpcEncoding(targetPackage = \"fi.jumi.core.ipc.encoding\")\n" +
+                "public interface DummyListener {\n" +
+                "    void onSomething();\n" +
+                "    void onSomething(String s);\n" +
+                "}\n");
+
+        assertThat(errors(), contains("overloaded event methods are not supported"));
+    }
+
+    @Test
+    public void generic_parameter_types_are_not_supported() {
+        compile("package example;\n" +
+                "@fi.jumi.ipc.generator.GenerateIpcEncoding(targetPackage = \"fi.jumi.core.ipc.encoding\")\n" +
+                "public interface DummyListener {\n" +
+                "    void onSomething(java.util.List<String> list);\n" +
+                "}\n");
+
+        assertThat(errors(), contains("unsupported parameter type java.util.List<java.lang.String>"));
+    }
+
+
+    // helpers
+
+    private void compile(String listener) {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (String stub : STUBS) {
+            sources.add(new SourceString(stub));
+        }
+        sources.add(new SourceString(listener));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        String outputDir = tempDir.getRoot().getAbsolutePath();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", outputDir, "-s", outputDir),
+                null, sources);
+        task.setProcessors(Collections.singletonList(new IpcEncodingGenerator()));
+        task.call();
+    }
+
+    private List<String> errors() {
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(Locale.ENGLISH));
+            }
+        }
+        return errors;
+    }
+
+    private String generated(String path) throws IOException {
+        return new String(Files.readAllBytes(tempDir.getRoot().toPath().resolve(path)), StandardCharsets.UTF_8);
+    }
+
+    private static class SourceString extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceString(String source) {
+            super(URI.create("string:///" + className(source).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        private static String className(String source) {
+            Matcher m = Pattern.compile("package (\\S+);.*?(?:class|interface) (\\w+)", Pattern.DOTALL).matcher(source);
+            if (!m.find()) {
+                throw new IllegalArgumentException("no class in " + source);
+            }
+            return m.group(1) + "." + m.group(2);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -32,6 +32,7 @@ public class JumiBootstrap {
     public DaemonConfigurationBuilder daemon = new DaemonConfigurationBuilder();
 
     private boolean passingTestsVisible = false;
+    private boolean startupTimelineVisible = false;
     private Appendable textUiOutput = System.out;
     private OutputStream daemonOutput = new NullOutputStream();
 
@@ -40,6 +41,14 @@ public class JumiBootstrap {
         return this;
     }
 
+    /**
+     * Shows when each phase of starting the suite began, to find out where the time before the first test went.
+     */
+    public JumiBootstrap setStartupTimelineVisible(boolean startupTimelineVisible) {
+        this.startupTimelineVisible = startupTimelineVisible;
+        return this;
+    }
+
     public JumiBootstrap setTextUiOutput(Appendable textUiOutput) {
         this.textUiOutput = textUiOutput;
         return this;
@@ -70,6 +79,7 @@ public class JumiBootstrap {
 
             TextUI ui = new TextUI(launcher.getEventStream(), new PlainTextPrinter(textUiOutput));
             ui.setPassingTestsVisible(passingTestsVisible);
+            ui.setStartupTimelineVisible(startupTimelineVisible);
             ui.updateUntilFinished();
 
             if (ui.hasFailures()) {
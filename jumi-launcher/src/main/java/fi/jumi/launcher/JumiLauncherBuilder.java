@@ -1,4 +1,4 @@
-// Copyright © 2011-2015, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -7,8 +7,9 @@ package fi.jumi.launcher;
 import fi.jumi.actors.*;
 import fi.jumi.actors.eventizers.ComposedEventizerProvider;
 import fi.jumi.actors.listeners.*;
+import fi.jumi.core.api.StartupTimeline;
 import fi.jumi.core.network.*;
-import fi.jumi.core.util.PrefixedThreadFactory;
+import fi.jumi.core.util.*;
 import fi.jumi.launcher.daemon.*;
 import fi.jumi.launcher.events.*;
 import fi.jumi.launcher.process.*;
@@ -23,8 +24,13 @@ import java.util.concurrent.*;
 public class JumiLauncherBuilder {
 
     private boolean networkDebugLogging = false;
+    private int standbyDaemons = 0;
+    private long standbyIdleTimeout = TimeUnit.MINUTES.toMillis(15);
+    private long standbyMemoryLimit = 2L * 1024 * 1024 * 1024;
 
     public JumiLauncher build() {
+        StartupPhases startupPhases = new StartupPhases();
+        startupPhases.mark(StartupTimeline.LAUNCHER_BUILD);
         ExecutorService actorsThreadPool = createActorsThreadPool();
         ProcessStarter processStarter = createProcessStarter();
         NetworkServer networkServer = createNetworkServer();
@@ -46,9 +52,11 @@ public class JumiLauncherBuilder {
                 new DirBasedSteward(new EmbeddedDaemonJar()),
                 processStarter,
                 networkServer,
+                new StandbyDaemons(standbyDaemons, standbyIdleTimeout, standbyMemoryLimit),
+                startupPhases,
                 daemonOutputListener
         ));
-        ActorRef<SuiteLauncher> suiteLauncher = actorThread.bindActor(SuiteLauncher.class, new RemoteSuiteLauncher(actorThread, daemonSummoner));
+        ActorRef<SuiteLauncher> suiteLauncher = actorThread.bindActor(SuiteLauncher.class, new RemoteSuiteLauncher(actorThread, daemonSummoner, startupPhases));
 
         return new JumiLauncher(suiteLauncher, () -> {
             networkServer.close();
@@ -69,6 +77,28 @@ public class JumiLauncherBuilder {
         return this;
     }
 
+    /**
+     * Keeps this many warmed up daemons waiting for the next suite, so that it won't need to wait
+     * for a new JVM to start. Disabled by default.
+     */
+    public JumiLauncherBuilder setStandbyDaemons(int standbyDaemons) {
+        this.standbyDaemons = standbyDaemons;
+        return this;
+    }
+
+    public JumiLauncherBuilder setStandbyIdleTimeout(long standbyIdleTimeout, TimeUnit unit) {
+        this.standbyIdleTimeout = unit.toMillis(standbyIdleTimeout);
+        return this;
+    }
+
+    /**
+     * Limits the total maximum heap size of the standby daemons. Zero means no limit.
+     */
+    public JumiLauncherBuilder setStandbyMemoryLimit(long bytes) {
+        this.standbyMemoryLimit = bytes;
+        return this;
+    }
+
 
     // dependencies
 
@@ -0,0 +1,81 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.launcher.daemon;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * JVM options for making the daemon start faster with an application class data sharing (AppCDS)
+ * archive of the daemon JAR. The archive is recorded when a daemon exits, which requires Java 13 or
+ * newer, and it's usable only by the same JVM build that recorded it.
+ * <p>
+ * The daemon is started with the same JVM as the launcher, so whether to use the archive is decided
+ * based on the current JVM.
+ */
+@Immutable
+public class ClassDataSharing {
+
+    public static final ClassDataSharing UNSUPPORTED = new ClassDataSharing(false, "");
+
+    private static final int DYNAMIC_ARCHIVES_SINCE = 13;
+
+    // the JVM falls back to loading the classes normally if it rejects the archive, but without
+    // these it would complain about it in the daemon's output
+    private static final List<String> QUIET = Arrays.asList("-Xshare:auto", "-Xlog:cds=off", "-Xlog:cds+dynamic=off");
+
+    private final boolean supported;
+    private final String jvmVersion;
+
+    public ClassDataSharing(boolean supported, String jvmVersion) {
+        this.supported = supported;
+        this.jvmVersion = jvmVersion;
+    }
+
+    public static ClassDataSharing ofCurrentJvm() {
+        return ofJvm(System.getProperty("java.specification.version"), System.getProperty("java.vm.version"));
+    }
+
+    static ClassDataSharing ofJvm(String specificationVersion, String vmVersion) {
+        int majorVersion;
+        try {
+            // "1.8" before Java 9, then "9", "10" and so on
+            majorVersion = Integer.parseInt(specificationVersion);
+        } catch (NumberFormatException e) {
+            return UNSUPPORTED;
+        }
+        if (majorVersion < DYNAMIC_ARCHIVES_SINCE) {
+            return UNSUPPORTED;
+        }
+        return new ClassDataSharing(true, vmVersion);
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * The archive's file name, which is different for every daemon JAR content and JVM build.
+     */
+    public String archiveName(String daemonJarName, String daemonJarSha1) {
+        String baseName = daemonJarName.replaceFirst("\\.jar$", "");
+        return baseName + "-" + daemonJarSha1.substring(0, 12) + "-" + jvmVersion.replaceAll("[^\\w.-]", "_") + ".jsa";
+    }
+
+    public List<String> useArchive(Path archive) {
+        List<String> options = new ArrayList<>();
+        options.add("-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+        options.addAll(QUIET);
+        return options;
+    }
+
+    public List<String> recordArchive(Path archive) {
+        List<String> options = new ArrayList<>();
+        options.add("-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath());
+        options.addAll(QUIET);
+        return options;
+    }
+}
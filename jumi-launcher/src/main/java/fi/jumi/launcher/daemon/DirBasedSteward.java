@@ -1,25 +1,38 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.launcher.daemon;
 
-import fi.jumi.core.ipc.dirs.UniqueDirectories;
+import fi.jumi.core.config.DaemonConfiguration;
+import fi.jumi.core.ipc.dirs.*;
+import fi.jumi.core.util.Checksums;
 import org.apache.commons.io.IOUtils;
 
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.*;
 
 @NotThreadSafe
 public class DirBasedSteward implements Steward {
 
     private static final String DAEMONS_DIR = "daemons";
+    private static final String DAEMON_JAR = "daemonJar";
+
+    private static final String RECORDED_ARCHIVE = "classes.jsa";
 
     private final DaemonJar daemonJar;
+    private final ClassDataSharing classDataSharing;
 
     public DirBasedSteward(DaemonJar daemonJar) {
+        this(daemonJar, ClassDataSharing.ofCurrentJvm());
+    }
+
+    public DirBasedSteward(DaemonJar daemonJar, ClassDataSharing classDataSharing) {
         this.daemonJar = daemonJar;
+        this.classDataSharing = classDataSharing;
     }
 
     @Override
@@ -31,6 +44,86 @@ public class DirBasedSteward implements Steward {
         }
     }
 
+    @Override
+    public void registerDaemon(Path daemonDir, Properties advertisement) {
+        DaemonRegistration registration = new DaemonRegistration(daemonDir);
+        try {
+            registration.tryClaim();
+            registration.advertise(withDaemonJar(advertisement));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to register the daemon in " + daemonDir, e);
+        }
+    }
+
+    @Override
+    public Path claimIdleDaemon(Path jumiHome, Properties advertisement, int concurrentSuites, long startupTimeout) {
+        Properties wanted = withDaemonJar(advertisement);
+        try {
+            for (DaemonRegistration registration : registeredDaemons(jumiHome, wanted, concurrentSuites)) {
+                if (registration.tryClaim()) {
+                    if (registration.isAlive()) {
+                        return registration.getDaemonDir();
+                    }
+                    // a daemon of concurrent suites has free slots already before it has started up
+                    registration.withdrawClaim();
+                    if (!registration.isRecentlyClaimed(startupTimeout)) {
+                        registration.unregister();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to look for idle daemons in " + jumiHome.resolve(DAEMONS_DIR), e);
+        }
+        return null;
+    }
+
+    @Override
+    public int countDaemons(Path jumiHome, Properties advertisement, int concurrentSuites, long startupTimeout) {
+        Properties wanted = withDaemonJar(advertisement);
+        int count = 0;
+        try {
+            for (DaemonRegistration registration : registeredDaemons(jumiHome, wanted, concurrentSuites)) {
+                boolean available = registration.isAlive()
+                        ? registration.hasFreeSlot()
+                        : registration.isRecentlyClaimed(startupTimeout); // starting up
+                if (available) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to count the daemons in " + jumiHome.resolve(DAEMONS_DIR), e);
+        }
+        return count;
+    }
+
+    private static List<DaemonRegistration> registeredDaemons(Path jumiHome, Properties wanted, int concurrentSuites) throws IOException {
+        Path daemonsDir = jumiHome.resolve(DAEMONS_DIR);
+        List<DaemonRegistration> registrations = new ArrayList<>();
+        if (!Files.isDirectory(daemonsDir)) {
+            return registrations;
+        }
+        try (DirectoryStream<Path> daemonDirs = Files.newDirectoryStream(daemonsDir)) {
+            for (Path daemonDir : daemonDirs) {
+                if (!Files.isDirectory(daemonDir)) {
+                    continue;
+                }
+                DaemonRegistration registration = new DaemonRegistration(daemonDir, concurrentSuites);
+                if (wanted.equals(registration.getAdvertisement())) {
+                    registrations.add(registration);
+                }
+            }
+        }
+        return registrations;
+    }
+
+    private Properties withDaemonJar(Properties advertisement) {
+        // daemons of other Jumi versions might not understand our commands
+        Properties copy = new Properties();
+        copy.putAll(advertisement);
+        copy.setProperty(DAEMON_JAR, daemonJar.getDaemonJarName());
+        return copy;
+    }
+
     @Override
     public Path getDaemonJar(Path jumiHome) {
         Path extractedJar = jumiHome.resolve("lib/" + daemonJar.getDaemonJarName());
@@ -59,4 +152,75 @@ public class DirBasedSteward implements Steward {
             IOUtils.copy(source, out);
         }
     }
+
+
+    @Override
+    public List<String> getClassDataSharingOptions(DaemonConfiguration daemon) {
+        if (!classDataSharing.isSupported()) {
+            return Collections.emptyList();
+        }
+        Path jar = getDaemonJar(daemon.getJumiHome());
+        try {
+            Path archive = jar.resolveSibling(classDataSharing.archiveName(jar.getFileName().toString(), daemonJarSha1(jar)));
+            Path recording = archive.resolveSibling(archive.getFileName() + ".recording");
+            adoptFinishedRecording(recording, archive, daemon.getStartupTimeout());
+            if (Files.exists(archive)) {
+                return classDataSharing.useArchive(archive);
+            }
+            // the warm-up suite of a standby daemon doesn't load all the classes that a real suite does
+            if (!daemon.isStandby() && tryStartRecording(recording, daemon.getDaemonDir())) {
+                return classDataSharing.recordArchive(daemon.getDaemonDir().resolve(RECORDED_ARCHIVE));
+            }
+        } catch (IOException e) {
+            // the daemon will work also without the archive, it will only start slower
+        }
+        return Collections.emptyList();
+    }
+
+    private static boolean tryStartRecording(Path recording, Path daemonDir) throws IOException {
+        try {
+            Files.write(recording, daemonDir.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false; // another launcher just started recording it
+        }
+    }
+
+    private static void adoptFinishedRecording(Path recording, Path archive, long startupTimeout) throws IOException {
+        if (!Files.exists(recording)) {
+            return;
+        }
+        Path daemonDir = Paths.get(new String(Files.readAllBytes(recording), StandardCharsets.UTF_8));
+        DaemonRegistration registration = new DaemonRegistration(daemonDir);
+        if (registration.isAlive() || registration.isRecentlyClaimed(startupTimeout)) {
+            return; // the JVM writes the archive when the daemon exits
+        }
+        // the archive is complete only after the daemon process has died, so it's written to
+        // the daemon dir and moved next to the daemon JAR atomically, for other daemons to use
+        Path recorded = daemonDir.resolve(RECORDED_ARCHIVE);
+        if (Files.exists(recorded) && !Files.exists(archive)) {
+            try {
+                Files.move(recorded, archive, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException | FileAlreadyExistsException e) {
+                // another launcher just adopted it
+            }
+        }
+        // if the daemon died without writing the archive, the next daemon will try to record it again
+        Files.deleteIfExists(recording);
+    }
+
+    private static String daemonJarSha1(Path jar) throws IOException {
+        // the JAR is read only when it has changed, because this is on the critical path of every suite
+        Path memo = jar.resolveSibling(jar.getFileName() + ".sha1");
+        String version = Files.size(jar) + " " + Files.getLastModifiedTime(jar).toMillis() + " ";
+        if (Files.exists(memo)) {
+            String memoized = new String(Files.readAllBytes(memo), StandardCharsets.UTF_8);
+            if (memoized.startsWith(version) && memoized.length() == version.length() + 40) {
+                return memoized.substring(version.length());
+            }
+        }
+        String sha1 = Checksums.sha1(jar);
+        Files.write(memo, (version + sha1).getBytes(StandardCharsets.UTF_8));
+        return sha1;
+    }
 }
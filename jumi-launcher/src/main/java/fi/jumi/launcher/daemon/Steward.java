@@ -1,14 +1,43 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.launcher.daemon;
 
+import fi.jumi.core.config.DaemonConfiguration;
+
 import java.nio.file.Path;
+import java.util.*;
 
 public interface Steward {
 
     Path createDaemonDir(Path jumiHome);
 
     Path getDaemonJar(Path jumiHome);
+
+    /**
+     * Claims the daemon for the suite which it is started for, and advertises it to later launchers.
+     */
+    void registerDaemon(Path daemonDir, Properties advertisement);
+
+    /**
+     * Returns the directory of a daemon with room for another suite, claimed for the caller, which was
+     * started with the same advertisement, or null if there is no such daemon. A daemon has room for
+     * as many suites as it runs concurrently. Daemons which were started within the startup timeout
+     * but are not yet alive are skipped.
+     */
+    Path claimIdleDaemon(Path jumiHome, Properties advertisement, int concurrentSuites, long startupTimeout);
+
+    /**
+     * Counts the daemons which were started with the same advertisement and either are alive and have
+     * room for another suite, or were started within the startup timeout. Daemons which are running
+     * as many suites as they can are not counted.
+     */
+    int countDaemons(Path jumiHome, Properties advertisement, int concurrentSuites, long startupTimeout);
+
+    /**
+     * Returns the JVM options for starting the daemon with a class data sharing archive of the daemon JAR.
+     * Until there is an archive, one of the daemons is started with options for recording it.
+     */
+    List<String> getClassDataSharingOptions(DaemonConfiguration daemon);
 }
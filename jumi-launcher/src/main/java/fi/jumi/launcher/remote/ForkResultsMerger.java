@@ -0,0 +1,161 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.launcher.remote;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.actors.queue.MessageSender;
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.runs.RunIdSequence;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.*;
+
+/**
+ * Merges the results of the worker daemons of a forked suite into the results of one suite.
+ * The suite starts when the first worker starts, and finishes when the last worker finishes.
+ * Each worker numbers its runs starting from the same run ID, so they are given new run IDs.
+ * <p>
+ * The test files which a worker has claimed are not run by the other workers, so if a worker dies
+ * before finishing them, they are reported as an internal error instead of silently missing from the results.
+ */
+@NotThreadSafe
+public class ForkResultsMerger {
+
+    private final SuiteListener target;
+    private final int workerCount;
+    private final Runnable onSuiteFinished;
+    private final RunIdSequence runIdSequence = new RunIdSequence();
+
+    private int suitesStarted = 0;
+    private int allTestFilesFound = 0;
+    private int suitesFinished = 0;
+    private boolean startupTimelineSent = false;
+
+    public ForkResultsMerger(MessageSender<Event<SuiteListener>> target, int workerCount, Runnable onSuiteFinished) {
+        this.target = new SuiteListenerEventizer().newFrontend(target);
+        this.workerCount = workerCount;
+        this.onSuiteFinished = onSuiteFinished;
+    }
+
+    public MessageSender<Event<SuiteListener>> newWorker() {
+        Worker worker = new Worker();
+        return message -> message.fireOn(worker);
+    }
+
+
+    @NotThreadSafe
+    private class Worker implements SuiteListener {
+
+        private final Map<RunId, RunId> runIds = new HashMap<>();
+        private final Set<TestFile> unfinishedTestFiles = new LinkedHashSet<>();
+        private boolean allTestFilesFoundByWorker = false;
+
+        @Override
+        public void onSuiteStarted() {
+            suitesStarted++;
+            if (suitesStarted == 1) {
+                target.onSuiteStarted();
+            }
+        }
+
+        @Override
+        public void onInternalError(String message, StackTrace cause) {
+            target.onInternalError(message, cause);
+        }
+
+        @Override
+        public void onTestFileFound(TestFile testFile) {
+            unfinishedTestFiles.add(testFile);
+            target.onTestFileFound(testFile);
+        }
+
+        @Override
+        public void onAllTestFilesFound() {
+            if (allTestFilesFoundByWorker) {
+                return;
+            }
+            allTestFilesFoundByWorker = true;
+            allTestFilesFound++;
+            if (allTestFilesFound == workerCount) {
+                target.onAllTestFilesFound();
+            }
+        }
+
+        @Override
+        public void onTestFound(TestFile testFile, TestId testId, String name) {
+            target.onTestFound(testFile, testId, name);
+        }
+
+        @Override
+        public void onRunStarted(RunId runId, TestFile testFile) {
+            RunId mergedRunId = runIdSequence.nextRunId();
+            runIds.put(runId, mergedRunId);
+            target.onRunStarted(mergedRunId, testFile);
+        }
+
+        @Override
+        public void onTestStarted(RunId runId, TestId testId) {
+            target.onTestStarted(runIds.get(runId), testId);
+        }
+
+        @Override
+        public void onPrintedOut(RunId runId, String text) {
+            target.onPrintedOut(runIds.get(runId), text);
+        }
+
+        @Override
+        public void onPrintedErr(RunId runId, String text) {
+            target.onPrintedErr(runIds.get(runId), text);
+        }
+
+        @Override
+        public void onFailure(RunId runId, StackTrace cause) {
+            target.onFailure(runIds.get(runId), cause);
+        }
+
+        @Override
+        public void onTestFinished(RunId runId) {
+            target.onTestFinished(runIds.get(runId));
+        }
+
+        @Override
+        public void onRunFinished(RunId runId) {
+            target.onRunFinished(runIds.remove(runId));
+        }
+
+        @Override
+        public void onTestFileFinished(TestFile testFile) {
+            unfinishedTestFiles.remove(testFile);
+            target.onTestFileFinished(testFile);
+        }
+
+        @Override
+        public void onSuiteFinished() {
+            // a worker which died before finding all test files doesn't say so
+            onAllTestFilesFound();
+            if (!unfinishedTestFiles.isEmpty()) {
+                target.onInternalError("A worker daemon finished without running the test files it had claimed: " + unfinishedTestFiles,
+                        StackTrace.from(new Exception("unfinished test files")));
+                unfinishedTestFiles.clear();
+            }
+            suitesFinished++;
+            if (suitesFinished == workerCount) {
+                target.onSuiteFinished();
+                onSuiteFinished.run();
+            }
+        }
+
+        @Override
+        public void onStartupTimeline(StartupTimeline timeline) {
+            // the first worker's timeline is the one which contains the launcher's startup phases
+            if (!startupTimelineSent) {
+                startupTimelineSent = true;
+                target.onStartupTimeline(timeline);
+            }
+        }
+    }
+}
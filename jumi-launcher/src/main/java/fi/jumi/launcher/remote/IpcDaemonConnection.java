@@ -0,0 +1,90 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.launcher.remote;
+
+import fi.jumi.actors.eventizers.Event;
+import fi.jumi.actors.queue.MessageSender;
+import fi.jumi.core.api.SuiteListener;
+import fi.jumi.core.config.SuiteConfiguration;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.ipc.IpcCommandSender;
+import fi.jumi.core.ipc.api.RequestListener;
+import fi.jumi.core.ipc.channel.*;
+import fi.jumi.core.ipc.dirs.*;
+import fi.jumi.core.ipc.index.SuiteResults;
+import fi.jumi.core.network.NetworkConnection;
+import fi.jumi.core.util.Boilerplate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+/**
+ * Talks with an already running daemon through the command directories which it observes,
+ * the same way as the daemon itself routes the commands which it receives over the network.
+ */
+@NotThreadSafe
+public class IpcDaemonConnection implements RequestListener, MessageSender<Event<RequestListener>>, NetworkConnection {
+
+    private final DaemonDir daemonDir;
+    private final DaemonListener listener;
+    private final WaitSettings waitSettings;
+    private final Executor executor;
+
+    public IpcDaemonConnection(DaemonDir daemonDir, DaemonListener listener, WaitSettings waitSettings, Executor executor) {
+        this.daemonDir = daemonDir;
+        this.listener = listener;
+        this.waitSettings = waitSettings;
+        this.executor = executor;
+    }
+
+    @Override
+    public void send(Event<RequestListener> message) {
+        message.fireOn(this);
+    }
+
+    @Override
+    public void runTests(SuiteConfiguration suite) {
+        IpcCommandSender sender = newCommandSender();
+        Future<Path> suiteResults = sender.runTests(suite);
+        sender.close();
+
+        SuiteListener suiteListener = new SuiteListenerEventizer().newFrontend(listener::onMessage);
+        executor.execute(() -> {
+            try {
+                Path suiteResultsPath = suiteResults.get();
+                IpcReader<SuiteListener> suiteReader = SuiteResults.reader(suiteResultsPath);
+                waitSettings.decodeResultsChannel(suiteReader, suiteListener, suiteResultsPath);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw Boilerplate.rethrow(e.getCause());
+            } finally {
+                listener.onDisconnected();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        IpcCommandSender sender = newCommandSender();
+        sender.shutdown();
+        sender.close();
+    }
+
+    @Override
+    public void disconnect() {
+        // the daemon's idle timeout starts when the suite has finished
+    }
+
+    private IpcCommandSender newCommandSender() {
+        try {
+            return new IpcCommandSender(daemonDir.createCommandDir(), executor, waitSettings);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to send a command to the daemon in " + daemonDir, e);
+        }
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -12,17 +12,20 @@ import fi.jumi.core.api.*;
 import fi.jumi.core.config.*;
 import fi.jumi.core.events.suiteListener.*;
 import fi.jumi.core.ipc.api.RequestListener;
+import fi.jumi.core.ipc.dirs.DaemonDir;
 import fi.jumi.core.network.*;
-import fi.jumi.core.util.Boilerplate;
+import fi.jumi.core.util.*;
 import fi.jumi.core.util.timeout.InitialMessageTimeout;
 import fi.jumi.launcher.daemon.Steward;
 import fi.jumi.launcher.process.*;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 
 import javax.annotation.WillClose;
 import javax.annotation.concurrent.*;
 import java.io.*;
-import java.nio.file.Paths;
+import java.nio.file.*;
+import java.util.*;
 import java.util.concurrent.*;
 
 @NotThreadSafe
@@ -33,16 +36,23 @@ public class ProcessStartingDaemonSummoner implements DaemonSummoner {
     private final Steward steward;
     private final ProcessStarter processStarter;
     private final NetworkServer daemonConnector;
+    private final StandbyDaemons standbyDaemons;
+    private final StartupPhases startupPhases;
+    private final Executor ipcExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("jumi-launcher-ipc-"));
 
     private final OutputStream outputListener; // TODO: remove me
 
     public ProcessStartingDaemonSummoner(Steward steward,
                                          ProcessStarter processStarter,
                                          NetworkServer daemonConnector,
+                                         StandbyDaemons standbyDaemons,
+                                         StartupPhases startupPhases,
                                          @WillClose OutputStream outputListener) {
         this.steward = steward;
         this.processStarter = processStarter;
         this.daemonConnector = daemonConnector;
+        this.standbyDaemons = standbyDaemons;
+        this.startupPhases = startupPhases;
         this.outputListener = outputListener;
     }
 
@@ -50,6 +60,18 @@ public class ProcessStartingDaemonSummoner implements DaemonSummoner {
     public void connectToDaemon(SuiteConfiguration suite,
                                 DaemonConfiguration daemon,
                                 ActorRef<DaemonListener> listener) {
+        Properties advertisement = advertisement(suite, daemon);
+        Path idleDaemonDir = steward.claimIdleDaemon(daemon.getJumiHome(), advertisement, daemon.getConcurrentSuites(), daemon.getStartupTimeout());
+        boolean startedDaemon = idleDaemonDir == null;
+        if (startedDaemon) {
+            startDaemon(suite, daemon, advertisement, listener);
+        } else {
+            reuseDaemon(idleDaemonDir, daemon, listener);
+        }
+        fillStandbyPool(suite, daemon, advertisement, startedDaemon);
+    }
+
+    private void startDaemon(SuiteConfiguration suite, DaemonConfiguration daemon, Properties advertisement, ActorRef<DaemonListener> listener) {
         // XXX: should we handle multiple connections properly, even though we are expecting only one?
         int port = daemonConnector.listenOnAnyPort(
                 new OneTimeDaemonListenerFactory(
@@ -58,22 +80,82 @@ public class ProcessStartingDaemonSummoner implements DaemonSummoner {
                 .setDaemonDir(steward.createDaemonDir(daemon.getJumiHome()))
                 .setLauncherPort(port)
                 .freeze();
+        steward.registerDaemon(daemon.getDaemonDir(), advertisement);
+
+        Process process = startProcess(suite, daemon, startupPhases);
+        copyInBackground(process.getInputStream(), outputListener); // TODO: write the output to a log file using OS pipes, read it from there with AppRunner
+    }
+
+    private void fillStandbyPool(SuiteConfiguration suite, DaemonConfiguration daemon, Properties advertisement, boolean startedDaemon) {
+        int poolSize = standbyDaemons.poolSize(suite.getJvmOptions());
+        if (poolSize <= 0) {
+            return;
+        }
+        // the daemon which was just started for the current suite is counted as starting up,
+        // but a reused daemon is counted only if it has room for more suites
+        int available = steward.countDaemons(daemon.getJumiHome(), advertisement, daemon.getConcurrentSuites(), daemon.getStartupTimeout());
+        int missing = poolSize - (startedDaemon ? available - 1 : available);
+        for (int i = 0; i < missing; i++) {
+            startStandbyDaemon(suite, daemon, advertisement);
+        }
+    }
+
+    private void startStandbyDaemon(SuiteConfiguration suite, DaemonConfiguration daemon, Properties advertisement) {
+        // advertised like the requested daemon, because only its idle timeout is different
+        daemon = daemon.melt()
+                .setDaemonDir(steward.createDaemonDir(daemon.getJumiHome()))
+                .setStandby(true)
+                .setIdleTimeout(standbyDaemons.getIdleTimeout())
+                .freeze();
+        // the daemon releases the claim after it has warmed up
+        steward.registerDaemon(daemon.getDaemonDir(), advertisement);
+
+        // not part of the current suite's startup
+        Process process = startProcess(suite, daemon, new StartupPhases());
+        copyInBackground(process.getInputStream(), new NullOutputStream());
+    }
 
+    private Process startProcess(SuiteConfiguration suite, DaemonConfiguration daemon, StartupPhases startupPhases) {
         try {
+            startupPhases.mark(StartupTimeline.STEWARD_JAR_CHECK);
+            Path daemonJar = steward.getDaemonJar(daemon.getJumiHome());
+            List<String> jvmOptions = new ArrayList<>(suite.getJvmOptions());
+            jvmOptions.addAll(steward.getClassDataSharingOptions(daemon));
             JvmArgs jvmArgs = new JvmArgsBuilder()
-                    .setExecutableJar(steward.getDaemonJar(daemon.getJumiHome()))
+                    .setExecutableJar(daemonJar)
                     .setWorkingDir(Paths.get(suite.getWorkingDirectory()))
-                    .setJvmOptions(suite.getJvmOptions())
+                    .setJvmOptions(jvmOptions)
                     .setSystemProperties(daemon.toSystemProperties())
                     .setProgramArgs(daemon.toProgramArgs())
                     .freeze();
-            Process process = processStarter.startJavaProcess(jvmArgs);
-            copyInBackground(process.getInputStream(), outputListener); // TODO: write the output to a log file using OS pipes, read it from there with AppRunner
+            startupPhases.mark(StartupTimeline.PROCESS_SPAWN);
+            return processStarter.startJavaProcess(jvmArgs);
         } catch (Exception e) {
             throw Boilerplate.rethrow(e);
         }
     }
 
+    private void reuseDaemon(Path daemonDir, DaemonConfiguration daemon, ActorRef<DaemonListener> listener) {
+        DaemonListener timedListener = withInitialMessageTimeout(listener.tell(), daemon.getStartupTimeout());
+        IpcDaemonConnection connection = new IpcDaemonConnection(
+                new DaemonDir(daemonDir), timedListener, daemon.getWaitSettings(), ipcExecutor);
+        timedListener.onConnected(connection, connection);
+    }
+
+    /**
+     * Describes the kind of daemon which the suite needs. A running daemon can be reused
+     * only for suites whose advertisement is equal to the one it was started with.
+     */
+    private static Properties advertisement(SuiteConfiguration suite, DaemonConfiguration daemon) {
+        Properties advertisement = daemon.toSystemProperties();
+        advertisement.setProperty("workingDirectory", suite.getWorkingDirectory().toString());
+        List<String> jvmOptions = suite.getJvmOptions();
+        for (int i = 0; i < jvmOptions.size(); i++) {
+            advertisement.setProperty("jvmOptions." + i, jvmOptions.get(i));
+        }
+        return advertisement;
+    }
+
     private static DaemonListener withInitialMessageTimeout(DaemonListener listener, long timeoutMillis) {
         return eventizer.newFrontend(
                 new InitialMessageTimeout<>(
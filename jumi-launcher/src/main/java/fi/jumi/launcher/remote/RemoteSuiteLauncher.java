@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -12,37 +12,87 @@ import fi.jumi.core.config.*;
 import fi.jumi.core.events.RequestListenerEventizer;
 import fi.jumi.core.events.suiteListener.*;
 import fi.jumi.core.ipc.api.RequestListener;
+import fi.jumi.core.ipc.dirs.TestFileClaims;
 import fi.jumi.core.network.NetworkConnection;
+import fi.jumi.core.util.StartupPhases;
 
 import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.util.*;
 
 @NotThreadSafe
 public class RemoteSuiteLauncher implements SuiteLauncher, DaemonListener {
 
     private final ActorThread currentThread;
     private final ActorRef<DaemonSummoner> daemonSummoner;
+    private final StartupPhases startupPhases;
 
     private SuiteConfiguration suiteConfiguration;
     private MessageSender<Event<SuiteListener>> suiteListener;
     private RequestListener daemon;
     private final SuiteState suiteState = new SuiteState();
+    private final List<RemoteSuiteLauncher> forkWorkers = new ArrayList<>();
 
-    public RemoteSuiteLauncher(ActorThread currentThread, ActorRef<DaemonSummoner> daemonSummoner) {
+    public RemoteSuiteLauncher(ActorThread currentThread, ActorRef<DaemonSummoner> daemonSummoner, StartupPhases startupPhases) {
         this.currentThread = currentThread;
         this.daemonSummoner = daemonSummoner;
+        this.startupPhases = startupPhases;
     }
 
     @Override
     public void runTests(SuiteConfiguration suiteConfiguration,
                          DaemonConfiguration daemonConfiguration,
                          MessageSender<Event<SuiteListener>> suiteListener) {
+        if (suiteConfiguration.getForkCount() > 1) {
+            runForkedTests(suiteConfiguration, daemonConfiguration, suiteListener);
+            return;
+        }
         this.suiteConfiguration = suiteConfiguration;
         this.suiteListener = suiteListener;
         daemonSummoner.tell().connectToDaemon(suiteConfiguration, daemonConfiguration, self());
     }
 
+    private void runForkedTests(SuiteConfiguration suiteConfiguration,
+                                DaemonConfiguration daemonConfiguration,
+                                MessageSender<Event<SuiteListener>> suiteListener) {
+        // each worker daemon runs the suite like a non-forked suite, but skips the test files which the others claim
+        TestFileClaims claims;
+        try {
+            claims = TestFileClaims.create(daemonConfiguration.getJumiHome());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create the test file claims directory", e);
+        }
+        SuiteConfiguration workerSuite = suiteConfiguration.melt()
+                .setForkCount(1)
+                .setTestFileClaimsDir(claims.getDir().toUri())
+                .freeze();
+        // the workers must not share a JVM, because forking is for isolating the static state of tests;
+        // a daemon which runs one suite at a time stays claimed by its worker until the forked suite finishes
+        DaemonConfiguration workerDaemon = daemonConfiguration.melt()
+                .setConcurrentSuites(1)
+                .freeze();
+        ForkResultsMerger merger = new ForkResultsMerger(suiteListener, suiteConfiguration.getForkCount(), () -> {
+            try {
+                claims.delete();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to delete the test file claims in " + claims.getDir(), e);
+            }
+        });
+        for (int i = 0; i < suiteConfiguration.getForkCount(); i++) {
+            RemoteSuiteLauncher worker = new RemoteSuiteLauncher(currentThread, daemonSummoner, startupPhases);
+            forkWorkers.add(worker);
+            worker.runTests(workerSuite, workerDaemon, merger.newWorker());
+        }
+    }
+
     @Override
     public void shutdownDaemon() {
+        if (!forkWorkers.isEmpty()) {
+            for (RemoteSuiteLauncher worker : forkWorkers) {
+                worker.shutdownDaemon();
+            }
+            return;
+        }
         if (daemon == null) {
             throw new IllegalStateException("cannot shutdown; daemon not connected");
         }
@@ -57,6 +107,11 @@ public class RemoteSuiteLauncher implements SuiteLauncher, DaemonListener {
 
     @Override
     public void onMessage(Event<SuiteListener> message) {
+        if (message instanceof OnStartupTimelineEvent) {
+            // the daemon doesn't know how long it took for the launcher to start it
+            StartupTimeline daemonPhases = ((OnStartupTimelineEvent) message).getArg0();
+            message = new OnStartupTimelineEvent(startupPhases.takeAll().plus(daemonPhases));
+        }
         suiteListener.send(message);
         message.fireOn(suiteState);
     }
@@ -0,0 +1,71 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.launcher.remote;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * How many warmed up daemons to keep waiting for the next suite, in addition to the daemon which
+ * runs the current suite. A standby daemon exits after being idle for the idle timeout, and the
+ * pool is kept small enough for the maximum heap sizes of its daemons to fit in the memory limit.
+ */
+@Immutable
+public class StandbyDaemons {
+
+    public static final StandbyDaemons NONE = new StandbyDaemons(0, 0, 0);
+
+    private static final Pattern MAX_HEAP = Pattern.compile("-Xmx(\\d+)([kKmMgG]?)");
+
+    private final int count;
+    private final long idleTimeout;
+    private final long memoryLimit;
+
+    /**
+     * @param idleTimeout in milliseconds
+     * @param memoryLimit in bytes, or zero for no limit
+     */
+    public StandbyDaemons(int count, long idleTimeout, long memoryLimit) {
+        this.count = count;
+        this.idleTimeout = idleTimeout;
+        this.memoryLimit = memoryLimit;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int poolSize(List<String> jvmOptions) {
+        if (memoryLimit <= 0) {
+            return count;
+        }
+        return (int) Math.min(count, memoryLimit / maxHeapSize(jvmOptions));
+    }
+
+    static long maxHeapSize(List<String> jvmOptions) {
+        long maxHeapSize = Runtime.getRuntime().maxMemory(); // launched with the same defaults as this JVM
+        for (String jvmOption : jvmOptions) {
+            Matcher m = MAX_HEAP.matcher(jvmOption);
+            if (m.matches()) {
+                maxHeapSize = Long.parseLong(m.group(1)) * unitMultiplier(m.group(2));
+            }
+        }
+        return Math.max(1, maxHeapSize);
+    }
+
+    private static long unitMultiplier(String unit) {
+        switch (unit.toLowerCase(Locale.ENGLISH)) {
+            case "k":
+                return 1024L;
+            case "m":
+                return 1024L * 1024;
+            case "g":
+                return 1024L * 1024 * 1024;
+            default:
+                return 1;
+        }
+    }
+}
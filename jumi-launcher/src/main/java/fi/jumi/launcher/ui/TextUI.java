@@ -1,4 +1,4 @@
-// Copyright © 2011-2013, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -29,6 +29,8 @@ public class TextUI {
     private final TextProgressBar progressBar = new TextProgressBar("[", "-----=====-----=====-----=====-----=====-----=====", "]");
     private boolean passingTestsVisible = true;
     private boolean progressBarVisible = true;
+    private boolean startupTimelineVisible = false;
+    private StartupTimeline startupTimeline;
     private boolean hasInternalErrors = false;
     private boolean hasFailures = false;
 
@@ -45,6 +47,10 @@ public class TextUI {
         this.progressBarVisible = progressBarVisible;
     }
 
+    public void setStartupTimelineVisible(boolean startupTimelineVisible) {
+        this.startupTimelineVisible = startupTimelineVisible;
+    }
+
     public boolean hasFailures() {
         return hasFailures || hasInternalErrors;
     }
@@ -113,6 +119,11 @@ public class TextUI {
             return tmp.getFailingTests() > 0;
         }
 
+        @Override
+        public void onStartupTimeline(StartupTimeline timeline) {
+            startupTimeline = timeline;
+        }
+
         @Override
         public void onSuiteFinished() {
             SuiteResultsSummary summary = new SuiteResultsSummary();
@@ -126,6 +137,9 @@ public class TextUI {
             int pass = summary.getPassingTests();
             int fail = summary.getFailingTests();
             printer.printMetaLine(String.format("Pass: %d, Fail: %d", pass, fail));
+            if (startupTimelineVisible && startupTimeline != null) {
+                printer.printMetaLine("Startup: " + startupTimeline);
+            }
             if (hasFailures) {
                 printer.printMetaLine("There were test failures");
             }
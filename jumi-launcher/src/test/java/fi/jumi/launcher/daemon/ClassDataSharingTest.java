@@ -0,0 +1,30 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.launcher.daemon;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ClassDataSharingTest {
+
+    @Test
+    public void is_supported_on_JVMs_which_can_record_an_archive_when_exiting() {
+        assertThat("Java 8", ClassDataSharing.ofJvm("1.8", "25.392-b08").isSupported(), is(false));
+        assertThat("Java 11", ClassDataSharing.ofJvm("11", "11.0.21+9").isSupported(), is(false));
+        assertThat("Java 13", ClassDataSharing.ofJvm("13", "13.0.2+8").isSupported(), is(true));
+        assertThat("Java 21", ClassDataSharing.ofJvm("21", "21.0.1+12-LTS").isSupported(), is(true));
+    }
+
+    @Test
+    public void falls_back_silently_if_the_JVM_rejects_the_archive() {
+        ClassDataSharing cds = new ClassDataSharing(true, "1.0");
+
+        assertThat(cds.useArchive(Paths.get("foo.jsa")), hasItems("-Xshare:auto", "-Xlog:cds=off"));
+    }
+}
@@ -1,9 +1,11 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
 package fi.jumi.launcher.daemon;
 
+import fi.jumi.core.config.*;
+import fi.jumi.core.ipc.dirs.DaemonRegistration;
 import org.apache.commons.io.FileUtils;
 import org.junit.*;
 import org.junit.rules.*;
@@ -73,6 +75,111 @@ public class DirBasedStewardTest {
     }
 
 
+    // Registry of daemons
+
+    @Test
+    public void claims_an_idle_daemon_which_was_registered_with_the_same_advertisement() throws IOException {
+        Path daemonDir = registerRunningDaemon(advertisement("foo"));
+
+        assertThat(steward.claimIdleDaemon(jumiHome, advertisement("bar"), 1, 1000), is(nullValue()));
+        assertThat(steward.claimIdleDaemon(jumiHome, advertisement("foo"), 1, 1000), is(daemonDir));
+    }
+
+    @Test
+    public void does_not_claim_a_daemon_which_is_already_claimed() throws IOException {
+        registerRunningDaemon(advertisement("foo"));
+
+        steward.claimIdleDaemon(jumiHome, advertisement("foo"), 1, 1000);
+
+        assertThat(steward.claimIdleDaemon(jumiHome, advertisement("foo"), 1, 1000), is(nullValue()));
+    }
+
+    @Test
+    public void claims_a_daemon_of_concurrent_suites_until_all_of_its_slots_are_claimed() throws IOException {
+        Path daemonDir = registerRunningDaemon(advertisement("foo"));
+
+        assertThat("first claim", steward.claimIdleDaemon(jumiHome, advertisement("foo"), 2, 1000), is(daemonDir));
+        assertThat("second claim", steward.claimIdleDaemon(jumiHome, advertisement("foo"), 2, 1000), is(daemonDir));
+        assertThat("third claim", steward.claimIdleDaemon(jumiHome, advertisement("foo"), 2, 1000), is(nullValue()));
+    }
+
+    @Test
+    public void does_not_claim_nor_unregister_a_daemon_of_concurrent_suites_which_is_still_starting_up() throws IOException {
+        Path daemonDir = steward.createDaemonDir(jumiHome);
+        steward.registerDaemon(daemonDir, advertisement("foo")); // its own launcher claims the first slot
+
+        assertThat("claimed", steward.claimIdleDaemon(jumiHome, advertisement("foo"), 2, 1000), is(nullValue()));
+
+        assertThat("advertisement", new DaemonRegistration(daemonDir).getAdvertisement(), is(notNullValue()));
+        assertThat("free slot", new DaemonRegistration(daemonDir, 2).tryClaim(), is(true));
+    }
+
+    @Test
+    public void unregisters_daemons_which_have_died() throws IOException {
+        Path daemonDir = steward.createDaemonDir(jumiHome);
+        steward.registerDaemon(daemonDir, advertisement("foo"));
+        new DaemonRegistration(daemonDir).releaseClaim();
+
+        assertThat(steward.claimIdleDaemon(jumiHome, advertisement("foo"), 1, 1000), is(nullValue()));
+        assertThat(new DaemonRegistration(daemonDir).getAdvertisement(), is(nullValue()));
+    }
+
+    @Test
+    public void does_not_claim_daemons_of_other_Jumi_versions() throws IOException {
+        registerRunningDaemon(advertisement("foo"));
+
+        DirBasedSteward otherVersion = new DirBasedSteward(new StubDaemonJar("daemon-4.5.6.jar", expectedContent));
+
+        assertThat(otherVersion.claimIdleDaemon(jumiHome, advertisement("foo"), 1, 1000), is(nullValue()));
+    }
+
+    @Test
+    public void counts_the_daemons_which_have_room_for_a_suite_or_are_starting_up() throws IOException {
+        registerRunningDaemon(advertisement("foo"));
+        registerRunningDaemon(advertisement("bar"));
+        steward.registerDaemon(steward.createDaemonDir(jumiHome), advertisement("foo")); // starting up
+        Path busy = registerRunningDaemon(advertisement("foo"));
+        new DaemonRegistration(busy).tryClaim();
+        Path dead = steward.createDaemonDir(jumiHome);
+        steward.registerDaemon(dead, advertisement("foo"));
+        new DaemonRegistration(dead).releaseClaim();
+
+        assertThat(steward.countDaemons(jumiHome, advertisement("foo"), 1, 1000), is(2));
+    }
+
+    @Test
+    public void counts_the_daemons_of_concurrent_suites_until_all_their_slots_are_claimed() throws IOException {
+        Path daemonDir = registerRunningDaemon(advertisement("foo"));
+        new DaemonRegistration(daemonDir, 2).tryClaim();
+
+        assertThat("one slot claimed", steward.countDaemons(jumiHome, advertisement("foo"), 2, 1000), is(1));
+
+        new DaemonRegistration(daemonDir, 2).tryClaim();
+
+        assertThat("all slots claimed", steward.countDaemons(jumiHome, advertisement("foo"), 2, 1000), is(0));
+    }
+
+    @Test
+    public void there_are_no_idle_daemons_before_any_daemon_has_been_started() {
+        assertThat(steward.claimIdleDaemon(jumiHome, advertisement("foo"), 1, 1000), is(nullValue()));
+    }
+
+    private Path registerRunningDaemon(Properties advertisement) throws IOException {
+        Path daemonDir = steward.createDaemonDir(jumiHome);
+        steward.registerDaemon(daemonDir, advertisement);
+        DaemonRegistration daemon = new DaemonRegistration(daemonDir);
+        daemon.lockForLifetime();
+        daemon.releaseClaim();
+        return daemonDir;
+    }
+
+    private static Properties advertisement(String value) {
+        Properties advertisement = new Properties();
+        advertisement.setProperty("key", value);
+        return advertisement;
+    }
+
+
     // Daemon JAR
 
     @Test
@@ -105,6 +212,110 @@ public class DirBasedStewardTest {
     }
 
 
+    // Class data sharing archive
+
+    @Test
+    public void no_class_data_sharing_options_if_the_JVM_does_not_support_it() {
+        steward = new DirBasedSteward(stubDaemonJar, ClassDataSharing.UNSUPPORTED);
+
+        assertThat(steward.getClassDataSharingOptions(daemonConfig(steward.createDaemonDir(jumiHome))), is(empty()));
+    }
+
+    @Test
+    public void the_first_daemon_records_the_archive_and_others_start_without_it_meanwhile() {
+        steward = new DirBasedSteward(stubDaemonJar, new ClassDataSharing(true, "1.0"));
+        Path recorder = registerStartingDaemon();
+
+        assertThat("recorder", steward.getClassDataSharingOptions(daemonConfig(recorder)),
+                hasItem("-XX:ArchiveClassesAtExit=" + recorder.resolve("classes.jsa").toAbsolutePath()));
+        assertThat("others", steward.getClassDataSharingOptions(daemonConfig(registerStartingDaemon())), is(empty()));
+    }
+
+    @Test
+    public void uses_the_archive_after_the_recording_daemon_has_exited() throws IOException {
+        steward = new DirBasedSteward(stubDaemonJar, new ClassDataSharing(true, "1.0"));
+        Path recorder = registerStartingDaemon();
+        steward.getClassDataSharingOptions(daemonConfig(recorder));
+        Files.write(recorder.resolve("classes.jsa"), new byte[]{42}); // written by the JVM on exit
+        new DaemonRegistration(recorder).releaseClaim();
+
+        List<String> options = steward.getClassDataSharingOptions(daemonConfig(registerStartingDaemon()));
+
+        Path archive = sharedArchiveFile(options);
+        assertThat("archive directory", archive.getParent(), is(jumiHome.resolve("lib").toAbsolutePath()));
+        assertThat("archive content", Files.readAllBytes(archive), is(new byte[]{42}));
+    }
+
+    @Test
+    public void records_again_if_the_recording_daemon_exited_without_writing_the_archive() {
+        steward = new DirBasedSteward(stubDaemonJar, new ClassDataSharing(true, "1.0"));
+        Path recorder = registerStartingDaemon();
+        steward.getClassDataSharingOptions(daemonConfig(recorder));
+        new DaemonRegistration(recorder).releaseClaim();
+
+        Path secondRecorder = registerStartingDaemon();
+        assertThat(steward.getClassDataSharingOptions(daemonConfig(secondRecorder)),
+                hasItem("-XX:ArchiveClassesAtExit=" + secondRecorder.resolve("classes.jsa").toAbsolutePath()));
+    }
+
+    @Test
+    public void standby_daemons_do_not_record_the_archive() {
+        steward = new DirBasedSteward(stubDaemonJar, new ClassDataSharing(true, "1.0"));
+        DaemonConfiguration standby = daemonConfig(registerStartingDaemon()).melt()
+                .setStandby(true)
+                .freeze();
+
+        assertThat(steward.getClassDataSharingOptions(standby), is(empty()));
+    }
+
+    @Test
+    public void records_a_new_archive_when_the_daemon_JAR_changes() throws IOException {
+        steward = new DirBasedSteward(stubDaemonJar, new ClassDataSharing(true, "1.0"));
+        Path recorder = registerStartingDaemon();
+        steward.getClassDataSharingOptions(daemonConfig(recorder));
+        Files.write(recorder.resolve("classes.jsa"), new byte[]{42});
+        new DaemonRegistration(recorder).releaseClaim();
+        steward.getClassDataSharingOptions(daemonConfig(registerStartingDaemon()));
+
+        steward = new DirBasedSteward(new StubDaemonJar(expectedName, new byte[]{4, 5, 6, 7}), new ClassDataSharing(true, "1.0"));
+        Path newRecorder = registerStartingDaemon();
+
+        assertThat(steward.getClassDataSharingOptions(daemonConfig(newRecorder)),
+                hasItem("-XX:ArchiveClassesAtExit=" + newRecorder.resolve("classes.jsa").toAbsolutePath()));
+    }
+
+    @Test
+    public void the_archive_name_depends_on_the_daemon_JAR_content_and_the_JVM_version() {
+        ClassDataSharing cds = new ClassDataSharing(true, "25.0-b1+2");
+
+        assertThat(cds.archiveName("daemon-1.2.3.jar", "0123456789abcdef0123456789abcdef01234567"),
+                is("daemon-1.2.3-0123456789ab-25.0-b1_2.jsa"));
+    }
+
+    private Path registerStartingDaemon() {
+        Path daemonDir = steward.createDaemonDir(jumiHome);
+        steward.registerDaemon(daemonDir, advertisement("foo"));
+        return daemonDir;
+    }
+
+    private DaemonConfiguration daemonConfig(Path daemonDir) {
+        return new DaemonConfigurationBuilder()
+                .setJumiHome(jumiHome)
+                .setDaemonDir(daemonDir)
+                .setStartupTimeout(1000)
+                .freeze();
+    }
+
+    private static Path sharedArchiveFile(List<String> options) {
+        for (String option : options) {
+            if (option.startsWith("-XX:SharedArchiveFile=")) {
+                return Paths.get(option.substring("-XX:SharedArchiveFile=".length()));
+            }
+        }
+        throw new AssertionError("no archive in " + options);
+    }
+
+
     private static class StubDaemonJar implements DaemonJar {
         private final String name;
         private final byte[] content;
@@ -0,0 +1,149 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.launcher.remote;
+
+import fi.jumi.api.drivers.TestId;
+import fi.jumi.core.api.*;
+import fi.jumi.core.events.SuiteListenerEventizer;
+import fi.jumi.core.events.suiteListener.EventToSuiteListener;
+import fi.jumi.core.util.SpyListener;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class ForkResultsMergerTest {
+
+    private static final TestFile TEST_FILE_1 = TestFile.fromClassName("Test1");
+    private static final TestFile TEST_FILE_2 = TestFile.fromClassName("Test2");
+
+    private final SpyListener<SuiteListener> spy = new SpyListener<>(SuiteListener.class);
+    private final SuiteListener expect = spy.getListener();
+    private final AtomicInteger suitesFinished = new AtomicInteger();
+
+    private final ForkResultsMerger merger = new ForkResultsMerger(new EventToSuiteListener(expect), 2, suitesFinished::incrementAndGet);
+    private final SuiteListener worker1 = newWorker();
+    private final SuiteListener worker2 = newWorker();
+
+    @Test
+    public void the_suite_starts_with_the_first_worker_and_finishes_with_the_last_worker() {
+        expect.onSuiteStarted();
+        expect.onAllTestFilesFound();
+        expect.onSuiteFinished();
+
+        spy.replay();
+        worker1.onSuiteStarted();
+        worker2.onSuiteStarted();
+        worker1.onAllTestFilesFound();
+        worker1.onSuiteFinished();
+        assertThat("finished before the last worker", suitesFinished.get(), is(0));
+        worker2.onAllTestFilesFound();
+        worker2.onSuiteFinished();
+        spy.verify();
+
+        assertThat("finished after the last worker", suitesFinished.get(), is(1));
+    }
+
+    @Test
+    public void a_worker_which_dies_before_finding_all_test_files_does_not_prevent_the_suite_from_finishing() {
+        StackTrace cause = StackTrace.from(new Exception("disconnected"));
+
+        expect.onSuiteStarted();
+        expect.onInternalError("died", cause);
+        expect.onAllTestFilesFound();
+        expect.onSuiteFinished();
+
+        spy.replay();
+        worker1.onSuiteStarted();
+        worker2.onSuiteStarted();
+        worker1.onAllTestFilesFound();
+        worker1.onSuiteFinished();
+        worker2.onInternalError("died", cause);
+        worker2.onSuiteFinished();
+        spy.verify();
+    }
+
+    @Test
+    public void reports_the_test_files_which_a_worker_claimed_but_did_not_finish_before_it_died() {
+        SuiteListener target = mock(SuiteListener.class);
+        ForkResultsMerger merger = new ForkResultsMerger(new SuiteListenerEventizer().newBackend(target), 1, () -> {
+        });
+        SuiteListener worker = new SuiteListenerEventizer().newFrontend(merger.newWorker());
+
+        worker.onSuiteStarted();
+        worker.onTestFileFound(TEST_FILE_1);
+        worker.onTestFileFound(TEST_FILE_2);
+        worker.onTestFileFinished(TEST_FILE_1);
+        worker.onSuiteFinished();
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(target).onInternalError(message.capture(), notNull(StackTrace.class));
+        assertThat(message.getValue(), containsString("without running the test files it had claimed"));
+        assertThat(message.getValue(), containsString(TEST_FILE_2.toString()));
+        assertThat(message.getValue(), not(containsString(TEST_FILE_1.toString())));
+    }
+
+    @Test
+    public void gives_the_runs_of_the_workers_unique_run_ids() {
+        StackTrace failure = StackTrace.from(new AssertionError("failure"));
+
+        expect.onSuiteStarted();
+        expect.onTestFileFound(TEST_FILE_1);
+        expect.onTestFileFound(TEST_FILE_2);
+        expect.onRunStarted(new RunId(1), TEST_FILE_1);
+        expect.onRunStarted(new RunId(2), TEST_FILE_2);
+        expect.onTestStarted(new RunId(2), TestId.ROOT);
+        expect.onTestStarted(new RunId(1), TestId.ROOT);
+        expect.onPrintedOut(new RunId(1), "out");
+        expect.onPrintedErr(new RunId(2), "err");
+        expect.onFailure(new RunId(2), failure);
+        expect.onTestFinished(new RunId(1));
+        expect.onTestFinished(new RunId(2));
+        expect.onRunFinished(new RunId(1));
+        expect.onRunFinished(new RunId(2));
+
+        spy.replay();
+        worker1.onSuiteStarted();
+        worker2.onSuiteStarted();
+        worker1.onTestFileFound(TEST_FILE_1);
+        worker2.onTestFileFound(TEST_FILE_2);
+        worker1.onRunStarted(new RunId(1), TEST_FILE_1);
+        worker2.onRunStarted(new RunId(1), TEST_FILE_2);
+        worker2.onTestStarted(new RunId(1), TestId.ROOT);
+        worker1.onTestStarted(new RunId(1), TestId.ROOT);
+        worker1.onPrintedOut(new RunId(1), "out");
+        worker2.onPrintedErr(new RunId(1), "err");
+        worker2.onFailure(new RunId(1), failure);
+        worker1.onTestFinished(new RunId(1));
+        worker2.onTestFinished(new RunId(1));
+        worker1.onRunFinished(new RunId(1));
+        worker2.onRunFinished(new RunId(1));
+        spy.verify();
+    }
+
+    @Test
+    public void forwards_only_the_first_startup_timeline() {
+        StartupTimeline first = StartupTimeline.EMPTY.with(StartupTimeline.LAUNCHER_BUILD, 1);
+        StartupTimeline second = StartupTimeline.EMPTY.with(StartupTimeline.DAEMON_MAIN_ENTRY, 2);
+
+        expect.onStartupTimeline(first);
+
+        spy.replay();
+        worker2.onStartupTimeline(first);
+        worker1.onStartupTimeline(second);
+        spy.verify();
+    }
+
+
+    // helpers
+
+    private SuiteListener newWorker() {
+        return new SuiteListenerEventizer().newFrontend(merger.newWorker());
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright © 2011-2015, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -13,16 +13,18 @@ import fi.jumi.core.events.SuiteListenerEventizer;
 import fi.jumi.core.events.suiteListener.OnSuiteStartedEvent;
 import fi.jumi.core.ipc.api.RequestListener;
 import fi.jumi.core.network.*;
-import fi.jumi.core.util.SpyListener;
+import fi.jumi.core.util.*;
 import fi.jumi.launcher.FakeProcess;
 import fi.jumi.launcher.daemon.Steward;
 import fi.jumi.launcher.process.*;
 import org.apache.commons.io.output.WriterOutputStream;
 import org.junit.*;
 import org.junit.rules.Timeout;
+import org.mockito.Mockito;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.*;
 import java.util.concurrent.*;
 
 import static fi.jumi.core.util.AsyncAssert.assertEventually;
@@ -41,11 +43,14 @@ public class ProcessStartingDaemonSummonerTest {
     private final SpyProcessStarter processStarter = new SpyProcessStarter();
     private final SpyNetworkServer daemonConnector = new SpyNetworkServer();
     private final StringWriter outputListener = new StringWriter();
+    private final StartupPhases startupPhases = new StartupPhases();
 
-    private final ProcessStartingDaemonSummoner daemonSummoner = new ProcessStartingDaemonSummoner(
+    private ProcessStartingDaemonSummoner daemonSummoner = new ProcessStartingDaemonSummoner(
             steward,
             processStarter,
             daemonConnector,
+            StandbyDaemons.NONE,
+            startupPhases,
             new WriterOutputStream(outputListener)
     );
 
@@ -97,6 +102,70 @@ public class ProcessStartingDaemonSummonerTest {
         verify((NetworkEndpoint<Event<SuiteListener>, Event<RequestListener>>) daemonListener).onMessage(anyMessage);
     }
 
+    @Test
+    public void registers_the_daemon_which_it_starts() {
+        daemonSummoner.connectToDaemon(dummySuiteConfig, dummyDaemonConfig, ActorRef.wrap(daemonListener));
+
+        verify(steward).registerDaemon(eq(dummyDaemonDir), Mockito.any(Properties.class));
+    }
+
+    @Test
+    public void starts_the_daemon_with_the_class_data_sharing_options_from_the_steward() {
+        SuiteConfiguration suite = dummySuiteConfig.melt().setJvmOptions("-Xmx100m").freeze();
+        stub(steward.getClassDataSharingOptions(Mockito.any(DaemonConfiguration.class))).toReturn(Arrays.asList("-XX:SharedArchiveFile=foo.jsa"));
+
+        daemonSummoner.connectToDaemon(suite, dummyDaemonConfig, ActorRef.wrap(daemonListener));
+
+        assertThat(processStarter.lastJvmOptions, contains("-Xmx100m", "-XX:SharedArchiveFile=foo.jsa"));
+    }
+
+    @Test
+    public void marks_the_launchers_startup_phases_when_starting_a_daemon() {
+        daemonSummoner.connectToDaemon(dummySuiteConfig, dummyDaemonConfig, ActorRef.wrap(daemonListener));
+
+        assertThat(startupPhases.takeAll().getPhases(), contains(StartupTimeline.STEWARD_JAR_CHECK, StartupTimeline.PROCESS_SPAWN));
+    }
+
+    @Test
+    public void reuses_an_idle_daemon_instead_of_starting_a_new_one() {
+        stub(steward.claimIdleDaemon(eq(dummyDaemonConfig.getJumiHome()), Mockito.any(Properties.class), eq(1), anyLong())).toReturn(dummyDaemonDir);
+
+        daemonSummoner.connectToDaemon(dummySuiteConfig, dummyDaemonConfig, ActorRef.wrap(daemonListener));
+
+        assertThat("started a process", processStarter.lastArgs, is(nullValue()));
+        verify(daemonListener).onConnected(Mockito.any(IpcDaemonConnection.class), Mockito.any(IpcDaemonConnection.class));
+    }
+
+    @Test
+    public void starts_standby_daemons_until_the_standby_pool_is_full() {
+        daemonSummoner = new ProcessStartingDaemonSummoner(steward, processStarter, daemonConnector,
+                new StandbyDaemons(3, 1000, 0), startupPhases, new WriterOutputStream(outputListener));
+        // one of them is the daemon which is started for the current suite
+        stub(steward.countDaemons(eq(dummyDaemonConfig.getJumiHome()), Mockito.any(Properties.class), eq(1), anyLong())).toReturn(2);
+
+        daemonSummoner.connectToDaemon(dummySuiteConfig, dummyDaemonConfig, ActorRef.wrap(daemonListener));
+
+        assertThat("started processes", processStarter.startedProcesses, is(1 + 2));
+        DaemonConfiguration standby = parseDaemonArguments(processStarter.lastArgs);
+        assertThat(standby.isStandby(), is(true));
+        verify(steward, times(3)).registerDaemon(eq(dummyDaemonDir), Mockito.any(Properties.class));
+        assertThat("startup phases of the current suite", startupPhases.takeAll().getPhases(),
+                contains(StartupTimeline.STEWARD_JAR_CHECK, StartupTimeline.PROCESS_SPAWN));
+    }
+
+    @Test
+    public void a_reused_daemon_does_not_count_as_part_of_the_standby_pool() {
+        daemonSummoner = new ProcessStartingDaemonSummoner(steward, processStarter, daemonConnector,
+                new StandbyDaemons(3, 1000, 0), startupPhases, new WriterOutputStream(outputListener));
+        stub(steward.claimIdleDaemon(eq(dummyDaemonConfig.getJumiHome()), Mockito.any(Properties.class), eq(1), anyLong())).toReturn(dummyDaemonDir);
+        stub(steward.countDaemons(eq(dummyDaemonConfig.getJumiHome()), Mockito.any(Properties.class), eq(1), anyLong())).toReturn(2);
+
+        daemonSummoner.connectToDaemon(dummySuiteConfig, dummyDaemonConfig, ActorRef.wrap(daemonListener));
+
+        assertThat("started processes", processStarter.startedProcesses, is(1));
+        assertThat(parseDaemonArguments(processStarter.lastArgs).isStandby(), is(true));
+    }
+
     @Test
     public void reports_an_internal_error_if_the_daemon_fails_to_connect_within_a_timeout() throws InterruptedException {
         SpyListener<SuiteListener> spy = new SpyListener<>(SuiteListener.class);
@@ -146,11 +215,15 @@ public class ProcessStartingDaemonSummonerTest {
     private static class SpyProcessStarter implements ProcessStarter {
 
         public String[] lastArgs;
+        public List<String> lastJvmOptions;
+        public int startedProcesses = 0;
         public FakeProcess processToReturn = new FakeProcess();
 
         @Override
         public Process startJavaProcess(JvmArgs jvmArgs) throws IOException {
             this.lastArgs = jvmArgs.programArgs.toArray(new String[0]);
+            this.lastJvmOptions = jvmArgs.jvmOptions;
+            this.startedProcesses++;
             return processToReturn;
         }
     }
@@ -1,4 +1,4 @@
-// Copyright © 2011-2014, Esko Luontola <www.orfjackal.net>
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
 // This software is released under the Apache License 2.0.
 // The license text is at http://www.apache.org/licenses/LICENSE-2.0
 
@@ -12,15 +12,17 @@ import fi.jumi.core.config.*;
 import fi.jumi.core.events.RequestListenerEventizer;
 import fi.jumi.core.events.suiteListener.*;
 import fi.jumi.core.ipc.api.RequestListener;
-import fi.jumi.core.util.SpyListener;
+import fi.jumi.core.util.*;
 import fi.jumi.launcher.FakeActorThread;
 import org.junit.*;
-import org.junit.rules.ExpectedException;
+import org.junit.rules.*;
+import org.mockito.ArgumentCaptor;
 
 import java.nio.file.Paths;
+import java.util.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.*;
 
 public class RemoteSuiteLauncherTest {
@@ -28,14 +30,19 @@ public class RemoteSuiteLauncherTest {
     @Rule
     public final ExpectedException thrown = ExpectedException.none();
 
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
     private final RequestListener daemon = mock(RequestListener.class);
     private final MessageSender<Event<RequestListener>> senderToDaemon = new RequestListenerEventizer().newBackend(daemon);
     private final SpyDaemonSummoner daemonSummoner = new SpyDaemonSummoner();
     private final SuiteConfiguration dummySuiteConfig = new SuiteConfiguration();
     private final DaemonConfiguration dummyDaemonConfig = new DaemonConfiguration();
 
+    private final StartupPhases launcherPhases = new StartupPhases();
+
     private final RemoteSuiteLauncher suiteLauncher =
-            new RemoteSuiteLauncher(new FakeActorThread(), ActorRef.<DaemonSummoner>wrap(daemonSummoner));
+            new RemoteSuiteLauncher(new FakeActorThread(), ActorRef.<DaemonSummoner>wrap(daemonSummoner), launcherPhases);
 
     private final MessageQueue<Event<SuiteListener>> suiteListener = new MessageQueue<>();
 
@@ -64,6 +71,20 @@ public class RemoteSuiteLauncherTest {
         assertThat(suiteListener.poll(), is(expectedEvent));
     }
 
+    @Test
+    public void adds_the_launchers_startup_phases_to_the_startup_timeline_of_the_daemon() {
+        launcherPhases.mark(StartupTimeline.LAUNCHER_BUILD, 1);
+        launcherPhases.mark(StartupTimeline.PROCESS_SPAWN, 2);
+        suiteLauncher.runTests(dummySuiteConfig, dummyDaemonConfig, suiteListener);
+        callback().tell().onConnected(null, senderToDaemon);
+
+        callback().tell().onMessage(new OnStartupTimelineEvent(StartupTimeline.EMPTY.with(StartupTimeline.DAEMON_MAIN_ENTRY, 3)));
+
+        OnStartupTimelineEvent event = (OnStartupTimelineEvent) suiteListener.poll();
+        assertThat(event.getArg0().getPhases(), contains(
+                StartupTimeline.LAUNCHER_BUILD, StartupTimeline.PROCESS_SPAWN, StartupTimeline.DAEMON_MAIN_ENTRY));
+    }
+
     @Test
     public void can_send_shutdown_command_to_the_daemon() {
         suiteLauncher.runTests(dummySuiteConfig, dummyDaemonConfig, suiteListener);
@@ -83,6 +104,96 @@ public class RemoteSuiteLauncherTest {
     }
 
 
+    // forked suites
+
+    @Test
+    public void runs_a_forked_suite_in_as_many_daemons_as_the_fork_count() {
+        SuiteConfiguration config = new SuiteConfigurationBuilder()
+                .setForkCount(2)
+                .freeze();
+        DaemonConfiguration daemonConfig = new DaemonConfigurationBuilder()
+                .setJumiHome(tempDir.getRoot().toPath())
+                .freeze();
+
+        suiteLauncher.runTests(config, daemonConfig, suiteListener);
+        RequestListener daemon1 = mock(RequestListener.class);
+        RequestListener daemon2 = mock(RequestListener.class);
+        daemonSummoner.listeners.get(0).tell().onConnected(null, new RequestListenerEventizer().newBackend(daemon1));
+        daemonSummoner.listeners.get(1).tell().onConnected(null, new RequestListenerEventizer().newBackend(daemon2));
+
+        ArgumentCaptor<SuiteConfiguration> workerConfig = ArgumentCaptor.forClass(SuiteConfiguration.class);
+        verify(daemon1).runTests(workerConfig.capture());
+        verify(daemon2).runTests(workerConfig.getValue());
+        assertThat("fork count", workerConfig.getValue().getForkCount(), is(1));
+        assertThat("test file claims dir", workerConfig.getValue().getTestFileClaimsDir(), is(notNullValue()));
+    }
+
+    @Test
+    public void runs_each_worker_of_a_forked_suite_in_a_daemon_of_its_own() {
+        SuiteConfiguration config = new SuiteConfigurationBuilder()
+                .setForkCount(2)
+                .freeze();
+        DaemonConfiguration daemonConfig = new DaemonConfigurationBuilder()
+                .setJumiHome(tempDir.getRoot().toPath())
+                .setConcurrentSuites(4)
+                .freeze();
+
+        suiteLauncher.runTests(config, daemonConfig, suiteListener);
+
+        assertThat(daemonSummoner.daemonConfigs, hasSize(2));
+        for (DaemonConfiguration workerDaemon : daemonSummoner.daemonConfigs) {
+            assertThat("concurrent suites", workerDaemon.getConcurrentSuites(), is(1));
+        }
+    }
+
+    @Test
+    public void merges_the_results_of_a_forked_suite_and_deletes_its_test_file_claims_after_it_finishes() {
+        SuiteConfiguration config = new SuiteConfigurationBuilder()
+                .setForkCount(2)
+                .freeze();
+        DaemonConfiguration daemonConfig = new DaemonConfigurationBuilder()
+                .setJumiHome(tempDir.getRoot().toPath())
+                .freeze();
+        SpyListener<SuiteListener> spy = new SpyListener<>(SuiteListener.class);
+        SuiteListener expect = spy.getListener();
+
+        expect.onSuiteStarted();
+        expect.onAllTestFilesFound();
+        expect.onSuiteFinished();
+
+        spy.replay();
+
+        suiteLauncher.runTests(config, daemonConfig, new EventToSuiteListener(expect));
+        for (ActorRef<DaemonListener> worker : daemonSummoner.listeners) {
+            worker.tell().onConnected(null, senderToDaemon);
+            worker.tell().onMessage(new OnSuiteStartedEvent());
+            worker.tell().onMessage(new OnAllTestFilesFoundEvent());
+            worker.tell().onMessage(new OnSuiteFinishedEvent());
+        }
+
+        spy.verify();
+        assertThat("test file claims", tempDir.getRoot().toPath().resolve("test-file-claims").toFile().list(), is(emptyArray()));
+    }
+
+    @Test
+    public void can_send_shutdown_command_to_the_daemons_of_a_forked_suite() {
+        SuiteConfiguration config = new SuiteConfigurationBuilder()
+                .setForkCount(2)
+                .freeze();
+        DaemonConfiguration daemonConfig = new DaemonConfigurationBuilder()
+                .setJumiHome(tempDir.getRoot().toPath())
+                .freeze();
+        suiteLauncher.runTests(config, daemonConfig, suiteListener);
+        for (ActorRef<DaemonListener> worker : daemonSummoner.listeners) {
+            worker.tell().onConnected(null, senderToDaemon);
+        }
+
+        suiteLauncher.shutdownDaemon();
+
+        verify(daemon, times(2)).shutdown();
+    }
+
+
     // reporting a daemon which dies unexpectedly
 
     @Test
@@ -149,12 +260,16 @@ public class RemoteSuiteLauncherTest {
     private static class SpyDaemonSummoner implements DaemonSummoner {
 
         public ActorRef<DaemonListener> lastListener;
+        public final List<ActorRef<DaemonListener>> listeners = new ArrayList<>();
+        public final List<DaemonConfiguration> daemonConfigs = new ArrayList<>();
 
         @Override
         public void connectToDaemon(SuiteConfiguration suiteConfiguration,
                                     DaemonConfiguration daemonConfiguration,
                                     ActorRef<DaemonListener> listener) {
             lastListener = listener;
+            listeners.add(listener);
+            daemonConfigs.add(daemonConfiguration);
         }
     }
 }
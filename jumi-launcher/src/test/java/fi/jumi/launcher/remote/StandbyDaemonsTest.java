@@ -0,0 +1,47 @@
+// Copyright © 2011-2016, Esko Luontola <www.orfjackal.net>
+// This software is released under the Apache License 2.0.
+// The license text is at http://www.apache.org/licenses/LICENSE-2.0
+
+package fi.jumi.launcher.remote;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StandbyDaemonsTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void pool_size_is_the_configured_count_when_there_is_no_memory_limit() {
+        StandbyDaemons standby = new StandbyDaemons(3, 1000, 0);
+
+        assertThat(standby.poolSize(Collections.<String>emptyList()), is(3));
+    }
+
+    @Test
+    public void pool_size_is_limited_by_the_maximum_heap_sizes_of_the_daemons() {
+        StandbyDaemons standby = new StandbyDaemons(3, 1000, 1000 * MB);
+
+        assertThat(standby.poolSize(asList("-Xmx400m")), is(2));
+        assertThat(standby.poolSize(asList("-Xmx100m")), is(3));
+        assertThat(standby.poolSize(asList("-Xmx2g")), is(0));
+    }
+
+    @Test
+    public void parses_the_maximum_heap_size_from_the_JVM_options() {
+        assertThat(StandbyDaemons.maxHeapSize(asList("-ea", "-Xmx512k")), is(512 * 1024L));
+        assertThat(StandbyDaemons.maxHeapSize(asList("-Xmx64M")), is(64 * MB));
+        assertThat(StandbyDaemons.maxHeapSize(asList("-Xmx1G", "-Xmx2g")), is(2048 * MB));
+        assertThat(StandbyDaemons.maxHeapSize(asList("-Xmx1048576")), is(MB));
+    }
+
+    @Test
+    public void without_a_maximum_heap_size_the_daemons_are_expected_to_have_the_same_default_as_this_JVM() {
+        assertThat(StandbyDaemons.maxHeapSize(asList("-ea")), is(Runtime.getRuntime().maxMemory()));
+    }
+}